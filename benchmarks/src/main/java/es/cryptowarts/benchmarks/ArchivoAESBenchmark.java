@@ -0,0 +1,155 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.CifradoAESGCM;
+import es.cryptowarts.cifrado.CifradoAESParalelo;
+import es.cryptowarts.cifrado.CifradoChaCha20Poly1305;
+import es.cryptowarts.cifrado.ModoES;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de cifrado y descifrado de archivos, de 1 KB a 1 GB, con las cinco implementaciones:
+ * {@link CifradoAES} (CBC) en modo {@link ModoES#FLUJO} y {@link ModoES#MAPEADO}, {@link CifradoAESGCM}
+ * (GCM por bloques autenticados, para comparar el coste de la autenticación con CBC),
+ * {@link CifradoChaCha20Poly1305} (mismo formato por bloques, para compararlo con GCM) y {@link CifradoAESParalelo}.
+ * Los archivos se crean en un directorio temporal (se puede cambiar con {@code -Djava.io.tmpdir})
+ * que se borra al terminar.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArchivoAESBenchmark {
+
+    /** Tamaño del archivo en bytes. */
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long tamano;
+
+    /** Implementación medida: FLUJO, MAPEADO, GCM, CHACHA20 o PARALELO. */
+    @Param({"FLUJO", "MAPEADO", "GCM", "CHACHA20", "PARALELO"})
+    public String implementacion;
+
+    /** Directorio temporal con los archivos de la prueba. */
+    private Path directorio;
+
+    /** Archivo sin cifrar. */
+    private String claro;
+
+    /** Archivo cifrado con la implementación medida. */
+    private String secreto;
+
+    /** Megabytes procesados en cada operación. */
+    private double megabytes;
+
+    /**
+     * Crea el archivo de prueba y su versión cifrada.
+     *
+     * @throws IOException Sí hay un error creando los archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws IOException, GeneralSecurityException {
+        directorio = Files.createTempDirectory("cryptowarts-benchmark");
+        Path archivo = directorio.resolve("claro.bin");
+        Datos.crearArchivo(archivo, tamano);
+        claro = archivo.toString();
+
+        Path cifrado = Path.of(cifrar());
+        Path destino = directorio.resolve("secreto.bin");
+        Files.move(cifrado, destino);
+        secreto = destino.toString();
+        megabytes = tamano / 1e6;
+    }
+
+    /**
+     * Borra el directorio temporal.
+     *
+     * @throws IOException Sí hay un error borrando los archivos
+     *
+     * @author Telmo
+     */
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        Datos.borrarDirectorio(directorio);
+    }
+
+    /**
+     * Cifra el archivo.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrarArchivo(Rendimiento rendimiento) throws IOException, GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return cifrar();
+    }
+
+    /**
+     * Descifra el archivo.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String descifrarArchivo(Rendimiento rendimiento) throws IOException, GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return switch (implementacion) {
+            case "PARALELO" -> CifradoAESParalelo.descifrarArchivo(secreto, Datos.CLAVE);
+            case "GCM" -> CifradoAESGCM.descifrarArchivo(secreto, Datos.CLAVE);
+            case "CHACHA20" -> CifradoChaCha20Poly1305.descifrarArchivo(secreto, Datos.CLAVE);
+            default -> CifradoAES.descifrarArchivo(secreto, Datos.CLAVE, ModoES.valueOf(implementacion));
+        };
+    }
+
+    /**
+     * Cifra el archivo sin cifrar con la implementación medida.
+     *
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    private String cifrar() throws IOException, GeneralSecurityException {
+        return switch (implementacion) {
+            case "PARALELO" -> CifradoAESParalelo.cifrarArchivo(claro, Datos.CLAVE);
+            case "GCM" -> CifradoAESGCM.cifrarArchivo(claro, Datos.CLAVE);
+            case "CHACHA20" -> CifradoChaCha20Poly1305.cifrarArchivo(claro, Datos.CLAVE);
+            default -> CifradoAES.cifrarArchivo(claro, Datos.CLAVE, ModoES.valueOf(implementacion));
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.CifradoVigenere;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Benchmarks comunes de {@link CifradoVigenere} con claves de 1 a 256 caracteres.
+ * Las subclases fijan la configuración de la JVM: {@link VigenereTablasBenchmark} mide el motor
+ * basado en tablas y {@link VigenereSimdBenchmark} el motor vectorial.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public abstract class BaseVigenere {
+
+    /** Longitud de la clave. */
+    @Param({"1", "4", "16", "64", "256"})
+    public int longitudClave;
+
+    /** Longitud del texto en caracteres (ASCII, un byte por carácter). */
+    @Param({"1024", "1048576"})
+    public int tamano;
+
+    /** Clave de la prueba. */
+    private String clave;
+
+    /** Texto plano de entrada. */
+    private String texto;
+
+    /** Texto cifrado de entrada para el descifrado. */
+    private String cifrado;
+
+    /** Megabytes procesados en cada operación. */
+    private double megabytes;
+
+    /**
+     * Genera la clave, el texto y su versión cifrada.
+     *
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws GeneralSecurityException {
+        clave = Datos.clave(longitudClave);
+        texto = Datos.texto(tamano);
+        cifrado = CifradoVigenere.cifrarTexto(texto, clave);
+        megabytes = tamano / 1e6;
+    }
+
+    /**
+     * Cifra el texto.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto cifrado
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrar(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoVigenere.cifrarTexto(texto, clave);
+    }
+
+    /**
+     * Descifra el texto.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto descifrado
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String descifrar(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoVigenere.descifrarTexto(cifrado, clave);
+    }
+}
@@ -0,0 +1,168 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.CifradoChaCha20Poly1305;
+import es.cryptowarts.cifrado.Compresion;
+import es.cryptowarts.cifrado.ModoES;
+import es.cryptowarts.cifrado.Progreso;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de cifrado y descifrado de archivos con y sin {@link Compresion} previa, con un log de texto
+ * (muy comprimible) y con bytes aleatorios (nada comprimibles), para ver a partir de qué nivel y con qué
+ * datos compensa comprimir. Los MB/s se cuentan sobre el archivo original, de principio a fin; la
+ * relación entre el tamaño cifrado y el original se muestra al preparar cada combinación.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompresionBenchmark {
+
+    /** Tamaño del archivo en bytes. */
+    @Param({"1048576", "67108864"})
+    public long tamano;
+
+    /** Contenido del archivo: LOG o ALEATORIO. */
+    @Param({"LOG", "ALEATORIO"})
+    public String contenido;
+
+    /** Nivel de compresión (0 sin compresión, 1 rápida, 6 la de zlib por defecto, 9 máxima). */
+    @Param({"0", "1", "6", "9"})
+    public int nivel;
+
+    /** Algoritmo de cifrado: CBC o CHACHA20. */
+    @Param({"CBC", "CHACHA20"})
+    public String algoritmo;
+
+    /** Directorio temporal con los archivos de la prueba. */
+    private Path directorio;
+
+    /** Archivo sin cifrar. */
+    private Path claro;
+
+    /** Archivo cifrado con la combinación medida. */
+    private Path secreto;
+
+    /** Archivo de destino de cada operación. */
+    private Path destino;
+
+    /** Compresión medida. */
+    private Compresion compresion;
+
+    /** Megabytes del archivo original procesados en cada operación. */
+    private double megabytes;
+
+    /**
+     * Crea el archivo de prueba y su versión cifrada, y muestra la relación de tamaños.
+     *
+     * @throws IOException Sí hay un error creando los archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws IOException, GeneralSecurityException {
+        directorio = Files.createTempDirectory("cryptowarts-benchmark");
+        claro = directorio.resolve("claro.bin");
+        if (contenido.equals("LOG")) {
+            Datos.crearArchivoLog(claro, tamano);
+        } else {
+            Datos.crearArchivo(claro, tamano);
+        }
+        secreto = directorio.resolve("secreto.bin");
+        destino = directorio.resolve("destino.bin");
+        compresion = nivel == 0 ? Compresion.NINGUNA : Compresion.nivel(nivel);
+        cifrar(claro, secreto);
+        megabytes = tamano / 1e6;
+        System.out.printf(Locale.ROOT, "%n%s %s %s: %d -> %d bytes (%.1f%%)%n", algoritmo, contenido, compresion,
+                tamano, Files.size(secreto), 100.0 * Files.size(secreto) / tamano);
+    }
+
+    /**
+     * Borra el directorio temporal.
+     *
+     * @throws IOException Sí hay un error borrando los archivos
+     *
+     * @author Telmo
+     */
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        Datos.borrarDirectorio(directorio);
+    }
+
+    /**
+     * Comprime (si corresponde) y cifra el archivo.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public long cifrarArchivo(Rendimiento rendimiento) throws IOException, GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return cifrar(claro, destino);
+    }
+
+    /**
+     * Descifra y descomprime (si corresponde) el archivo.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public long descifrarArchivo(Rendimiento rendimiento) throws IOException, GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return algoritmo.equals("CHACHA20")
+                ? CifradoChaCha20Poly1305.descifrarArchivo(secreto, destino, Datos.CLAVE, Progreso.NINGUNO)
+                : CifradoAES.descifrarArchivo(secreto, destino, Datos.CLAVE, ModoES.FLUJO);
+    }
+
+    /**
+     * Cifra un archivo con la combinación medida.
+     *
+     * @param origen Archivo de entrada
+     * @param salida Archivo de salida
+     * @return Bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    private long cifrar(Path origen, Path salida) throws IOException, GeneralSecurityException {
+        return algoritmo.equals("CHACHA20")
+                ? CifradoChaCha20Poly1305.cifrarArchivo(origen, salida, Datos.CLAVE, compresion, Progreso.NINGUNO)
+                : CifradoAES.cifrarArchivo(origen, salida, Datos.CLAVE, ModoES.FLUJO, compresion, Progreso.NINGUNO);
+    }
+}
@@ -0,0 +1,142 @@
+package es.cryptowarts.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generación de los datos de entrada de los benchmarks.
+ * Todos los datos se generan con una semilla fija para que las medidas de distintas versiones
+ * se hagan siempre sobre el mismo contenido.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class Datos {
+
+    /** Clave usada en los benchmarks de AES. */
+    static final String CLAVE = "ClaveDeHogwarts";
+
+    /** Semilla de los generadores de datos. */
+    private static final long SEMILLA = 20250101L;
+
+    /** Caracteres con los que se generan los textos (todos ASCII: un carácter ocupa un byte en UTF-8). */
+    private static final String ALFABETO = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ       .,;:0123456789";
+
+    /** Tamaño de los bloques con los que se escriben los archivos de prueba. */
+    private static final int TAMANO_BLOQUE = 1024 * 1024;
+
+    /** Clase de utilidades, no se instancia. */
+    private Datos() {
+    }
+
+    /**
+     * Genera un texto ASCII de la longitud indicada.
+     *
+     * @param longitud Número de caracteres (y de bytes en UTF-8)
+     * @return Texto generado
+     *
+     * @author Telmo
+     */
+    static String texto(int longitud) {
+        Random aleatorio = new Random(SEMILLA);
+        char[] caracteres = new char[longitud];
+        for (int i = 0; i < longitud; i++) {
+            caracteres[i] = ALFABETO.charAt(aleatorio.nextInt(ALFABETO.length()));
+        }
+        return new String(caracteres);
+    }
+
+    /**
+     * Genera una clave de Vigenère formada por letras de la longitud indicada.
+     *
+     * @param longitud Número de caracteres de la clave
+     * @return Clave generada
+     *
+     * @author Telmo
+     */
+    static String clave(int longitud) {
+        Random aleatorio = new Random(SEMILLA + longitud);
+        char[] caracteres = new char[longitud];
+        for (int i = 0; i < longitud; i++) {
+            caracteres[i] = ALFABETO.charAt(aleatorio.nextInt(52));
+        }
+        return new String(caracteres);
+    }
+
+    /**
+     * Crea un archivo con bytes aleatorios del tamaño indicado.
+     *
+     * @param archivo Ruta del archivo a crear
+     * @param tamano Tamaño en bytes
+     * @throws IOException Sí hay un error escribiendo el archivo
+     *
+     * @author Telmo
+     */
+    static void crearArchivo(Path archivo, long tamano) throws IOException {
+        Random aleatorio = new Random(SEMILLA);
+        byte[] bloque = new byte[TAMANO_BLOQUE];
+        try (OutputStream salida = Files.newOutputStream(archivo)) {
+            for (long escritos = 0; escritos < tamano; escritos += bloque.length) {
+                aleatorio.nextBytes(bloque);
+                salida.write(bloque, 0, (int) Math.min(bloque.length, tamano - escritos));
+            }
+        }
+    }
+
+    /**
+     * Crea un archivo de log de texto del tamaño indicado: líneas con la misma estructura y valores
+     * variables, como los que se suelen archivar cifrados (se comprimen a alrededor de una décima parte).
+     *
+     * @param archivo Ruta del archivo a crear
+     * @param tamano Tamaño en bytes
+     * @throws IOException Sí hay un error escribiendo el archivo
+     *
+     * @author Telmo
+     */
+    static void crearArchivoLog(Path archivo, long tamano) throws IOException {
+        Random aleatorio = new Random(SEMILLA);
+        String[] niveles = {"INFO ", "DEBUG", "WARN ", "INFO "};
+        StringBuilder linea = new StringBuilder(128);
+        try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo), TAMANO_BLOQUE)) {
+            long escritos = 0;
+            for (long i = 0; escritos < tamano; i++) {
+                linea.setLength(0);
+                linea.append(String.format("2025-01-01 %02d:%02d:%02d.%03d ", i / 3_600_000 % 24, i / 60_000 % 60, i / 1000 % 60, i % 1000))
+                        .append(niveles[aleatorio.nextInt(niveles.length)])
+                        .append(" [hilo-").append(aleatorio.nextInt(16)).append("] es.cryptowarts.servidor.ServidorCifrado - ")
+                        .append("POST /aes/cifrar ").append(aleatorio.nextInt(1 << 20)).append(" bytes en ")
+                        .append(aleatorio.nextInt(500)).append(" ms\n");
+                byte[] bytes = linea.toString().getBytes(StandardCharsets.US_ASCII);
+                int longitud = (int) Math.min(bytes.length, tamano - escritos);
+                salida.write(bytes, 0, longitud);
+                escritos += longitud;
+            }
+        }
+    }
+
+    /**
+     * Borra un directorio temporal y todo su contenido.
+     *
+     * @param directorio Directorio a borrar
+     * @throws IOException Sí hay un error borrando algún archivo
+     *
+     * @author Telmo
+     */
+    static void borrarDirectorio(Path directorio) throws IOException {
+        if (directorio == null || !Files.exists(directorio)) {
+            return;
+        }
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            for (Path ruta : rutas.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(ruta);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.DerivacionClaves;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks del coste de la derivación de claves con PBKDF2 frente al de un acierto de la caché de claves,
+ * para elegir el número de iteraciones ({@link DerivacionClaves#PROPIEDAD_ITERACIONES}) según la latencia
+ * que se pueda permitir la primera operación con cada clave.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DerivacionClavesBenchmark {
+
+    /** Iteraciones de PBKDF2. */
+    @Param({"10000", "100000", "210000", "600000"})
+    public int iteraciones;
+
+    /** Sal fija de la derivación. */
+    private final byte[] sal = "SalDeHogwarts123".getBytes(StandardCharsets.US_ASCII);
+
+    /** Texto corto, para que el tiempo del cifrado sea despreciable frente al de obtener la clave. */
+    private String texto;
+
+    /**
+     * Fija las iteraciones de las claves nuevas y deja la clave de los benchmarks en la caché.
+     *
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws GeneralSecurityException {
+        System.setProperty(DerivacionClaves.PROPIEDAD_ITERACIONES, String.valueOf(iteraciones));
+        CifradoAES.cacheClaves().vaciar();
+        texto = Datos.texto(16);
+        CifradoAES.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Muestra las métricas de la caché (tiempo medio de derivación y de acierto) al terminar.
+     *
+     * @author Telmo
+     */
+    @TearDown(Level.Trial)
+    public void terminar() {
+        System.out.println(CifradoAES.cacheClaves());
+        System.clearProperty(DerivacionClaves.PROPIEDAD_ITERACIONES);
+    }
+
+    /**
+     * Deriva la clave sin caché (lo que paga la primera operación con cada clave y sal).
+     *
+     * @return Clave derivada (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de derivación
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public byte[] derivar() throws GeneralSecurityException {
+        return DerivacionClaves.derivar(Datos.CLAVE, sal, iteraciones);
+    }
+
+    /**
+     * Cifra un texto corto con la clave ya en la caché (lo que pagan las operaciones siguientes).
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrarConCache() throws GeneralSecurityException {
+        return CifradoAES.cifrarTexto(texto, Datos.CLAVE);
+    }
+}
@@ -0,0 +1,60 @@
+package es.cryptowarts.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Punto de entrada de {@code benchmarks.jar}.
+ * Acepta las mismas opciones que el lanzador de JMH, pero por defecto añade el perfilador de memoria
+ * ({@code -prof gc}, tasa de reservas por operación) y guarda los resultados en JSON
+ * ({@code resultados-AAAAMMDD-HHMMSS.json}) para poder compararlos entre versiones.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class Ejecutor {
+
+    /** Formato de la fecha en el nombre del archivo de resultados. */
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /** Clase de arranque, no se instancia. */
+    private Ejecutor() {
+    }
+
+    /**
+     * Ejecuta los benchmarks seleccionados en la línea de comandos (todos si no se indica ninguno).
+     *
+     * @param args Opciones de JMH (por ejemplo {@code "TextoAES" -p tamano=1024 -rff base.json})
+     * @throws Exception Sí las opciones no son válidas o falla algún benchmark
+     *
+     * @author Telmo
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions linea = new CommandLineOptions(args);
+        if (linea.shouldHelp() || linea.shouldList() || linea.shouldListWithParams()
+                || linea.shouldListProfilers() || linea.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder opciones = new OptionsBuilder().parent(linea);
+        if (linea.getProfilers().isEmpty()) {
+            opciones.addProfiler(GCProfiler.class);
+        }
+        if (!linea.getResultFormat().hasValue()) {
+            opciones.resultFormat(ResultFormatType.JSON);
+        }
+        if (!linea.getResult().hasValue()) {
+            opciones.result("resultados-" + LocalDateTime.now().format(FORMATO_FECHA) + ".json");
+        }
+        new Runner(opciones.build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.Cifrador;
+import es.cryptowarts.cifrado.CifradorAESGCM;
+import es.cryptowarts.cifrado.CifradorVigenere;
+import es.cryptowarts.cifrado.HistogramaLatencias;
+import es.cryptowarts.cifrado.Instrumentacion;
+import es.cryptowarts.cifrado.RegistroCifradores;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de las métricas de cifrado: la misma operación con el cifrador directo y con el del registro,
+ * que la mide ({@code CifradorMedido}), en textos pequeños, donde el coste fijo de
+ * medir pesa más. También mide el registro de una latencia en el histograma, con uno y con cuatro
+ * hilos a la vez. La diferencia entre {@code ...Directo} y {@code ...Medido} es el coste por operación:
+ * con {@code activas=false} el del envoltorio sin medir (lo que paga la línea de comandos), y con
+ * {@code activas=true} el de medir.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricasBenchmark {
+
+    /** Longitud del texto en caracteres (ASCII, un byte por carácter). */
+    @Param({"16", "1024"})
+    public int tamano;
+
+    /** Si se activan las métricas (cada combinación corre en su propia JVM, así que no se mezclan). */
+    @Param({"false", "true"})
+    public boolean activas;
+
+    /** Texto plano de entrada. */
+    private String texto;
+
+    /** Cifrador de Vigenère sin métricas. */
+    private Cifrador vigenereDirecto;
+
+    /** Cifrador de Vigenère del registro, con métricas si están activas. */
+    private Cifrador vigenereMedido;
+
+    /** Cifrador AES-GCM sin métricas. */
+    private Cifrador gcmDirecto;
+
+    /** Cifrador AES-GCM del registro, con métricas si están activas. */
+    private Cifrador gcmMedido;
+
+    /** Histograma en el que se registran latencias. */
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+
+    /**
+     * Activa las métricas si toca, genera el texto, obtiene los cifradores y deriva la clave de AES-GCM
+     * para que las medidas usen la caché.
+     *
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws GeneralSecurityException {
+        if (activas) {
+            Instrumentacion.activar();
+        }
+        texto = Datos.texto(tamano);
+        vigenereDirecto = new CifradorVigenere();
+        vigenereMedido = RegistroCifradores.obtener(CifradorVigenere.ID);
+        gcmDirecto = new CifradorAESGCM();
+        gcmMedido = RegistroCifradores.obtener(CifradorAESGCM.ID);
+        gcmDirecto.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto con Vigenère sin métricas.
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String vigenereDirecto() throws GeneralSecurityException {
+        return vigenereDirecto.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto con Vigenère con métricas.
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String vigenereMedido() throws GeneralSecurityException {
+        return vigenereMedido.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto con AES-GCM sin métricas.
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String gcmDirecto() throws GeneralSecurityException {
+        return gcmDirecto.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto con AES-GCM con métricas.
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String gcmMedido() throws GeneralSecurityException {
+        return gcmMedido.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Registra una latencia en el histograma desde un solo hilo.
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public void registrar() {
+        latencias.registrar(tamano);
+    }
+
+    /**
+     * Registra una latencia en el histograma desde cuatro hilos a la vez, todos en el mismo intervalo
+     * (el peor caso de contención).
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    @Threads(4)
+    public void registrarConcurrente() {
+        latencias.registrar(tamano);
+    }
+}
@@ -0,0 +1,165 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.HistogramaLatencias;
+import es.cryptowarts.cifrado.ServicioCifrado;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga de {@link ServicioCifrado}: miles de productores en hilos virtuales envían a la vez
+ * trabajos pequeños y grandes (cifrado AES de textos) y se mide el rendimiento conjunto, las latencias
+ * de cada tipo de trabajo y los rechazos por contrapresión.
+ *
+ * <p>No es un benchmark de JMH: mide el comportamiento del servicio bajo carga, no el coste de una
+ * operación. Se ejecuta con
+ * {@code java -cp target/benchmarks.jar es.cryptowarts.benchmarks.PruebaCarga [opción=valor]...}
+ * con las opciones:</p>
+ * <ul>
+ *     <li>{@code trabajos} (20000): trabajos medidos, después de un calentamiento del 10 %</li>
+ *     <li>{@code productores} (2000): hilos virtuales que envían trabajos a la vez</li>
+ *     <li>{@code grandes} (5): porcentaje de trabajos grandes</li>
+ *     <li>{@code pequeno} (1024) y {@code grande} (1048576): tamaño en bytes de cada tipo de trabajo</li>
+ *     <li>{@code concurrentes} (núcleos) y {@code cola} (1024): límites del servicio</li>
+ *     <li>{@code espera} (-1): milisegundos que se espera sitio en la cola antes de rechazar el trabajo;
+ *         con -1 el productor se bloquea hasta que haya sitio</li>
+ * </ul>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class PruebaCarga {
+
+    /** Bytes de un megabyte. */
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    /** Clase de arranque, no se instancia. */
+    private PruebaCarga() {
+    }
+
+    /**
+     * Ejecuta la prueba de carga y muestra los resultados.
+     *
+     * @param args Opciones con la forma {@code opcion=valor}
+     * @throws Exception Sí las opciones no son válidas o la prueba se interrumpe
+     *
+     * @author Telmo
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opciones = new HashMap<>();
+        for (String argumento : args) {
+            int igual = argumento.indexOf('=');
+            if (igual <= 0) {
+                throw new IllegalArgumentException("Opción no válida (se esperaba opcion=valor): " + argumento);
+            }
+            opciones.put(argumento.substring(0, igual), argumento.substring(igual + 1));
+        }
+        int trabajos = Integer.parseInt(opciones.getOrDefault("trabajos", "20000"));
+        int productores = Integer.parseInt(opciones.getOrDefault("productores", "2000"));
+        int grandes = Integer.parseInt(opciones.getOrDefault("grandes", "5"));
+        int pequeno = Integer.parseInt(opciones.getOrDefault("pequeno", "1024"));
+        int grande = Integer.parseInt(opciones.getOrDefault("grande", "1048576"));
+        int concurrentes = Integer.parseInt(opciones.getOrDefault("concurrentes",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int cola = Integer.parseInt(opciones.getOrDefault("cola", String.valueOf(ServicioCifrado.CAPACIDAD_COLA)));
+        long espera = Long.parseLong(opciones.getOrDefault("espera", "-1"));
+
+        String textoPequeno = Datos.texto(pequeno);
+        String textoGrande = Datos.texto(grande);
+        System.out.printf("Servicio: %d concurrentes, cola de %d; %d productores; %d%% de trabajos de %d B y el resto de %d B%n",
+                concurrentes, cola, productores, grandes, grande, pequeno);
+
+        try (ServicioCifrado servicio = new ServicioCifrado(concurrentes, cola)) {
+            System.out.println("Calentamiento...");
+            ejecutar(servicio, Math.max(1, trabajos / 10), productores, grandes, textoPequeno, textoGrande, espera,
+                    new HistogramaLatencias(), new HistogramaLatencias());
+            servicio.getLatencias().reiniciar();
+            servicio.getEsperas().reiniciar();
+
+            HistogramaLatencias latenciasPequenos = new HistogramaLatencias();
+            HistogramaLatencias latenciasGrandes = new HistogramaLatencias();
+            long rechazadosAntes = servicio.getRechazados();
+            long inicio = System.nanoTime();
+            long bytes = ejecutar(servicio, trabajos, productores, grandes, textoPequeno, textoGrande, espera,
+                    latenciasPequenos, latenciasGrandes);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            System.out.printf("%d trabajos en %.2f s: %.0f trabajos/s, %.1f MB/s, %d rechazados%n",
+                    latenciasPequenos.getCuenta() + latenciasGrandes.getCuenta(), segundos,
+                    (latenciasPequenos.getCuenta() + latenciasGrandes.getCuenta()) / segundos,
+                    bytes / MEGABYTE / segundos, servicio.getRechazados() - rechazadosAntes);
+            System.out.println("Pequeños: " + latenciasPequenos);
+            System.out.println("Grandes:  " + latenciasGrandes);
+            System.out.println("Espera:   " + servicio.getEsperas());
+        }
+    }
+
+    /**
+     * Reparte los trabajos entre los productores, espera a que terminen todos y registra la latencia
+     * de cada uno vista desde el productor (incluida la espera para poder enviarlo).
+     *
+     * @param servicio Servicio de cifrado
+     * @param trabajos Número de trabajos
+     * @param productores Número de productores concurrentes
+     * @param porcentajeGrandes Porcentaje de trabajos grandes
+     * @param textoPequeno Texto de los trabajos pequeños
+     * @param textoGrande Texto de los trabajos grandes
+     * @param espera Milisegundos de espera de sitio en la cola, o -1 para bloquearse sin límite
+     * @param latenciasPequenos Histograma de los trabajos pequeños
+     * @param latenciasGrandes Histograma de los trabajos grandes
+     * @return Bytes de texto cifrados correctamente
+     * @throws InterruptedException Sí se interrumpe la espera
+     *
+     * @author Telmo
+     */
+    private static long ejecutar(ServicioCifrado servicio, int trabajos, int productores, int porcentajeGrandes,
+                                 String textoPequeno, String textoGrande, long espera,
+                                 HistogramaLatencias latenciasPequenos, HistogramaLatencias latenciasGrandes) throws InterruptedException {
+        AtomicLong siguiente = new AtomicLong();
+        LongAdder bytes = new LongAdder();
+        ConcurrentLinkedQueue<CompletableFuture<?>> pendientes = new ConcurrentLinkedQueue<>();
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int p = 0; p < productores; p++) {
+                hilos.execute(() -> {
+                    long n;
+                    while ((n = siguiente.getAndIncrement()) < trabajos) {
+                        // Reparto determinista: los grandes quedan intercalados de forma uniforme
+                        boolean esGrande = n * porcentajeGrandes / 100 != (n + 1) * porcentajeGrandes / 100;
+                        String texto = esGrande ? textoGrande : textoPequeno;
+                        HistogramaLatencias latencias = esGrande ? latenciasGrandes : latenciasPequenos;
+                        long inicio = System.nanoTime();
+                        try {
+                            CompletableFuture<String> cifrado = espera < 0
+                                    ? servicio.cifrarTexto(texto, Datos.CLAVE)
+                                    : servicio.enviar(() -> CifradoAES.cifrarTexto(texto, Datos.CLAVE), Duration.ofMillis(espera));
+                            pendientes.add(cifrado.whenComplete((resultado, error) -> {
+                                if (error == null) {
+                                    latencias.registrar(System.nanoTime() - inicio);
+                                    bytes.add(texto.length());
+                                }
+                            }));
+                        } catch (RejectedExecutionException e) {
+                            // Contado por el servicio en getRechazados()
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        for (CompletableFuture<?> pendiente : pendientes) {
+            pendiente.exceptionally(error -> null).join();
+        }
+        return bytes.sum();
+    }
+}
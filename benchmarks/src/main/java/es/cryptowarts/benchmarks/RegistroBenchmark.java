@@ -0,0 +1,171 @@
+package es.cryptowarts.benchmarks;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.joran.spi.JoranException;
+import es.cryptowarts.cifrado.CifradoVigenere;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste del registro en una operación corta (cifrar 1 KB con Vigenère) que escribe un mensaje de
+ * depuración por operación, como el de cada archivo de un lote. Usa el {@code logback.xml} de la
+ * aplicación, escribiendo en un directorio temporal y sin la consola, con cuatro configuraciones:
+ * <ul>
+ *     <li>{@code apagado}: nivel {@code off}, la referencia sin registro.</li>
+ *     <li>{@code filtrado}: nivel {@code info}, el mensaje se descarta al comprobar el nivel.</li>
+ *     <li>{@code sincrono}: nivel {@code debug} escribiendo y vaciando el archivo en el hilo que registra,
+ *         como la configuración anterior.</li>
+ *     <li>{@code asincrono}: nivel {@code debug} a través de la cola del {@code AsyncAppender}; si la cola
+ *         se llena, parte de los mensajes se descartan.</li>
+ * </ul>
+ *
+ * <p>Logback se configura directamente, sin pasar por SLF4J: el resto de benchmarks siguen usando
+ * {@code slf4j-nop}.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistroBenchmark {
+
+    /** Configuración del registro. */
+    @Param({"apagado", "filtrado", "sincrono", "asincrono"})
+    public String registro;
+
+    /** Texto plano de entrada. */
+    private String texto;
+
+    /** Clave de Vigenère. */
+    private String clave;
+
+    /** Directorio temporal de los logs. */
+    private Path directorio;
+
+    /** Contexto de logback con la configuración de la aplicación. */
+    private LoggerContext contexto;
+
+    /** Logger con el que se registra cada operación. */
+    private Logger logger;
+
+    /**
+     * Genera el texto y configura logback con el {@code logback.xml} de la aplicación.
+     *
+     * @throws IOException Sí no se puede crear el directorio temporal
+     * @throws JoranException Sí la configuración de logback no es válida
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws IOException, JoranException {
+        texto = Datos.texto(1024);
+        clave = Datos.clave(16);
+        directorio = Files.createTempDirectory("cryptowarts-registro");
+
+        contexto = new LoggerContext();
+        contexto.putProperty("cryptowarts.log.directorio", directorio.toString());
+        contexto.putProperty("cryptowarts.log.nivel", switch (registro) {
+            case "apagado" -> "off";
+            case "filtrado" -> "info";
+            default -> "debug";
+        });
+        JoranConfigurator configurador = new JoranConfigurator();
+        configurador.setContext(contexto);
+        configurador.doConfigure(RegistroBenchmark.class.getResource("/logback.xml"));
+
+        ch.qos.logback.classic.Logger raiz = contexto.getLogger(Logger.ROOT_LOGGER_NAME);
+        // La consola llenaría la salida de JMH
+        raiz.detachAppender("ASYNC_CONSOLE");
+        if (registro.equals("sincrono")) {
+            AsyncAppender asincrono = (AsyncAppender) raiz.getAppender("ASYNC_FILE");
+            Appender<ILoggingEvent> archivo = asincrono.getAppender("FILE");
+            ((OutputStreamAppender<ILoggingEvent>) archivo).setImmediateFlush(true);
+            raiz.detachAppender(asincrono);
+            raiz.addAppender(archivo);
+        }
+        logger = contexto.getLogger(RegistroBenchmark.class);
+    }
+
+    /**
+     * Cierra logback y borra el directorio temporal.
+     *
+     * @throws IOException Sí hay un error borrando los archivos
+     *
+     * @author Telmo
+     */
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        contexto.stop();
+        Datos.borrarDirectorio(directorio);
+    }
+
+    /**
+     * Cifra el texto y registra la operación desde un hilo.
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrar() throws GeneralSecurityException {
+        return cifrarYRegistrar();
+    }
+
+    /**
+     * Cifra el texto y registra la operación desde cuatro hilos a la vez, como un lote en paralelo.
+     *
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    @Threads(4)
+    public String cifrarConcurrente() throws GeneralSecurityException {
+        return cifrarYRegistrar();
+    }
+
+    /**
+     * Cifra el texto y registra un mensaje de depuración con parámetros.
+     *
+     * @return Texto cifrado
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    private String cifrarYRegistrar() throws GeneralSecurityException {
+        long inicio = System.nanoTime();
+        String cifrado = CifradoVigenere.cifrarTexto(texto, clave);
+        logger.debug("Texto cifrado: {} caracteres en {} ns", cifrado.length(), System.nanoTime() - inicio);
+        return cifrado;
+    }
+}
@@ -0,0 +1,33 @@
+package es.cryptowarts.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Contador auxiliar de JMH con los megabytes procesados.
+ * JMH lo divide entre el tiempo medido, por lo que en los resultados aparece como una métrica
+ * secundaria "megabytes" en MB/s junto a las operaciones por segundo.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Rendimiento {
+
+    /** Megabytes (10^6 bytes) procesados en la iteración actual. */
+    public double megabytes;
+
+    /**
+     * Pone el contador a cero al empezar cada iteración.
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Iteration)
+    public void reiniciar() {
+        megabytes = 0;
+    }
+}
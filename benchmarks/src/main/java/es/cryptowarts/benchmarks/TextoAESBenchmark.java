@@ -0,0 +1,208 @@
+package es.cryptowarts.benchmarks;
+
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.CifradoAESGCM;
+import es.cryptowarts.cifrado.CifradoChaCha20Poly1305;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de cifrado y descifrado de textos con {@link CifradoAES}, de 16 B a 16 MB: con Strings
+ * y con las variantes que escriben el sobre y su Base64 en buffers preasignados, sin copias intermedias.
+ * Los mismos textos con {@link CifradoAESGCM} miden el coste de la autenticación frente a CBC, y con
+ * {@link CifradoChaCha20Poly1305} comparan los dos motores que elige el cifrado automático.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextoAESBenchmark {
+
+    /** Longitud del texto en bytes. */
+    @Param({"16", "1024", "65536", "1048576", "16777216"})
+    public int tamano;
+
+    /** Texto plano de entrada. */
+    private String texto;
+
+    /** Texto cifrado (Base64) de entrada para el descifrado. */
+    private String cifrado;
+
+    /** Texto cifrado con AES-GCM (Base64) de entrada para el descifrado autenticado. */
+    private String cifradoGCM;
+
+    /** Texto cifrado con ChaCha20-Poly1305 (Base64) de entrada para el descifrado autenticado. */
+    private String cifradoChaCha;
+
+    /** Texto plano en bytes, de entrada para las variantes con buffers. */
+    private ByteBuffer plano;
+
+    /** Texto cifrado en Base64 (ASCII), de entrada para el descifrado con buffers. */
+    private ByteBuffer cifradoBase64;
+
+    /** Buffer preasignado de salida de las variantes con buffers. */
+    private ByteBuffer salida;
+
+    /** Megabytes de texto plano procesados en cada operación. */
+    private double megabytes;
+
+    /**
+     * Genera el texto y su versión cifrada.
+     *
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws GeneralSecurityException {
+        texto = Datos.texto(tamano);
+        cifrado = CifradoAES.cifrarTexto(texto, Datos.CLAVE);
+        cifradoGCM = CifradoAESGCM.cifrarTexto(texto, Datos.CLAVE);
+        cifradoChaCha = CifradoChaCha20Poly1305.cifrarTexto(texto, Datos.CLAVE);
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        megabytes = bytes.length / 1e6;
+        plano = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        cifradoBase64 = ByteBuffer.allocateDirect(cifrado.length()).put(cifrado.getBytes(StandardCharsets.US_ASCII)).flip();
+        salida = ByteBuffer.allocateDirect(CifradoAES.longitudBase64(bytes.length));
+    }
+
+    /**
+     * Cifra el texto.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrar(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoAES.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Descifra el texto.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto descifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String descifrar(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoAES.descifrarTexto(cifrado, Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto en Base64 directamente en un buffer preasignado.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Bytes escritos (se devuelven para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public int cifrarEnBuffer(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoAES.cifrarBase64(plano.rewind(), salida.clear(), Datos.CLAVE);
+    }
+
+    /**
+     * Descifra el texto en Base64 directamente en un buffer preasignado.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Bytes escritos (se devuelven para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public int descifrarEnBuffer(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoAES.descifrarBase64(cifradoBase64.rewind(), salida.clear(), Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto con AES-GCM.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrarGCM(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoAESGCM.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Descifra y verifica el texto cifrado con AES-GCM.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto descifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String descifrarGCM(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoAESGCM.descifrarTexto(cifradoGCM, Datos.CLAVE);
+    }
+
+    /**
+     * Cifra el texto con ChaCha20-Poly1305.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto cifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String cifrarChaCha(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoChaCha20Poly1305.cifrarTexto(texto, Datos.CLAVE);
+    }
+
+    /**
+     * Descifra y verifica el texto cifrado con ChaCha20-Poly1305.
+     *
+     * @param rendimiento Contador de megabytes procesados
+     * @return Texto descifrado (se devuelve para que JMH no elimine la llamada)
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    @Benchmark
+    public String descifrarChaCha(Rendimiento rendimiento) throws GeneralSecurityException {
+        rendimiento.megabytes += megabytes;
+        return CifradoChaCha20Poly1305.descifrarTexto(cifradoChaCha, Datos.CLAVE);
+    }
+}
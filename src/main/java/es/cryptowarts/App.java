@@ -1,6 +1,10 @@
 package es.cryptowarts;
 
+import es.cryptowarts.cifrado.CifradoAutomatico;
+import es.cryptowarts.cifrado.Instrumentacion;
+import es.cryptowarts.cifrado.RegistroCifradores;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
@@ -8,6 +12,9 @@ import javafx.stage.Stage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.awt.SplashScreen;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -18,6 +25,9 @@ import java.util.ResourceBundle;
  * - Aplicar la hoja de estilos CSS.
  * - Configurar el stage principal y mostrar la ventana.
  * - Registrar mensajes de log con SLF4J.
+ * - Medir el arranque hasta el primer fotograma de la ventana.
+ * La pantalla de presentación (la imagen {@code SplashScreen-Image} del JAR o la opción {@code -splash:})
+ * la muestra la JVM antes de cargar ninguna clase y se cierra al dibujarse la ventana.
  * Contiene también el metodo {@link #main(String[])} para lanzar la aplicación.
  *
  * @author Erlantz
@@ -28,6 +38,15 @@ public class App extends Application {
     /** Logger para esta clase */
     private static final Logger logger = LoggerFactory.getLogger(App.class);
 
+    /**
+     * Propiedad del sistema que cierra la aplicación tras el primer fotograma. La usa el perfil
+     * {@code cds} del pom para generar el archivo CDS con las clases que se cargan al arrancar.
+     */
+    public static final String PROPIEDAD_SALIR_AL_ARRANCAR = "cryptowarts.arranque.salir";
+
+    /** Instante ({@link System#nanoTime()}) en el que empezó el main, para medir el arranque */
+    private static long inicio;
+
     /** Bundle del sistema de internacionalización */
     private ResourceBundle bundle;
 
@@ -72,6 +91,7 @@ public class App extends Application {
             stage.setMinWidth(650);
             stage.setMinHeight(500);
             stage.show();
+            esperarPrimerFotograma(scene);
 
         } catch (Exception e) {
             logger.error("Error al intentar cargar la aplicación: {}", e.getMessage());
@@ -79,6 +99,87 @@ public class App extends Application {
         }
     }
 
+    /**
+     * Espera al primer pulso en el que se maqueta la ventana ya visible (justo antes de dibujarla)
+     * para llamar a {@link #arrancada()}.
+     *
+     * @param scene Escena de la ventana principal
+     *
+     * @author Erlantz
+     */
+    private void esperarPrimerFotograma(Scene scene) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            /** Indica si ya se ha medido, por si hay otro pulso antes de quitar el listener. */
+            private boolean medido;
+
+            @Override
+            public void run() {
+                if (!medido) {
+                    medido = true;
+                    // Se quita en el siguiente ciclo para no modificar la lista mientras se recorre
+                    Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                    arrancada();
+                }
+            }
+        });
+    }
+
+    /**
+     * Registra el tiempo de arranque, cierra la pantalla de presentación y empieza las tareas que no
+     * hacen falta para mostrar la ventana, para que no compitan con ella por la CPU.
+     *
+     * @author Erlantz
+     */
+    private void arrancada() {
+        long milisMain = (System.nanoTime() - inicio) / 1_000_000;
+        Instant arranqueProceso = ProcessHandle.current().info().startInstant().orElse(null);
+        if (arranqueProceso != null) {
+            logger.info("Primer fotograma a los {} ms del main ({} ms desde que arrancó el proceso)",
+                    milisMain, Duration.between(arranqueProceso, Instant.now()).toMillis());
+        } else {
+            logger.info("Primer fotograma a los {} ms del main", milisMain);
+        }
+        cerrarPresentacion();
+
+        if (Boolean.getBoolean(PROPIEDAD_SALIR_AL_ARRANCAR)) {
+            Platform.exit();
+            return;
+        }
+        // Medir los motores del cifrado automático mientras el usuario escribe
+        CifradoAutomatico.elegirEnSegundoPlano();
+        // Unas decenas de nanosegundos por operación no se notan en la interfaz: se mide siempre
+        Instrumentacion.activar();
+        // El servidor JMX de la plataforma tarda en crearse; fuera del hilo de JavaFX
+        Thread.ofPlatform().name("instrumentacion").daemon().start(Instrumentacion::iniciar);
+    }
+
+    /**
+     * Cierra la pantalla de presentación de la JVM, si se ha arrancado con una.
+     *
+     * @author Erlantz
+     */
+    private static void cerrarPresentacion() {
+        try {
+            SplashScreen presentacion = SplashScreen.getSplashScreen();
+            if (presentacion != null) {
+                presentacion.close();
+            }
+        } catch (UnsupportedOperationException | IllegalStateException e) {
+            logger.debug("No se ha podido cerrar la pantalla de presentación: {}", e.toString());
+        }
+    }
+
+    /**
+     * Carga en segundo plano lo que la ventana necesita y no depende de JavaFX (el bundle de mensajes
+     * y los cifradores del registro, con sus proveedores criptográficos) mientras arranca JavaFX.
+     *
+     * @author Erlantz
+     */
+    private static void precargar() {
+        ResourceBundle.getBundle("es.cryptowarts.mensaje", Locale.getDefault());
+        RegistroCifradores.disponibles();
+    }
+
     /**
      * Muestra una alerta JavaFX con los datos proporcionados.
      *
@@ -100,12 +201,13 @@ public class App extends Application {
 
     /**
      * Metodo que se ejecuta cuando cierra la aplicación.
-     * Registra un mensaje de cierre en el archivo de Log.
+     * Registra en el archivo de Log las últimas métricas de cifrado y un mensaje de cierre.
      *
      * @author Erlantz
      */
     @Override
     public void stop(){
+        Instrumentacion.informar();
         logger.info("Aplicación finalizada correctamente");
     }
 
@@ -117,7 +219,21 @@ public class App extends Application {
      * @author Erlantz
      */
     public static void main(String[] args) {
+        lanzar(System.nanoTime(), args);
+    }
+
+    /**
+     * Lanza la aplicación JavaFX midiendo el arranque desde el instante indicado.
+     *
+     * @param inicioMain Instante ({@link System#nanoTime()}) en el que empezó el main
+     * @param args Argumentos de línea de comandos (no usados).
+     *
+     * @author Erlantz
+     */
+    static void lanzar(long inicioMain, String[] args) {
+        inicio = inicioMain;
         logger.info("Iniciando aplicación Cifrar y Descifrar en AES...");
+        Thread.ofPlatform().name("precarga").daemon().start(App::precargar);
         launch();
     }
 
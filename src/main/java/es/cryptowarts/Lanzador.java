@@ -4,6 +4,8 @@ package es.cryptowarts;
  * Clase lanzadora de la aplicación JavaFX.
  * Se utiliza cuando se necesita un punto de entrada separado para empaquetar
  * o ejecutar la aplicación, como: crear un JAR ejecutable.
+ * Si los argumentos son una orden ({@code cifrar}, {@code descifrar}, {@code servidor} o {@code --ayuda}) se ejecuta
+ * el modo de línea de comandos {@link LineaComandos} sin iniciar JavaFX.
  *
  * @author Erlantz
  * @version 1.0
@@ -12,14 +14,20 @@ public class Lanzador {
 
     /**
      * Metodo principal de la clase lanzadora.
-     * Recibe los argumentos de línea de comandos y los pasa al
-     * {@link es.cryptowarts.App#main(String[])} para iniciar la aplicacion.
+     * Si los argumentos son una orden, la ejecuta con {@link LineaComandos} y termina con su
+     * código de salida; si no, los pasa a {@link es.cryptowarts.App} para iniciar la aplicacion,
+     * que mide el arranque desde este instante.
      *
      * @param args Argumentos de línea de comandos.
      *
      * @author Erlantz
      */
     public static void main(String[] args){
-        App.main(args);
+        long inicio = System.nanoTime();
+        // La comprobación va antes de tocar App para no cargar ninguna clase de JavaFX
+        if (LineaComandos.esLineaComandos(args)) {
+            System.exit(LineaComandos.ejecutar(args));
+        }
+        App.lanzar(inicio, args);
     }
 }
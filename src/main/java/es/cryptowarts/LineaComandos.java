@@ -0,0 +1,755 @@
+package es.cryptowarts;
+
+import es.cryptowarts.cifrado.CacheClaves;
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.CifradoAESParalelo;
+import es.cryptowarts.cifrado.CifradoChaCha20Poly1305;
+import es.cryptowarts.cifrado.Cifrador;
+import es.cryptowarts.cifrado.CifradorAES;
+import es.cryptowarts.cifrado.CifradorVigenere;
+import es.cryptowarts.cifrado.Compresion;
+import es.cryptowarts.cifrado.DerivacionClaves;
+import es.cryptowarts.cifrado.LoteArchivos;
+import es.cryptowarts.cifrado.ModoES;
+import es.cryptowarts.cifrado.Progreso;
+import es.cryptowarts.cifrado.RegistroCifradores;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Modo de línea de comandos de la aplicación, sin interfaz gráfica.
+ * Cifra o descifra archivos, directorios completos o la entrada estándar llamando directamente a las
+ * clases del paquete {@code cifrado}, sin cargar ninguna clase de JavaFX, por lo que arranca en
+ * milisegundos y funciona en servidores sin pantalla. Los algoritmos se eligen por su identificador
+ * en {@link RegistroCifradores}, más {@code aes-paralelo} ({@link CifradoAESParalelo}), que solo
+ * trabaja con archivos. Los archivos se procesan en paralelo con {@link LoteArchivos}. La orden
+ * {@code servidor} arranca {@link ServidorCifrado} para que otros procesos cifren por HTTP sin
+ * arrancar una JVM por archivo.
+ *
+ * <p>Por la salida estándar solo se escriben las rutas de los archivos generados (una por línea) o,
+ * con la entrada {@code -}, los datos resultantes; los mensajes de error van a la salida de errores.
+ * El código de salida indica el resultado: {@link #CORRECTO}, {@link #ERROR_ES}, {@link #ERROR_USO}
+ * o {@link #ERROR_CIFRADO}.</p>
+ *
+ * @author Erlantz
+ * @version 1.0
+ */
+public final class LineaComandos {
+
+    /** Código de salida: todas las entradas se han procesado correctamente. */
+    public static final int CORRECTO = 0;
+
+    /** Código de salida: error leyendo o escribiendo algún archivo. */
+    public static final int ERROR_ES = 1;
+
+    /** Código de salida: argumentos incorrectos. */
+    public static final int ERROR_USO = 2;
+
+    /** Código de salida: error de cifrado (clave incorrecta, archivo manipulado o con formato no válido). */
+    public static final int ERROR_CIFRADO = 3;
+
+    /** Proveedor de SLF4J que descarta los mensajes, usado cuando no se pide el registro. */
+    private static final String PROVEEDOR_SIN_REGISTRO = "org.slf4j.helpers.NOP_FallbackServiceProvider";
+
+    /** Entrada que representa la entrada estándar (el resultado va a la salida estándar). */
+    private static final String ESTANDAR = "-";
+
+    /** Algoritmo de AES-GCM segmentado en paralelo, que no es un {@link Cifrador} porque solo admite archivos. */
+    private static final String AES_PARALELO = CifradoAESParalelo.ID;
+
+    /** Texto de ayuda del modo de línea de comandos. */
+    private static final String AYUDA = """
+            Uso: cryptowarts (cifrar|descifrar) [opciones] <entrada>...
+                 cryptowarts servidor [-p <puerto>] [--direccion <ip>] [-i <n>] [-v]
+
+            Entradas: archivos o directorios (se recorren recursivamente).
+                      "-" lee de la entrada estándar y escribe en la salida estándar.
+
+            Opciones:
+              -a, --algoritmo <algoritmo>                  Algoritmo (por defecto aes): %s
+              -m, --modo <flujo|mapeado>                   Entrada/salida de AES-CBC (por defecto flujo)
+              -k, --clave <clave>                          Clave (visible en la lista de procesos)
+                  --clave-entorno <VARIABLE>               Lee la clave de una variable de entorno
+                  --clave-archivo <ruta>                   Lee la clave de la primera línea de un archivo
+              -o, --salida <directorio>                    Directorio de salida (por defecto, junto a cada entrada)
+              -j, --hilos <n>                              Archivos procesados a la vez (por defecto, los núcleos)
+              -i, --iteraciones <n>                        Iteraciones de PBKDF2 al cifrar con AES (por defecto 210000)
+              -z, --comprimir                              Comprime los datos (nivel rápido) antes de cifrarlos
+                                                           (aes, aes-gcm, chacha20, auto); al descifrar se detecta solo
+                  --nivel-compresion <1-9>                 Comprime con el nivel indicado (9: máxima compresión)
+              -s, --resumen                                Muestra al final el total de archivos, errores, MB/s,
+                                                           el tamaño del resultado y el tiempo de derivación de las claves
+              -v, --registro                               Activa el registro (logs) de la aplicación
+              -h, --ayuda                                  Muestra esta ayuda
+
+            Servidor HTTP (POST con la clave en la cabecera X-Clave; GET /metricas):
+              -p, --puerto <puerto>                        Puerto (por defecto 8765; 0 elige uno libre)
+                  --direccion <ip>                         Dirección de escucha (por defecto 127.0.0.1)
+
+            Códigos de salida: 0 correcto, 1 error de E/S, 2 uso incorrecto, 3 error de cifrado.
+            """;
+
+    /** Clase de utilidades, no se instancia. */
+    private LineaComandos() {
+    }
+
+    /**
+     * Indica si los argumentos piden el modo de línea de comandos en lugar de la interfaz gráfica.
+     *
+     * @param args Argumentos de la aplicación
+     * @return {@code true} si el primer argumento es una orden o la petición de ayuda
+     *
+     * @author Erlantz
+     */
+    public static boolean esLineaComandos(String[] args) {
+        if (args.length == 0) {
+            return false;
+        }
+        return switch (args[0]) {
+            case "cifrar", "descifrar", "servidor", "-h", "--ayuda", "ayuda" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Ejecuta la orden indicada en los argumentos.
+     *
+     * @param args Argumentos de la aplicación (orden, opciones y entradas)
+     * @return Código de salida del proceso
+     *
+     * @author Erlantz
+     */
+    public static int ejecutar(String[] args) {
+        PrintStream errores = System.err;
+        if (args[0].equals("servidor")) {
+            return ejecutarServidor(args);
+        }
+        Opciones opciones;
+        try {
+            opciones = analizar(args);
+            if (opciones == null) {
+                List<String> algoritmos = new ArrayList<>(RegistroCifradores.identificadores());
+                algoritmos.add(AES_PARALELO);
+                System.out.print(AYUDA.formatted(String.join(", ", algoritmos)));
+                return CORRECTO;
+            }
+        } catch (ErrorUso e) {
+            errores.println("cryptowarts: " + e.getMessage());
+            errores.println("Use \"cryptowarts --ayuda\" para ver las opciones.");
+            return ERROR_USO;
+        }
+        if (!opciones.registro) {
+            desactivarRegistro();
+        }
+
+        if (opciones.entradas.size() == 1 && opciones.entradas.get(0).equals(ESTANDAR)) {
+            return procesarEstandar(opciones);
+        }
+
+        int codigo = CORRECTO;
+        List<Path> archivos = new ArrayList<>();
+        Map<Path, Path> entradaDeArchivo = new HashMap<>();
+        for (String entrada : opciones.entradas) {
+            Path ruta = Path.of(entrada);
+            try {
+                for (Path archivo : LoteArchivos.listarArchivos(ruta)) {
+                    if (entradaDeArchivo.putIfAbsent(archivo, ruta) == null) {
+                        archivos.add(archivo);
+                    }
+                }
+            } catch (IOException e) {
+                errores.println("cryptowarts: " + entrada + ": no se puede leer (" + e.getMessage() + ")");
+                codigo = primerError(codigo, ERROR_ES);
+            }
+        }
+        try {
+            comprobarDestinos(opciones, archivos, entradaDeArchivo);
+        } catch (ErrorUso e) {
+            errores.println("cryptowarts: " + e.getMessage());
+            return ERROR_USO;
+        }
+
+        LoteArchivos.Resumen resumen;
+        try {
+            resumen = LoteArchivos.procesar(archivos,
+                    (archivo, progreso) -> procesarArchivo(opciones, entradaDeArchivo.get(archivo), archivo),
+                    opciones.hilos > 0 ? opciones.hilos : LoteArchivos.hilosPredeterminados(), Progreso.NINGUNO);
+        } catch (IOException e) {
+            errores.println("cryptowarts: operación interrumpida");
+            return primerError(codigo, ERROR_ES);
+        }
+        for (LoteArchivos.Resultado resultado : resumen.getResultados()) {
+            codigo = primerError(codigo, informar(resultado));
+        }
+        if (opciones.resumen) {
+            errores.printf(Locale.ROOT, "cryptowarts: %d archivos (%d con error), %.1f MB en %.2f s (%.1f MB/s)%n",
+                    archivos.size(), resumen.getFallidos().size(), resumen.getBytesProcesados() / (1024.0 * 1024.0),
+                    resumen.getNanos() / 1e9, resumen.getMegabytesPorSegundo());
+            long generados = bytesGenerados(resumen);
+            if (resumen.getBytesProcesados() > 0) {
+                errores.printf(Locale.ROOT, "cryptowarts: resultado de %.1f MB (%.1f%% de la entrada)%n",
+                        generados / (1024.0 * 1024.0), 100.0 * generados / resumen.getBytesProcesados());
+            }
+            // Cada motor deriva en su propia caché: AES (CBC, GCM y paralelo) o ChaCha20 (también "auto")
+            informarClaves(errores, "AES", CifradoAES.cacheClaves());
+            informarClaves(errores, "ChaCha20", CifradoChaCha20Poly1305.cacheClaves());
+        }
+        return codigo;
+    }
+
+    /**
+     * Escribe en la salida de errores cuántas claves se han derivado y reutilizado con una caché, si
+     * la orden la ha usado.
+     *
+     * @param errores Salida en la que se escribe
+     * @param nombre Nombre de la caché en el mensaje
+     * @param claves Caché de claves de un motor
+     *
+     * @author Erlantz
+     */
+    private static void informarClaves(PrintStream errores, String nombre, CacheClaves claves) {
+        if (claves.fallos() > 0) {
+            errores.printf(Locale.ROOT, "cryptowarts: claves %s: %d derivadas (media %.1f ms), %d reutilizadas (media %.1f µs)%n",
+                    nombre, claves.fallos(), claves.tiemposDerivacion().getMedia() / 1e6,
+                    claves.aciertos(), claves.tiemposAcierto().getMedia() / 1e3);
+        }
+    }
+
+    /**
+     * Arranca el servidor HTTP y lo mantiene en marcha hasta que se detiene el proceso (Ctrl+C o señal).
+     *
+     * @param args Argumentos de la aplicación ("servidor" y sus opciones)
+     * @return Código de salida si el servidor no se puede arrancar
+     *
+     * @author Erlantz
+     */
+    private static int ejecutarServidor(String[] args) {
+        String direccion = "127.0.0.1";
+        int puerto = ServidorCifrado.PUERTO;
+        boolean registro = false;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-p", "--puerto" -> {
+                        String valor = valor(args, ++i, args[i - 1]);
+                        try {
+                            puerto = Integer.parseInt(valor);
+                        } catch (NumberFormatException e) {
+                            throw new ErrorUso("puerto no válido: " + valor);
+                        }
+                    }
+                    case "--direccion" -> direccion = valor(args, ++i, args[i - 1]);
+                    case "-i", "--iteraciones" -> fijarIteraciones(valor(args, ++i, args[i - 1]));
+                    case "-v", "--registro" -> registro = true;
+                    default -> throw new ErrorUso("opción desconocida: " + args[i]);
+                }
+            }
+        } catch (ErrorUso e) {
+            System.err.println("cryptowarts: " + e.getMessage());
+            System.err.println("Use \"cryptowarts --ayuda\" para ver las opciones.");
+            return ERROR_USO;
+        }
+        if (!registro) {
+            desactivarRegistro();
+        }
+
+        CountDownLatch detenido = new CountDownLatch(1);
+        try {
+            ServidorCifrado servidor = new ServidorCifrado(new InetSocketAddress(direccion, puerto));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                servidor.close();
+                detenido.countDown();
+            }, "detener-servidor"));
+            InetSocketAddress escucha = servidor.getDireccion();
+            System.out.println("http://" + escucha.getHostString() + ":" + escucha.getPort());
+            detenido.await();
+            return CORRECTO;
+        } catch (IOException e) {
+            System.err.println("cryptowarts: no se puede arrancar el servidor en " + direccion + ":" + puerto + " (" + e.getMessage() + ")");
+            return ERROR_ES;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CORRECTO;
+        }
+    }
+
+    /**
+     * Analiza los argumentos de la línea de comandos.
+     *
+     * @param args Argumentos de la aplicación
+     * @return Opciones analizadas, o {@code null} si se ha pedido la ayuda
+     * @throws ErrorUso Sí los argumentos no son válidos
+     *
+     * @author Erlantz
+     */
+    private static Opciones analizar(String[] args) throws ErrorUso {
+        Opciones opciones = new Opciones();
+        switch (args[0]) {
+            case "cifrar" -> opciones.cifrar = true;
+            case "descifrar" -> opciones.cifrar = false;
+            default -> {
+                return null;
+            }
+        }
+
+        String clave = null;
+        int fuentesClave = 0;
+        boolean finOpciones = false;
+        for (int i = 1; i < args.length; i++) {
+            String argumento = args[i];
+            if (finOpciones || argumento.equals(ESTANDAR) || !argumento.startsWith("-")) {
+                opciones.entradas.add(argumento);
+                continue;
+            }
+            switch (argumento) {
+                case "--" -> finOpciones = true;
+                case "-h", "--ayuda" -> {
+                    return null;
+                }
+                case "-a", "--algoritmo" -> elegirAlgoritmo(opciones, valor(args, ++i, argumento));
+                case "-m", "--modo" -> fijarModo(valor(args, ++i, argumento));
+                case "-k", "--clave" -> {
+                    clave = valor(args, ++i, argumento);
+                    fuentesClave++;
+                }
+                case "--clave-entorno" -> {
+                    String variable = valor(args, ++i, argumento);
+                    clave = System.getenv(variable);
+                    if (clave == null) {
+                        throw new ErrorUso("la variable de entorno " + variable + " no está definida");
+                    }
+                    fuentesClave++;
+                }
+                case "--clave-archivo" -> {
+                    clave = leerClave(Path.of(valor(args, ++i, argumento)));
+                    fuentesClave++;
+                }
+                case "-o", "--salida" -> opciones.salida = Path.of(valor(args, ++i, argumento));
+                case "-j", "--hilos" -> {
+                    String hilos = valor(args, ++i, argumento);
+                    try {
+                        opciones.hilos = Integer.parseInt(hilos);
+                    } catch (NumberFormatException e) {
+                        opciones.hilos = 0;
+                    }
+                    if (opciones.hilos <= 0) {
+                        throw new ErrorUso("número de hilos no válido: " + hilos);
+                    }
+                }
+                case "-i", "--iteraciones" -> fijarIteraciones(valor(args, ++i, argumento));
+                case "-z", "--comprimir" -> {
+                    System.setProperty(Compresion.PROPIEDAD, "rapida");
+                    opciones.comprimir = true;
+                }
+                case "--nivel-compresion" -> {
+                    fijarCompresion(valor(args, ++i, argumento));
+                    opciones.comprimir = true;
+                }
+                case "-s", "--resumen" -> opciones.resumen = true;
+                case "-v", "--registro" -> opciones.registro = true;
+                default -> throw new ErrorUso("opción desconocida: " + argumento);
+            }
+        }
+
+        if (fuentesClave != 1) {
+            throw new ErrorUso(fuentesClave == 0
+                    ? "falta la clave (--clave, --clave-entorno o --clave-archivo)"
+                    : "indique la clave una sola vez");
+        }
+        if (clave.isEmpty()) {
+            throw new ErrorUso("la clave no puede estar vacía");
+        }
+        opciones.clave = clave;
+
+        if (opciones.entradas.isEmpty()) {
+            throw new ErrorUso("falta al menos un archivo o directorio de entrada");
+        }
+        if (opciones.entradas.contains(ESTANDAR)) {
+            if (opciones.entradas.size() > 1 || opciones.salida != null) {
+                throw new ErrorUso("la entrada estándar (\"-\") no se puede combinar con otras entradas ni con --salida");
+            }
+            if (opciones.cifrador == null) {
+                throw new ErrorUso("aes-paralelo necesita archivos: no admite la entrada estándar");
+            }
+        }
+        if (opciones.cifrador == null && opciones.comprimir) {
+            throw new ErrorUso("aes-paralelo no admite compresión (-z, --nivel-compresion)");
+        }
+        return opciones;
+    }
+
+    /**
+     * Elige el algoritmo de la orden por su identificador. Los {@link Cifrador} del registro no crean
+     * ningún logger al cargarse, así que se pueden buscar antes de desactivar el registro.
+     *
+     * @param opciones Opciones de la orden
+     * @param nombre Identificador del algoritmo ("aes", "aes-gcm", "vigenere", "aes-paralelo"...)
+     * @throws ErrorUso Sí no hay ningún algoritmo con ese identificador
+     *
+     * @author Erlantz
+     */
+    private static void elegirAlgoritmo(Opciones opciones, String nombre) throws ErrorUso {
+        if (nombre.equalsIgnoreCase(AES_PARALELO)) {
+            opciones.cifrador = null;
+            return;
+        }
+        String id = nombre.equalsIgnoreCase("vigenère") ? CifradorVigenere.ID : nombre;
+        opciones.cifrador = RegistroCifradores.buscar(id)
+                .orElseThrow(() -> new ErrorUso("algoritmo desconocido: " + nombre));
+    }
+
+    /**
+     * Suma el tamaño de los archivos generados sin error, para compararlo con el de los originales
+     * (por ejemplo, para ver cuánto se ha ganado comprimiendo).
+     *
+     * @param resumen Resumen del lote
+     * @return Bytes de los archivos de destino
+     *
+     * @author Erlantz
+     */
+    private static long bytesGenerados(LoteArchivos.Resumen resumen) {
+        long total = 0;
+        for (LoteArchivos.Resultado resultado : resumen.getResultados()) {
+            if (resultado.isCorrecto()) {
+                try {
+                    total += Files.size(resultado.getDestino());
+                } catch (IOException e) {
+                    // El archivo se ha movido o borrado después de generarlo: no cuenta
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Fija la estrategia de entrada/salida de AES-CBC. Como el número de iteraciones, se pasa al
+     * cifrador con la propiedad del sistema {@link ModoES#PROPIEDAD}.
+     *
+     * @param valor Valor de la opción ("flujo" o "mapeado")
+     * @throws ErrorUso Sí el valor no corresponde a ningún modo
+     *
+     * @author Erlantz
+     */
+    private static void fijarModo(String valor) throws ErrorUso {
+        ModoES modo;
+        try {
+            modo = ModoES.valueOf(valor.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ErrorUso("modo de entrada/salida desconocido: " + valor);
+        }
+        System.setProperty(ModoES.PROPIEDAD, modo.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Evita la inicialización de logback, que tarda más que cifrar un archivo pequeño, haciendo que
+     * SLF4J use un proveedor que descarta los mensajes. Solo tiene efecto si aún no se ha creado
+     * ningún logger y si no se ha elegido otro proveedor con {@code -Dslf4j.provider}.
+     *
+     * @author Erlantz
+     */
+    private static void desactivarRegistro() {
+        if (System.getProperty("slf4j.provider") == null) {
+            System.setProperty("slf4j.provider", PROVEEDOR_SIN_REGISTRO);
+            if (System.getProperty("slf4j.internal.verbosity") == null) {
+                System.setProperty("slf4j.internal.verbosity", "WARN");
+            }
+        }
+    }
+
+    /**
+     * Fija el número de iteraciones de PBKDF2 para las claves nuevas de AES. Los datos ya cifrados
+     * llevan sus propias iteraciones en la cabecera; al descifrar solo cambia cuántas se aceptan
+     * (ver {@link DerivacionClaves#maximoIteracionesCabecera()}).
+     *
+     * @param valor Valor de la opción
+     * @throws ErrorUso Sí el valor no es un número dentro de los límites admitidos
+     *
+     * @author Erlantz
+     */
+    private static void fijarIteraciones(String valor) throws ErrorUso {
+        int iteraciones;
+        try {
+            iteraciones = Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            iteraciones = 0;
+        }
+        // Solo constantes: usar métodos de DerivacionClaves crearía su logger antes de desactivar el registro
+        if (iteraciones < DerivacionClaves.MINIMO_ITERACIONES || iteraciones > DerivacionClaves.MAXIMO_ITERACIONES) {
+            throw new ErrorUso("número de iteraciones no válido (entre " + DerivacionClaves.MINIMO_ITERACIONES
+                    + " y " + DerivacionClaves.MAXIMO_ITERACIONES + "): " + valor);
+        }
+        System.setProperty(DerivacionClaves.PROPIEDAD_ITERACIONES, String.valueOf(iteraciones));
+    }
+
+    /**
+     * Fija el nivel de compresión de los datos antes de cifrarlos. Como el número de iteraciones, se pasa
+     * al cifrador con la propiedad del sistema {@link Compresion#PROPIEDAD}.
+     *
+     * @param valor Valor de la opción
+     * @throws ErrorUso Sí el valor no es un nivel entre 1 y 9
+     *
+     * @author Erlantz
+     */
+    private static void fijarCompresion(String valor) throws ErrorUso {
+        int nivel;
+        try {
+            nivel = Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            nivel = 0;
+        }
+        if (nivel < 1 || nivel > 9) {
+            throw new ErrorUso("nivel de compresión no válido (entre 1 y 9): " + valor);
+        }
+        System.setProperty(Compresion.PROPIEDAD, String.valueOf(nivel));
+    }
+
+    /**
+     * Devuelve el valor de una opción.
+     *
+     * @param args Argumentos de la aplicación
+     * @param indice Posición del valor
+     * @param opcion Nombre de la opción (para el mensaje de error)
+     * @return Valor de la opción
+     * @throws ErrorUso Sí falta el valor
+     *
+     * @author Erlantz
+     */
+    private static String valor(String[] args, int indice, String opcion) throws ErrorUso {
+        if (indice >= args.length) {
+            throw new ErrorUso("falta el valor de " + opcion);
+        }
+        return args[indice];
+    }
+
+    /**
+     * Lee la clave de la primera línea de un archivo.
+     *
+     * @param archivo Archivo con la clave
+     * @return Clave leída (sin el salto de línea)
+     * @throws ErrorUso Sí no se puede leer el archivo
+     *
+     * @author Erlantz
+     */
+    private static String leerClave(Path archivo) throws ErrorUso {
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea = lector.readLine();
+            return linea == null ? "" : linea;
+        } catch (IOException e) {
+            throw new ErrorUso("no se puede leer el archivo de clave " + archivo + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Cifra o descifra un archivo. Se llama desde los hilos de {@link LoteArchivos}.
+     *
+     * @param opciones Opciones de la orden
+     * @param entrada Entrada indicada en la línea de comandos (archivo o directorio)
+     * @param archivo Archivo a procesar
+     * @return Ruta del archivo resultante
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Erlantz
+     */
+    private static Path procesarArchivo(Opciones opciones, Path entrada, Path archivo) throws IOException, GeneralSecurityException {
+        Path destino = destino(opciones, entrada, archivo);
+        if (destino.getParent() != null) {
+            Files.createDirectories(destino.getParent());
+        }
+        Cifrador cifrador = opciones.cifrador;
+        if (cifrador == null) {
+            if (opciones.cifrar) {
+                CifradoAESParalelo.cifrarArchivo(archivo, destino, opciones.clave, CifradoAESParalelo.TAMANO_SEGMENTO);
+            } else {
+                CifradoAESParalelo.descifrarArchivo(archivo, destino, opciones.clave);
+            }
+        } else if (opciones.cifrar) {
+            cifrador.cifrarArchivo(archivo, destino, opciones.clave, Progreso.NINGUNO);
+        } else {
+            cifrador.descifrarArchivo(archivo, destino, opciones.clave, Progreso.NINGUNO);
+        }
+        return destino;
+    }
+
+    /**
+     * Informa del resultado de un archivo: la ruta generada por la salida estándar o el error por la
+     * salida de errores.
+     *
+     * @param resultado Resultado del archivo
+     * @return Código de salida de este archivo
+     *
+     * @author Erlantz
+     */
+    private static int informar(LoteArchivos.Resultado resultado) {
+        Exception e = resultado.getError();
+        if (e == null) {
+            System.out.println(resultado.getDestino());
+            return CORRECTO;
+        }
+        if (e instanceof GeneralSecurityException) {
+            System.err.println("cryptowarts: " + resultado.getOrigen() + ": error de cifrado, compruebe la clave (" + e + ")");
+            return ERROR_CIFRADO;
+        }
+        System.err.println("cryptowarts: " + resultado.getOrigen() + ": error de E/S (" + e + ")");
+        return ERROR_ES;
+    }
+
+    /**
+     * Cifra o descifra la entrada estándar y escribe el resultado en la salida estándar.
+     *
+     * @param opciones Opciones de la orden
+     * @return Código de salida
+     *
+     * @author Erlantz
+     */
+    private static int procesarEstandar(Opciones opciones) {
+        // Canales directos sobre los descriptores, sin los buffers de System.in/System.out
+        FileChannel entrada = new FileInputStream(FileDescriptor.in).getChannel();
+        FileChannel salida = new FileOutputStream(FileDescriptor.out).getChannel();
+        try {
+            if (opciones.cifrar) {
+                opciones.cifrador.cifrar(entrada, salida, opciones.clave);
+            } else {
+                opciones.cifrador.descifrar(entrada, salida, opciones.clave);
+            }
+            return CORRECTO;
+        } catch (IOException e) {
+            System.err.println("cryptowarts: entrada estándar: error de E/S (" + e + ")");
+            return ERROR_ES;
+        } catch (GeneralSecurityException e) {
+            System.err.println("cryptowarts: entrada estándar: error de cifrado, compruebe la clave (" + e + ")");
+            return ERROR_CIFRADO;
+        }
+    }
+
+    /**
+     * Calcula la ruta de salida de un archivo: con el sufijo "_cifrado" o "_descifrado" antes de la
+     * extensión, junto al archivo o, con {@code --salida}, en ese directorio conservando la estructura
+     * de subdirectorios de la entrada.
+     *
+     * @param opciones Opciones de la orden
+     * @param entrada Entrada indicada en la línea de comandos (archivo o directorio)
+     * @param archivo Archivo a procesar
+     * @return Ruta del archivo resultante
+     *
+     * @author Erlantz
+     */
+    private static Path destino(Opciones opciones, Path entrada, Path archivo) {
+        String nombre = archivo.getFileName().toString();
+        String sufijo = opciones.cifrar ? "_cifrado" : "_descifrado";
+        int punto = nombre.lastIndexOf('.');
+        String nuevoNombre = punto == -1
+                ? nombre + sufijo
+                : nombre.substring(0, punto) + sufijo + nombre.substring(punto);
+
+        if (opciones.salida == null) {
+            return archivo.resolveSibling(nuevoNombre);
+        }
+        Path relativa = archivo.equals(entrada) ? Path.of(nuevoNombre) : entrada.relativize(archivo).resolveSibling(nuevoNombre);
+        return opciones.salida.resolve(relativa);
+    }
+
+    /**
+     * Comprueba, antes de procesar nada, que no hay dos archivos que se escribirían en el mismo destino
+     * (por ejemplo, dos archivos con el mismo nombre en directorios distintos y {@code --salida}). Si los
+     * hubiera, solo quedaría uno de los resultados, y los hilos del lote podrían escribir a la vez.
+     *
+     * @param opciones Opciones de la orden
+     * @param archivos Archivos a procesar
+     * @param entradaDeArchivo Entrada de la línea de comandos de cada archivo
+     * @throws ErrorUso Sí dos archivos tienen el mismo destino
+     *
+     * @author Erlantz
+     */
+    private static void comprobarDestinos(Opciones opciones, List<Path> archivos, Map<Path, Path> entradaDeArchivo) throws ErrorUso {
+        Map<Path, Path> archivoDeDestino = new HashMap<>();
+        for (Path archivo : archivos) {
+            Path destino = destino(opciones, entradaDeArchivo.get(archivo), archivo);
+            Path anterior = archivoDeDestino.putIfAbsent(destino.toAbsolutePath().normalize(), archivo);
+            if (anterior != null) {
+                throw new ErrorUso(anterior + " y " + archivo + " se escribirían en el mismo archivo " + destino
+                        + (opciones.salida != null ? ": procéselos por separado o con otro --salida" : ""));
+            }
+        }
+    }
+
+    /**
+     * Conserva el primer código de error de una orden con varias entradas.
+     *
+     * @param actual Código acumulado hasta ahora
+     * @param nuevo Código de la última entrada procesada
+     * @return Código acumulado
+     *
+     * @author Erlantz
+     */
+    private static int primerError(int actual, int nuevo) {
+        return actual != CORRECTO ? actual : nuevo;
+    }
+
+    /**
+     * Opciones de una orden de la línea de comandos.
+     */
+    private static final class Opciones {
+
+        /** {@code true} para cifrar, {@code false} para descifrar. */
+        private boolean cifrar;
+
+        /** Algoritmo elegido, o {@code null} para {@code aes-paralelo}. */
+        private Cifrador cifrador = RegistroCifradores.buscar(CifradorAES.ID).orElseThrow();
+
+        /** Clave de cifrado. */
+        private String clave;
+
+        /** Indica si se mantiene el registro (logs) de la aplicación. */
+        private boolean registro;
+
+        /** Directorio de salida, o {@code null} para escribir junto a cada entrada. */
+        private Path salida;
+
+        /** Número de archivos que se procesan a la vez, o 0 para usar el valor por defecto. */
+        private int hilos;
+
+        /** Indica si se muestra el resumen del lote al terminar. */
+        private boolean resumen;
+
+        /** Indica si se ha pedido comprimir con {@code -z} o {@code --nivel-compresion}. */
+        private boolean comprimir;
+
+        /** Archivos o directorios de entrada. */
+        private final List<String> entradas = new ArrayList<>();
+    }
+
+    /**
+     * Error en los argumentos de la línea de comandos.
+     */
+    private static final class ErrorUso extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Crea el error con el mensaje que se muestra al usuario.
+         *
+         * @param mensaje Descripción del error
+         */
+        ErrorUso(String mensaje) {
+            super(mensaje);
+        }
+    }
+}
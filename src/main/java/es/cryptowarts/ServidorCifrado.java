@@ -0,0 +1,493 @@
+package es.cryptowarts;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import es.cryptowarts.cifrado.CacheClaves;
+import es.cryptowarts.cifrado.CifradoAES;
+import es.cryptowarts.cifrado.CifradoAESGCM;
+import es.cryptowarts.cifrado.CifradoAutomatico;
+import es.cryptowarts.cifrado.CifradoChaCha20Poly1305;
+import es.cryptowarts.cifrado.Cifrador;
+import es.cryptowarts.cifrado.HistogramaLatencias;
+import es.cryptowarts.cifrado.Instrumentacion;
+import es.cryptowarts.cifrado.RegistroCifradores;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor HTTP local que expone el cifrado a otros procesos de la máquina, para que no tengan que
+ * arrancar la aplicación (y la JVM) por cada archivo. Usa el servidor del JDK
+ * ({@code com.sun.net.httpserver}) con un hilo virtual por petición y por defecto solo escucha en
+ * {@code 127.0.0.1}.
+ *
+ * <p>Todas las operaciones son {@code POST} y la clave se envía en la cabecera {@value #CABECERA_CLAVE}
+ * (nunca en la URL, que suele quedar en los registros). Cada {@link Cifrador} de {@link RegistroCifradores}
+ * tiene sus rutas bajo su identificador; con los algoritmos de la aplicación:</p>
+ * <ul>
+ *     <li>{@code /aes/cifrar}, {@code /aes/descifrar}: cuerpo binario en streaming (mismo formato que los
+ *         archivos cifrados con {@link CifradoAES})</li>
+ *     <li>{@code /aes-gcm/cifrar}, {@code /aes-gcm/descifrar}: igual, con bloques autenticados
+ *         ({@link CifradoAESGCM}); al descifrar cada bloque se envía en cuanto se verifica</li>
+ *     <li>{@code /chacha20/cifrar}, {@code /chacha20/descifrar}: igual, con ChaCha20-Poly1305</li>
+ *     <li>{@code /auto/cifrar}, {@code /auto/descifrar}: cifra con el más rápido de los dos en este equipo
+ *         ({@link CifradoAutomatico}) y descifra con el que indiquen los datos</li>
+ *     <li>{@code /vigenere/cifrar}, {@code /vigenere/descifrar}: texto UTF-8 en streaming</li>
+ *     <li>{@code /aes/texto/cifrar}, {@code /aes/texto/descifrar}: texto UTF-8 ↔ Base64, como
+ *         {@link CifradoAES#cifrarTexto(String, String)}</li>
+ *     <li>{@code /aes-gcm/texto/cifrar}, {@code /aes-gcm/texto/descifrar}: igual, con AES-GCM (y lo mismo
+ *         bajo {@code /chacha20} y {@code /auto})</li>
+ *     <li>{@code /vigenere/texto/cifrar}, {@code /vigenere/texto/descifrar}: texto UTF-8</li>
+ *     <li>{@code GET /metricas}: peticiones, errores, bytes, MB/s y percentiles de latencia de cada ruta,
+ *         el tiempo de derivación de claves frente al de los aciertos de la caché y, si se arranca con
+ *         {@code -Dcryptowarts.metricas=true}, las métricas de cada algoritmo ({@link Instrumentacion})</li>
+ * </ul>
+ *
+ * <p>En las rutas en streaming el cuerpo de la petición pasa por el cifrado bloque a bloque y la
+ * respuesta se envía con codificación {@code chunked} según se genera, sin guardar el contenido
+ * completo en memoria. Si el cifrado falla antes de enviar ningún byte la respuesta es un error HTTP
+ * ({@code 422}); si falla después, la conexión se corta sin el fragmento final, de modo que el cliente
+ * detecta que la respuesta está incompleta.</p>
+ *
+ * @author Erlantz
+ * @version 1.0
+ */
+public final class ServidorCifrado implements AutoCloseable {
+
+    /** Logger para esta clase. */
+    private static final Logger logger = LoggerFactory.getLogger(ServidorCifrado.class);
+
+    /** Cabecera HTTP con la clave de cifrado. */
+    public static final String CABECERA_CLAVE = "X-Clave";
+
+    /** Puerto por defecto. */
+    public static final int PUERTO = 8765;
+
+    /** Tamaño máximo del cuerpo en las rutas de texto (las de streaming no tienen límite). */
+    static final int LIMITE_TEXTO = 16 * 1024 * 1024;
+
+    /** Bytes de un megabyte. */
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    /** Servidor HTTP del JDK. */
+    private final HttpServer servidor;
+
+    /** Ejecutor de las peticiones: un hilo virtual por petición. */
+    private final ExecutorService ejecutor;
+
+    /** Métricas de cada ruta, en el orden en que se registran. */
+    private final Map<String, Metricas> metricas = new LinkedHashMap<>();
+
+    /**
+     * Crea el servidor y lo pone a escuchar en la dirección indicada.
+     *
+     * @param direccion Dirección y puerto (puerto 0 para elegir uno libre)
+     * @throws IOException Sí no se puede abrir el puerto
+     *
+     * @author Erlantz
+     */
+    public ServidorCifrado(InetSocketAddress direccion) throws IOException {
+        servidor = HttpServer.create(direccion, 0);
+        ejecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+        servidor.setExecutor(ejecutor);
+
+        for (Cifrador cifrador : RegistroCifradores.disponibles()) {
+            registrarFlujo("/" + cifrador.id() + "/cifrar", cifrador::cifrar);
+            registrarFlujo("/" + cifrador.id() + "/descifrar", cifrador::descifrar);
+        }
+        for (Cifrador cifrador : RegistroCifradores.disponibles()) {
+            registrarTexto("/" + cifrador.id() + "/texto/cifrar", cifrador::cifrarTexto);
+            registrarTexto("/" + cifrador.id() + "/texto/descifrar", cifrador::descifrarTexto);
+        }
+        servidor.createContext("/metricas", this::mostrarMetricas);
+        CifradoAutomatico.elegirEnSegundoPlano();
+        Instrumentacion.iniciar();
+
+        servidor.start();
+        logger.info("Servidor de cifrado escuchando en http://{}:{}", getDireccion().getHostString(), getDireccion().getPort());
+    }
+
+    /**
+     * Devuelve la dirección en la que escucha el servidor (útil si se creó con el puerto 0).
+     *
+     * @return Dirección y puerto
+     *
+     * @author Erlantz
+     */
+    public InetSocketAddress getDireccion() {
+        return servidor.getAddress();
+    }
+
+    /**
+     * Detiene el servidor: deja de aceptar conexiones y espera como mucho un segundo a las peticiones en curso.
+     *
+     * @author Erlantz
+     */
+    @Override
+    public void close() {
+        servidor.stop(1);
+        ejecutor.shutdownNow();
+        logger.info("Servidor de cifrado detenido");
+    }
+
+    /**
+     * Registra una ruta en streaming: el cuerpo de la petición se cifra o descifra por bloques.
+     *
+     * @param ruta Ruta HTTP
+     * @param operacion Operación sobre canales
+     *
+     * @author Erlantz
+     */
+    private void registrarFlujo(String ruta, OperacionFlujo operacion) {
+        Metricas m = new Metricas();
+        metricas.put(ruta, m);
+        servidor.createContext(ruta, intercambio -> atender(intercambio, m, clave -> {
+            try (InputStream cuerpo = intercambio.getRequestBody()) {
+                CanalEntrada entrada = new CanalEntrada(Channels.newChannel(cuerpo));
+                CanalRespuesta salida = new CanalRespuesta(intercambio, "application/octet-stream");
+                try {
+                    operacion.procesar(entrada, salida, clave);
+                } finally {
+                    m.bytesEntrada.add(entrada.leidos);
+                    m.bytesSalida.add(salida.escritos);
+                }
+                salida.terminar();
+            }
+        }));
+    }
+
+    /**
+     * Registra una ruta de texto: el cuerpo completo (como mucho {@link #LIMITE_TEXTO} bytes) se
+     * procesa como texto UTF-8.
+     *
+     * @param ruta Ruta HTTP
+     * @param operacion Operación sobre el texto
+     *
+     * @author Erlantz
+     */
+    private void registrarTexto(String ruta, OperacionTexto operacion) {
+        Metricas m = new Metricas();
+        metricas.put(ruta, m);
+        servidor.createContext(ruta, intercambio -> atender(intercambio, m, clave -> {
+            byte[] cuerpo;
+            try (InputStream entrada = intercambio.getRequestBody()) {
+                cuerpo = entrada.readNBytes(LIMITE_TEXTO + 1);
+            }
+            m.bytesEntrada.add(cuerpo.length);
+            if (cuerpo.length > LIMITE_TEXTO) {
+                responder(intercambio, 413, "El texto supera " + LIMITE_TEXTO + " bytes; use la ruta en streaming\n");
+                m.errores.increment();
+                return;
+            }
+            String texto = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(cuerpo)).toString();
+            byte[] resultado = operacion.procesar(texto, clave).getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+            intercambio.sendResponseHeaders(200, resultado.length == 0 ? -1 : resultado.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(resultado);
+            }
+            m.bytesSalida.add(resultado.length);
+        }));
+    }
+
+    /**
+     * Comprueba el método y la clave de una petición, la atiende y registra sus métricas.
+     * Los errores de cifrado se responden con {@code 422} y los textos que no son Base64 válido con
+     * {@code 400}, si aún no se ha enviado la respuesta.
+     * El intercambio solo se cierra si la petición termina bien o con una respuesta de error completa.
+     *
+     * @param intercambio Petición HTTP
+     * @param m Métricas de la ruta
+     * @param atencion Tratamiento de la petición, que recibe la clave
+     * @throws IOException Sí falla la comunicación con el cliente
+     *
+     * @author Erlantz
+     */
+    private void atender(HttpExchange intercambio, Metricas m, Atencion atencion) throws IOException {
+        long inicio = System.nanoTime();
+        m.peticiones.increment();
+        try {
+            if (!"POST".equals(intercambio.getRequestMethod())) {
+                intercambio.getResponseHeaders().set("Allow", "POST");
+                responder(intercambio, 405, "Use POST\n");
+                m.errores.increment();
+                return;
+            }
+            String clave = intercambio.getRequestHeaders().getFirst(CABECERA_CLAVE);
+            if (clave == null || clave.isEmpty()) {
+                responder(intercambio, 400, "Falta la cabecera " + CABECERA_CLAVE + "\n");
+                m.errores.increment();
+                return;
+            }
+            atencion.atender(clave);
+            intercambio.close();
+        } catch (GeneralSecurityException | CharacterCodingException e) {
+            m.errores.increment();
+            logger.debug("Error de cifrado en {}: {}", intercambio.getRequestURI(), e.toString());
+            if (intercambio.getResponseCode() != -1) {
+                // La respuesta ya ha empezado: al salir con una excepción sin cerrar el intercambio, el
+                // servidor corta la conexión sin el fragmento final y el cliente ve la respuesta incompleta
+                throw new IOException("Error de cifrado con la respuesta ya empezada", e);
+            }
+            responder(intercambio, 422, "Error de cifrado, compruebe la clave y los datos (" + e.getMessage() + ")\n");
+        } catch (IllegalArgumentException e) {
+            // Textos cifrados que no son Base64 válido (por ejemplo, con un salto de línea al final)
+            m.errores.increment();
+            logger.debug("Datos no válidos en {}: {}", intercambio.getRequestURI(), e.toString());
+            if (intercambio.getResponseCode() != -1) {
+                throw new IOException("Datos no válidos con la respuesta ya empezada", e);
+            }
+            responder(intercambio, 400, "Los datos no son válidos (" + e.getMessage() + ")\n");
+        } catch (IOException | RuntimeException e) {
+            m.errores.increment();
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - inicio;
+            m.latencias.registrar(nanos);
+            m.nanosOcupado.add(nanos);
+        }
+    }
+
+    /**
+     * Muestra las métricas de todas las rutas en texto plano.
+     *
+     * @param intercambio Petición HTTP
+     * @throws IOException Sí falla la comunicación con el cliente
+     *
+     * @author Erlantz
+     */
+    private void mostrarMetricas(HttpExchange intercambio) throws IOException {
+        StringBuilder texto = new StringBuilder();
+        metricas.forEach((ruta, m) -> {
+            double segundos = m.nanosOcupado.sum() / 1e9;
+            texto.append(String.format("%-26s peticiones=%d errores=%d entrada=%.1f MB salida=%.1f MB velocidad=%.1f MB/s latencia: %s%n",
+                    ruta, m.peticiones.sum(), m.errores.sum(), m.bytesEntrada.sum() / MEGABYTE,
+                    m.bytesSalida.sum() / MEGABYTE, segundos > 0 ? m.bytesEntrada.sum() / MEGABYTE / segundos : 0,
+                    m.latencias));
+        });
+        CacheClaves claves = CifradoAES.cacheClaves();
+        texto.append(String.format("%-26s %s%n", "claves", claves))
+                .append(String.format("%-26s %s%n", "claves derivadas", claves.tiemposDerivacion()))
+                .append(String.format("%-26s %s%n", "claves en caché", claves.tiemposAcierto()))
+                .append(String.format("%-26s %s%n", "claves ChaCha20", CifradoChaCha20Poly1305.cacheClaves()))
+                .append(Instrumentacion.resumen());
+        responder(intercambio, 200, texto.toString());
+    }
+
+    /**
+     * Envía una respuesta de texto completa y cierra el intercambio.
+     *
+     * @param intercambio Petición HTTP
+     * @param codigo Código de estado HTTP
+     * @param texto Cuerpo de la respuesta
+     * @throws IOException Sí falla la comunicación con el cliente
+     *
+     * @author Erlantz
+     */
+    private static void responder(HttpExchange intercambio, int codigo, String texto) throws IOException {
+        byte[] cuerpo = texto.getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        intercambio.sendResponseHeaders(codigo, cuerpo.length == 0 ? -1 : cuerpo.length);
+        try (intercambio; OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    /**
+     * Operación de cifrado sobre canales.
+     */
+    @FunctionalInterface
+    private interface OperacionFlujo {
+        /**
+         * Procesa todo el canal de origen y escribe el resultado en el de destino.
+         *
+         * @param origen Canal de entrada
+         * @param destino Canal de salida
+         * @param clave Clave de cifrado
+         * @return Bytes escritos
+         * @throws IOException Sí falla la lectura o la escritura
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        long procesar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Operación de cifrado sobre un texto.
+     */
+    @FunctionalInterface
+    private interface OperacionTexto {
+        /**
+         * Procesa un texto.
+         *
+         * @param texto Texto de entrada
+         * @param clave Clave de cifrado
+         * @return Texto resultante
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        String procesar(String texto, String clave) throws GeneralSecurityException;
+    }
+
+    /**
+     * Tratamiento de una petición ya validada.
+     */
+    @FunctionalInterface
+    private interface Atencion {
+        /**
+         * Atiende la petición.
+         *
+         * @param clave Clave de cifrado recibida en la cabecera
+         * @throws IOException Sí falla la comunicación con el cliente
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        void atender(String clave) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Métricas de una ruta.
+     */
+    private static final class Metricas {
+
+        /** Peticiones recibidas. */
+        private final LongAdder peticiones = new LongAdder();
+
+        /** Peticiones terminadas con error. */
+        private final LongAdder errores = new LongAdder();
+
+        /** Bytes recibidos en los cuerpos de las peticiones. */
+        private final LongAdder bytesEntrada = new LongAdder();
+
+        /** Bytes enviados en los cuerpos de las respuestas. */
+        private final LongAdder bytesSalida = new LongAdder();
+
+        /** Suma de los tiempos de atención, para la velocidad media. */
+        private final LongAdder nanosOcupado = new LongAdder();
+
+        /** Latencia de cada petición. */
+        private final HistogramaLatencias latencias = new HistogramaLatencias();
+    }
+
+    /**
+     * Canal sobre el cuerpo de la petición que cuenta los bytes leídos.
+     */
+    private static final class CanalEntrada implements ReadableByteChannel {
+
+        /** Canal original. */
+        private final ReadableByteChannel canal;
+
+        /** Bytes leídos hasta ahora. */
+        private long leidos;
+
+        /**
+         * Envuelve el canal del cuerpo de la petición.
+         *
+         * @param canal Canal original
+         */
+        CanalEntrada(ReadableByteChannel canal) {
+            this.canal = canal;
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            int n = canal.read(destino);
+            if (n > 0) {
+                leidos += n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    /**
+     * Canal sobre el cuerpo de la respuesta que envía las cabeceras ({@code 200} y codificación
+     * {@code chunked}) al escribir el primer byte, para poder responder con un error mientras no se
+     * haya generado nada.
+     */
+    private static final class CanalRespuesta implements WritableByteChannel {
+
+        /** Petición HTTP. */
+        private final HttpExchange intercambio;
+
+        /** Tipo de contenido de la respuesta. */
+        private final String tipo;
+
+        /** Canal del cuerpo de la respuesta, o {@code null} si aún no se han enviado las cabeceras. */
+        private WritableByteChannel canal;
+
+        /** Bytes escritos hasta ahora. */
+        private long escritos;
+
+        /**
+         * Prepara la respuesta de una petición.
+         *
+         * @param intercambio Petición HTTP
+         * @param tipo Tipo de contenido de la respuesta
+         */
+        CanalRespuesta(HttpExchange intercambio, String tipo) {
+            this.intercambio = intercambio;
+            this.tipo = tipo;
+        }
+
+        @Override
+        public int write(ByteBuffer origen) throws IOException {
+            if (!origen.hasRemaining()) {
+                return 0;
+            }
+            if (canal == null) {
+                intercambio.getResponseHeaders().set("Content-Type", tipo);
+                intercambio.sendResponseHeaders(200, 0);
+                canal = Channels.newChannel(intercambio.getResponseBody());
+            }
+            int n = canal.write(origen);
+            escritos += n;
+            return n;
+        }
+
+        /**
+         * Termina la respuesta: envía el fragmento final o, si no se ha escrito nada, una respuesta vacía.
+         *
+         * @throws IOException Sí falla la comunicación con el cliente
+         */
+        void terminar() throws IOException {
+            if (canal == null) {
+                intercambio.sendResponseHeaders(200, -1);
+            } else {
+                canal.close();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // Lo cierra terminar() o, si hay error, el propio intercambio
+        }
+    }
+}
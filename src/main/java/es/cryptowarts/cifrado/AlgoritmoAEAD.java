@@ -0,0 +1,131 @@
+package es.cryptowarts.cifrado;
+
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * Algoritmos de cifrado autenticado (AEAD) que se pueden usar con {@link BloquesAutenticados}.
+ * Todos usan un nonce de 12 bytes y una etiqueta de 16 bytes, así que comparten el formato por bloques
+ * y solo se distinguen por el identificador del {@link SobreCifrado}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+enum AlgoritmoAEAD {
+
+    /** AES en modo GCM, con la clave de 128 bits de {@link CifradoAES}. Muy rápido en procesadores con AES-NI. */
+    AES_GCM(SobreCifrado.AES_GCM, "AES-GCM", "AES/GCM/NoPadding", "AES"),
+
+    /** ChaCha20-Poly1305 (RFC 8439), con clave de 256 bits. Rápido en cualquier procesador, sin instrucciones de AES. */
+    CHACHA20_POLY1305(SobreCifrado.CHACHA20_POLY1305, "ChaCha20-Poly1305", "ChaCha20-Poly1305", "ChaCha20");
+
+    /** Longitud de la etiqueta de autenticación en bytes. */
+    static final int LONGITUD_ETIQUETA = 16;
+
+    /** Identificador del algoritmo en el {@link SobreCifrado}. */
+    private final byte id;
+
+    /** Nombre legible del algoritmo. */
+    private final String nombre;
+
+    /** Transformación de {@link javax.crypto.Cipher}. */
+    private final String transformacion;
+
+    /** Algoritmo de las claves del Cipher. */
+    private final String algoritmoClave;
+
+    /**
+     * Define un algoritmo.
+     *
+     * @param id Identificador en el sobre
+     * @param nombre Nombre legible
+     * @param transformacion Transformación de Cipher
+     * @param algoritmoClave Algoritmo de las claves
+     */
+    AlgoritmoAEAD(byte id, String nombre, String transformacion, String algoritmoClave) {
+        this.id = id;
+        this.nombre = nombre;
+        this.transformacion = transformacion;
+        this.algoritmoClave = algoritmoClave;
+    }
+
+    /**
+     * Devuelve el identificador del algoritmo en el sobre.
+     *
+     * @return Identificador ({@link SobreCifrado#AES_GCM} o {@link SobreCifrado#CHACHA20_POLY1305})
+     */
+    byte getId() {
+        return id;
+    }
+
+    /**
+     * Devuelve el nombre legible del algoritmo.
+     *
+     * @return Nombre (por ejemplo "ChaCha20-Poly1305")
+     */
+    String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Devuelve la transformación de Cipher del algoritmo.
+     *
+     * @return Transformación
+     */
+    String getTransformacion() {
+        return transformacion;
+    }
+
+    /**
+     * Devuelve el algoritmo de las claves del Cipher.
+     *
+     * @return Algoritmo de las claves
+     */
+    String getAlgoritmoClave() {
+        return algoritmoClave;
+    }
+
+    /**
+     * Devuelve la caché de las claves derivadas del algoritmo. AES-GCM comparte la de {@link CifradoAES};
+     * ChaCha20-Poly1305 tiene la suya porque sus claves son de otra longitud.
+     *
+     * @return Caché de claves
+     *
+     * @author Telmo
+     */
+    CacheClaves claves() {
+        return this == AES_GCM ? CifradoAES.cacheClaves() : CifradoChaCha20Poly1305.cacheClaves();
+    }
+
+    /**
+     * Crea los parámetros del Cipher para un nonce.
+     *
+     * @param nonce Nonce de 12 bytes
+     * @return Parámetros de inicialización del Cipher
+     *
+     * @author Telmo
+     */
+    AlgorithmParameterSpec parametros(byte[] nonce) {
+        return this == AES_GCM ? new GCMParameterSpec(LONGITUD_ETIQUETA * 8, nonce) : new IvParameterSpec(nonce);
+    }
+
+    /**
+     * Devuelve el algoritmo de un sobre.
+     *
+     * @param sobre Sobre leído de los datos
+     * @return Algoritmo de los datos
+     * @throws GeneralSecurityException Sí los datos no están cifrados con un algoritmo autenticado por bloques
+     *
+     * @author Telmo
+     */
+    static AlgoritmoAEAD de(SobreCifrado sobre) throws GeneralSecurityException {
+        for (AlgoritmoAEAD algoritmo : values()) {
+            if (algoritmo.id == sobre.getAlgoritmo()) {
+                return algoritmo;
+            }
+        }
+        throw new GeneralSecurityException("Los datos no están cifrados con un algoritmo autenticado (AES-GCM o ChaCha20-Poly1305)");
+    }
+}
@@ -0,0 +1,383 @@
+package es.cryptowarts.cifrado;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Cifrado autenticado por bloques, común a todos los {@link AlgoritmoAEAD}. Los datos se cifran por bloques
+ * de {@link #TAMANO_BLOQUE} bytes, cada uno con su propia etiqueta, de modo que al descifrar cada bloque se
+ * verifica y se escribe en cuanto se lee, sin guardar en memoria todo el archivo hasta comprobar una única
+ * etiqueta final. Formato (enteros en big-endian):
+ * <pre>
+ * {@link SobreCifrado} con el algoritmo y un nonce aleatorio de 12 bytes
+ * bloque 0: datos cifrados (TAMANO_BLOQUE bytes) + etiqueta (16 bytes)
+ * ...
+ * último bloque: datos cifrados (0 a TAMANO_BLOQUE bytes) + etiqueta (16 bytes)
+ * </pre>
+ * El nonce de cada bloque es el del sobre con el índice del bloque sumado (XOR) en sus últimos 4 bytes.
+ * Cada bloque autentica como datos adicionales el sobre completo y un byte que indica si es el último,
+ * así que no se pueden modificar, reordenar, quitar ni truncar bloques sin que falle la verificación.
+ * Si un bloque no se verifica, los anteriores ya escritos son auténticos; en los archivos, el destino
+ * parcial se elimina. Los textos usan el mismo formato, codificado en Base64.
+ * Los archivos y flujos se pueden comprimir antes de cifrarlos ({@link Compresion}): el sobre lo indica y,
+ * al descifrar, cada bloque verificado se descomprime según se escribe.
+ *
+ * <p>Como el algoritmo va en el sobre, al descifrar se puede aceptar cualquiera de ellos
+ * (ver {@link CifradoAutomatico}).</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class BloquesAutenticados {
+
+    /** Tamaño de los bloques de texto plano (64 KiB). */
+    static final int TAMANO_BLOQUE = 64 * 1024;
+
+    /** Tamaño de un bloque completo cifrado, con su etiqueta. */
+    private static final int TAMANO_BLOQUE_CIFRADO = TAMANO_BLOQUE + AlgoritmoAEAD.LONGITUD_ETIQUETA;
+
+    /** Mayor número de bloques de un mensaje (el índice ocupa 4 bytes del nonce). */
+    private static final long MAXIMO_BLOQUES = 1L << 32;
+
+    /** Datos adicionales de los bloques intermedios. */
+    private static final byte[] INTERMEDIO = {0};
+
+    /** Datos adicionales del último bloque. */
+    private static final byte[] ULTIMO = {1};
+
+    /** Clase de utilidades, no se instancia. */
+    private BloquesAutenticados() {
+    }
+
+    /**
+     * Cifra un texto plano y lo devuelve codificado en Base64.
+     *
+     * @param algoritmo Algoritmo de cifrado
+     * @param textoPlano Texto original sin cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Texto cifrado y autenticado en Base64
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    static String cifrarTexto(AlgoritmoAEAD algoritmo, String textoPlano, String clave) throws GeneralSecurityException {
+        byte[] textoBytes = textoPlano.getBytes(StandardCharsets.UTF_8);
+        Bloques bloques = new Bloques(algoritmo, Cipher.ENCRYPT_MODE, clave, null, false);
+        long numero = Math.max(1, (textoBytes.length + (long) TAMANO_BLOQUE - 1) / TAMANO_BLOQUE);
+        ByteBuffer salida = ByteBuffer.allocate(Math.toIntExact(bloques.sobre.longitud() + textoBytes.length
+                + numero * AlgoritmoAEAD.LONGITUD_ETIQUETA));
+        bloques.sobre.escribir(salida);
+
+        ByteBuffer entrada = ByteBuffer.wrap(textoBytes);
+        do {
+            int longitud = Math.min(TAMANO_BLOQUE, entrada.remaining());
+            ByteBuffer bloque = entrada.slice(entrada.position(), longitud);
+            entrada.position(entrada.position() + longitud);
+            bloques.procesar(bloque, salida, !entrada.hasRemaining());
+        } while (entrada.hasRemaining());
+        return Base64.getEncoder().encodeToString(salida.array());
+    }
+
+    /**
+     * Descifra un texto cifrado con {@link #cifrarTexto(AlgoritmoAEAD, String, String)}, verificando que no
+     * ha sido modificado. Acepta también el Base64 de un flujo cifrado con compresión.
+     *
+     * @param esperado Algoritmo exigido, o {@code null} para aceptar el que indique el sobre
+     * @param textoCifrado Texto cifrado en Base64
+     * @param clave Clave secreta para descifrar
+     * @return Texto original descifrado
+     * @throws GeneralSecurityException Sí el texto es de otro algoritmo, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    static String descifrarTexto(AlgoritmoAEAD esperado, String textoCifrado, String clave) throws GeneralSecurityException {
+        ByteBuffer entrada = ByteBuffer.wrap(Base64.getDecoder().decode(textoCifrado));
+        SobreCifrado sobre = SobreCifrado.leer(entrada);
+        Bloques bloques = new Bloques(comprobar(sobre, esperado), Cipher.DECRYPT_MODE, clave, sobre, false);
+        ByteBuffer salida = ByteBuffer.allocate(Math.max(0, entrada.remaining() - AlgoritmoAEAD.LONGITUD_ETIQUETA));
+        do {
+            int longitud = Math.min(TAMANO_BLOQUE_CIFRADO, entrada.remaining());
+            ByteBuffer bloque = entrada.slice(entrada.position(), longitud);
+            entrada.position(entrada.position() + longitud);
+            bloques.procesar(bloque, salida, !entrada.hasRemaining());
+        } while (entrada.hasRemaining());
+        if (sobre.isComprimido()) {
+            byte[] datos = Compresion.descomprimir(salida.array(), 0, salida.position());
+            return new String(datos, StandardCharsets.UTF_8);
+        }
+        return new String(salida.array(), 0, salida.position(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Cifra un archivo por bloques autenticados y guarda el resultado en la ruta de destino, informando
+     * del avance. Si la operación falla o se cancela no queda ningún archivo de destino a medias.
+     *
+     * @param algoritmo Algoritmo de cifrado
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param compresion Compresión de los datos antes de cifrarlos
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long cifrarArchivo(AlgoritmoAEAD algoritmo, Path origen, Path destino, String clave, Compresion compresion,
+                              Progreso progreso) throws IOException, GeneralSecurityException {
+        String nombre = compresion.isActiva() ? algoritmo.getNombre() + "+" + compresion : algoritmo.getNombre();
+        return ProcesadorFlujo.conArchivos(origen, destino, nombre,
+                (entrada, salida) -> cifrar(algoritmo, entrada, salida, clave, compresion, progreso, entrada.size()));
+    }
+
+    /**
+     * Descifra un archivo verificando cada bloque antes de escribirlo y guarda el resultado en la ruta
+     * de destino, informando del avance. Si algún bloque no se verifica o la operación se cancela,
+     * el destino parcial se elimina.
+     *
+     * @param esperado Algoritmo exigido, o {@code null} para aceptar el que indique el sobre
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo es de otro algoritmo, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    static long descifrarArchivo(AlgoritmoAEAD esperado, Path origen, Path destino, String clave, Progreso progreso)
+            throws IOException, GeneralSecurityException {
+        String nombre = esperado != null ? esperado.getNombre() : "AEAD";
+        return ProcesadorFlujo.conArchivos(origen, destino, nombre,
+                (entrada, salida) -> descifrar(esperado, entrada, salida, clave, progreso, entrada.size()));
+    }
+
+    /**
+     * Escribe el sobre y cifra el canal de origen por bloques. Cada bloque se lee con un byte de más para
+     * saber, sin conocer el tamaño total, si es el último. Los canales no se cierran.
+     *
+     * @param algoritmo Algoritmo de cifrado
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta
+     * @param compresion Compresión de los datos antes de cifrarlos
+     * @param progreso Receptor del avance
+     * @param total Tamaño del origen en bytes, o -1 si no se conoce
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long cifrar(AlgoritmoAEAD algoritmo, ReadableByteChannel origen, WritableByteChannel destino, String clave,
+                       Compresion compresion, Progreso progreso, long total) throws IOException, GeneralSecurityException {
+        Bloques bloques = new Bloques(algoritmo, Cipher.ENCRYPT_MODE, clave, null, compresion.isActiva());
+        long escritos = bloques.sobre.escribir(destino);
+        if (!compresion.isActiva()) {
+            return escritos + procesar(bloques, origen, destino, TAMANO_BLOQUE, progreso, total);
+        }
+        // El avance lo informa la compresión, con los bytes leídos del origen sin comprimir
+        return escritos + compresion.comprimir(origen, progreso, total,
+                comprimidos -> procesar(bloques, comprimidos, destino, TAMANO_BLOQUE, Progreso.NINGUNO, -1));
+    }
+
+    /**
+     * Lee el sobre y descifra el canal de origen por bloques. Cada bloque se escribe en cuanto se verifica
+     * (descomprimido, si el sobre lo indica); si uno falla, lo escrito hasta entonces es auténtico pero está
+     * incompleto. Los canales no se cierran.
+     *
+     * @param esperado Algoritmo exigido, o {@code null} para aceptar el que indique el sobre
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta
+     * @param progreso Receptor del avance
+     * @param total Tamaño del origen en bytes, o -1 si no se conoce
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí los datos son de otro algoritmo, han sido manipulados o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    static long descifrar(AlgoritmoAEAD esperado, ReadableByteChannel origen, WritableByteChannel destino, String clave,
+                          Progreso progreso, long total) throws IOException, GeneralSecurityException {
+        SobreCifrado sobre = SobreCifrado.leer(origen, ByteBuffer.allocate(SobreCifrado.LONGITUD));
+        AlgoritmoAEAD algoritmo = comprobar(sobre, esperado);
+        long bloques = total < 0 ? -1 : total - sobre.longitud();
+        Bloques estado = new Bloques(algoritmo, Cipher.DECRYPT_MODE, clave, sobre, false);
+        if (!sobre.isComprimido()) {
+            return procesar(estado, origen, destino, TAMANO_BLOQUE_CIFRADO, progreso, bloques);
+        }
+        return Compresion.descomprimir(destino,
+                descomprimidos -> procesar(estado, origen, descomprimidos, TAMANO_BLOQUE_CIFRADO, progreso, bloques));
+    }
+
+    /**
+     * Comprueba que los datos tienen sobre y que su algoritmo es el esperado.
+     *
+     * @param sobre Sobre leído de los datos, o {@code null} si no tienen
+     * @param esperado Algoritmo exigido, o {@code null} para aceptar cualquier algoritmo autenticado
+     * @return Algoritmo de los datos
+     * @throws GeneralSecurityException Sí los datos no tienen sobre o son de otro algoritmo
+     *
+     * @author Telmo
+     */
+    private static AlgoritmoAEAD comprobar(SobreCifrado sobre, AlgoritmoAEAD esperado) throws GeneralSecurityException {
+        if (sobre == null) {
+            throw new GeneralSecurityException("Los datos no tienen el formato de "
+                    + (esperado != null ? esperado.getNombre() : "AES-GCM ni de ChaCha20-Poly1305"));
+        }
+        if (esperado != null) {
+            sobre.exigirAlgoritmo(esperado.getId());
+            return esperado;
+        }
+        return AlgoritmoAEAD.de(sobre);
+    }
+
+    /**
+     * Procesa el canal de origen por bloques de tamaño fijo y escribe cada resultado en cuanto se genera.
+     *
+     * @param bloques Estado del cifrado
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param tamano Tamaño de los bloques de entrada
+     * @param progreso Receptor del avance
+     * @param total Tamaño del origen en bytes, o -1 si no se conoce
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado o un bloque no se verifica
+     *
+     * @author Telmo
+     */
+    private static long procesar(Bloques bloques, ReadableByteChannel origen, WritableByteChannel destino,
+                                 int tamano, Progreso progreso, long total) throws IOException, GeneralSecurityException {
+        ByteBuffer entrada = ByteBuffer.allocate(tamano + 1);
+        ByteBuffer salida = ByteBuffer.allocate(TAMANO_BLOQUE_CIFRADO);
+        long leidos = 0;
+        long escritos = 0;
+        boolean ultimo;
+        do {
+            while (entrada.hasRemaining() && origen.read(entrada) != -1) {
+                // Se lee hasta completar el bloque y un byte más, o hasta el final
+            }
+            entrada.flip();
+            ultimo = entrada.remaining() <= tamano;
+            int longitud = Math.min(tamano, entrada.remaining());
+            leidos += longitud;
+
+            salida.clear();
+            bloques.procesar(entrada.slice(0, longitud), salida, ultimo);
+            salida.flip();
+            while (salida.hasRemaining()) {
+                escritos += destino.write(salida);
+            }
+
+            entrada.position(longitud).compact();
+            ProcesadorFlujo.avanzar(progreso, leidos, total);
+        } while (!ultimo);
+        return escritos;
+    }
+
+    /**
+     * Estado del cifrado o descifrado de un mensaje: algoritmo, clave, sobre e índice del siguiente bloque.
+     * Cada bloque toma un Cipher de {@link ProveedorCifrados} y lo inicializa con su propio nonce.
+     */
+    private static final class Bloques {
+
+        /** Algoritmo del mensaje. */
+        private final AlgoritmoAEAD algoritmo;
+
+        /** {@link Cipher#ENCRYPT_MODE} o {@link Cipher#DECRYPT_MODE}. */
+        private final int modo;
+
+        /** Copia propia de la clave derivada: no se ve afectada si la caché la expulsa durante el mensaje. */
+        private final SecretKeySpec clave;
+
+        /** Sobre del mensaje. */
+        private final SobreCifrado sobre;
+
+        /** Sobre serializado, autenticado en cada bloque. */
+        private final byte[] aad;
+
+        /** Nonce del bloque actual, reutilizado entre bloques. */
+        private final byte[] nonce;
+
+        /** Índice del siguiente bloque. */
+        private long indice;
+
+        /**
+         * Prepara el estado de un mensaje. Para cifrar se crea un sobre nuevo con la clave derivada vigente;
+         * para descifrar se usa la clave de la sal y las iteraciones del sobre leído.
+         *
+         * @param algoritmo Algoritmo del mensaje
+         * @param modo {@link Cipher#ENCRYPT_MODE} o {@link Cipher#DECRYPT_MODE}
+         * @param clave Clave secreta del usuario
+         * @param sobre Sobre leído de los datos, o {@code null} al cifrar
+         * @param comprimido Al cifrar, si los datos se comprimen (se anota en el sobre nuevo)
+         * @throws GeneralSecurityException Sí ocurre un error al derivar la clave
+         */
+        Bloques(AlgoritmoAEAD algoritmo, int modo, String clave, SobreCifrado sobre, boolean comprimido) throws GeneralSecurityException {
+            CacheClaves claves = algoritmo.claves();
+            CacheClaves.ClaveDestruible derivada;
+            SecretKeySpec copia;
+            do {
+                derivada = sobre == null
+                        ? claves.paraCifrar(clave, DerivacionClaves.iteraciones())
+                        : claves.obtener(clave, sobre.getSal(), sobre.getIteraciones());
+                copia = derivada.copia();
+            } while (copia == null);
+
+            this.algoritmo = algoritmo;
+            this.modo = modo;
+            // La caché entrega claves "AES"; el proveedor de ChaCha20 exige que la clave se llame como él
+            this.clave = copia.getAlgorithm().equals(algoritmo.getAlgoritmoClave())
+                    ? copia : new SecretKeySpec(copia.getEncoded(), algoritmo.getAlgoritmoClave());
+            this.sobre = sobre != null ? sobre : SobreCifrado.nuevo(algoritmo.getId(), derivada.getSal(), derivada.getIteraciones(), comprimido);
+            this.aad = this.sobre.bytes();
+            this.nonce = this.sobre.getIV().clone();
+        }
+
+        /**
+         * Cifra o descifra un bloque completo y verifica su etiqueta al descifrar.
+         *
+         * @param entrada Bloque de entrada (se consume)
+         * @param salida Buffer en el que se escribe el resultado
+         * @param ultimo Indica si es el último bloque del mensaje
+         * @throws GeneralSecurityException Sí hay demasiados bloques, el bloque está incompleto, ocurre un error
+         *         de cifrado o el bloque no se verifica
+         */
+        void procesar(ByteBuffer entrada, ByteBuffer salida, boolean ultimo) throws GeneralSecurityException {
+            if (indice >= MAXIMO_BLOQUES) {
+                throw new GeneralSecurityException("Mensaje demasiado largo para " + algoritmo.getNombre() + " por bloques");
+            }
+            if (modo == Cipher.DECRYPT_MODE && entrada.remaining() < AlgoritmoAEAD.LONGITUD_ETIQUETA) {
+                throw new GeneralSecurityException("Datos cifrados incompletos: falta la etiqueta del último bloque");
+            }
+            byte[] base = sobre.getIV();
+            int desplazamiento = nonce.length - 4;
+            for (int i = 0; i < 4; i++) {
+                nonce[desplazamiento + i] = (byte) (base[desplazamiento + i] ^ (indice >>> (24 - 8 * i)));
+            }
+            indice++;
+
+            Cipher cifrado = ProveedorCifrados.obtener(algoritmo.getTransformacion());
+            try {
+                cifrado.init(modo, clave, algoritmo.parametros(nonce));
+                cifrado.updateAAD(aad);
+                cifrado.updateAAD(ultimo ? ULTIMO : INTERMEDIO);
+                cifrado.doFinal(entrada, salida);
+            } finally {
+                ProveedorCifrados.devolver(cifrado);
+            }
+        }
+    }
+}
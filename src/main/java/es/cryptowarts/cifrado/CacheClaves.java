@@ -0,0 +1,572 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU acotada y con caducidad de claves AES ya derivadas, indexadas por la clave introducida
+ * por el usuario, la sal y el número de iteraciones. Evita repetir la derivación con PBKDF2
+ * ({@link DerivacionClaves}), que cuesta del orden de cien milisegundos, en cada operación.
+ * Para cifrar, cada clave del usuario reutiliza la misma sal mientras su entrada siga en la caché;
+ * al caducar se elige una sal nueva, de modo que ninguna sal se usa indefinidamente.
+ * Si varios hilos piden a la vez una clave que no está, solo uno la deriva y los demás esperan su resultado.
+ * Al expulsar una entrada, al caducar (o al vaciar la caché) los bytes de la clave se sobrescriben con ceros.
+ * Lleva la cuenta de aciertos y fallos y mide por separado el tiempo de las derivaciones y de los aciertos.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CacheClaves {
+
+    /** Logger para registrar el coste de cada derivación. */
+    private static final Logger logger = LoggerFactory.getLogger(CacheClaves.class);
+
+    /** Número máximo de claves guardadas. */
+    private final int capacidad;
+
+    /** Tiempo en nanosegundos que una clave sigue siendo válida desde que se deriva. */
+    private final long vigencia;
+
+    /** Función que deriva los bytes de la clave AES a partir de la clave del usuario, la sal y las iteraciones. */
+    private final Derivacion derivacion;
+
+    /** Mapa en orden de acceso; la entrada más antigua es la menos usada. */
+    private final LinkedHashMap<Indice, ClaveDestruible> claves;
+
+    /** Clave vigente para cifrar con cada clave del usuario e iteraciones (índice sin sal). */
+    private final LinkedHashMap<Indice, ClaveDestruible> paraCifrar;
+
+    /** Derivaciones en curso, para que el resto de hilos esperen su resultado en lugar de repetirlas. */
+    private final Map<Indice, CompletableFuture<ClaveDestruible>> enCurso = new HashMap<>();
+
+    /** Número de veces que la clave ya estaba en la caché (o la estaba derivando otro hilo). */
+    private final LongAdder aciertos = new LongAdder();
+
+    /** Número de veces que hubo que derivar la clave. */
+    private final LongAdder fallos = new LongAdder();
+
+    /** Tiempo de cada derivación (búsquedas fallidas). */
+    private final HistogramaLatencias tiemposDerivacion = new HistogramaLatencias();
+
+    /** Tiempo de cada búsqueda resuelta desde la caché. */
+    private final HistogramaLatencias tiemposAcierto = new HistogramaLatencias();
+
+    /**
+     * Función de derivación de claves.
+     */
+    @FunctionalInterface
+    interface Derivacion {
+        /**
+         * Deriva los bytes de la clave AES.
+         *
+         * @param clave Clave introducida por el usuario
+         * @param sal Sal de la clave
+         * @param iteraciones Número de iteraciones
+         * @return Bytes de la clave AES
+         * @throws GeneralSecurityException Sí no se puede derivar la clave
+         */
+        byte[] derivar(String clave, byte[] sal, int iteraciones) throws GeneralSecurityException;
+    }
+
+    /**
+     * Crea una caché con la capacidad, la vigencia y la derivación de clave indicadas.
+     *
+     * @param capacidad Número máximo de claves guardadas (mayor que 0)
+     * @param vigencia Tiempo que una clave sigue siendo válida desde que se deriva (mayor que 0)
+     * @param derivacion Función que convierte la clave del usuario en los bytes de la clave AES
+     *
+     * @author Telmo
+     */
+    CacheClaves(int capacidad, Duration vigencia, Derivacion derivacion) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad de la caché debe ser mayor que 0");
+        }
+        if (vigencia.isNegative() || vigencia.isZero()) {
+            throw new IllegalArgumentException("La vigencia de las claves debe ser mayor que 0");
+        }
+        this.capacidad = capacidad;
+        this.vigencia = vigencia.toNanos();
+        this.derivacion = derivacion;
+        this.claves = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Indice, ClaveDestruible> mayor) {
+                if (size() > CacheClaves.this.capacidad) {
+                    mayor.getValue().destroy();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.paraCifrar = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Indice, ClaveDestruible> mayor) {
+                // La clave la destruye el mapa principal; aquí solo se olvida la referencia
+                return size() > CacheClaves.this.capacidad;
+            }
+        };
+    }
+
+    /**
+     * Devuelve la clave AES derivada de la clave del usuario con la sal y las iteraciones indicadas
+     * (las de la cabecera de unos datos cifrados), derivándola solo si no está en la caché o ha caducado.
+     *
+     * @param clave Clave introducida por el usuario
+     * @param sal Sal de la clave
+     * @param iteraciones Número de iteraciones
+     * @return Clave AES lista para inicializar un Cipher
+     * @throws GeneralSecurityException Sí no se puede derivar la clave
+     *
+     * @author Telmo
+     */
+    ClaveDestruible obtener(String clave, byte[] sal, int iteraciones) throws GeneralSecurityException {
+        long inicio = System.nanoTime();
+        Indice indice = new Indice(clave, sal, iteraciones);
+        CompletableFuture<ClaveDestruible> pendiente;
+        boolean propia = false;
+        synchronized (claves) {
+            ClaveDestruible existente = vigente(claves, indice, inicio);
+            if (existente != null) {
+                acierto(inicio);
+                return existente;
+            }
+            pendiente = enCurso.get(indice);
+            if (pendiente != null) {
+                aciertos.increment();
+            } else {
+                pendiente = new CompletableFuture<>();
+                enCurso.put(indice, pendiente);
+                propia = true;
+            }
+        }
+        return propia ? derivar(indice, indice, null, inicio, pendiente) : esperar(pendiente);
+    }
+
+    /**
+     * Devuelve la clave AES con la que cifrar datos nuevos con la clave del usuario. Mientras la entrada
+     * siga en la caché se reutilizan su sal y su clave derivada; si no, se deriva una con sal nueva.
+     * La sal y las iteraciones de la clave devuelta son las que hay que guardar en la cabecera.
+     *
+     * @param clave Clave introducida por el usuario
+     * @param iteraciones Número de iteraciones para una clave nueva
+     * @return Clave AES lista para inicializar un Cipher
+     * @throws GeneralSecurityException Sí no se puede derivar la clave
+     *
+     * @author Telmo
+     */
+    ClaveDestruible paraCifrar(String clave, int iteraciones) throws GeneralSecurityException {
+        long inicio = System.nanoTime();
+        Indice sinSal = new Indice(clave, null, iteraciones);
+        CompletableFuture<ClaveDestruible> pendiente;
+        boolean propia = false;
+        synchronized (claves) {
+            ClaveDestruible existente = vigente(paraCifrar, sinSal, inicio);
+            if (existente != null) {
+                claves.get(new Indice(clave, existente.getSal(), iteraciones));
+                acierto(inicio);
+                return existente;
+            }
+            pendiente = enCurso.get(sinSal);
+            if (pendiente != null) {
+                aciertos.increment();
+            } else {
+                pendiente = new CompletableFuture<>();
+                enCurso.put(sinSal, pendiente);
+                propia = true;
+            }
+        }
+        return propia
+                ? derivar(new Indice(clave, DerivacionClaves.nuevaSal(), iteraciones), sinSal, sinSal, inicio, pendiente)
+                : esperar(pendiente);
+    }
+
+    /**
+     * Busca una clave no caducada ni destruida; si está caducada la destruye y la quita del mapa.
+     * Se debe llamar con el cerrojo de {@link #claves}.
+     *
+     * @param mapa Mapa en el que buscar
+     * @param indice Índice de la clave
+     * @param ahora Instante actual de {@link System#nanoTime()}
+     * @return Clave vigente, o {@code null} si no hay ninguna
+     *
+     * @author Telmo
+     */
+    private static ClaveDestruible vigente(Map<Indice, ClaveDestruible> mapa, Indice indice, long ahora) {
+        ClaveDestruible existente = mapa.get(indice);
+        if (existente == null) {
+            return null;
+        }
+        if (existente.isDestroyed() || ahora - existente.caducidad > 0) {
+            existente.destroy();
+            mapa.remove(indice);
+            return null;
+        }
+        return existente;
+    }
+
+    /**
+     * Deriva la clave fuera del cerrojo, para no bloquear las búsquedas de otros hilos durante la derivación,
+     * la guarda en la caché y entrega el resultado a los hilos que esperan la misma clave.
+     *
+     * @param indice Índice completo (con sal) de la clave
+     * @param indiceEnCurso Índice con el que se registró la derivación en curso
+     * @param sinSal Índice sin sal con el que registrar la clave para cifrar, o {@code null}
+     * @param inicio Instante de inicio de la búsqueda
+     * @param pendiente Resultado que esperan los demás hilos
+     * @return Clave derivada
+     * @throws GeneralSecurityException Sí no se puede derivar la clave
+     *
+     * @author Telmo
+     */
+    private ClaveDestruible derivar(Indice indice, Indice indiceEnCurso, Indice sinSal, long inicio,
+                                    CompletableFuture<ClaveDestruible> pendiente) throws GeneralSecurityException {
+        fallos.increment();
+        ClaveDestruible nueva = null;
+        try {
+            byte[] bytes = derivacion.derivar(indice.clave, indice.sal, indice.iteraciones);
+            long fin = System.nanoTime();
+            nueva = new ClaveDestruible(bytes, indice.sal, indice.iteraciones, fin + vigencia);
+            Arrays.fill(bytes, (byte) 0);
+            tiemposDerivacion.registrar(fin - inicio);
+            logger.debug("Clave derivada con {} iteraciones en {} ms", indice.iteraciones,
+                    TimeUnit.NANOSECONDS.toMillis(fin - inicio));
+            return nueva;
+        } finally {
+            synchronized (claves) {
+                enCurso.remove(indiceEnCurso);
+                if (nueva != null) {
+                    claves.put(indice, nueva);
+                    if (sinSal != null) {
+                        paraCifrar.put(sinSal, nueva);
+                    }
+                }
+            }
+            if (nueva != null) {
+                pendiente.complete(nueva);
+            } else {
+                pendiente.completeExceptionally(new GeneralSecurityException("No se ha podido derivar la clave"));
+            }
+        }
+    }
+
+    /**
+     * Espera a que otro hilo termine de derivar la clave.
+     *
+     * @param pendiente Resultado de la derivación en curso
+     * @return Clave derivada por el otro hilo
+     * @throws GeneralSecurityException Sí la derivación ha fallado
+     *
+     * @author Telmo
+     */
+    private static ClaveDestruible esperar(CompletableFuture<ClaveDestruible> pendiente) throws GeneralSecurityException {
+        try {
+            return pendiente.join();
+        } catch (CompletionException e) {
+            throw (GeneralSecurityException) e.getCause();
+        }
+    }
+
+    /**
+     * Cuenta un acierto y registra su tiempo.
+     *
+     * @param inicio Instante de inicio de la búsqueda
+     *
+     * @author Telmo
+     */
+    private void acierto(long inicio) {
+        aciertos.increment();
+        tiemposAcierto.registrar(System.nanoTime() - inicio);
+    }
+
+    /**
+     * Elimina todas las claves de la caché, sobrescribiendo sus bytes con ceros.
+     *
+     * @author Telmo
+     */
+    public void vaciar() {
+        synchronized (claves) {
+            for (ClaveDestruible clave : claves.values()) {
+                clave.destroy();
+            }
+            claves.clear();
+            paraCifrar.clear();
+        }
+    }
+
+    /**
+     * Elimina las claves caducadas, sobrescribiendo sus bytes con ceros. Las búsquedas ya descartan
+     * las claves caducadas; esto solo adelanta el borrado de las que no se vuelven a pedir.
+     *
+     * @return Número de claves eliminadas
+     *
+     * @author Telmo
+     */
+    public int purgar() {
+        long ahora = System.nanoTime();
+        int eliminadas = 0;
+        synchronized (claves) {
+            for (Iterator<ClaveDestruible> it = claves.values().iterator(); it.hasNext(); ) {
+                ClaveDestruible clave = it.next();
+                if (clave.isDestroyed() || ahora - clave.caducidad > 0) {
+                    clave.destroy();
+                    it.remove();
+                    eliminadas++;
+                }
+            }
+            paraCifrar.values().removeIf(ClaveDestruible::isDestroyed);
+        }
+        return eliminadas;
+    }
+
+    /**
+     * Devuelve el número de claves guardadas actualmente.
+     *
+     * @return Número de claves en la caché
+     */
+    public int tamano() {
+        synchronized (claves) {
+            return claves.size();
+        }
+    }
+
+    /**
+     * Devuelve el número máximo de claves que puede guardar la caché.
+     *
+     * @return Capacidad de la caché
+     */
+    public int capacidad() {
+        return capacidad;
+    }
+
+    /**
+     * Devuelve el tiempo que una clave sigue siendo válida desde que se deriva.
+     *
+     * @return Vigencia de las claves
+     */
+    public Duration vigencia() {
+        return Duration.ofNanos(vigencia);
+    }
+
+    /**
+     * Devuelve el número de búsquedas resueltas desde la caché.
+     *
+     * @return Número de aciertos
+     */
+    public long aciertos() {
+        return aciertos.sum();
+    }
+
+    /**
+     * Devuelve el número de búsquedas que tuvieron que derivar la clave.
+     *
+     * @return Número de fallos
+     */
+    public long fallos() {
+        return fallos.sum();
+    }
+
+    /**
+     * Devuelve el histograma del tiempo de las derivaciones.
+     *
+     * @return Tiempos de las búsquedas fallidas, incluida la derivación
+     */
+    public HistogramaLatencias tiemposDerivacion() {
+        return tiemposDerivacion;
+    }
+
+    /**
+     * Devuelve el histograma del tiempo de los aciertos.
+     *
+     * @return Tiempos de las búsquedas resueltas desde la caché
+     */
+    public HistogramaLatencias tiemposAcierto() {
+        return tiemposAcierto;
+    }
+
+    /**
+     * Calcula la proporción de búsquedas resueltas desde la caché.
+     *
+     * @return Tasa de aciertos entre 0 y 1 (0 si aún no hubo búsquedas)
+     *
+     * @author Telmo
+     */
+    public double tasaAciertos() {
+        long a = aciertos.sum();
+        long total = a + fallos.sum();
+        return total == 0 ? 0 : (double) a / total;
+    }
+
+    /**
+     * Devuelve un resumen legible de las métricas de la caché.
+     *
+     * @return Texto con tamaño, aciertos, fallos, tasa de aciertos y tiempo medio de derivación y de acierto
+     *
+     * @author Telmo
+     */
+    @Override
+    public String toString() {
+        return String.format("CacheClaves[tamano=%d/%d, aciertos=%d, fallos=%d, tasa=%.1f%%, derivacion=%.1f ms, acierto=%.2f µs]",
+                tamano(), capacidad, aciertos(), fallos(), tasaAciertos() * 100,
+                tiemposDerivacion.getMedia() / 1e6, tiemposAcierto.getMedia() / 1e3);
+    }
+
+    /**
+     * Índice de la caché: clave del usuario, sal (o {@code null} para la clave vigente de cifrado) e iteraciones.
+     */
+    private static final class Indice {
+
+        /** Clave introducida por el usuario. */
+        private final String clave;
+
+        /** Sal de la clave, o {@code null}. */
+        private final byte[] sal;
+
+        /** Número de iteraciones. */
+        private final int iteraciones;
+
+        /** Código hash precalculado. */
+        private final int hash;
+
+        /**
+         * Crea el índice.
+         *
+         * @param clave Clave introducida por el usuario
+         * @param sal Sal de la clave, o {@code null}
+         * @param iteraciones Número de iteraciones
+         */
+        Indice(String clave, byte[] sal, int iteraciones) {
+            this.clave = clave;
+            this.sal = sal;
+            this.iteraciones = iteraciones;
+            this.hash = (clave.hashCode() * 31 + Arrays.hashCode(sal)) * 31 + iteraciones;
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof Indice indice && iteraciones == indice.iteraciones
+                    && clave.equals(indice.clave) && Arrays.equals(sal, indice.sal);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Clave AES en formato RAW cuyos bytes se pueden borrar con {@link #destroy()}, junto con la sal
+     * y las iteraciones con las que se derivó.
+     * Las lecturas y el borrado están sincronizados para que nunca se entregue una copia a medio borrar.
+     */
+    static final class ClaveDestruible implements SecretKey {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Bytes de la clave (a cero una vez destruida). */
+        private final byte[] bytes;
+
+        /** Sal con la que se derivó la clave. */
+        private final byte[] sal;
+
+        /** Iteraciones con las que se derivó la clave. */
+        private final int iteraciones;
+
+        /** Instante de {@link System#nanoTime()} a partir del cual la clave ha caducado. */
+        private final long caducidad;
+
+        /** Indica si la clave ya ha sido destruida. */
+        private boolean destruida;
+
+        /**
+         * Crea la clave con una copia de los bytes indicados.
+         *
+         * @param bytes Bytes de la clave
+         * @param sal Sal con la que se derivó
+         * @param iteraciones Iteraciones con las que se derivó
+         * @param caducidad Instante de {@link System#nanoTime()} en el que caduca
+         */
+        ClaveDestruible(byte[] bytes, byte[] sal, int iteraciones, long caducidad) {
+            this.bytes = bytes.clone();
+            this.sal = Objects.requireNonNull(sal);
+            this.iteraciones = iteraciones;
+            this.caducidad = caducidad;
+        }
+
+        /**
+         * Devuelve la sal con la que se derivó la clave.
+         *
+         * @return Sal (no se debe modificar)
+         */
+        byte[] getSal() {
+            return sal;
+        }
+
+        /**
+         * Devuelve las iteraciones con las que se derivó la clave.
+         *
+         * @return Número de iteraciones
+         */
+        int getIteraciones() {
+            return iteraciones;
+        }
+
+        /**
+         * Devuelve una copia independiente de la clave, que sigue siendo válida aunque esta se destruya
+         * (por ejemplo, para repartirla entre varios hilos durante una operación larga).
+         *
+         * @return Copia de la clave, o {@code null} si ya ha sido destruida
+         *
+         * @author Telmo
+         */
+        synchronized SecretKeySpec copia() {
+            return destruida ? null : new SecretKeySpec(bytes, getAlgorithm());
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "AES";
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public synchronized byte[] getEncoded() {
+            if (destruida) {
+                throw new IllegalStateException("La clave ha sido destruida");
+            }
+            return bytes.clone();
+        }
+
+        @Override
+        public synchronized void destroy() {
+            Arrays.fill(bytes, (byte) 0);
+            destruida = true;
+        }
+
+        @Override
+        public synchronized boolean isDestroyed() {
+            return destruida;
+        }
+    }
+}
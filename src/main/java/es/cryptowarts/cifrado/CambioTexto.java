@@ -0,0 +1,73 @@
+package es.cryptowarts.cifrado;
+
+/**
+ * Cambio de un texto: el tramo entre {@link #getInicio()} y {@link #getFin()} del texto anterior se
+ * sustituye por {@link #getReemplazo()}. Es lo que devuelve {@link CifradoEnVivo} para actualizar el
+ * resultado sin volver a escribirlo entero.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CambioTexto {
+
+    /** Posición del primer carácter sustituido. */
+    private final int inicio;
+
+    /** Posición siguiente al último carácter sustituido, en el texto anterior. */
+    private final int fin;
+
+    /** Texto nuevo del tramo. */
+    private final String reemplazo;
+
+    /**
+     * Crea el cambio.
+     *
+     * @param inicio Posición del primer carácter sustituido
+     * @param fin Posición siguiente al último carácter sustituido, en el texto anterior
+     * @param reemplazo Texto nuevo del tramo
+     */
+    CambioTexto(int inicio, int fin, String reemplazo) {
+        this.inicio = inicio;
+        this.fin = fin;
+        this.reemplazo = reemplazo;
+    }
+
+    /**
+     * Devuelve la posición del primer carácter sustituido.
+     *
+     * @return Posición en el texto anterior (y en el nuevo)
+     */
+    public int getInicio() {
+        return inicio;
+    }
+
+    /**
+     * Devuelve la posición siguiente al último carácter sustituido del texto anterior.
+     *
+     * @return Posición en el texto anterior
+     */
+    public int getFin() {
+        return fin;
+    }
+
+    /**
+     * Devuelve el texto nuevo del tramo.
+     *
+     * @return Texto que sustituye al tramo
+     */
+    public String getReemplazo() {
+        return reemplazo;
+    }
+
+    /**
+     * Aplica el cambio a un texto.
+     *
+     * @param anterior Texto anterior
+     * @return Texto con el tramo sustituido
+     *
+     * @author Telmo
+     */
+    public String aplicar(String anterior) {
+        return anterior.substring(0, inicio) + reemplazo + anterior.substring(fin);
+    }
+}
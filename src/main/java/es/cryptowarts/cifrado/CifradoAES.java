@@ -1,18 +1,40 @@
 package es.cryptowarts.cifrado;
 
 import javax.crypto.Cipher;
-import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.Base64;
-import java.nio.file.Files;
+import java.util.List;
 import java.io.File;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Clase que proporciona métodos para cifrar y descifrar texto y archivos
  * utilizando el algoritmo AES en modo CBC con relleno PKCS5Padding.
+ * Los archivos se procesan por bloques con {@link ProcesadorFlujo}, sin cargarlos enteros en memoria,
+ * usando la estrategia de entrada/salida de {@link ModoES}.
+ * La clave AES se deriva de la clave del usuario con PBKDF2 ({@link DerivacionClaves}) y los datos cifrados
+ * empiezan por un {@link SobreCifrado} con el algoritmo, la sal, las iteraciones y un IV aleatorio distinto
+ * en cada mensaje; los formatos anteriores (IV fijo, con o sin clave derivada) se reconocen por la versión
+ * del sobre y se siguen pudiendo descifrar.
+ * Además de las operaciones con Strings, hay variantes que escriben el sobre y los datos cifrados (o su
+ * Base64) directamente en un {@link ByteBuffer} del llamador, sin crear arrays ni Strings intermedios.
+ * Los archivos y flujos se pueden comprimir antes de cifrarlos ({@link Compresion}); al descifrar, el sobre
+ * indica si hay que descomprimirlos.
+ * Los Cipher se reutilizan de una reserva ({@link ProveedorCifrados}) y las claves derivadas se guardan
+ * en una {@link CacheClaves}, de modo que solo la primera operación con cada clave paga la derivación.
  *
  * @author Telmo
  * @version 1.0
@@ -22,34 +44,57 @@ public class CifradoAES {
     /** Algoritmo de cifrado utilizado (AES en modo CBC con PKCS5Padding). */
     private static final String ALGORITMO = "AES/CBC/PKCS5Padding";
 
-    /** Vector de inicialización fijo (debe ser único y seguro en producción, 16 bytes) */
-    private static final String IV = "abcdefghijklmnop";
+    /** Tamaño de bloque de AES en bytes. */
+    private static final int BLOQUE = 16;
+
+    /** Número máximo de claves distintas guardadas en la caché. */
+    private static final int CAPACIDAD_CACHE = 64;
+
+    /** Tiempo que una clave derivada sigue en la caché (y su sal se reutiliza para cifrar) desde que se deriva. */
+    private static final Duration VIGENCIA_CACHE = Duration.ofMinutes(10);
+
+    /** Caché de claves AES ya derivadas. */
+    private static final CacheClaves CLAVES = new CacheClaves(CAPACIDAD_CACHE, VIGENCIA_CACHE, DerivacionClaves::derivar);
+
+    /** Buffer de cada hilo para los datos cifrados de las operaciones en Base64, reutilizado entre llamadas. */
+    private static final ThreadLocal<ByteBuffer> INTERMEDIO = ThreadLocal.withInitial(() -> ByteBuffer.allocate(1024));
+
+    /** Clase de utilidades, no se instancia. */
+    private CifradoAES() {
+    }
 
     /**
      * Cifra un texto plano utilizando AES CBC con PKCS5Padding.
      * Devuelve el texto cifrado codificado en Base64 o un mensaje de error detallado.
      *
      * @param textoPlano Texto original sin cifrar
-     * @param clave Clave secreta para cifrar (se normaliza a 16 bytes)
+     * @param clave Clave secreta para cifrar (se deriva con PBKDF2)
      * @return Texto cifrado en Base64 o mensaje de error
      * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
      *
      * @author Telmo
      */
     public static String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
-        IvParameterSpec ivSpec = new IvParameterSpec(IV.getBytes(StandardCharsets.UTF_8));
-        SecretKeySpec keySpec = new SecretKeySpec(normalizarClave(clave), "AES");
-
-        Cipher cifrado = Cipher.getInstance(ALGORITMO);
-        cifrado.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
+        Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+        byte[] encrypted;
+        try {
+            SobreCifrado sobre = prepararCifrado(cifrado, clave);
 
-        byte[] encrypted = cifrado.doFinal(textoPlano.getBytes(StandardCharsets.UTF_8));
+            byte[] textoBytes = textoPlano.getBytes(StandardCharsets.UTF_8);
+            // En CBC con relleno el tamaño de salida es exacto al cifrar
+            encrypted = new byte[sobre.longitud() + cifrado.getOutputSize(textoBytes.length)];
+            int inicio = sobre.escribir(encrypted, 0);
+            cifrado.doFinal(textoBytes, 0, textoBytes.length, encrypted, inicio);
+        } finally {
+            ProveedorCifrados.devolver(cifrado);
+        }
         return Base64.getEncoder().encodeToString(encrypted);
     }
 
     /**
      * Descifra un texto cifrado codificado en Base64 usando AES CBC con PKCS5Padding.
-     * Devuelve el texto original o un mensaje de error detallado.
+     * Devuelve el texto original o un mensaje de error detallado. Acepta también el Base64 de un flujo
+     * cifrado con compresión (como los textos grandes de la ventana).
      *
      * @param textoCifrado Texto cifrado en Base64
      * @param clave Clave secreta para descifrar (debe coincidir con la usada para cifrar)
@@ -59,17 +104,262 @@ public class CifradoAES {
      * @author Telmo
      */
     public static String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
-        IvParameterSpec ivSpec = new IvParameterSpec(IV.getBytes(StandardCharsets.UTF_8));
-        SecretKeySpec keySpec = new SecretKeySpec(normalizarClave(clave), "AES");
-
-        Cipher cipher = Cipher.getInstance(ALGORITMO);
-        cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
-
         byte[] decodedBytes = Base64.getDecoder().decode(textoCifrado);
-        byte[] decrypted = cipher.doFinal(decodedBytes);
+        SobreCifrado sobre = SobreCifrado.leer(decodedBytes, 0, decodedBytes.length);
+        Cipher cipher = ProveedorCifrados.obtener(ALGORITMO);
+        byte[] decrypted;
+        try {
+            prepararDescifrado(cipher, clave, sobre);
+            int inicio = sobre == null ? 0 : sobre.longitud();
+            decrypted = cipher.doFinal(decodedBytes, inicio, decodedBytes.length - inicio);
+        } finally {
+            ProveedorCifrados.devolver(cipher);
+        }
+        if (sobre != null && sobre.isComprimido()) {
+            decrypted = Compresion.descomprimir(decrypted, 0, decrypted.length);
+        }
         return new String(decrypted, StandardCharsets.UTF_8);
     }
 
+    /**
+     * Calcula cuántos bytes ocupa el resultado de {@link #cifrar(ByteBuffer, ByteBuffer, String)}.
+     *
+     * @param bytes Longitud del texto plano en bytes
+     * @return Longitud del sobre más la de los datos cifrados con relleno
+     *
+     * @author Telmo
+     */
+    public static int longitudCifrada(int bytes) {
+        return SobreCifrado.LONGITUD + (bytes / BLOQUE + 1) * BLOQUE;
+    }
+
+    /**
+     * Calcula cuántos caracteres ocupa el resultado de {@link #cifrarBase64(ByteBuffer, ByteBuffer, String)}.
+     *
+     * @param bytes Longitud del texto plano en bytes
+     * @return Longitud en Base64 del sobre y los datos cifrados
+     *
+     * @author Telmo
+     */
+    public static int longitudBase64(int bytes) {
+        return CodificacionBase64.longitudCodificada(longitudCifrada(bytes));
+    }
+
+    /**
+     * Cifra los bytes restantes del origen y escribe el sobre y los datos cifrados directamente en el destino,
+     * a partir de su posición. El origen queda consumido y la posición del destino avanza lo escrito.
+     * Los buffers pueden ser directos.
+     *
+     * @param textoPlano Bytes a cifrar
+     * @param destino Buffer con al menos {@link #longitudCifrada(int)} bytes libres
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static int cifrar(ByteBuffer textoPlano, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        int necesarios = longitudCifrada(textoPlano.remaining());
+        if (destino.remaining() < necesarios) {
+            throw new ShortBufferException("El destino necesita " + necesarios + " bytes libres y tiene " + destino.remaining());
+        }
+        Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+        try {
+            int sobre = prepararCifrado(cifrado, clave).escribir(destino);
+            return sobre + cifrado.doFinal(textoPlano, destino);
+        } finally {
+            ProveedorCifrados.devolver(cifrado);
+        }
+    }
+
+    /**
+     * Descifra los bytes restantes del origen (sobre y datos cifrados, o datos del formato antiguo)
+     * y escribe el texto plano directamente en el destino. Si el sobre indica que los datos se
+     * comprimieron, se descomprimen antes de escribirlos. El origen queda consumido y la posición
+     * del destino avanza lo escrito.
+     *
+     * @param datos Datos cifrados
+     * @param destino Buffer con al menos {@code datos.remaining()} bytes libres (si están comprimidos,
+     *                tantos como ocupen descomprimidos)
+     * @param clave Clave secreta para descifrar
+     * @return Número de bytes escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el descifrado
+     *
+     * @author Telmo
+     */
+    public static int descifrar(ByteBuffer datos, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        int inicio = datos.position();
+        SobreCifrado sobre = SobreCifrado.leer(datos);
+        if (sobre != null && sobre.isComprimido()) {
+            return descifrarComprimido(datos, destino, clave, sobre, inicio);
+        }
+        Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+        try {
+            prepararDescifrado(cifrado, clave, sobre);
+            return cifrado.doFinal(datos, destino);
+        } catch (ShortBufferException e) {
+            datos.position(inicio);
+            throw e;
+        } finally {
+            ProveedorCifrados.devolver(cifrado);
+        }
+    }
+
+    /**
+     * Descifra los datos de un sobre comprimido en un array, los descomprime y los copia al destino
+     * solo si caben enteros.
+     *
+     * @param datos Datos cifrados, a partir del primer byte después del sobre
+     * @param destino Buffer en el que se escribe el texto plano
+     * @param clave Clave secreta para descifrar
+     * @param sobre Sobre ya leído de los datos
+     * @param inicio Posición del sobre en el origen, a la que se vuelve si el destino no tiene sitio
+     * @return Número de bytes escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error al descifrar o los datos comprimidos no son válidos
+     *
+     * @author Telmo
+     */
+    private static int descifrarComprimido(ByteBuffer datos, ByteBuffer destino, String clave, SobreCifrado sobre,
+                                           int inicio) throws GeneralSecurityException {
+        byte[] cifrados = new byte[datos.remaining()];
+        datos.get(cifrados);
+        byte[] descifrados;
+        Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+        try {
+            prepararDescifrado(cifrado, clave, sobre);
+            descifrados = cifrado.doFinal(cifrados);
+        } finally {
+            ProveedorCifrados.devolver(cifrado);
+        }
+        byte[] descomprimidos = Compresion.descomprimir(descifrados, 0, descifrados.length);
+        if (destino.remaining() < descomprimidos.length) {
+            datos.position(inicio);
+            throw new ShortBufferException("El destino necesita " + descomprimidos.length + " bytes libres y tiene " + destino.remaining());
+        }
+        destino.put(descomprimidos);
+        return descomprimidos.length;
+    }
+
+    /**
+     * Cifra los bytes restantes del origen y escribe el sobre y los datos cifrados en Base64 (ASCII)
+     * directamente en el destino. Los datos cifrados pasan por un buffer del hilo que se reutiliza
+     * entre llamadas, así que no se crea ningún array ni String por mensaje.
+     *
+     * @param textoPlano Bytes a cifrar
+     * @param destino Buffer con al menos {@link #longitudBase64(int)} bytes libres
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes (caracteres) escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static int cifrarBase64(ByteBuffer textoPlano, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        int necesarios = longitudBase64(textoPlano.remaining());
+        if (destino.remaining() < necesarios) {
+            throw new ShortBufferException("El destino necesita " + necesarios + " bytes libres y tiene " + destino.remaining());
+        }
+        ByteBuffer cifrados = intermedio(longitudCifrada(textoPlano.remaining()));
+        cifrar(textoPlano, cifrados, clave);
+        cifrados.flip();
+        return CodificacionBase64.codificar(cifrados, destino);
+    }
+
+    /**
+     * Descifra un texto en Base64 (ASCII, con relleno) y escribe el texto plano directamente en el destino.
+     * Los datos decodificados pasan por un buffer del hilo que se reutiliza entre llamadas.
+     *
+     * @param base64 Texto cifrado en Base64, como lo devuelven {@link #cifrarTexto} o {@link #cifrarBase64}
+     * @param destino Buffer con al menos tantos bytes libres como caracteres tiene el origen (si los datos
+     *                están comprimidos, tantos como ocupen descomprimidos)
+     * @param clave Clave secreta para descifrar
+     * @return Número de bytes escritos
+     * @throws IllegalArgumentException Sí el origen no es Base64 válido (igual que {@link Base64.Decoder})
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el descifrado
+     *
+     * @author Telmo
+     */
+    public static int descifrarBase64(ByteBuffer base64, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        int inicio = base64.position();
+        ByteBuffer datos = intermedio(CodificacionBase64.longitudDecodificada(base64.remaining()));
+        CodificacionBase64.decodificar(base64, datos);
+        datos.flip();
+        try {
+            return descifrar(datos, destino, clave);
+        } catch (ShortBufferException e) {
+            base64.position(inicio);
+            throw e;
+        }
+    }
+
+    /**
+     * Cifra un lote de textos con la misma clave. La clave derivada se obtiene una sola vez por lote,
+     * cada texto lleva su propio IV aleatorio y los buffers intermedios se reutilizan entre textos.
+     * El formato de cada texto es el mismo que el de {@link #cifrarTexto(String, String)}.
+     *
+     * @param textosPlanos Textos originales sin cifrar
+     * @param clave Clave secreta para cifrar (se deriva con PBKDF2)
+     * @return Lista con los textos cifrados en Base64, en el mismo orden
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static List<String> cifrarTextos(List<String> textosPlanos, String clave) throws GeneralSecurityException {
+        return cifrarTextos(textosPlanos, clave, false);
+    }
+
+    /**
+     * Cifra un lote de textos con la misma clave, repartiéndolo entre los núcleos disponibles
+     * si se indica y el lote es suficientemente grande.
+     *
+     * @param textosPlanos Textos originales sin cifrar
+     * @param clave Clave secreta para cifrar (se deriva con PBKDF2)
+     * @param paralelo Si es {@code true}, los lotes grandes se procesan en paralelo
+     * @return Lista con los textos cifrados en Base64, en el mismo orden
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static List<String> cifrarTextos(List<String> textosPlanos, String clave, boolean paralelo) throws GeneralSecurityException {
+        return Lotes.procesar(textosPlanos, paralelo, () -> new LoteTextos(clave, true));
+    }
+
+    /**
+     * Descifra un lote de textos en Base64 con la misma clave. La clave derivada solo se vuelve a pedir
+     * a la caché cuando un texto trae una sal distinta y los buffers intermedios se reutilizan entre textos.
+     * El resultado de cada texto es idéntico al de {@link #descifrarTexto(String, String)}.
+     *
+     * @param textosCifrados Textos cifrados en Base64
+     * @param clave Clave secreta para descifrar
+     * @return Lista con los textos descifrados, en el mismo orden
+     * @throws GeneralSecurityException Sí algún texto no se puede descifrar
+     *
+     * @author Telmo
+     */
+    public static List<String> descifrarTextos(List<String> textosCifrados, String clave) throws GeneralSecurityException {
+        return descifrarTextos(textosCifrados, clave, false);
+    }
+
+    /**
+     * Descifra un lote de textos en Base64 con la misma clave, repartiéndolo entre los núcleos
+     * disponibles si se indica y el lote es suficientemente grande.
+     *
+     * @param textosCifrados Textos cifrados en Base64
+     * @param clave Clave secreta para descifrar
+     * @param paralelo Si es {@code true}, los lotes grandes se procesan en paralelo
+     * @return Lista con los textos descifrados, en el mismo orden
+     * @throws GeneralSecurityException Sí algún texto no se puede descifrar
+     *
+     * @author Telmo
+     */
+    public static List<String> descifrarTextos(List<String> textosCifrados, String clave, boolean paralelo) throws GeneralSecurityException {
+        return Lotes.procesar(textosCifrados, paralelo, () -> new LoteTextos(clave, false));
+    }
+
     /**
      * Cifra un archivo completo y guarda el archivo cifrado con sufijo "_cifrado" en el mismo directorio.
      * Devuelve la ruta del archivo cifrado o un mensaje de error.
@@ -83,23 +373,175 @@ public class CifradoAES {
      * @author Telmo
      */
     public static String cifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
-        File archivo = new File(rutaArchivo);
-        byte[] datosArchivo = Files.readAllBytes(archivo.toPath());
+        return cifrarArchivo(rutaArchivo, clave, ModoES.predeterminado());
+    }
 
-        IvParameterSpec ivSpec = new IvParameterSpec(IV.getBytes(StandardCharsets.UTF_8));
-        SecretKeySpec keySpec = new SecretKeySpec(normalizarClave(clave), "AES");
+    /**
+     * Cifra un archivo completo con la estrategia de entrada/salida indicada y guarda el archivo
+     * cifrado con sufijo "_cifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta de cifrado
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, ModoES modo) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(rutaArchivo, clave, modo, Progreso.NINGUNO);
+    }
 
-        Cipher cifrado = Cipher.getInstance(ALGORITMO);
-        cifrado.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
-        byte[] encryptedBytes = cifrado.doFinal(datosArchivo);
+    /**
+     * Cifra un archivo completo con la estrategia de entrada/salida indicada, informando del avance,
+     * y guarda el resultado con sufijo "_cifrado" en el mismo directorio. Si el hilo se interrumpe,
+     * la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo a procesar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo resultante
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, ModoES modo, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
 
         String nuevoNombre = crearNombreArchivo(archivo.getName(), "cifrado");
         File nuevoArchivo = new File(archivo.getParent(), nuevoNombre);
-        Files.write(nuevoArchivo.toPath(), encryptedBytes);
+        cifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, modo, progreso);
 
         return nuevoArchivo.getAbsolutePath();
     }
 
+    /**
+     * Cifra un archivo completo con la estrategia de entrada/salida indicada y guarda el resultado
+     * en la ruta de destino. Si la operación falla no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, ModoES modo) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(origen, destino, clave, modo, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #cifrarArchivo(Path, Path, String, ModoES)} pero informando del avance después de
+     * cada bloque. Si el hilo se interrumpe, la operación se cancela y el destino parcial se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, ModoES modo, Progreso progreso) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(origen, destino, clave, modo, Compresion.predeterminada(), progreso);
+    }
+
+    /**
+     * Igual que {@link #cifrarArchivo(Path, Path, String, ModoES, Progreso)} pero indicando la compresión.
+     * Los datos comprimidos se generan según se cifran, así que con compresión el origen se lee siempre
+     * por bloques aunque el modo sea {@link ModoES#MAPEADO}.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @param compresion Compresión de los datos antes de cifrarlos
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, ModoES modo, Compresion compresion, Progreso progreso) throws IOException, GeneralSecurityException {
+        if (!compresion.isActiva()) {
+            return ProcesadorFlujo.procesar((entrada, salida) -> {
+                Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+                try {
+                    prepararCifrado(cifrado, clave).escribir(salida);
+                    return cifrado;
+                } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                    // procesar solo lo devuelve si la preparación termina
+                    ProveedorCifrados.devolver(cifrado);
+                    throw e;
+                }
+            }, origen, destino, modo, progreso);
+        }
+        return ProcesadorFlujo.conArchivos(origen, destino, compresion.toString(), (entrada, salida) -> {
+            Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+            try {
+                long cabecera = prepararCifrado(cifrado, clave, true).escribir(salida);
+                return cabecera + compresion.comprimir(entrada, progreso, entrada.size(),
+                        comprimidos -> ProcesadorFlujo.procesar(cifrado, comprimidos, salida));
+            } finally {
+                ProveedorCifrados.devolver(cifrado);
+            }
+        });
+    }
+
+    /**
+     * Cifra un flujo de bytes por bloques, por ejemplo la entrada y la salida estándar.
+     * El formato es el mismo que el de los archivos. Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return cifrar(origen, destino, clave, Compresion.predeterminada());
+    }
+
+    /**
+     * Igual que {@link #cifrar(ReadableByteChannel, WritableByteChannel, String)} pero indicando la compresión.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param compresion Compresión de los datos antes de cifrarlos
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave, Compresion compresion) throws IOException, GeneralSecurityException {
+        Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+        try {
+            long cabecera = prepararCifrado(cifrado, clave, compresion.isActiva()).escribir(destino);
+            if (!compresion.isActiva()) {
+                return cabecera + ProcesadorFlujo.procesar(cifrado, origen, destino);
+            }
+            return cabecera + compresion.comprimir(origen, Progreso.NINGUNO, -1,
+                    comprimidos -> ProcesadorFlujo.procesar(cifrado, comprimidos, destino));
+        } finally {
+            ProveedorCifrados.devolver(cifrado);
+        }
+    }
+
     /**
      * Descifra un archivo completo y guarda el archivo con sufijo "_descifrado" en el mismo directorio.
      * Devuelve la ruta del archivo descifrado o mensaje de error.
@@ -113,33 +555,273 @@ public class CifradoAES {
      * @author Telmo
      */
     public static String descifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
-        File archivo = new File(rutaArchivo);
-        byte[] datosArchivo = Files.readAllBytes(archivo.toPath());
+        return descifrarArchivo(rutaArchivo, clave, ModoES.predeterminado());
+    }
 
-        IvParameterSpec ivSpec = new IvParameterSpec(IV.getBytes(StandardCharsets.UTF_8));
-        SecretKeySpec keySpec = new SecretKeySpec(normalizarClave(clave), "AES");
+    /**
+     * Descifra un archivo completo con la estrategia de entrada/salida indicada y guarda el archivo
+     * con sufijo "_descifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave, ModoES modo) throws IOException, GeneralSecurityException {
+        return descifrarArchivo(rutaArchivo, clave, modo, Progreso.NINGUNO);
+    }
 
-        Cipher cifrado = Cipher.getInstance(ALGORITMO);
-        cifrado.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
-        byte[] decryptedBytes = cifrado.doFinal(datosArchivo);
+    /**
+     * Descifra un archivo completo con la estrategia de entrada/salida indicada, informando del avance,
+     * y guarda el resultado con sufijo "_descifrado" en el mismo directorio. Si el hilo se interrumpe,
+     * la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo a procesar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo resultante
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave, ModoES modo, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
 
         String nuevoNombre = crearNombreArchivo(archivo.getName(), "descifrado");
         File nuevoArchivo = new File(archivo.getParent(), nuevoNombre);
-        Files.write(nuevoArchivo.toPath(), decryptedBytes);
+        descifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, modo, progreso);
 
         return nuevoArchivo.getAbsolutePath();
     }
 
+    /**
+     * Descifra un archivo completo con la estrategia de entrada/salida indicada y guarda el resultado
+     * en la ruta de destino. Si la operación falla no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave, ModoES modo) throws IOException, GeneralSecurityException {
+        return descifrarArchivo(origen, destino, clave, modo, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #descifrarArchivo(Path, Path, String, ModoES)} pero informando del avance después de
+     * cada bloque. Si el hilo se interrumpe, la operación se cancela y el destino parcial se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param modo Estrategia de entrada/salida ({@link ModoES#FLUJO} o {@link ModoES#MAPEADO})
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave, ModoES modo, Progreso progreso) throws IOException, GeneralSecurityException {
+        return ProcesadorFlujo.conArchivos(origen, destino, modo.name(), (entrada, salida) -> {
+            SobreCifrado sobre = SobreCifrado.leer(entrada, ByteBuffer.allocate(SobreCifrado.LONGITUD));
+            if (sobre == null) {
+                entrada.position(0);
+            }
+            Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+            try {
+                prepararDescifrado(cifrado, clave, sobre);
+                if (sobre == null || !sobre.isComprimido()) {
+                    return ProcesadorFlujo.procesar(cifrado, entrada, salida, modo, progreso);
+                }
+                return Compresion.descomprimir(salida, descomprimidos -> ProcesadorFlujo.procesar(cifrado, entrada, descomprimidos, modo, progreso));
+            } finally {
+                ProveedorCifrados.devolver(cifrado);
+            }
+        });
+    }
+
+    /**
+     * Descifra un flujo de bytes por bloques, por ejemplo la entrada y la salida estándar.
+     * El formato es el mismo que el de los archivos. Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    public static long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        ByteBuffer leidos = ByteBuffer.allocate(SobreCifrado.LONGITUD);
+        SobreCifrado sobre = SobreCifrado.leer(origen, leidos);
+        Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+        try {
+            prepararDescifrado(cifrado, clave, sobre);
+            if (sobre != null && sobre.isComprimido()) {
+                return Compresion.descomprimir(destino, descomprimidos -> ProcesadorFlujo.procesar(cifrado, origen, descomprimidos));
+            }
+            return ProcesadorFlujo.procesar(cifrado, sobre == null ? ProcesadorFlujo.conPrefijo(leidos, origen) : origen, destino);
+        } finally {
+            ProveedorCifrados.devolver(cifrado);
+        }
+    }
+
+    /**
+     * Devuelve la caché de claves usada por esta clase, para consultar sus métricas.
+     *
+     * @return Caché de claves AES
+     *
+     * @author Telmo
+     */
+    public static CacheClaves cacheClaves() {
+        return CLAVES;
+    }
+
+    /**
+     * Inicializa el Cipher para cifrar un mensaje nuevo con la clave derivada vigente de la clave del usuario
+     * y un IV aleatorio.
+     *
+     * @param cifrado Cipher AES CBC obtenido de {@link ProveedorCifrados}
+     * @param clave Clave secreta del usuario
+     * @return Sobre que hay que escribir delante de los datos cifrados
+     * @throws GeneralSecurityException Sí ocurre un error al derivar la clave o al inicializar el cifrado
+     *
+     * @author Telmo
+     */
+    private static SobreCifrado prepararCifrado(Cipher cifrado, String clave) throws GeneralSecurityException {
+        return prepararCifrado(cifrado, clave, false);
+    }
+
+    /**
+     * Igual que {@link #prepararCifrado(Cipher, String)} pero indicando en el sobre si los datos se comprimen.
+     *
+     * @param cifrado Cipher AES CBC obtenido de {@link ProveedorCifrados}
+     * @param clave Clave secreta del usuario
+     * @param comprimido Si los datos se comprimen antes de cifrarlos
+     * @return Sobre que hay que escribir delante de los datos cifrados
+     * @throws GeneralSecurityException Sí ocurre un error al derivar la clave o al inicializar el cifrado
+     *
+     * @author Telmo
+     */
+    private static SobreCifrado prepararCifrado(Cipher cifrado, String clave, boolean comprimido) throws GeneralSecurityException {
+        return prepararCifrado(cifrado, clave, CLAVES.paraCifrar(clave, DerivacionClaves.iteraciones()), comprimido);
+    }
+
+    /**
+     * Inicializa el Cipher para cifrar un mensaje nuevo con una clave derivada ya obtenida y un IV aleatorio.
+     *
+     * @param cifrado Cipher AES CBC obtenido de {@link ProveedorCifrados}
+     * @param clave Clave secreta del usuario
+     * @param derivada Clave derivada obtenida de la caché
+     * @param comprimido Si los datos se comprimen antes de cifrarlos
+     * @return Sobre que hay que escribir delante de los datos cifrados
+     * @throws GeneralSecurityException Sí ocurre un error al inicializar el cifrado
+     *
+     * @author Telmo
+     */
+    private static SobreCifrado prepararCifrado(Cipher cifrado, String clave, CacheClaves.ClaveDestruible derivada, boolean comprimido) throws GeneralSecurityException {
+        SobreCifrado sobre = SobreCifrado.nuevo(SobreCifrado.AES_CBC, derivada.getSal(), derivada.getIteraciones(), comprimido);
+        iniciar(cifrado, Cipher.ENCRYPT_MODE, derivada, clave, sobre);
+        return sobre;
+    }
+
+    /**
+     * Inicializa el Cipher para descifrar datos con el sobre indicado, o del formato antiguo si no tienen sobre.
+     *
+     * @param cifrado Cipher AES CBC obtenido de {@link ProveedorCifrados}
+     * @param clave Clave secreta del usuario
+     * @param sobre Sobre de los datos, o {@code null} para el formato antiguo
+     * @throws GeneralSecurityException Sí ocurre un error al derivar la clave o al inicializar el cifrado
+     *
+     * @author Telmo
+     */
+    private static void prepararDescifrado(Cipher cifrado, String clave, SobreCifrado sobre) throws GeneralSecurityException {
+        if (sobre == null) {
+            cifrado.init(Cipher.DECRYPT_MODE, claveSinSobre(clave), SobreCifrado.parametrosSinSobre());
+            return;
+        }
+        iniciar(cifrado, Cipher.DECRYPT_MODE, CLAVES.obtener(clave, sobre.getSal(), sobre.getIteraciones()), clave, sobre);
+    }
+
+    /**
+     * Inicializa el Cipher con una clave de la caché y el IV del sobre. Si otro hilo expulsa (y borra)
+     * la clave justo después de obtenerla, se vuelve a pedir a la caché con la misma sal.
+     *
+     * @param cifrado Cipher a inicializar
+     * @param modo {@link Cipher#ENCRYPT_MODE} o {@link Cipher#DECRYPT_MODE}
+     * @param derivada Clave obtenida de la caché
+     * @param clave Clave secreta del usuario
+     * @param sobre Sal, iteraciones e IV de los datos
+     * @throws GeneralSecurityException Sí los datos no son de AES-CBC u ocurre un error al inicializar el cifrado
+     *
+     * @author Telmo
+     */
+    private static void iniciar(Cipher cifrado, int modo, SecretKey derivada, String clave, SobreCifrado sobre) throws GeneralSecurityException {
+        sobre.exigirAlgoritmo(SobreCifrado.AES_CBC);
+        try {
+            cifrado.init(modo, derivada, sobre.getParametros());
+        } catch (IllegalStateException | InvalidKeyException e) {
+            if (!derivada.isDestroyed()) {
+                throw e;
+            }
+            cifrado.init(modo, CLAVES.obtener(clave, sobre.getSal(), sobre.getIteraciones()), sobre.getParametros());
+        }
+    }
+
+    /**
+     * Devuelve la clave AES de los datos del formato antiguo, sin sobre.
+     *
+     * @param clave Clave secreta del usuario
+     * @return Clave normalizada a 16 bytes
+     *
+     * @author Telmo
+     */
+    private static SecretKey claveSinSobre(String clave) {
+        return new SecretKeySpec(normalizarClave(clave), "AES");
+    }
+
+    /**
+     * Devuelve el buffer intermedio del hilo actual vacío y con al menos la capacidad indicada.
+     *
+     * @param capacidad Bytes que se van a escribir
+     * @return Buffer del hilo, preparado para escribir
+     *
+     * @author Telmo
+     */
+    private static ByteBuffer intermedio(int capacidad) {
+        ByteBuffer buffer = INTERMEDIO.get();
+        if (buffer.capacity() < capacidad) {
+            buffer = ByteBuffer.allocate(Math.max(capacidad, 2 * buffer.capacity()));
+            INTERMEDIO.set(buffer);
+        }
+        return buffer.clear();
+    }
+
     /**
      * Normaliza la clave para que tenga exactamente 16 bytes (128 bits) para AES.
      * Si es más corta, se rellena con ceros; si es más larga, se trunca.
+     * Solo se usa para descifrar datos del formato antiguo, sin {@link SobreCifrado}.
      *
      * @param clave Clave original en forma de String
      * @return Array de bytes con la clave normalizada a 16 bytes
      *
      * @author Telmo
      */
-    private static byte[] normalizarClave(String clave)  {
+    static byte[] normalizarClave(String clave)  {
         byte[] keyBytes = clave.getBytes(StandardCharsets.UTF_8);
         byte[] keyBytes16 = new byte[16];
         System.arraycopy(keyBytes, 0, keyBytes16, 0, Math.min(keyBytes.length, 16));
@@ -155,8 +837,9 @@ public class CifradoAES {
      *
      * @author Telmo
      */
-    private static String crearNombreArchivo(String nombreOriginal, String operacion) {
+    static String crearNombreArchivo(String nombreOriginal, String operacion) {
         int indicePunto = nombreOriginal.lastIndexOf('.');
+        if (indicePunto == -1) return nombreOriginal + "_" + operacion;
         String nombreBase;
         String extension;
 
@@ -165,4 +848,138 @@ public class CifradoAES {
 
         return nombreBase + "_" + operacion + extension;
     }
-}
\ No newline at end of file
+
+    /**
+     * Procesador de un tramo de textos: usa un único Cipher, lo reinicializa con el IV de cada texto
+     * y reutiliza sus buffers entre textos. La clave derivada se obtiene de la caché una sola vez al cifrar
+     * y al descifrar solo cuando un texto trae una sal distinta de la del anterior.
+     */
+    private static final class LoteTextos implements Lotes.Procesador {
+
+        /** Cipher del tramo, obtenido de {@link ProveedorCifrados} y devuelto al terminar el tramo. */
+        private final Cipher cifrado;
+
+        /** Clave secreta del usuario. */
+        private final String clave;
+
+        /** Indica si se cifra ({@code true}) o se descifra ({@code false}). */
+        private final boolean cifrar;
+
+        /** Clave derivada con la que se cifran los textos del tramo. */
+        private CacheClaves.ClaveDestruible paraCifrar;
+
+        /** Sobre del último texto descifrado ({@code null} para el formato antiguo o si aún no hay ninguno). */
+        private SobreCifrado sobre;
+
+        /** Clave con la que se descifró el último texto ({@code null} si aún no hay ninguno). */
+        private SecretKey derivada;
+
+        /** Codificador UTF-8 con el mismo reemplazo de caracteres inválidos que {@link String#getBytes}. */
+        private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        /** Buffer reutilizado para los bytes de entrada. */
+        private ByteBuffer entrada = ByteBuffer.allocate(256);
+
+        /** Buffer reutilizado para la salida del Cipher. */
+        private byte[] salida = new byte[256];
+
+        /** Buffer reutilizado para la conversión Base64. */
+        private byte[] base64 = new byte[512];
+
+        /**
+         * Crea el procesador del tramo. Para cifrar, la clave derivada se obtiene aquí una sola vez.
+         *
+         * @param clave Clave secreta del usuario
+         * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+         * @throws GeneralSecurityException Sí ocurre un error al derivar la clave
+         */
+        LoteTextos(String clave, boolean cifrar) throws GeneralSecurityException {
+            this.cifrado = ProveedorCifrados.obtener(ALGORITMO);
+            this.clave = clave;
+            this.cifrar = cifrar;
+            if (cifrar) {
+                paraCifrar = CLAVES.paraCifrar(clave, DerivacionClaves.iteraciones());
+            }
+        }
+
+        @Override
+        public String procesar(String texto) throws GeneralSecurityException {
+            return cifrar ? cifrar(texto) : descifrar(texto);
+        }
+
+        @Override
+        public void liberar() {
+            ProveedorCifrados.devolver(cifrado);
+        }
+
+        /**
+         * Cifra un texto con un IV nuevo y lo devuelve en Base64.
+         *
+         * @param texto Texto plano
+         * @return Texto cifrado en Base64
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        private String cifrar(String texto) throws GeneralSecurityException {
+            int maximo = (int) Math.ceil(texto.length() * (double) codificador.maxBytesPerChar());
+            if (entrada.capacity() < maximo) {
+                entrada = ByteBuffer.allocate(maximo);
+            }
+            entrada.clear();
+            codificador.reset();
+            codificador.encode(CharBuffer.wrap(texto), entrada, true);
+            codificador.flush(entrada);
+
+            SobreCifrado nuevo = prepararCifrado(cifrado, clave, paraCifrar, false);
+            // En CBC con relleno el tamaño de salida es exacto al cifrar
+            byte[] cifrados = new byte[nuevo.longitud() + cifrado.getOutputSize(entrada.position())];
+            int desplazamiento = nuevo.escribir(cifrados, 0);
+            cifrado.doFinal(entrada.array(), 0, entrada.position(), cifrados, desplazamiento);
+            int longitud = CodificacionBase64.longitudCodificada(cifrados.length);
+            if (base64.length < longitud) {
+                base64 = new byte[longitud];
+            }
+            int escritos = Base64.getEncoder().encode(cifrados, base64);
+            return new String(base64, 0, escritos, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Descifra un texto en Base64, descomprimiéndolo si el sobre lo indica.
+         *
+         * @param texto Texto cifrado en Base64
+         * @return Texto original
+         * @throws GeneralSecurityException Sí ocurre un error de descifrado
+         */
+        private String descifrar(String texto) throws GeneralSecurityException {
+            byte[] codificados = texto.getBytes(StandardCharsets.ISO_8859_1);
+            if (base64.length < codificados.length) {
+                base64 = new byte[codificados.length];
+            }
+            int decodificados = Base64.getDecoder().decode(codificados, base64);
+
+            SobreCifrado leido = SobreCifrado.leer(base64, 0, decodificados);
+            if (derivada == null || (leido == null ? sobre != null : !leido.mismaClave(sobre))) {
+                derivada = leido == null ? claveSinSobre(clave) : CLAVES.obtener(clave, leido.getSal(), leido.getIteraciones());
+            }
+            sobre = leido;
+            if (leido == null) {
+                cifrado.init(Cipher.DECRYPT_MODE, derivada, SobreCifrado.parametrosSinSobre());
+            } else {
+                iniciar(cifrado, Cipher.DECRYPT_MODE, derivada, clave, leido);
+            }
+            int inicio = leido == null ? 0 : leido.longitud();
+
+            int maximo = cifrado.getOutputSize(decodificados - inicio);
+            if (salida.length < maximo) {
+                salida = new byte[maximo];
+            }
+            int longitud = cifrado.doFinal(base64, inicio, decodificados - inicio, salida, 0);
+            if (leido != null && leido.isComprimido()) {
+                // Igual que descifrarTexto: los textos de un flujo comprimido se descomprimen
+                return new String(Compresion.descomprimir(salida, 0, longitud), StandardCharsets.UTF_8);
+            }
+            return new String(salida, 0, longitud, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package es.cryptowarts.cifrado;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * Cifrado autenticado de textos y archivos con AES en modo GCM. A diferencia de {@link CifradoAES} (CBC),
+ * cualquier modificación de los datos cifrados se detecta al descifrar, no solo las que estropean el relleno.
+ *
+ * <p>Los datos se cifran por bloques de {@link #TAMANO_BLOQUE} bytes, cada uno con su propia etiqueta,
+ * de modo que al descifrar cada bloque se verifica y se escribe en cuanto se lee, sin guardar en memoria
+ * todo el archivo hasta comprobar una única etiqueta final. El formato es el de {@link BloquesAutenticados},
+ * compartido con {@link CifradoChaCha20Poly1305}; la clave es la de 128 bits de {@link CifradoAES}.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public class CifradoAESGCM {
+
+    /** Tamaño de los bloques de texto plano (64 KiB). */
+    public static final int TAMANO_BLOQUE = BloquesAutenticados.TAMANO_BLOQUE;
+
+    /** Clase de utilidades, no se instancia. */
+    private CifradoAESGCM() {
+    }
+
+    /**
+     * Cifra un texto plano con AES-GCM y lo devuelve codificado en Base64.
+     *
+     * @param textoPlano Texto original sin cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Texto cifrado y autenticado en Base64
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return BloquesAutenticados.cifrarTexto(AlgoritmoAEAD.AES_GCM, textoPlano, clave);
+    }
+
+    /**
+     * Descifra un texto cifrado con {@link #cifrarTexto(String, String)}, verificando que no ha sido modificado.
+     *
+     * @param textoCifrado Texto cifrado en Base64
+     * @param clave Clave secreta para descifrar
+     * @return Texto original descifrado
+     * @throws GeneralSecurityException Sí el texto no es de AES-GCM, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return BloquesAutenticados.descifrarTexto(AlgoritmoAEAD.AES_GCM, textoCifrado, clave);
+    }
+
+    /**
+     * Cifra un archivo y guarda el resultado con sufijo "_cifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(rutaArchivo, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Cifra un archivo informando del avance y guarda el resultado con sufijo "_cifrado" en el mismo
+     * directorio. Si el hilo se interrumpe, la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "cifrado"));
+        cifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Cifra un archivo por bloques autenticados y guarda el resultado en la ruta de destino, informando
+     * del avance. Si la operación falla o se cancela no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(origen, destino, clave, Compresion.predeterminada(), progreso);
+    }
+
+    /**
+     * Igual que {@link #cifrarArchivo(Path, Path, String, Progreso)} pero indicando la compresión.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param compresion Compresión de los datos antes de cifrarlos
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, Compresion compresion, Progreso progreso) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.cifrarArchivo(AlgoritmoAEAD.AES_GCM, origen, destino, clave, compresion, progreso);
+    }
+
+    /**
+     * Cifra un flujo de bytes por bloques autenticados, por ejemplo la entrada y la salida estándar.
+     * El formato es el mismo que el de los archivos. Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.cifrar(AlgoritmoAEAD.AES_GCM, origen, destino, clave, Compresion.predeterminada(), Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Descifra un archivo y guarda el resultado con sufijo "_descifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí el archivo no es de AES-GCM, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
+        return descifrarArchivo(rutaArchivo, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Descifra un archivo informando del avance y guarda el resultado con sufijo "_descifrado" en el mismo
+     * directorio. Si algún bloque no se verifica o la operación se cancela no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo no es de AES-GCM, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "descifrado"));
+        descifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Descifra un archivo verificando cada bloque antes de escribirlo y guarda el resultado en la ruta
+     * de destino, informando del avance. Si algún bloque no se verifica o la operación se cancela,
+     * el destino parcial se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo no es de AES-GCM, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.descifrarArchivo(AlgoritmoAEAD.AES_GCM, origen, destino, clave, progreso);
+    }
+
+    /**
+     * Descifra un flujo de bytes por bloques autenticados, por ejemplo la entrada y la salida estándar.
+     * Cada bloque se escribe en cuanto se verifica; si uno falla, lo escrito hasta entonces es auténtico
+     * pero está incompleto. Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta usada para descifrar
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí los datos no son de AES-GCM, han sido manipulados o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.descifrar(AlgoritmoAEAD.AES_GCM, origen, destino, clave, Progreso.NINGUNO, -1);
+    }
+}
@@ -0,0 +1,562 @@
+package es.cryptowarts.cifrado;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Cifrado de archivos en formato segmentado con AES-GCM, pensado para aprovechar todos los núcleos.
+ * El archivo se divide en segmentos de tamaño fijo que se cifran y descifran de forma independiente
+ * y en paralelo sobre un {@link ForkJoinPool}. Cada segmento lleva su propia etiqueta de autenticación.
+ *
+ * <p>Formato del archivo (enteros en big-endian):</p>
+ * <pre>
+ * "CWSG" | versión (1 byte) | iteraciones (int) | sal (16 bytes) | tamaño de segmento (int)
+ *        | número de segmentos (int) | tamaño original (long) | nonce base (8 bytes)
+ * segmento 0: datos cifrados + etiqueta GCM (16 bytes)
+ * ...
+ * segmento n-1 (el último puede ser más corto o estar vacío)
+ * </pre>
+ * El nonce de cada segmento es el nonce base seguido del índice del segmento (4 bytes) y la cabecera
+ * completa se autentica como datos adicionales, de modo que no se pueden reordenar, quitar ni truncar segmentos.
+ * La clave se deriva con PBKDF2 ({@link DerivacionClaves}) con la sal y las iteraciones de la cabecera.
+ * Los archivos de la versión 1, sin iteraciones ni sal y con la clave normalizada a 16 bytes, se siguen
+ * pudiendo descifrar.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public class CifradoAESParalelo {
+
+    /** Algoritmo de cifrado de cada segmento. */
+    private static final String ALGORITMO = "AES/GCM/NoPadding";
+
+    /** Identificador del formato al inicio del archivo. */
+    private static final byte[] FIRMA = {'C', 'W', 'S', 'G'};
+
+    /** Versión actual del formato. */
+    private static final byte VERSION = 2;
+
+    /** Versión antigua del formato, sin derivación de clave. */
+    private static final byte VERSION_SIN_DERIVACION = 1;
+
+    /** Longitud de la cabecera en bytes. */
+    static final int LONGITUD_CABECERA = FIRMA.length + 1 + 4 + DerivacionClaves.LONGITUD_SAL + 4 + 4 + 8 + 8;
+
+    /** Longitud de la cabecera de la versión antigua en bytes. */
+    static final int LONGITUD_CABECERA_SIN_DERIVACION = FIRMA.length + 1 + 4 + 4 + 8 + 8;
+
+    /** Longitud de la etiqueta de autenticación GCM en bytes. */
+    static final int LONGITUD_ETIQUETA = 16;
+
+    /** Longitud del nonce base en bytes (el resto del nonce de 12 bytes es el índice del segmento). */
+    private static final int LONGITUD_NONCE_BASE = 8;
+
+    /** Tamaño de segmento por defecto (4 MiB). */
+    public static final int TAMANO_SEGMENTO = 4 * 1024 * 1024;
+
+    /** Generador de nonces aleatorios. */
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    /**
+     * Hilos de los segmentos. Hacen E/S bloqueante, así que no se usa el ForkJoinPool común: lo dejarían
+     * sin hilos para los streams paralelos (los lotes de {@link CifradoAES}) mientras se lee o escribe
+     * el disco. Sus hilos son demonio y terminan al quedarse sin trabajo.
+     */
+    private static final ForkJoinPool HILOS = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /** Identificador con el que aparecen sus métricas (y la opción de la línea de comandos). */
+    public static final String ID = "aes-paralelo";
+
+    /**
+     * Métricas de los archivos cifrados. Este motor no es un {@link Cifrador} del registro, así que
+     * se mide aquí y no en {@link CifradorMedido}, y también solo con las métricas activas.
+     */
+    private static final MetricasCifrado CIFRADO = new MetricasCifrado(ID, true);
+
+    /** Métricas de los archivos descifrados. */
+    private static final MetricasCifrado DESCIFRADO = new MetricasCifrado(ID, false);
+
+    /** Clase de utilidades, no se instancia. */
+    private CifradoAESParalelo() {
+    }
+
+    /**
+     * Cifra un archivo en formato segmentado y lo guarda con sufijo "_cifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta de cifrado
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(rutaArchivo, clave, TAMANO_SEGMENTO);
+    }
+
+    /**
+     * Cifra un archivo en formato segmentado con el tamaño de segmento indicado
+     * y lo guarda con sufijo "_cifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta de cifrado
+     * @param tamanoSegmento Tamaño en bytes de cada segmento (mayor que 0)
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, int tamanoSegmento) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "cifrado"));
+        cifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, tamanoSegmento);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Cifra un archivo en formato segmentado y guarda el resultado en la ruta de destino indicada.
+     * Si el cifrado falla no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo original a cifrar
+     * @param destino Archivo cifrado (se crea o se sobrescribe)
+     * @param clave Clave secreta de cifrado
+     * @param tamanoSegmento Tamaño en bytes de cada segmento (mayor que 0)
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static void cifrarArchivo(Path origen, Path destino, String clave, int tamanoSegmento) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            cifrar(origen, destino, clave, tamanoSegmento);
+            return;
+        }
+        long inicio = System.nanoTime();
+        try {
+            cifrar(origen, destino, clave, tamanoSegmento);
+            CIFRADO.registrar(inicio, Files.size(origen), Files.size(destino));
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            CIFRADO.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Hace el trabajo de {@link #cifrarArchivo(Path, Path, String, int)}, sin medirlo.
+     *
+     * @param origen Archivo original a cifrar
+     * @param destino Archivo cifrado (se crea o se sobrescribe)
+     * @param clave Clave secreta de cifrado
+     * @param tamanoSegmento Tamaño en bytes de cada segmento (mayor que 0)
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    private static void cifrar(Path origen, Path destino, String clave, int tamanoSegmento) throws IOException, GeneralSecurityException {
+        if (tamanoSegmento <= 0) {
+            throw new IllegalArgumentException("El tamaño de segmento debe ser mayor que 0");
+        }
+        // Copia propia de la clave: los segmentos la usan desde varios hilos aunque la caché la expulse
+        CacheClaves.ClaveDestruible derivada;
+        SecretKeySpec keySpec;
+        do {
+            derivada = CifradoAES.cacheClaves().paraCifrar(clave, DerivacionClaves.iteraciones());
+            keySpec = derivada.copia();
+        } while (keySpec == null);
+
+        boolean completado = false;
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ);
+             FileChannel salida = abrirDestino(destino)) {
+            long tamanoOriginal = entrada.size();
+            long segmentos = Math.max(1, (tamanoOriginal + tamanoSegmento - 1) / tamanoSegmento);
+            if (segmentos > Integer.MAX_VALUE) {
+                throw new IOException("El archivo es demasiado grande para el tamaño de segmento indicado");
+            }
+
+            byte[] nonceBase = new byte[LONGITUD_NONCE_BASE];
+            ALEATORIO.nextBytes(nonceBase);
+            ByteBuffer cabecera = ByteBuffer.allocate(LONGITUD_CABECERA);
+            cabecera.put(FIRMA).put(VERSION).putInt(derivada.getIteraciones()).put(derivada.getSal())
+                    .putInt(tamanoSegmento).putInt((int) segmentos).putLong(tamanoOriginal).put(nonceBase).flip();
+            byte[] aad = cabecera.array();
+            while (cabecera.hasRemaining()) {
+                salida.write(cabecera);
+            }
+
+            Segmentos tarea = new Segmentos(Cipher.ENCRYPT_MODE, keySpec, nonceBase, aad, entrada, salida,
+                    tamanoSegmento, tamanoOriginal, 0, (int) segmentos);
+            ejecutar(tarea);
+            completado = true;
+        } finally {
+            if (!completado) {
+                Files.deleteIfExists(destino);
+            }
+        }
+    }
+
+    /**
+     * Descifra un archivo en formato segmentado y lo guarda con sufijo "_descifrado" en el mismo directorio.
+     * Si algún segmento no supera la verificación de autenticidad no se genera ningún archivo.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí el archivo no tiene el formato esperado, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "descifrado"));
+        descifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Descifra un archivo en formato segmentado y guarda el resultado en la ruta de destino indicada.
+     * Si algún segmento no supera la verificación de autenticidad no queda ningún archivo de destino.
+     *
+     * @param origen Archivo cifrado a descifrar
+     * @param destino Archivo descifrado (se crea o se sobrescribe)
+     * @param clave Clave secreta usada para descifrar
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí el archivo no tiene el formato esperado, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static void descifrarArchivo(Path origen, Path destino, String clave) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            descifrar(origen, destino, clave);
+            return;
+        }
+        long inicio = System.nanoTime();
+        try {
+            descifrar(origen, destino, clave);
+            DESCIFRADO.registrar(inicio, Files.size(origen), Files.size(destino));
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            DESCIFRADO.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Hace el trabajo de {@link #descifrarArchivo(Path, Path, String)}, sin medirlo.
+     *
+     * @param origen Archivo cifrado a descifrar
+     * @param destino Archivo descifrado (se crea o se sobrescribe)
+     * @param clave Clave secreta usada para descifrar
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí el archivo no tiene el formato esperado, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    private static void descifrar(Path origen, Path destino, String clave) throws IOException, GeneralSecurityException {
+        boolean completado = false;
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ);
+             FileChannel salida = abrirDestino(destino)) {
+            ByteBuffer inicio = ByteBuffer.allocate(FIRMA.length + 1);
+            leerCompleto(entrada, inicio, 0);
+            byte[] firma = Arrays.copyOf(inicio.array(), FIRMA.length);
+            byte version = inicio.get(FIRMA.length);
+            if (!Arrays.equals(firma, FIRMA) || (version != VERSION && version != VERSION_SIN_DERIVACION)) {
+                throw new GeneralSecurityException("El archivo no tiene el formato segmentado esperado");
+            }
+
+            int longitudCabecera = version == VERSION ? LONGITUD_CABECERA : LONGITUD_CABECERA_SIN_DERIVACION;
+            ByteBuffer cabecera = ByteBuffer.allocate(longitudCabecera);
+            leerCompleto(entrada, cabecera, 0);
+            cabecera.flip().position(inicio.capacity());
+
+            SecretKeySpec keySpec;
+            if (version == VERSION) {
+                int iteraciones = cabecera.getInt();
+                if (!DerivacionClaves.iteracionesCabeceraValidas(iteraciones)) {
+                    throw new GeneralSecurityException("Número de iteraciones no válido en la cabecera: " + iteraciones);
+                }
+                byte[] sal = new byte[DerivacionClaves.LONGITUD_SAL];
+                cabecera.get(sal);
+                do {
+                    keySpec = CifradoAES.cacheClaves().obtener(clave, sal, iteraciones).copia();
+                } while (keySpec == null);
+            } else {
+                keySpec = new SecretKeySpec(CifradoAES.normalizarClave(clave), "AES");
+            }
+            int tamanoSegmento = cabecera.getInt();
+            int segmentos = cabecera.getInt();
+            long tamanoOriginal = cabecera.getLong();
+            byte[] nonceBase = new byte[LONGITUD_NONCE_BASE];
+            cabecera.get(nonceBase);
+
+            if (tamanoSegmento <= 0 || segmentos <= 0
+                    || tamanoOriginal < 0 || segmentos != Math.max(1, (tamanoOriginal + tamanoSegmento - 1) / tamanoSegmento)
+                    || entrada.size() != longitudCabecera + tamanoOriginal + (long) segmentos * LONGITUD_ETIQUETA) {
+                throw new GeneralSecurityException("El archivo no tiene el formato segmentado esperado o está truncado");
+            }
+
+            Segmentos tarea = new Segmentos(Cipher.DECRYPT_MODE, keySpec, nonceBase, cabecera.array(), entrada, salida,
+                    tamanoSegmento, tamanoOriginal, 0, segmentos);
+            ejecutar(tarea);
+            completado = true;
+        } finally {
+            if (!completado) {
+                Files.deleteIfExists(destino);
+            }
+        }
+    }
+
+    /**
+     * Devuelve las métricas de este motor, que {@link Instrumentacion} publica junto a las de los
+     * cifradores del registro.
+     *
+     * @param cifrar {@code true} para las de cifrar, {@code false} para las de descifrar
+     * @return Métricas de la operación
+     *
+     * @author Telmo
+     */
+    static MetricasCifrado metricas(boolean cifrar) {
+        return cifrar ? CIFRADO : DESCIFRADO;
+    }
+
+    /**
+     * Construye el nonce de 12 bytes de un segmento: nonce base seguido del índice en big-endian.
+     *
+     * @param nonceBase Nonce base de 8 bytes
+     * @param indice Índice del segmento
+     * @return Nonce del segmento
+     *
+     * @author Telmo
+     */
+    static byte[] nonceSegmento(byte[] nonceBase, int indice) {
+        return ByteBuffer.allocate(nonceBase.length + 4).put(nonceBase).putInt(indice).array();
+    }
+
+    /**
+     * Lanza la tarea en {@link #HILOS} y traduce los errores de los segmentos a excepciones comprobadas.
+     * No vuelve hasta que han terminado todos los segmentos ya empezados, también si alguno falla: quien
+     * llama cierra los canales y borra el destino en cuanto vuelve.
+     *
+     * @param tarea Tarea raíz con todos los segmentos
+     * @throws IOException Sí algún segmento falla al leer o escribir
+     * @throws GeneralSecurityException Sí algún segmento falla al cifrar o descifrar
+     *
+     * @author Telmo
+     */
+    private static void ejecutar(Segmentos tarea) throws IOException, GeneralSecurityException {
+        try {
+            HILOS.invoke(tarea);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (ErrorSegmento e) {
+            throw e.causa;
+        }
+    }
+
+    /**
+     * Abre (creando o sobrescribiendo) el archivo de destino para escritura.
+     *
+     * @param destino Ruta del archivo de destino
+     * @return Canal abierto para escritura
+     * @throws IOException Sí no se puede abrir el archivo
+     *
+     * @author Telmo
+     */
+    private static FileChannel abrirDestino(Path destino) throws IOException {
+        return FileChannel.open(destino, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Lee del canal a partir de la posición indicada hasta llenar el buffer.
+     *
+     * @param canal Canal de origen
+     * @param buffer Buffer a llenar
+     * @param posicion Posición inicial en el canal
+     * @throws IOException Sí hay un error de lectura o el archivo termina antes de tiempo
+     *
+     * @author Telmo
+     */
+    private static void leerCompleto(FileChannel canal, ByteBuffer buffer, long posicion) throws IOException {
+        while (buffer.hasRemaining()) {
+            int leidos = canal.read(buffer, posicion);
+            if (leidos < 0) {
+                throw new IOException("Fin de archivo inesperado");
+            }
+            posicion += leidos;
+        }
+    }
+
+    /**
+     * Escribe todo el buffer en el canal a partir de la posición indicada.
+     *
+     * @param canal Canal de destino
+     * @param buffer Buffer con los datos a escribir
+     * @param posicion Posición inicial en el canal
+     * @throws IOException Sí hay un error de escritura
+     *
+     * @author Telmo
+     */
+    private static void escribirCompleto(FileChannel canal, ByteBuffer buffer, long posicion) throws IOException {
+        while (buffer.hasRemaining()) {
+            posicion += canal.write(buffer, posicion);
+        }
+    }
+
+    /**
+     * Excepción interna para sacar de las tareas del ForkJoinPool los errores de cifrado.
+     */
+    private static final class ErrorSegmento extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Error de cifrado original. */
+        private final transient GeneralSecurityException causa;
+
+        /**
+         * Envuelve el error de cifrado de un segmento.
+         *
+         * @param causa Error de cifrado original
+         */
+        ErrorSegmento(GeneralSecurityException causa) {
+            super(causa);
+            this.causa = causa;
+        }
+    }
+
+    /**
+     * Tarea que procesa un rango de segmentos, dividiéndolo por la mitad hasta llegar a segmentos individuales.
+     * Cada segmento se lee y escribe con lecturas y escrituras posicionales, por lo que todas las tareas
+     * comparten los mismos canales sin sincronización.
+     */
+    private static final class Segmentos extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** {@link Cipher#ENCRYPT_MODE} o {@link Cipher#DECRYPT_MODE}. */
+        private final int modo;
+
+        /** Clave AES. */
+        private final transient SecretKeySpec clave;
+
+        /** Nonce base del archivo. */
+        private final byte[] nonceBase;
+
+        /** Cabecera del archivo, autenticada en cada segmento. */
+        private final byte[] aad;
+
+        /** Canal del archivo de origen. */
+        private final transient FileChannel entrada;
+
+        /** Canal del archivo de destino. */
+        private final transient FileChannel salida;
+
+        /** Tamaño de segmento en bytes de texto plano. */
+        private final int tamanoSegmento;
+
+        /** Tamaño del archivo sin cifrar. */
+        private final long tamanoOriginal;
+
+        /** Primer segmento del rango (incluido). */
+        private final int desde;
+
+        /** Último segmento del rango (excluido). */
+        private final int hasta;
+
+        /**
+         * Crea la tarea para el rango de segmentos [desde, hasta).
+         */
+        Segmentos(int modo, SecretKeySpec clave, byte[] nonceBase, byte[] aad, FileChannel entrada, FileChannel salida,
+                  int tamanoSegmento, long tamanoOriginal, int desde, int hasta) {
+            this.modo = modo;
+            this.clave = clave;
+            this.nonceBase = nonceBase;
+            this.aad = aad;
+            this.entrada = entrada;
+            this.salida = salida;
+            this.tamanoSegmento = tamanoSegmento;
+            this.tamanoOriginal = tamanoOriginal;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde > 1) {
+                int mitad = (desde + hasta) >>> 1;
+                Segmentos segunda = subtarea(mitad, hasta);
+                segunda.fork();
+                try {
+                    subtarea(desde, mitad).compute();
+                } catch (RuntimeException | Error e) {
+                    // A diferencia de invokeAll, no se abandona la otra mitad: se quita de la cola si no ha
+                    // empezado y, si ya se está procesando, se espera a que termine
+                    if (!segunda.tryUnfork()) {
+                        segunda.quietlyJoin();
+                    }
+                    throw e;
+                }
+                segunda.join();
+                return;
+            }
+            try {
+                procesarSegmento(desde);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (GeneralSecurityException e) {
+                throw new ErrorSegmento(e);
+            }
+        }
+
+        private Segmentos subtarea(int inicio, int fin) {
+            return new Segmentos(modo, clave, nonceBase, aad, entrada, salida, tamanoSegmento, tamanoOriginal, inicio, fin);
+        }
+
+        /**
+         * Cifra o descifra un único segmento.
+         *
+         * @param indice Índice del segmento
+         * @throws IOException Sí hay un error de lectura o escritura
+         * @throws GeneralSecurityException Sí el cifrado falla o la etiqueta no es válida
+         */
+        private void procesarSegmento(int indice) throws IOException, GeneralSecurityException {
+            long inicioPlano = (long) indice * tamanoSegmento;
+            int longitudPlano = (int) Math.min(tamanoSegmento, tamanoOriginal - inicioPlano);
+            long inicioCifrado = aad.length + (long) indice * (tamanoSegmento + LONGITUD_ETIQUETA);
+            int longitudCifrado = longitudPlano + LONGITUD_ETIQUETA;
+
+            boolean cifrar = modo == Cipher.ENCRYPT_MODE;
+            ByteBuffer origen = ByteBuffer.allocate(cifrar ? longitudPlano : longitudCifrado);
+            leerCompleto(entrada, origen, cifrar ? inicioPlano : inicioCifrado);
+            origen.flip();
+
+            ByteBuffer destino;
+            Cipher cifrado = ProveedorCifrados.obtener(ALGORITMO);
+            try {
+                cifrado.init(modo, clave, new GCMParameterSpec(LONGITUD_ETIQUETA * 8, nonceSegmento(nonceBase, indice)));
+                cifrado.updateAAD(aad);
+                destino = ByteBuffer.allocate(cifrado.getOutputSize(origen.remaining()));
+                cifrado.doFinal(origen, destino);
+            } finally {
+                ProveedorCifrados.devolver(cifrado);
+            }
+            destino.flip();
+            escribirCompleto(salida, destino, cifrar ? inicioCifrado : inicioPlano);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Locale;
+
+/**
+ * Cifrado autenticado que elige el motor más rápido de este equipo entre AES-GCM y ChaCha20-Poly1305.
+ * Al arrancar ({@link #elegirEnSegundoPlano()}) o, si no, la primera vez que se usa, se mide cada motor
+ * con una prueba corta (unos pocos MiB cifrados en memoria) y todos los cifrados nuevos usan el que haya
+ * resultado más rápido; AES-GCM gana con instrucciones AES-NI y ChaCha20-Poly1305 sin ellas. La elección se puede fijar con la propiedad del sistema
+ * {@link #PROPIEDAD} ("aes-gcm" o "chacha20").
+ *
+ * <p>El motor queda registrado en el sobre de los datos cifrados ({@link SobreCifrado}), así que el
+ * descifrado usa el que indiquen los datos, aunque en este equipo se haya elegido el otro o los datos
+ * vengan de {@link CifradoAESGCM} o {@link CifradoChaCha20Poly1305}.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CifradoAutomatico {
+
+    /** Logger para registrar el resultado de la prueba de rendimiento. */
+    private static final Logger logger = LoggerFactory.getLogger(CifradoAutomatico.class);
+
+    /** Propiedad del sistema que fija el motor sin medir ("aes-gcm" o "chacha20"). */
+    public static final String PROPIEDAD = "cryptowarts.motorAutomatico";
+
+    /** Tamaño de los bloques cifrados en la prueba, el mismo que el de los bloques reales. */
+    private static final int TAMANO_PRUEBA = BloquesAutenticados.TAMANO_BLOQUE;
+
+    /** Bloques cifrados por cada motor para calentar el JIT antes de medir. */
+    private static final int BLOQUES_CALENTAMIENTO = 16;
+
+    /** Rondas de medición de cada motor; se queda la más rápida para descartar pausas del GC. */
+    private static final int RONDAS = 5;
+
+    /** Bloques cifrados en cada ronda. */
+    private static final int BLOQUES_RONDA = 4;
+
+    /** Clase de utilidades, no se instancia. */
+    private CifradoAutomatico() {
+    }
+
+    /**
+     * Devuelve el nombre del motor elegido para los cifrados nuevos. La primera llamada hace la prueba
+     * de rendimiento si no hay ningún motor fijado en {@link #PROPIEDAD}.
+     *
+     * @return "AES-GCM" o "ChaCha20-Poly1305"
+     *
+     * @author Telmo
+     */
+    public static String motor() {
+        return Eleccion.MOTOR.getNombre();
+    }
+
+    /**
+     * Hace la prueba de rendimiento en un hilo aparte, para que el motor ya esté elegido cuando se cifre
+     * por primera vez. Se llama al arrancar la aplicación o el servidor; si la prueba ya se hizo no hace nada.
+     *
+     * @author Telmo
+     */
+    public static void elegirEnSegundoPlano() {
+        Thread.ofPlatform().name("motor-automatico").daemon().start(CifradoAutomatico::motor);
+    }
+
+    /**
+     * Cifra un texto plano con el motor elegido y lo devuelve codificado en Base64.
+     *
+     * @param textoPlano Texto original sin cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Texto cifrado y autenticado en Base64
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return BloquesAutenticados.cifrarTexto(Eleccion.MOTOR, textoPlano, clave);
+    }
+
+    /**
+     * Descifra un texto cifrado con AES-GCM o ChaCha20-Poly1305, según indique su sobre.
+     *
+     * @param textoCifrado Texto cifrado en Base64
+     * @param clave Clave secreta para descifrar
+     * @return Texto original descifrado
+     * @throws GeneralSecurityException Sí el texto no es de ninguno de los dos motores, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return BloquesAutenticados.descifrarTexto(null, textoCifrado, clave);
+    }
+
+    /**
+     * Cifra un archivo con el motor elegido y guarda el resultado con sufijo "_cifrado" en el mismo
+     * directorio. Si el hilo se interrumpe, la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "cifrado"));
+        cifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Cifra un archivo con el motor elegido y guarda el resultado en la ruta de destino, informando
+     * del avance. Si la operación falla o se cancela no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.cifrarArchivo(Eleccion.MOTOR, origen, destino, clave, Compresion.predeterminada(), progreso);
+    }
+
+    /**
+     * Cifra un flujo de bytes con el motor elegido, por ejemplo la entrada y la salida estándar.
+     * Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.cifrar(Eleccion.MOTOR, origen, destino, clave, Compresion.predeterminada(), Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Descifra un archivo con el motor que indique su sobre y guarda el resultado con sufijo "_descifrado"
+     * en el mismo directorio. Si algún bloque no se verifica o la operación se cancela no queda ningún
+     * archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo no es de ninguno de los dos motores, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "descifrado"));
+        descifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Descifra un archivo con el motor que indique su sobre y guarda el resultado en la ruta de destino,
+     * informando del avance. Si algún bloque no se verifica o la operación se cancela, el destino parcial
+     * se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo no es de ninguno de los dos motores, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.descifrarArchivo(null, origen, destino, clave, progreso);
+    }
+
+    /**
+     * Descifra un flujo de bytes con el motor que indique su sobre. Cada bloque se escribe en cuanto se
+     * verifica; si uno falla, lo escrito hasta entonces es auténtico pero está incompleto. Los canales
+     * no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta usada para descifrar
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí los datos no son de ninguno de los dos motores, han sido manipulados o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.descifrar(null, origen, destino, clave, Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Elige el motor: el fijado en {@link #PROPIEDAD} o, si no hay ninguno válido, el más rápido en la prueba.
+     * Si un motor no está disponible en este entorno se usa el otro.
+     *
+     * @return Motor para los cifrados nuevos
+     *
+     * @author Telmo
+     */
+    private static AlgoritmoAEAD elegir() {
+        String valor = System.getProperty(PROPIEDAD);
+        if (valor != null) {
+            switch (valor.trim().toLowerCase(Locale.ROOT)) {
+                case CifradorAESGCM.ID:
+                    return AlgoritmoAEAD.AES_GCM;
+                case CifradorChaCha20Poly1305.ID:
+                    return AlgoritmoAEAD.CHACHA20_POLY1305;
+                default:
+                    logger.warn("Valor no válido de {}: {}; se elige el motor midiendo", PROPIEDAD, valor);
+            }
+        }
+
+        long inicio = System.nanoTime();
+        long aes;
+        long chacha;
+        try {
+            Prueba pruebaAES = new Prueba(AlgoritmoAEAD.AES_GCM);
+            Prueba pruebaChaCha = new Prueba(AlgoritmoAEAD.CHACHA20_POLY1305);
+            pruebaAES.cifrar(BLOQUES_CALENTAMIENTO);
+            pruebaChaCha.cifrar(BLOQUES_CALENTAMIENTO);
+            aes = Long.MAX_VALUE;
+            chacha = Long.MAX_VALUE;
+            // Rondas alternas para que los dos motores sufran por igual cualquier ruido del sistema
+            for (int i = 0; i < RONDAS; i++) {
+                aes = Math.min(aes, pruebaAES.cifrar(BLOQUES_RONDA));
+                chacha = Math.min(chacha, pruebaChaCha.cifrar(BLOQUES_RONDA));
+            }
+        } catch (GeneralSecurityException e) {
+            logger.warn("No se ha podido medir ChaCha20-Poly1305, se usa AES-GCM: {}", e.getMessage());
+            return AlgoritmoAEAD.AES_GCM;
+        }
+
+        AlgoritmoAEAD elegido = chacha < aes ? AlgoritmoAEAD.CHACHA20_POLY1305 : AlgoritmoAEAD.AES_GCM;
+        if (logger.isInfoEnabled()) {
+            long bytes = (long) BLOQUES_RONDA * TAMANO_PRUEBA;
+            logger.info("Motor automático: {} (AES-GCM {} MB/s, ChaCha20-Poly1305 {} MB/s, prueba de {} ms)",
+                    elegido.getNombre(), velocidad(bytes, aes), velocidad(bytes, chacha),
+                    (System.nanoTime() - inicio) / 1_000_000);
+        }
+        return elegido;
+    }
+
+    /**
+     * Formatea una velocidad en MB/s.
+     *
+     * @param bytes Bytes procesados
+     * @param nanos Tiempo empleado en nanosegundos
+     * @return Velocidad con un decimal
+     *
+     * @author Telmo
+     */
+    private static String velocidad(long bytes, long nanos) {
+        return String.format("%.1f", nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9));
+    }
+
+    /**
+     * Motor elegido, calculado la primera vez que se usa (inicialización diferida de la clase contenedora),
+     * de modo que la prueba solo se hace si se cifra en modo automático y una sola vez aunque haya varios hilos.
+     */
+    private static final class Eleccion {
+
+        /** Motor para los cifrados nuevos. */
+        private static final AlgoritmoAEAD MOTOR = elegir();
+
+        /** Clase contenedora, no se instancia. */
+        private Eleccion() {
+        }
+    }
+
+    /**
+     * Prueba de rendimiento de un motor: cifra bloques en memoria con una clave aleatoria y un nonce
+     * distinto en cada bloque, igual que {@link BloquesAutenticados} (ChaCha20-Poly1305 no admite repetir
+     * clave y nonce al cifrar).
+     */
+    private static final class Prueba {
+
+        /** Algoritmo medido. */
+        private final AlgoritmoAEAD algoritmo;
+
+        /** Clave aleatoria, de 256 bits para que valga para los dos algoritmos. */
+        private final SecretKeySpec clave;
+
+        /** Nonce del bloque actual; su contador avanza en cada bloque. */
+        private final byte[] nonce = new byte[12];
+
+        /** Texto plano de la prueba. */
+        private final ByteBuffer entrada = ByteBuffer.allocate(TAMANO_PRUEBA);
+
+        /** Buffer para el resultado, con sitio para la etiqueta. */
+        private final ByteBuffer salida = ByteBuffer.allocate(TAMANO_PRUEBA + AlgoritmoAEAD.LONGITUD_ETIQUETA);
+
+        /** Número de bloques cifrados, usado como contador del nonce. */
+        private int contador;
+
+        /**
+         * Prepara la prueba con una clave y un nonce inicial aleatorios.
+         *
+         * @param algoritmo Algoritmo medido
+         */
+        Prueba(AlgoritmoAEAD algoritmo) {
+            SecureRandom aleatorio = new SecureRandom();
+            byte[] bytes = new byte[algoritmo == AlgoritmoAEAD.AES_GCM ? 16 : 32];
+            aleatorio.nextBytes(bytes);
+            aleatorio.nextBytes(nonce);
+            this.algoritmo = algoritmo;
+            this.clave = new SecretKeySpec(bytes, algoritmo.getAlgoritmoClave());
+        }
+
+        /**
+         * Cifra varios bloques y mide el tiempo.
+         *
+         * @param bloques Número de bloques
+         * @return Tiempo empleado en nanosegundos
+         * @throws GeneralSecurityException Sí el algoritmo no está disponible o falla el cifrado
+         */
+        long cifrar(int bloques) throws GeneralSecurityException {
+            Cipher cifrado = ProveedorCifrados.obtener(algoritmo.getTransformacion());
+            try {
+                long inicio = System.nanoTime();
+                for (int i = 0; i < bloques; i++) {
+                    contador++;
+                    nonce[8] = (byte) (contador >>> 24);
+                    nonce[9] = (byte) (contador >>> 16);
+                    nonce[10] = (byte) (contador >>> 8);
+                    nonce[11] = (byte) contador;
+                    cifrado.init(Cipher.ENCRYPT_MODE, clave, algoritmo.parametros(nonce));
+                    entrada.clear();
+                    salida.clear();
+                    cifrado.doFinal(entrada, salida);
+                }
+                return System.nanoTime() - inicio;
+            } finally {
+                ProveedorCifrados.devolver(cifrado);
+            }
+        }
+    }
+}
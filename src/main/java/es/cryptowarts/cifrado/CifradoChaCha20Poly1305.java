@@ -0,0 +1,243 @@
+package es.cryptowarts.cifrado;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+
+/**
+ * Cifrado autenticado de textos y archivos con ChaCha20-Poly1305 (RFC 8439). Ofrece las mismas garantías
+ * que {@link CifradoAESGCM}, pero no depende de instrucciones de AES del procesador, así que suele ser
+ * más rápido en equipos que no las tienen.
+ *
+ * <p>Usa el mismo formato por bloques de {@link #TAMANO_BLOQUE} bytes con su etiqueta
+ * ({@link BloquesAutenticados}), con su propio identificador en el sobre y una clave de 256 bits
+ * derivada con PBKDF2.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public class CifradoChaCha20Poly1305 {
+
+    /** Tamaño de los bloques de texto plano (64 KiB). */
+    public static final int TAMANO_BLOQUE = BloquesAutenticados.TAMANO_BLOQUE;
+
+    /** Número máximo de claves distintas guardadas en la caché. */
+    private static final int CAPACIDAD_CACHE = 64;
+
+    /** Tiempo que una clave derivada sigue en la caché (y su sal se reutiliza para cifrar) desde que se deriva. */
+    private static final Duration VIGENCIA_CACHE = Duration.ofMinutes(10);
+
+    /** Longitud de las claves de ChaCha20 en bits. */
+    private static final int BITS_CLAVE = 256;
+
+    /** Caché de claves de 256 bits ya derivadas, separada de la de AES porque sus claves son de otra longitud. */
+    private static final CacheClaves CLAVES = new CacheClaves(CAPACIDAD_CACHE, VIGENCIA_CACHE,
+            (clave, sal, iteraciones) -> DerivacionClaves.derivar(clave, sal, iteraciones, BITS_CLAVE));
+
+    /** Clase de utilidades, no se instancia. */
+    private CifradoChaCha20Poly1305() {
+    }
+
+    /**
+     * Cifra un texto plano con ChaCha20-Poly1305 y lo devuelve codificado en Base64.
+     *
+     * @param textoPlano Texto original sin cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Texto cifrado y autenticado en Base64
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return BloquesAutenticados.cifrarTexto(AlgoritmoAEAD.CHACHA20_POLY1305, textoPlano, clave);
+    }
+
+    /**
+     * Descifra un texto cifrado con {@link #cifrarTexto(String, String)}, verificando que no ha sido modificado.
+     *
+     * @param textoCifrado Texto cifrado en Base64
+     * @param clave Clave secreta para descifrar
+     * @return Texto original descifrado
+     * @throws GeneralSecurityException Sí el texto no es de ChaCha20-Poly1305, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return BloquesAutenticados.descifrarTexto(AlgoritmoAEAD.CHACHA20_POLY1305, textoCifrado, clave);
+    }
+
+    /**
+     * Cifra un archivo y guarda el resultado con sufijo "_cifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(rutaArchivo, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Cifra un archivo informando del avance y guarda el resultado con sufijo "_cifrado" en el mismo
+     * directorio. Si el hilo se interrumpe, la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo original a cifrar
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "cifrado"));
+        cifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Cifra un archivo por bloques autenticados y guarda el resultado en la ruta de destino, informando
+     * del avance. Si la operación falla o se cancela no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(origen, destino, clave, Compresion.predeterminada(), progreso);
+    }
+
+    /**
+     * Igual que {@link #cifrarArchivo(Path, Path, String, Progreso)} pero indicando la compresión.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @param compresion Compresión de los datos antes de cifrarlos
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, Compresion compresion, Progreso progreso) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.cifrarArchivo(AlgoritmoAEAD.CHACHA20_POLY1305, origen, destino, clave, compresion, progreso);
+    }
+
+    /**
+     * Cifra un flujo de bytes por bloques autenticados, por ejemplo la entrada y la salida estándar.
+     * El formato es el mismo que el de los archivos. Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta (se deriva con PBKDF2)
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    public static long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.cifrar(AlgoritmoAEAD.CHACHA20_POLY1305, origen, destino, clave, Compresion.predeterminada(), Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Descifra un archivo y guarda el resultado con sufijo "_descifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí el archivo no es de ChaCha20-Poly1305, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
+        return descifrarArchivo(rutaArchivo, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Descifra un archivo informando del avance y guarda el resultado con sufijo "_descifrado" en el mismo
+     * directorio. Si algún bloque no se verifica o la operación se cancela no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado a descifrar
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo no es de ChaCha20-Poly1305, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
+        File nuevoArchivo = new File(archivo.getParent(), CifradoAES.crearNombreArchivo(archivo.getName(), "descifrado"));
+        descifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
+        return nuevoArchivo.getAbsolutePath();
+    }
+
+    /**
+     * Descifra un archivo verificando cada bloque antes de escribirlo y guarda el resultado en la ruta
+     * de destino, informando del avance. Si algún bloque no se verifica o la operación se cancela,
+     * el destino parcial se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta usada para descifrar
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí el archivo no es de ChaCha20-Poly1305, ha sido manipulado o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.descifrarArchivo(AlgoritmoAEAD.CHACHA20_POLY1305, origen, destino, clave, progreso);
+    }
+
+    /**
+     * Descifra un flujo de bytes por bloques autenticados, por ejemplo la entrada y la salida estándar.
+     * Cada bloque se escribe en cuanto se verifica; si uno falla, lo escrito hasta entonces es auténtico
+     * pero está incompleto. Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta usada para descifrar
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí los datos no son de ChaCha20-Poly1305, han sido manipulados o la clave no es correcta
+     *
+     * @author Telmo
+     */
+    public static long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return BloquesAutenticados.descifrar(AlgoritmoAEAD.CHACHA20_POLY1305, origen, destino, clave, Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Devuelve la caché de claves usada por esta clase, para consultar sus métricas.
+     *
+     * @return Caché de claves de ChaCha20
+     *
+     * @author Telmo
+     */
+    public static CacheClaves cacheClaves() {
+        return CLAVES;
+    }
+}
@@ -0,0 +1,55 @@
+package es.cryptowarts.cifrado;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Cifrado o descifrado de un texto mientras se edita. Recibe cada edición (o varias seguidas ya
+ * agrupadas en una) y devuelve solo el tramo del resultado que cambia, para que la ventana no tenga que
+ * volver a procesar ni a pintar todo el texto en cada pulsación.
+ *
+ * <p>Cuánto se recalcula depende del algoritmo: en Vigenère el desplazamiento de cada carácter solo
+ * depende de su posición, así que basta con el tramo editado (y el resto del texto si la edición cambia
+ * su longitud); en los algoritmos modernos, cada cifrado usa un IV y una sal nuevos y cambia entero, y
+ * reutilizarlos para cifrar solo los bloques afectados revelaría las diferencias entre versiones, así
+ * que se vuelve a cifrar el texto completo (la clave derivada sale de {@link CacheClaves}).</p>
+ *
+ * <p>Las implementaciones guardan el estado del último resultado: no se comparten entre hilos y las
+ * ediciones se aplican en orden. La primera llamada debe cubrir todo el texto.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public interface CifradoEnVivo {
+
+    /**
+     * Aplica una edición del texto original y calcula el cambio del resultado. El tramo entre
+     * {@code inicio} y {@code finNuevo} del texto editado sustituye al tramo entre {@code inicio} y
+     * {@code finAnterior} del texto de la llamada anterior (vacío en la primera llamada).
+     *
+     * @param texto Texto completo después de la edición
+     * @param inicio Posición del primer carácter editado
+     * @param finAnterior Fin del tramo editado en el texto anterior
+     * @param finNuevo Fin del tramo editado en el texto nuevo
+     * @return Cambio que convierte el resultado anterior en el del texto nuevo
+     * @throws GeneralSecurityException Sí el texto no se puede cifrar o descifrar (por ejemplo, un
+     *         texto cifrado incompleto mientras se escribe)
+     *
+     * @author Telmo
+     */
+    CambioTexto aplicar(String texto, int inicio, int finAnterior, int finNuevo) throws GeneralSecurityException;
+
+    /**
+     * Crea el modo en vivo que procesa el texto entero en cada edición con las operaciones de texto de
+     * un {@link Cifrador}.
+     *
+     * @param cifrador Algoritmo
+     * @param clave Clave secreta
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @return Modo en vivo sin estado inicial
+     *
+     * @author Telmo
+     */
+    static CifradoEnVivo completo(Cifrador cifrador, String clave, boolean cifrar) {
+        return new CifradoEnVivoCompleto(cifrador, clave, cifrar);
+    }
+}
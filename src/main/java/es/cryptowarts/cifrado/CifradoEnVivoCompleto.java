@@ -0,0 +1,60 @@
+package es.cryptowarts.cifrado;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Modo en vivo para los algoritmos cuyo resultado cambia entero en cada cifrado: vuelve a cifrar o
+ * descifrar todo el texto y sustituye el resultado completo.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class CifradoEnVivoCompleto implements CifradoEnVivo {
+
+    /** Algoritmo. */
+    private final Cifrador cifrador;
+
+    /** Clave secreta. */
+    private final String clave;
+
+    /** Indica si se cifra o se descifra. */
+    private final boolean cifrar;
+
+    /** Longitud del último resultado, para sustituirlo entero. */
+    private int longitudResultado;
+
+    /**
+     * Crea el modo en vivo.
+     *
+     * @param cifrador Algoritmo
+     * @param clave Clave secreta
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     */
+    CifradoEnVivoCompleto(Cifrador cifrador, String clave, boolean cifrar) {
+        this.cifrador = cifrador;
+        this.clave = clave;
+        this.cifrar = cifrar;
+    }
+
+    /**
+     * Procesa el texto completo. Un texto vacío da un resultado vacío; si falla, el resultado anterior
+     * se sigue considerando el vigente.
+     *
+     * @param texto Texto completo después de la edición
+     * @param inicio Posición del primer carácter editado (no se usa)
+     * @param finAnterior Fin del tramo editado en el texto anterior (no se usa)
+     * @param finNuevo Fin del tramo editado en el texto nuevo (no se usa)
+     * @return Cambio que sustituye todo el resultado anterior
+     * @throws GeneralSecurityException Sí el texto no se puede cifrar o descifrar
+     *
+     * @author Telmo
+     */
+    @Override
+    public CambioTexto aplicar(String texto, int inicio, int finAnterior, int finNuevo) throws GeneralSecurityException {
+        String resultado = texto.isEmpty() ? ""
+                : cifrar ? cifrador.cifrarTexto(texto, clave) : cifrador.descifrarTexto(texto, clave);
+        CambioTexto cambio = new CambioTexto(0, longitudResultado, resultado);
+        longitudResultado = resultado.length();
+        return cambio;
+    }
+}
@@ -1,20 +1,28 @@
 package es.cryptowarts.cifrado;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.io.File;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.util.List;
 
 /**
  * Clase para cifrar y descifrar texto y archivos usando el cifrado clásico Vigenère.
- * Esta versión usa concatenación de String tradicional para construir los textos.
+ * El cifrado lo realiza {@link MotorVigenere}, que precalcula la clave en tablas y escribe
+ * directamente en un array de caracteres del tamaño del texto, o su versión vectorial
+ * {@link MotorVigenereVectorial} si se activa con {@code -Dcryptowarts.vigenere.simd=true}.
  *
  * @author Telmo
  * @version 1.0
  */
 public class CifradoVigenere {
 
+    /** Clase de utilidades, no se instancia. */
+    private CifradoVigenere() {
+    }
+
     /**
      * Cifra un texto plano usando el cifrado Vigenère.
      * @param textoPlano Texto original sin cifrar
@@ -25,21 +33,7 @@ public class CifradoVigenere {
      * @author Telmo
      */
     public static String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
-        StringBuilder cifrado = new StringBuilder();
-        int claveLen = clave.length();
-        for (int i = 0; i < textoPlano.length(); i++) {
-            char plainChar = textoPlano.charAt(i);
-            char keyChar = clave.charAt(i % claveLen);
-            if (Character.isLetter(plainChar)) {
-                char base = Character.isUpperCase(plainChar) ? 'A' : 'a';
-                char baseKey = Character.isUpperCase(keyChar) ? 'A' : 'a';
-                int shift = (plainChar - base + (keyChar - baseKey)) % 26;
-                cifrado.append((char) (base + shift));
-            } else {
-                cifrado.append(plainChar);
-            }
-        }
-        return cifrado.toString();
+        return MotorVigenere.crear(clave, true).procesar(textoPlano);
     }
 
     /**
@@ -52,25 +46,76 @@ public class CifradoVigenere {
      * @author Telmo
      */
     public static String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
-        StringBuilder descifrado = new StringBuilder();
-        int claveLen = clave.length();
-        for (int i = 0; i < textoCifrado.length(); i++) {
-            char encChar = textoCifrado.charAt(i);
-            char keyChar = clave.charAt(i % claveLen);
-            if (Character.isLetter(encChar)) {
-                char base = Character.isUpperCase(encChar) ? 'A' : 'a';
-                char baseKey = Character.isUpperCase(keyChar) ? 'A' : 'a';
-                int shift = (encChar - base - (keyChar - baseKey) + 26) % 26;
-                descifrado.append((char) (base + shift));
-            } else {
-                descifrado.append(encChar);
-            }
-        }
-        return descifrado.toString();
+        return MotorVigenere.crear(clave, false).procesar(textoCifrado);
+    }
+
+    /**
+     * Cifra un lote de textos con la misma clave, reutilizando el buffer de salida entre textos.
+     * El resultado de cada texto es idéntico al de {@link #cifrarTexto(String, String)}.
+     *
+     * @param textosPlanos Textos originales sin cifrar
+     * @param clave Clave de cifrado
+     * @return Lista con los textos cifrados, en el mismo orden
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    public static List<String> cifrarTextos(List<String> textosPlanos, String clave) throws GeneralSecurityException {
+        return cifrarTextos(textosPlanos, clave, false);
+    }
+
+    /**
+     * Cifra un lote de textos con la misma clave, repartiéndolo entre los núcleos disponibles
+     * si se indica y el lote es suficientemente grande.
+     *
+     * @param textosPlanos Textos originales sin cifrar
+     * @param clave Clave de cifrado
+     * @param paralelo Si es {@code true}, los lotes grandes se procesan en paralelo
+     * @return Lista con los textos cifrados, en el mismo orden
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    public static List<String> cifrarTextos(List<String> textosPlanos, String clave, boolean paralelo) throws GeneralSecurityException {
+        MotorVigenere motor = MotorVigenere.crear(clave, true);
+        return Lotes.procesar(textosPlanos, paralelo, () -> new LoteTextos(motor));
+    }
+
+    /**
+     * Descifra un lote de textos con la misma clave, reutilizando el buffer de salida entre textos.
+     * El resultado de cada texto es idéntico al de {@link #descifrarTexto(String, String)}.
+     *
+     * @param textosCifrados Textos cifrados
+     * @param clave Clave de descifrado
+     * @return Lista con los textos descifrados, en el mismo orden
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    public static List<String> descifrarTextos(List<String> textosCifrados, String clave) throws GeneralSecurityException {
+        return descifrarTextos(textosCifrados, clave, false);
+    }
+
+    /**
+     * Descifra un lote de textos con la misma clave, repartiéndolo entre los núcleos disponibles
+     * si se indica y el lote es suficientemente grande.
+     *
+     * @param textosCifrados Textos cifrados
+     * @param clave Clave de descifrado
+     * @param paralelo Si es {@code true}, los lotes grandes se procesan en paralelo
+     * @return Lista con los textos descifrados, en el mismo orden
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    public static List<String> descifrarTextos(List<String> textosCifrados, String clave, boolean paralelo) throws GeneralSecurityException {
+        MotorVigenere motor = MotorVigenere.crear(clave, false);
+        return Lotes.procesar(textosCifrados, paralelo, () -> new LoteTextos(motor));
     }
 
     /**
      * Cifra un archivo como texto usando Vigenère y guarda el archivo cifrado con sufijo "_cifrado".
+     * El archivo se lee y se escribe por bloques, con memoria constante sea cual sea su tamaño.
      *
      * @param rutaArchivo Ruta del archivo a cifrar
      * @param clave Clave de cifrado
@@ -81,20 +126,87 @@ public class CifradoVigenere {
      * @author Telmo
      */
     public static String cifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
-        File archivo = new File(rutaArchivo);
-        String texto = Files.readString(archivo.toPath());
+        return cifrarArchivo(rutaArchivo, clave, Progreso.NINGUNO);
+    }
 
-        String cifrado = cifrarTexto(texto, clave);
+    /**
+     * Cifra un archivo de texto UTF-8 informando del avance y guarda el resultado con sufijo "_cifrado".
+     * Si el hilo se interrumpe, la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo a procesar
+     * @param clave Clave de Vigenère
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo resultante
+     * @throws IOException si ocurre error de lectura o escritura, el archivo no es UTF-8 válido o la operación se cancela
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
 
         String nuevoNombre = crearNombreArchivo(archivo.getName(), "cifrado");
         File nuevoArchivo = new File(archivo.getParent(), nuevoNombre);
-        Files.write(nuevoArchivo.toPath(), cifrado.getBytes(StandardCharsets.UTF_8));
+        cifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
 
         return nuevoArchivo.getAbsolutePath();
     }
 
+    /**
+     * Cifra un archivo de texto UTF-8 y guarda el resultado en la ruta de destino indicada.
+     * Si la operación falla no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave de Vigenère
+     * @return Número de bytes escritos
+     * @throws IOException si ocurre error de lectura o escritura, o el archivo no es UTF-8 válido
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave) throws IOException, GeneralSecurityException {
+        return cifrarArchivo(origen, destino, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #cifrarArchivo(Path, Path, String)} pero informando del avance después de cada bloque.
+     * Si el hilo se interrumpe, la operación se cancela y el destino parcial se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave de Vigenère
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException si ocurre error de lectura o escritura, el archivo no es UTF-8 válido o la operación se cancela
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return ProcesadorFlujo.procesarTexto(MotorVigenere.crear(clave, true), origen, destino, progreso);
+    }
+
+    /**
+     * Cifra un flujo de texto UTF-8 por bloques, por ejemplo la entrada y la salida estándar.
+     * Los canales no se cierran.
+     *
+     * @param origen Canal de entrada
+     * @param destino Canal de salida
+     * @param clave Clave de Vigenère
+     * @return Número de bytes escritos
+     * @throws IOException si ocurre error de lectura o escritura, o la entrada no es UTF-8 válido
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return ProcesadorFlujo.procesarTexto(MotorVigenere.crear(clave, true), origen, destino);
+    }
+
     /**
      * Descifra un archivo Vigenère y guarda el archivo descifrado con sufijo "_descifrado".
+     * El archivo se lee y se escribe por bloques, con memoria constante sea cual sea su tamaño.
      *
      * @param rutaArchivo Ruta del archivo cifrado
      * @param clave Clave de descifrado
@@ -105,18 +217,98 @@ public class CifradoVigenere {
      * @author Telmo
      */
     public static String descifrarArchivo(String rutaArchivo, String clave) throws IOException, GeneralSecurityException {
-        File archivo = new File(rutaArchivo);
-        String cifrado = Files.readString(archivo.toPath());
+        return descifrarArchivo(rutaArchivo, clave, Progreso.NINGUNO);
+    }
 
-        String descifrado = descifrarTexto(cifrado, clave);
+    /**
+     * Descifra un archivo de texto UTF-8 informando del avance y guarda el resultado con sufijo "_descifrado".
+     * Si el hilo se interrumpe, la operación se cancela y no queda ningún archivo a medias.
+     *
+     * @param rutaArchivo Ruta del archivo a procesar
+     * @param clave Clave de Vigenère
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo resultante
+     * @throws IOException si ocurre error de lectura o escritura, el archivo no es UTF-8 válido o la operación se cancela
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        File archivo = new File(rutaArchivo);
 
         String nuevoNombre = crearNombreArchivo(archivo.getName(), "descifrado");
         File nuevoArchivo = new File(archivo.getParent(), nuevoNombre);
-        Files.write(nuevoArchivo.toPath(), descifrado.getBytes(StandardCharsets.UTF_8));
+        descifrarArchivo(archivo.toPath(), nuevoArchivo.toPath(), clave, progreso);
 
         return nuevoArchivo.getAbsolutePath();
     }
 
+    /**
+     * Descifra un archivo de texto UTF-8 y guarda el resultado en la ruta de destino indicada.
+     * Si la operación falla no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave de Vigenère
+     * @return Número de bytes escritos
+     * @throws IOException si ocurre error de lectura o escritura, o el archivo no es UTF-8 válido
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave) throws IOException, GeneralSecurityException {
+        return descifrarArchivo(origen, destino, clave, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #descifrarArchivo(Path, Path, String)} pero informando del avance después de cada bloque.
+     * Si el hilo se interrumpe, la operación se cancela y el destino parcial se elimina.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave de Vigenère
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos
+     * @throws IOException si ocurre error de lectura o escritura, el archivo no es UTF-8 válido o la operación se cancela
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return ProcesadorFlujo.procesarTexto(MotorVigenere.crear(clave, false), origen, destino, progreso);
+    }
+
+    /**
+     * Descifra un flujo de texto UTF-8 por bloques, por ejemplo la entrada y la salida estándar.
+     * Los canales no se cierran.
+     *
+     * @param origen Canal de entrada
+     * @param destino Canal de salida
+     * @param clave Clave de Vigenère
+     * @return Número de bytes escritos
+     * @throws IOException si ocurre error de lectura o escritura, o la entrada no es UTF-8 válido
+     * @throws GeneralSecurityException si la clave es inválida
+     *
+     * @author Telmo
+     */
+    public static long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return ProcesadorFlujo.procesarTexto(MotorVigenere.crear(clave, false), origen, destino);
+    }
+
+    /**
+     * Crea el modo en vivo de Vigenère, que solo vuelve a procesar lo que cambia en cada edición.
+     *
+     * @param clave Clave de cifrado
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @return Modo en vivo
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    public static CifradoEnVivo enVivo(String clave, boolean cifrar) throws GeneralSecurityException {
+        return new EnVivo(MotorVigenere.crear(clave, cifrar));
+    }
+
     /**
      * Construye un nuevo nombre para un archivo añadiendo un sufijo antes de la extensión.
      *
@@ -133,4 +325,71 @@ public class CifradoVigenere {
         String extension = nombreOriginal.substring(indicePunto);
         return nombreBase + "_" + operacion + extension;
     }
+
+    /**
+     * Procesador de un tramo de lote: reutiliza un mismo array de caracteres entre textos.
+     * El motor es inmutable, así que se comparte entre todos los tramos.
+     */
+    private static final class LoteTextos implements Lotes.Procesador {
+
+        /** Motor de Vigenère ya preparado con la clave. */
+        private final MotorVigenere motor;
+
+        /** Buffer reutilizado para los caracteres de cada texto. */
+        private char[] buffer = new char[256];
+
+        /**
+         * Crea el procesador del tramo.
+         *
+         * @param motor Motor de Vigenère ya preparado con la clave
+         */
+        LoteTextos(MotorVigenere motor) {
+            this.motor = motor;
+        }
+
+        @Override
+        public String procesar(String texto) {
+            int longitud = texto.length();
+            if (buffer.length < longitud) {
+                buffer = new char[longitud];
+            }
+            texto.getChars(0, longitud, buffer, 0);
+            motor.procesar(buffer, 0, buffer, 0, longitud, 0);
+            return new String(buffer, 0, longitud);
+        }
+    }
+
+    /**
+     * Modo en vivo de Vigenère. El carácter de la posición {@code i} se desplaza con el carácter
+     * {@code i % longitudClave} de la clave, así que una edición solo cambia el resultado desde su inicio:
+     * si no cambia la longitud del texto (o la cambia en un múltiplo de la longitud de la clave), el
+     * resto conserva su desplazamiento y basta con procesar el tramo editado; si no, se procesa desde el
+     * inicio de la edición hasta el final. El resultado tiene siempre la misma longitud que el texto.
+     */
+    private static final class EnVivo implements CifradoEnVivo {
+
+        /** Motor de Vigenère ya preparado con la clave. */
+        private final MotorVigenere motor;
+
+        /**
+         * Crea el modo en vivo.
+         *
+         * @param motor Motor de Vigenère ya preparado con la clave
+         */
+        EnVivo(MotorVigenere motor) {
+            this.motor = motor;
+        }
+
+        @Override
+        public CambioTexto aplicar(String texto, int inicio, int finAnterior, int finNuevo) {
+            int diferencia = finNuevo - finAnterior;
+            boolean soloTramo = diferencia % motor.longitudClave() == 0;
+            int fin = soloTramo ? finNuevo : texto.length();
+            int finResultado = soloTramo ? finAnterior : texto.length() - diferencia;
+            char[] tramo = new char[fin - inicio];
+            texto.getChars(inicio, fin, tramo, 0);
+            motor.procesar(tramo, 0, tramo, 0, tramo.length, inicio);
+            return new CambioTexto(inicio, finResultado, new String(tramo));
+        }
+    }
 }
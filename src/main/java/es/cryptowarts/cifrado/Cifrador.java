@@ -0,0 +1,309 @@
+package es.cryptowarts.cifrado;
+
+import javax.crypto.ShortBufferException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * Algoritmo de cifrado intercambiable, con operaciones sobre textos, buffers, flujos y archivos.
+ * Las implementaciones se descubren con {@link java.util.ServiceLoader} (declaradas con {@code provides}
+ * en {@code module-info.java} o en {@code META-INF/services}) y se eligen por su {@link #id()} en
+ * {@link RegistroCifradores}, de modo que la interfaz gráfica, la línea de comandos y el servidor no
+ * dependen de ninguna clase de cifrado concreta.
+ *
+ * <p>Las implementaciones no guardan estado entre llamadas y se comparten entre hilos. Deben tener un
+ * constructor público sin parámetros para que {@link java.util.ServiceLoader} las pueda crear.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public interface Cifrador {
+
+    /**
+     * Devuelve el identificador del algoritmo, usado en la línea de comandos y en las rutas del servidor.
+     *
+     * @return Identificador en minúsculas y sin espacios (por ejemplo "aes-gcm")
+     *
+     * @author Telmo
+     */
+    String id();
+
+    /**
+     * Devuelve el nombre del algoritmo para mostrar al usuario.
+     *
+     * @return Nombre legible (por ejemplo "AES-GCM")
+     *
+     * @author Telmo
+     */
+    String nombre();
+
+    /**
+     * Cifra un texto.
+     *
+     * @param textoPlano Texto original sin cifrar
+     * @param clave Clave secreta
+     * @return Texto cifrado
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el cifrado
+     *
+     * @author Telmo
+     */
+    String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException;
+
+    /**
+     * Descifra un texto cifrado con {@link #cifrarTexto(String, String)}.
+     *
+     * @param textoCifrado Texto cifrado
+     * @param clave Clave secreta
+     * @return Texto descifrado
+     * @throws GeneralSecurityException Sí ocurre un error relacionado con el descifrado
+     *
+     * @author Telmo
+     */
+    String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException;
+
+    /**
+     * Cifra un texto sin cargarlo entero en memoria: lee el texto en UTF-8 del origen y escribe en el
+     * destino el texto cifrado, en el mismo formato que {@link #cifrarTexto(String, String)}. Sirve para
+     * textos de decenas de megas, que no conviene tener en un {@link String}. Los canales no se cierran.
+     *
+     * <p>La implementación por defecto escribe en Base64 el resultado de
+     * {@link #cifrar(ReadableByteChannel, WritableByteChannel, String)}, que es lo que hacen los textos de
+     * los algoritmos binarios; si la compresión está activa, el texto cifrado va comprimido y
+     * {@link #descifrarTexto(String, String)} lo acepta igual.</p>
+     *
+     * @param textoPlano Canal con el texto original en UTF-8, se lee hasta el final
+     * @param textoCifrado Canal en el que se escribe el texto cifrado
+     * @param clave Clave secreta
+     * @return Número de caracteres escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    default long cifrarTexto(ReadableByteChannel textoPlano, WritableByteChannel textoCifrado, String clave)
+            throws IOException, GeneralSecurityException {
+        WritableByteChannel base64 = CodificacionBase64.codificador(textoCifrado);
+        long escritos = cifrar(textoPlano, base64, clave);
+        base64.close();
+        return 4 * ((escritos + 2) / 3);
+    }
+
+    /**
+     * Descifra un texto cifrado con {@link #cifrarTexto(String, String)} o
+     * {@link #cifrarTexto(ReadableByteChannel, WritableByteChannel, String)} sin cargarlo entero en memoria,
+     * y escribe el texto original en UTF-8 en el destino. Los canales no se cierran.
+     *
+     * <p>La implementación por defecto decodifica el Base64 del origen (ignorando saltos de línea y
+     * espacios) y lo pasa por {@link #descifrar(ReadableByteChannel, WritableByteChannel, String)}.</p>
+     *
+     * @param textoCifrado Canal con el texto cifrado, se lee hasta el final
+     * @param textoPlano Canal en el que se escribe el texto descifrado en UTF-8
+     * @param clave Clave secreta
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     * @throws IllegalArgumentException Sí el texto cifrado no es Base64 válido
+     *
+     * @author Telmo
+     */
+    default long descifrarTexto(ReadableByteChannel textoCifrado, WritableByteChannel textoPlano, String clave)
+            throws IOException, GeneralSecurityException {
+        return descifrar(CodificacionBase64.decodificador(textoCifrado), textoPlano, clave);
+    }
+
+    /**
+     * Cifra un flujo de bytes por bloques. El formato es el mismo que el de los archivos.
+     * Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException;
+
+    /**
+     * Descifra un flujo de bytes cifrado con {@link #cifrar(ReadableByteChannel, WritableByteChannel, String)}.
+     * Los canales no se cierran.
+     *
+     * @param origen Canal de entrada, se lee hasta el final
+     * @param destino Canal de salida
+     * @param clave Clave secreta
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException;
+
+    /**
+     * Cifra un archivo y guarda el resultado en la ruta de destino. Si el hilo se interrumpe o la
+     * operación falla, no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException;
+
+    /**
+     * Descifra un archivo y guarda el resultado en la ruta de destino. Si el hilo se interrumpe o la
+     * operación falla, no queda ningún archivo de destino a medias.
+     *
+     * @param origen Archivo cifrado
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException;
+
+    /**
+     * Cifra un archivo y guarda el resultado con sufijo "_cifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo a cifrar
+     * @param clave Clave secreta
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo cifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException;
+
+    /**
+     * Descifra un archivo y guarda el resultado con sufijo "_descifrado" en el mismo directorio.
+     *
+     * @param rutaArchivo Ruta del archivo cifrado
+     * @param clave Clave secreta
+     * @param progreso Receptor del avance, llamado después de cada bloque
+     * @return Ruta del archivo descifrado
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException;
+
+    /**
+     * Crea el modo en vivo del algoritmo, que cifra o descifra un texto mientras se edita devolviendo
+     * solo lo que cambia del resultado.
+     *
+     * <p>La implementación por defecto procesa el texto entero en cada edición
+     * ({@link CifradoEnVivo#completo(Cifrador, String, boolean)}); los algoritmos que pueden recalcular
+     * solo el tramo editado la sustituyen.</p>
+     *
+     * @param clave Clave secreta
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @return Modo en vivo, para un único texto y un único hilo
+     * @throws GeneralSecurityException Sí la clave no es válida para el algoritmo
+     *
+     * @author Telmo
+     */
+    default CifradoEnVivo enVivo(String clave, boolean cifrar) throws GeneralSecurityException {
+        return CifradoEnVivo.completo(this, clave, cifrar);
+    }
+
+    /**
+     * Cifra los bytes restantes del origen y escribe el resultado (mismo formato que los flujos) en el
+     * destino, a partir de su posición. El origen queda consumido y la posición del destino avanza lo escrito.
+     *
+     * <p>La implementación por defecto pasa por {@link #cifrar(ReadableByteChannel, WritableByteChannel, String)}
+     * y un array intermedio; los algoritmos que pueden escribir directamente en el destino la sustituyen.</p>
+     *
+     * @param origen Bytes a cifrar
+     * @param destino Buffer en el que se escriben los datos cifrados
+     * @param clave Clave secreta
+     * @return Número de bytes escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    default int cifrar(ByteBuffer origen, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        return copiar(origen, destino, clave, true);
+    }
+
+    /**
+     * Descifra los bytes restantes del origen y escribe el resultado en el destino, a partir de su
+     * posición. El origen queda consumido y la posición del destino avanza lo escrito.
+     *
+     * <p>La implementación por defecto pasa por {@link #descifrar(ReadableByteChannel, WritableByteChannel, String)}
+     * y un array intermedio; los algoritmos que pueden escribir directamente en el destino la sustituyen.</p>
+     *
+     * @param origen Datos cifrados
+     * @param destino Buffer en el que se escriben los datos descifrados
+     * @param clave Clave secreta
+     * @return Número de bytes escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado
+     *
+     * @author Telmo
+     */
+    default int descifrar(ByteBuffer origen, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        return copiar(origen, destino, clave, false);
+    }
+
+    /**
+     * Cifra o descifra un buffer a través de las operaciones con canales, guardando el resultado en un
+     * array intermedio que solo se copia al destino si cabe entero.
+     *
+     * @param origen Bytes a procesar
+     * @param destino Buffer en el que se escribe el resultado
+     * @param clave Clave secreta
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @return Número de bytes escritos
+     * @throws ShortBufferException Sí el destino no tiene sitio (no se escribe nada ni se consume el origen)
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    private int copiar(ByteBuffer origen, ByteBuffer destino, String clave, boolean cifrar) throws GeneralSecurityException {
+        int inicio = origen.position();
+        byte[] datos = new byte[origen.remaining()];
+        origen.get(datos);
+        ByteArrayOutputStream resultado = new ByteArrayOutputStream(datos.length + 64);
+        try {
+            ReadableByteChannel entrada = Channels.newChannel(new ByteArrayInputStream(datos));
+            WritableByteChannel salida = Channels.newChannel(resultado);
+            if (cifrar) {
+                cifrar(entrada, salida, clave);
+            } else {
+                descifrar(entrada, salida, clave);
+            }
+        } catch (IOException e) {
+            // Solo se lee y escribe en memoria: no hay errores de E/S reales
+            throw new UncheckedIOException(e);
+        }
+        if (destino.remaining() < resultado.size()) {
+            origen.position(inicio);
+            throw new ShortBufferException("El destino necesita " + resultado.size() + " bytes libres y tiene " + destino.remaining());
+        }
+        destino.put(resultado.toByteArray());
+        return resultado.size();
+    }
+}
@@ -0,0 +1,95 @@
+package es.cryptowarts.cifrado;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * {@link Cifrador} de AES en modo CBC, que delega en {@link CifradoAES} con la estrategia de entrada/salida
+ * de {@link ModoES#predeterminado()}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CifradorAES implements Cifrador {
+
+    /** Identificador del algoritmo. */
+    public static final String ID = "aes";
+
+    /**
+     * Crea el cifrador. Lo usa {@link java.util.ServiceLoader}; el resto de la aplicación lo obtiene
+     * de {@link RegistroCifradores}.
+     *
+     * @author Telmo
+     */
+    public CifradorAES() {
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String nombre() {
+        return "AES";
+    }
+
+    @Override
+    public String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return CifradoAES.cifrarTexto(textoPlano, clave);
+    }
+
+    @Override
+    public String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return CifradoAES.descifrarTexto(textoCifrado, clave);
+    }
+
+    @Override
+    public int cifrar(ByteBuffer origen, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        return CifradoAES.cifrar(origen, destino, clave);
+    }
+
+    @Override
+    public int descifrar(ByteBuffer origen, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        return CifradoAES.descifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoAES.cifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoAES.descifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAES.cifrarArchivo(origen, destino, clave, ModoES.predeterminado(), progreso);
+    }
+
+    @Override
+    public long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAES.descifrarArchivo(origen, destino, clave, ModoES.predeterminado(), progreso);
+    }
+
+    @Override
+    public String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAES.cifrarArchivo(rutaArchivo, clave, ModoES.predeterminado(), progreso);
+    }
+
+    @Override
+    public String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAES.descifrarArchivo(rutaArchivo, clave, ModoES.predeterminado(), progreso);
+    }
+
+    @Override
+    public String toString() {
+        return nombre();
+    }
+}
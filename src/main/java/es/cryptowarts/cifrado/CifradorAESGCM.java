@@ -0,0 +1,83 @@
+package es.cryptowarts.cifrado;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * {@link Cifrador} de AES-GCM por bloques autenticados, que delega en {@link CifradoAESGCM}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CifradorAESGCM implements Cifrador {
+
+    /** Identificador del algoritmo. */
+    public static final String ID = "aes-gcm";
+
+    /**
+     * Crea el cifrador. Lo usa {@link java.util.ServiceLoader}; el resto de la aplicación lo obtiene
+     * de {@link RegistroCifradores}.
+     *
+     * @author Telmo
+     */
+    public CifradorAESGCM() {
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String nombre() {
+        return "AES-GCM";
+    }
+
+    @Override
+    public String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return CifradoAESGCM.cifrarTexto(textoPlano, clave);
+    }
+
+    @Override
+    public String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return CifradoAESGCM.descifrarTexto(textoCifrado, clave);
+    }
+
+    @Override
+    public long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoAESGCM.cifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoAESGCM.descifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAESGCM.cifrarArchivo(origen, destino, clave, progreso);
+    }
+
+    @Override
+    public long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAESGCM.descifrarArchivo(origen, destino, clave, progreso);
+    }
+
+    @Override
+    public String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAESGCM.cifrarArchivo(rutaArchivo, clave, progreso);
+    }
+
+    @Override
+    public String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAESGCM.descifrarArchivo(rutaArchivo, clave, progreso);
+    }
+
+    @Override
+    public String toString() {
+        return nombre();
+    }
+}
@@ -0,0 +1,84 @@
+package es.cryptowarts.cifrado;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * {@link Cifrador} que cifra con el motor autenticado más rápido del equipo (AES-GCM o ChaCha20-Poly1305)
+ * y descifra con el que indiquen los datos; delega en {@link CifradoAutomatico}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CifradorAutomatico implements Cifrador {
+
+    /** Identificador del algoritmo. */
+    public static final String ID = "auto";
+
+    /**
+     * Crea el cifrador. Lo usa {@link java.util.ServiceLoader}; el resto de la aplicación lo obtiene
+     * de {@link RegistroCifradores}.
+     *
+     * @author Telmo
+     */
+    public CifradorAutomatico() {
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String nombre() {
+        return "Auto";
+    }
+
+    @Override
+    public String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return CifradoAutomatico.cifrarTexto(textoPlano, clave);
+    }
+
+    @Override
+    public String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return CifradoAutomatico.descifrarTexto(textoCifrado, clave);
+    }
+
+    @Override
+    public long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoAutomatico.cifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoAutomatico.descifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAutomatico.cifrarArchivo(origen, destino, clave, progreso);
+    }
+
+    @Override
+    public long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAutomatico.descifrarArchivo(origen, destino, clave, progreso);
+    }
+
+    @Override
+    public String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAutomatico.cifrarArchivo(rutaArchivo, clave, progreso);
+    }
+
+    @Override
+    public String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoAutomatico.descifrarArchivo(rutaArchivo, clave, progreso);
+    }
+
+    @Override
+    public String toString() {
+        return nombre();
+    }
+}
@@ -0,0 +1,326 @@
+package es.cryptowarts.cifrado;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * {@link Cifrador} que delega en otro y registra cada operación en sus {@link MetricasCifrado}: una
+ * para cifrar y otra para descifrar, sea cual sea la variante (texto, flujo, buffer o archivo).
+ * {@link RegistroCifradores} envuelve con él todos los cifradores, así que la interfaz gráfica, la
+ * línea de comandos y el servidor quedan medidos sin cambios cuando se activan las métricas.
+ *
+ * <p>Solo se mide lo que pasa por el registro. Por eso {@link ServicioCifrado} y los lotes de
+ * archivos usan los cifradores de {@link RegistroCifradores} y no los motores directamente;
+ * {@link CifradoAESParalelo}, que no es un cifrador del registro, registra sus propias métricas.
+ * Las llamadas de un motor a otro (por ejemplo de {@link CifradoAutomatico} a
+ * {@link BloquesAutenticados}) cuentan dentro de la operación que las hace.</p>
+ *
+ * <p>Cada llamada se mide una sola vez, aunque el cifrador interno llame a su vez a otras de sus
+ * operaciones. El modo en vivo no se mide: sus cálculos son parciales y se repiten en cada pulsación.</p>
+ *
+ * <p>Medir no es gratis: con textos pequeños, dos {@link System#nanoTime()} y el histograma suman
+ * hasta un 11 % (16 B con AES-GCM). Por eso solo se mide con las métricas activadas
+ * ({@link Instrumentacion#activar()}); si no, cada llamada pasa directamente al cifrador interno.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class CifradorMedido implements Cifrador {
+
+    /** Cifrador que hace el trabajo. */
+    private final Cifrador cifrador;
+
+    /** Métricas de las operaciones de cifrado. */
+    private final MetricasCifrado cifrado;
+
+    /** Métricas de las operaciones de descifrado. */
+    private final MetricasCifrado descifrado;
+
+    /**
+     * Envuelve un cifrador con métricas nuevas.
+     *
+     * @param cifrador Cifrador que hace el trabajo
+     *
+     * @author Telmo
+     */
+    CifradorMedido(Cifrador cifrador) {
+        this.cifrador = cifrador;
+        this.cifrado = new MetricasCifrado(cifrador.id(), true);
+        this.descifrado = new MetricasCifrado(cifrador.id(), false);
+    }
+
+    /**
+     * Devuelve las métricas de una operación.
+     *
+     * @param cifrar {@code true} para las de cifrar, {@code false} para las de descifrar
+     * @return Métricas de la operación
+     *
+     * @author Telmo
+     */
+    MetricasCifrado metricas(boolean cifrar) {
+        return cifrar ? cifrado : descifrado;
+    }
+
+    @Override
+    public String id() {
+        return cifrador.id();
+    }
+
+    @Override
+    public String nombre() {
+        return cifrador.nombre();
+    }
+
+    @Override
+    public String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.cifrarTexto(textoPlano, clave);
+        }
+        long inicio = System.nanoTime();
+        try {
+            String resultado = cifrador.cifrarTexto(textoPlano, clave);
+            cifrado.registrar(inicio, textoPlano.length(), resultado.length());
+            return resultado;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            cifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.descifrarTexto(textoCifrado, clave);
+        }
+        long inicio = System.nanoTime();
+        try {
+            String resultado = cifrador.descifrarTexto(textoCifrado, clave);
+            descifrado.registrar(inicio, textoCifrado.length(), resultado.length());
+            return resultado;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            descifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long cifrarTexto(ReadableByteChannel textoPlano, WritableByteChannel textoCifrado, String clave) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.cifrarTexto(textoPlano, textoCifrado, clave);
+        }
+        long inicio = System.nanoTime();
+        CanalContado entrada = new CanalContado(textoPlano);
+        try {
+            long escritos = cifrador.cifrarTexto(entrada, textoCifrado, clave);
+            cifrado.registrar(inicio, entrada.leidos, escritos);
+            return escritos;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            cifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long descifrarTexto(ReadableByteChannel textoCifrado, WritableByteChannel textoPlano, String clave) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.descifrarTexto(textoCifrado, textoPlano, clave);
+        }
+        long inicio = System.nanoTime();
+        CanalContado entrada = new CanalContado(textoCifrado);
+        try {
+            long escritos = cifrador.descifrarTexto(entrada, textoPlano, clave);
+            descifrado.registrar(inicio, entrada.leidos, escritos);
+            return escritos;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            descifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.cifrar(origen, destino, clave);
+        }
+        long inicio = System.nanoTime();
+        CanalContado entrada = new CanalContado(origen);
+        try {
+            long escritos = cifrador.cifrar(entrada, destino, clave);
+            cifrado.registrar(inicio, entrada.leidos, escritos);
+            return escritos;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            cifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.descifrar(origen, destino, clave);
+        }
+        long inicio = System.nanoTime();
+        CanalContado entrada = new CanalContado(origen);
+        try {
+            long escritos = cifrador.descifrar(entrada, destino, clave);
+            descifrado.registrar(inicio, entrada.leidos, escritos);
+            return escritos;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            descifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int cifrar(ByteBuffer origen, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.cifrar(origen, destino, clave);
+        }
+        long inicio = System.nanoTime();
+        int bytes = origen.remaining();
+        try {
+            int escritos = cifrador.cifrar(origen, destino, clave);
+            cifrado.registrar(inicio, bytes, escritos);
+            return escritos;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            cifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public int descifrar(ByteBuffer origen, ByteBuffer destino, String clave) throws GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.descifrar(origen, destino, clave);
+        }
+        long inicio = System.nanoTime();
+        int bytes = origen.remaining();
+        try {
+            int escritos = cifrador.descifrar(origen, destino, clave);
+            descifrado.registrar(inicio, bytes, escritos);
+            return escritos;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            descifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.cifrarArchivo(origen, destino, clave, progreso);
+        }
+        long inicio = System.nanoTime();
+        try {
+            long escritos = cifrador.cifrarArchivo(origen, destino, clave, progreso);
+            cifrado.registrar(inicio, origen.toFile().length(), escritos);
+            return escritos;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            cifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.descifrarArchivo(origen, destino, clave, progreso);
+        }
+        long inicio = System.nanoTime();
+        try {
+            long escritos = cifrador.descifrarArchivo(origen, destino, clave, progreso);
+            descifrado.registrar(inicio, origen.toFile().length(), escritos);
+            return escritos;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            descifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.cifrarArchivo(rutaArchivo, clave, progreso);
+        }
+        long inicio = System.nanoTime();
+        try {
+            String resultado = cifrador.cifrarArchivo(rutaArchivo, clave, progreso);
+            cifrado.registrar(inicio, new File(rutaArchivo).length(), new File(resultado).length());
+            return resultado;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            cifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        if (!MetricasCifrado.activas()) {
+            return cifrador.descifrarArchivo(rutaArchivo, clave, progreso);
+        }
+        long inicio = System.nanoTime();
+        try {
+            String resultado = cifrador.descifrarArchivo(rutaArchivo, clave, progreso);
+            descifrado.registrar(inicio, new File(rutaArchivo).length(), new File(resultado).length());
+            return resultado;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            descifrado.fallar(inicio, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public CifradoEnVivo enVivo(String clave, boolean cifrar) throws GeneralSecurityException {
+        return cifrador.enVivo(clave, cifrar);
+    }
+
+    @Override
+    public String toString() {
+        return cifrador.toString();
+    }
+
+    /**
+     * Canal de entrada que cuenta los bytes leídos. Solo añade una suma por lectura, no por byte.
+     */
+    private static final class CanalContado implements ReadableByteChannel {
+
+        /** Canal original. */
+        private final ReadableByteChannel canal;
+
+        /** Bytes leídos hasta ahora. */
+        private long leidos;
+
+        /**
+         * Envuelve un canal de entrada.
+         *
+         * @param canal Canal original
+         */
+        CanalContado(ReadableByteChannel canal) {
+            this.canal = canal;
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            int n = canal.read(destino);
+            if (n > 0) {
+                leidos += n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return canal.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+}
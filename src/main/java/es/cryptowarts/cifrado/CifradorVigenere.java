@@ -0,0 +1,99 @@
+package es.cryptowarts.cifrado;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+
+/**
+ * {@link Cifrador} de Vigenère sobre texto UTF-8, que delega en {@link CifradoVigenere}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class CifradorVigenere implements Cifrador {
+
+    /** Identificador del algoritmo. */
+    public static final String ID = "vigenere";
+
+    /**
+     * Crea el cifrador. Lo usa {@link java.util.ServiceLoader}; el resto de la aplicación lo obtiene
+     * de {@link RegistroCifradores}.
+     *
+     * @author Telmo
+     */
+    public CifradorVigenere() {
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String nombre() {
+        return "Vigenere";
+    }
+
+    @Override
+    public String cifrarTexto(String textoPlano, String clave) throws GeneralSecurityException {
+        return CifradoVigenere.cifrarTexto(textoPlano, clave);
+    }
+
+    @Override
+    public String descifrarTexto(String textoCifrado, String clave) throws GeneralSecurityException {
+        return CifradoVigenere.descifrarTexto(textoCifrado, clave);
+    }
+
+    @Override
+    public long cifrarTexto(ReadableByteChannel textoPlano, WritableByteChannel textoCifrado, String clave) throws IOException, GeneralSecurityException {
+        // El texto cifrado de Vigenère ya es texto: no pasa por Base64
+        return CifradoVigenere.cifrar(textoPlano, textoCifrado, clave);
+    }
+
+    @Override
+    public long descifrarTexto(ReadableByteChannel textoCifrado, WritableByteChannel textoPlano, String clave) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.descifrar(textoCifrado, textoPlano, clave);
+    }
+
+    @Override
+    public long cifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.cifrar(origen, destino, clave);
+    }
+
+    @Override
+    public long descifrar(ReadableByteChannel origen, WritableByteChannel destino, String clave) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.descifrar(origen, destino, clave);
+    }
+
+    @Override
+    public CifradoEnVivo enVivo(String clave, boolean cifrar) throws GeneralSecurityException {
+        return CifradoVigenere.enVivo(clave, cifrar);
+    }
+
+    @Override
+    public long cifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.cifrarArchivo(origen, destino, clave, progreso);
+    }
+
+    @Override
+    public long descifrarArchivo(Path origen, Path destino, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.descifrarArchivo(origen, destino, clave, progreso);
+    }
+
+    @Override
+    public String cifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.cifrarArchivo(rutaArchivo, clave, progreso);
+    }
+
+    @Override
+    public String descifrarArchivo(String rutaArchivo, String clave, Progreso progreso) throws IOException, GeneralSecurityException {
+        return CifradoVigenere.descifrarArchivo(rutaArchivo, clave, progreso);
+    }
+
+    @Override
+    public String toString() {
+        return nombre();
+    }
+}
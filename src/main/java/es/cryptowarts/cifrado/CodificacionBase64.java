@@ -0,0 +1,393 @@
+package es.cryptowarts.cifrado;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codificación Base64 (alfabeto estándar con relleno, como {@link java.util.Base64#getEncoder()})
+ * directamente entre buffers, sin crear arrays ni Strings intermedios. {@link java.util.Base64} solo
+ * trabaja con arrays completos o devuelve buffers nuevos, lo que obliga a copiar los datos al menos una vez.
+ * Para textos que no caben en memoria hay canales que codifican y decodifican por trozos.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class CodificacionBase64 {
+
+    /** Alfabeto estándar de Base64. */
+    private static final byte[] ALFABETO =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    /** Valor de cada carácter ASCII en el alfabeto, o -1 si no pertenece a él. */
+    private static final byte[] VALORES = new byte[128];
+
+    /** Carácter de relleno. */
+    private static final byte RELLENO = '=';
+
+    /** Bytes que codifica de una vez el canal codificador (múltiplo de 3, para no generar relleno). */
+    private static final int TROZO_CODIFICADO = 48 * 1024;
+
+    /** Caracteres que lee de una vez el canal decodificador. */
+    private static final int TROZO_DECODIFICADO = 64 * 1024;
+
+    static {
+        Arrays.fill(VALORES, (byte) -1);
+        for (int i = 0; i < ALFABETO.length; i++) {
+            VALORES[ALFABETO[i]] = (byte) i;
+        }
+    }
+
+    /** Clase de utilidades, no se instancia. */
+    private CodificacionBase64() {
+    }
+
+    /**
+     * Calcula la longitud en Base64 de un número de bytes.
+     *
+     * @param bytes Número de bytes a codificar
+     * @return Número de caracteres (bytes ASCII) de la codificación
+     *
+     * @author Telmo
+     */
+    static int longitudCodificada(int bytes) {
+        return 4 * ((bytes + 2) / 3);
+    }
+
+    /**
+     * Codifica en Base64 los bytes restantes del origen y los escribe como ASCII en el destino.
+     * El origen queda consumido.
+     *
+     * @param origen Bytes a codificar
+     * @param destino Buffer en el que se escribe la codificación
+     * @return Número de bytes escritos
+     * @throws BufferOverflowException Sí el destino no tiene sitio (no se escribe nada)
+     *
+     * @author Telmo
+     */
+    static int codificar(ByteBuffer origen, ByteBuffer destino) {
+        int longitud = longitudCodificada(origen.remaining());
+        if (destino.remaining() < longitud) {
+            throw new BufferOverflowException();
+        }
+        while (origen.remaining() >= 3) {
+            int grupo = (origen.get() & 0xff) << 16 | (origen.get() & 0xff) << 8 | (origen.get() & 0xff);
+            destino.put(ALFABETO[grupo >>> 18]).put(ALFABETO[(grupo >>> 12) & 0x3f])
+                    .put(ALFABETO[(grupo >>> 6) & 0x3f]).put(ALFABETO[grupo & 0x3f]);
+        }
+        if (origen.remaining() == 1) {
+            int grupo = (origen.get() & 0xff) << 16;
+            destino.put(ALFABETO[grupo >>> 18]).put(ALFABETO[(grupo >>> 12) & 0x3f]).put(RELLENO).put(RELLENO);
+        } else if (origen.remaining() == 2) {
+            int grupo = (origen.get() & 0xff) << 16 | (origen.get() & 0xff) << 8;
+            destino.put(ALFABETO[grupo >>> 18]).put(ALFABETO[(grupo >>> 12) & 0x3f])
+                    .put(ALFABETO[(grupo >>> 6) & 0x3f]).put(RELLENO);
+        }
+        return longitud;
+    }
+
+    /**
+     * Calcula cuántos bytes ocupa como mucho la decodificación de un texto Base64.
+     *
+     * @param caracteres Número de caracteres del texto Base64
+     * @return Número máximo de bytes decodificados
+     *
+     * @author Telmo
+     */
+    static int longitudDecodificada(int caracteres) {
+        return caracteres / 4 * 3;
+    }
+
+    /**
+     * Decodifica el texto Base64 (ASCII) restante del origen y escribe los bytes en el destino.
+     * El origen queda consumido.
+     *
+     * @param origen Texto Base64 con relleno; su longitud debe ser múltiplo de 4
+     * @param destino Buffer en el que se escriben los bytes
+     * @return Número de bytes escritos
+     * @throws IllegalArgumentException Sí el origen no es Base64 válido (igual que {@link java.util.Base64.Decoder})
+     * @throws BufferOverflowException Sí el destino no tiene sitio
+     *
+     * @author Telmo
+     */
+    static int decodificar(ByteBuffer origen, ByteBuffer destino) {
+        int caracteres = origen.remaining();
+        if (caracteres % 4 != 0) {
+            throw new IllegalArgumentException("Longitud de Base64 no válida: " + caracteres);
+        }
+        int inicio = destino.position();
+        while (origen.hasRemaining()) {
+            int a = valor(origen.get());
+            int b = valor(origen.get());
+            byte c = origen.get();
+            byte d = origen.get();
+            if (d != RELLENO) {
+                int grupo = a << 18 | b << 12 | valor(c) << 6 | valor(d);
+                destino.put((byte) (grupo >>> 16)).put((byte) (grupo >>> 8)).put((byte) grupo);
+                continue;
+            }
+            if (origen.hasRemaining()) {
+                throw new IllegalArgumentException("Relleno de Base64 antes del final");
+            }
+            if (c == RELLENO) {
+                destino.put((byte) ((a << 18 | b << 12) >>> 16));
+            } else {
+                int grupo = a << 18 | b << 12 | valor(c) << 6;
+                destino.put((byte) (grupo >>> 16)).put((byte) (grupo >>> 8));
+            }
+        }
+        return destino.position() - inicio;
+    }
+
+    /**
+     * Crea un canal que escribe en Base64, por trozos, los bytes que recibe. El relleno final se escribe
+     * al cerrarlo; cerrarlo no cierra el destino.
+     *
+     * @param destino Canal en el que se escribe el texto Base64 (ASCII)
+     * @return Canal codificador
+     *
+     * @author Telmo
+     */
+    static WritableByteChannel codificador(WritableByteChannel destino) {
+        return new CanalCodificador(destino);
+    }
+
+    /**
+     * Crea un canal que lee un texto Base64 y entrega los bytes decodificados, por trozos. Se ignoran
+     * los saltos de línea y los espacios, como en un texto pegado en la ventana.
+     *
+     * <p>Si el texto no es Base64 válido, la lectura lanza una {@link CharacterCodingException}: al ser
+     * una {@link IOException}, quien lee el canal la trata como un error de los datos y no se le escapa
+     * como una excepción no comprobada.</p>
+     *
+     * @param origen Canal del que se lee el texto Base64 (ASCII); no se cierra
+     * @return Canal decodificador
+     *
+     * @author Telmo
+     */
+    static ReadableByteChannel decodificador(ReadableByteChannel origen) {
+        return new CanalDecodificador(origen);
+    }
+
+    /**
+     * Devuelve el valor de un carácter del alfabeto.
+     *
+     * @param caracter Carácter ASCII
+     * @return Valor entre 0 y 63
+     * @throws IllegalArgumentException Sí el carácter no pertenece al alfabeto
+     *
+     * @author Telmo
+     */
+    private static int valor(byte caracter) {
+        int valor = caracter < 0 ? -1 : VALORES[caracter];
+        if (valor < 0) {
+            throw new IllegalArgumentException("Carácter no válido en Base64: " + (char) (caracter & 0xff));
+        }
+        return valor;
+    }
+
+    /**
+     * Canal que codifica en Base64 lo que se escribe en él.
+     */
+    private static final class CanalCodificador implements WritableByteChannel {
+
+        /** Canal en el que se escribe el texto Base64. */
+        private final WritableByteChannel destino;
+
+        /** Bytes que no completan un grupo de 3 y esperan a la siguiente escritura. */
+        private final ByteBuffer pendiente = ByteBuffer.allocate(3);
+
+        /** Texto Base64 de cada trozo. */
+        private final ByteBuffer salida = ByteBuffer.allocate(longitudCodificada(TROZO_CODIFICADO));
+
+        /** Indica si el canal sigue abierto. */
+        private boolean abierto = true;
+
+        /**
+         * Crea el canal.
+         *
+         * @param destino Canal en el que se escribe el texto Base64
+         */
+        CanalCodificador(WritableByteChannel destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public int write(ByteBuffer origen) throws IOException {
+            int total = origen.remaining();
+            if (pendiente.position() > 0) {
+                while (pendiente.hasRemaining() && origen.hasRemaining()) {
+                    pendiente.put(origen.get());
+                }
+                if (pendiente.hasRemaining()) {
+                    return total;
+                }
+                escribir(pendiente.flip());
+                pendiente.clear();
+            }
+            while (origen.remaining() >= 3) {
+                int longitud = Math.min(TROZO_CODIFICADO, origen.remaining() / 3 * 3);
+                ByteBuffer trozo = origen.slice(origen.position(), longitud);
+                origen.position(origen.position() + longitud);
+                escribir(trozo);
+            }
+            pendiente.put(origen);
+            return total;
+        }
+
+        /**
+         * Codifica unos bytes y escribe el resultado completo en el destino.
+         *
+         * @param datos Bytes a codificar (se consumen)
+         * @throws IOException Sí hay un error escribiendo
+         */
+        private void escribir(ByteBuffer datos) throws IOException {
+            salida.clear();
+            codificar(datos, salida);
+            salida.flip();
+            while (salida.hasRemaining()) {
+                destino.write(salida);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return abierto;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (abierto) {
+                abierto = false;
+                escribir(pendiente.flip());
+            }
+        }
+    }
+
+    /**
+     * Canal que decodifica el texto Base64 de otro canal.
+     */
+    private static final class CanalDecodificador implements ReadableByteChannel {
+
+        /** Canal del que se lee el texto Base64. */
+        private final ReadableByteChannel origen;
+
+        /** Caracteres leídos del origen. */
+        private final ByteBuffer texto = ByteBuffer.allocate(TROZO_DECODIFICADO);
+
+        /** Caracteres del alfabeto (sin espacios) que aún no se han decodificado. */
+        private final ByteBuffer grupos = ByteBuffer.allocate(TROZO_DECODIFICADO + 3);
+
+        /** Bytes decodificados que aún no se han entregado, listos para leer. */
+        private final ByteBuffer bytes = ByteBuffer.allocate(longitudDecodificada(TROZO_DECODIFICADO + 3)).flip();
+
+        /** Indica si se ha llegado al final del origen. */
+        private boolean fin;
+
+        /** Indica si ya ha aparecido el relleno, que solo puede ir al final. */
+        private boolean relleno;
+
+        /**
+         * Crea el canal.
+         *
+         * @param origen Canal del que se lee el texto Base64
+         */
+        CanalDecodificador(ReadableByteChannel origen) {
+            this.origen = origen;
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            while (!bytes.hasRemaining()) {
+                if (fin) {
+                    return -1;
+                }
+                try {
+                    rellenar();
+                } catch (IllegalArgumentException e) {
+                    throw new Base64NoValido(e);
+                }
+            }
+            int longitud = Math.min(destino.remaining(), bytes.remaining());
+            destino.put(bytes.slice(bytes.position(), longitud));
+            bytes.position(bytes.position() + longitud);
+            return longitud;
+        }
+
+        /**
+         * Lee un trozo del origen, descarta los espacios y decodifica los grupos de 4 caracteres completos.
+         *
+         * @throws IOException Sí hay un error leyendo
+         * @throws IllegalArgumentException Sí el texto no es Base64 válido
+         */
+        private void rellenar() throws IOException {
+            texto.clear();
+            if (origen.read(texto) < 0) {
+                fin = true;
+            }
+            texto.flip();
+            while (texto.hasRemaining()) {
+                byte caracter = texto.get();
+                if (caracter == '\n' || caracter == '\r' || caracter == ' ' || caracter == '\t') {
+                    continue;
+                }
+                if (relleno && caracter != RELLENO) {
+                    throw new IllegalArgumentException("Relleno de Base64 antes del final");
+                }
+                relleno = caracter == RELLENO;
+                grupos.put(caracter);
+            }
+            if (fin && grupos.position() % 4 != 0) {
+                throw new IllegalArgumentException("Longitud de Base64 no válida: sobran " + grupos.position() % 4 + " caracteres");
+            }
+            grupos.flip();
+            ByteBuffer completos = grupos.slice(0, grupos.remaining() / 4 * 4);
+            grupos.position(completos.limit());
+            bytes.clear();
+            decodificar(completos, bytes);
+            bytes.flip();
+            grupos.compact();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return origen.isOpen();
+        }
+
+        @Override
+        public void close() {
+            fin = true;
+        }
+    }
+
+    /**
+     * Error de un texto que no es Base64 válido, leído por un canal decodificador.
+     */
+    private static final class Base64NoValido extends CharacterCodingException {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Descripción del error. */
+        private final String mensaje;
+
+        /**
+         * Crea el error a partir del de la decodificación.
+         *
+         * @param causa Error de la decodificación
+         */
+        Base64NoValido(IllegalArgumentException causa) {
+            this.mensaje = causa.getMessage();
+            initCause(causa);
+        }
+
+        @Override
+        public String getMessage() {
+            return mensaje;
+        }
+    }
+}
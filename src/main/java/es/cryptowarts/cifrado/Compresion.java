@@ -0,0 +1,402 @@
+package es.cryptowarts.cifrado;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión opcional de los datos antes de cifrarlos. Los datos cifrados no se pueden comprimir, así que
+ * la única forma de que un archivo de texto o de log cifrado ocupe menos que el original es comprimirlo
+ * antes; el resultado además tarda menos en escribirse y en cifrarse.
+ *
+ * <p>Se usa {@link Deflater} (formato zlib, con suma Adler-32) por bloques, sin guardar el archivo en
+ * memoria: el origen se comprime según lo lee el cifrado y, al descifrar, cada bloque descifrado se
+ * descomprime según se genera. Que los datos están comprimidos queda anotado en el {@link SobreCifrado},
+ * de modo que al descifrar no hay que indicarlo. Por defecto no se comprime; se activa con
+ * la propiedad del sistema {@link #PROPIEDAD} ({@code rapida}, {@code maxima} o un nivel de 1 a 9).</p>
+ *
+ * <p>El tamaño de los datos cifrados revela cuánto se han podido comprimir: no conviene comprimir si un
+ * atacante puede mezclar sus propios datos con los secretos en el mismo archivo.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class Compresion {
+
+    /** Propiedad del sistema que define la compresión por defecto al cifrar. */
+    public static final String PROPIEDAD = "cryptowarts.compresion";
+
+    /** Sin compresión: los datos se cifran tal cual. */
+    public static final Compresion NINGUNA = new Compresion(-1);
+
+    /** Compresión rápida ({@link Deflater#BEST_SPEED}), la que compensa casi siempre en textos y logs. */
+    public static final Compresion RAPIDA = new Compresion(Deflater.BEST_SPEED);
+
+    /** Compresión máxima ({@link Deflater#BEST_COMPRESSION}), bastante más lenta que la rápida. */
+    public static final Compresion MAXIMA = new Compresion(Deflater.BEST_COMPRESSION);
+
+    /** Tamaño de los buffers de compresión y descompresión (64 KiB, como los bloques de cifrado). */
+    private static final int TAMANO_BLOQUE = ProcesadorFlujo.TAMANO_BLOQUE;
+
+    /** Nivel de Deflater, o -1 si no se comprime. */
+    private final int nivel;
+
+    /**
+     * Crea una compresión.
+     *
+     * @param nivel Nivel de Deflater, o -1 si no se comprime
+     */
+    private Compresion(int nivel) {
+        this.nivel = nivel;
+    }
+
+    /**
+     * Devuelve la compresión de un nivel de Deflater.
+     *
+     * @param nivel Nivel de 1 (más rápido) a 9 (más compresión)
+     * @return Compresión con ese nivel
+     * @throws IllegalArgumentException Sí el nivel no está entre 1 y 9
+     *
+     * @author Telmo
+     */
+    public static Compresion nivel(int nivel) {
+        if (nivel < Deflater.BEST_SPEED || nivel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Nivel de compresión fuera de los límites (1 a 9): " + nivel);
+        }
+        return switch (nivel) {
+            case Deflater.BEST_SPEED -> RAPIDA;
+            case Deflater.BEST_COMPRESSION -> MAXIMA;
+            default -> new Compresion(nivel);
+        };
+    }
+
+    /**
+     * Devuelve la compresión configurada en {@link #PROPIEDAD}, o {@link #NINGUNA} si no hay ninguna válida.
+     *
+     * @return Compresión por defecto al cifrar
+     *
+     * @author Telmo
+     */
+    public static Compresion predeterminada() {
+        String valor = System.getProperty(PROPIEDAD);
+        if (valor == null) {
+            return NINGUNA;
+        }
+        switch (valor.trim().toLowerCase(Locale.ROOT)) {
+            case "rapida", "si":
+                return RAPIDA;
+            case "maxima":
+                return MAXIMA;
+            default:
+                try {
+                    return nivel(Integer.parseInt(valor.trim()));
+                } catch (IllegalArgumentException e) {
+                    return NINGUNA;
+                }
+        }
+    }
+
+    /**
+     * Indica si se comprime.
+     *
+     * @return {@code false} solo para {@link #NINGUNA}
+     */
+    public boolean isActiva() {
+        return nivel > 0;
+    }
+
+    /**
+     * Devuelve el nivel de Deflater.
+     *
+     * @return Nivel de 1 a 9, o -1 si no se comprime
+     */
+    public int getNivel() {
+        return nivel;
+    }
+
+    /**
+     * Aplica una operación de lectura sobre el origen comprimido según se lee. El avance se informa con
+     * los bytes leídos del origen sin comprimir, que son los que el usuario conoce.
+     *
+     * @param origen Canal con los datos sin comprimir, se lee hasta el final (no se cierra)
+     * @param progreso Receptor del avance
+     * @param total Tamaño del origen en bytes, o -1 si no se conoce
+     * @param operacion Operación que lee los datos comprimidos hasta el final (normalmente, el cifrado)
+     * @return Resultado de la operación
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    long comprimir(ReadableByteChannel origen, Progreso progreso, long total, Lectura operacion) throws IOException, GeneralSecurityException {
+        Deflater compresor = new Deflater(nivel);
+        try {
+            return operacion.aplicar(new CanalComprimido(compresor, origen, progreso, total));
+        } finally {
+            compresor.end();
+        }
+    }
+
+    /**
+     * Aplica una operación de escritura cuyo resultado se descomprime según se escribe, y comprueba al
+     * final que los datos comprimidos estaban completos.
+     *
+     * @param destino Canal en el que se escriben los datos descomprimidos (no se cierra)
+     * @param operacion Operación que escribe los datos comprimidos (normalmente, el descifrado)
+     * @return Número de bytes descomprimidos escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de descifrado o los datos comprimidos no son
+     *         válidos (clave incorrecta o datos manipulados)
+     *
+     * @author Telmo
+     */
+    static long descomprimir(WritableByteChannel destino, Escritura operacion) throws IOException, GeneralSecurityException {
+        Inflater descompresor = new Inflater();
+        try {
+            CanalDescomprimido canal = new CanalDescomprimido(descompresor, destino);
+            operacion.aplicar(canal);
+            if (!descompresor.finished()) {
+                throw new GeneralSecurityException("Datos comprimidos incompletos: el archivo está truncado o manipulado");
+            }
+            return canal.escritos;
+        } catch (FormatoNoValido e) {
+            throw new GeneralSecurityException("Datos comprimidos no válidos: clave incorrecta o datos manipulados", e.getCause());
+        } finally {
+            descompresor.end();
+        }
+    }
+
+    /**
+     * Descomprime unos datos que ya están en memoria, como los de un texto descifrado.
+     *
+     * @param datos Array con los datos comprimidos
+     * @param inicio Posición del primer byte comprimido
+     * @param longitud Número de bytes comprimidos
+     * @return Datos descomprimidos
+     * @throws GeneralSecurityException Sí los datos comprimidos no son válidos o están incompletos
+     *
+     * @author Telmo
+     */
+    static byte[] descomprimir(byte[] datos, int inicio, int longitud) throws GeneralSecurityException {
+        ByteArrayOutputStream resultado = new ByteArrayOutputStream(Math.max(32, longitud * 4));
+        try {
+            descomprimir(Channels.newChannel(resultado), canal -> canal.write(ByteBuffer.wrap(datos, inicio, longitud)));
+        } catch (IOException e) {
+            // Solo se escribe en memoria: no hay errores de E/S reales
+            throw new UncheckedIOException(e);
+        }
+        return resultado.toByteArray();
+    }
+
+    /**
+     * Devuelve la compresión en texto, para los mensajes y el log.
+     *
+     * @return "ninguna" o "deflate-N"
+     */
+    @Override
+    public String toString() {
+        return isActiva() ? "deflate-" + nivel : "ninguna";
+    }
+
+    /**
+     * Operación que lee datos de un canal.
+     */
+    @FunctionalInterface
+    interface Lectura {
+        /**
+         * Aplica la operación.
+         *
+         * @param origen Canal del que se lee hasta el final
+         * @return Número de bytes escritos
+         * @throws IOException Sí hay un error leyendo o escribiendo
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        long aplicar(ReadableByteChannel origen) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Operación que escribe datos en un canal.
+     */
+    @FunctionalInterface
+    interface Escritura {
+        /**
+         * Aplica la operación.
+         *
+         * @param destino Canal en el que se escribe
+         * @return Número de bytes escritos en el canal
+         * @throws IOException Sí hay un error leyendo o escribiendo
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        long aplicar(WritableByteChannel destino) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Error de formato de los datos comprimidos. Un {@link WritableByteChannel} solo puede lanzar
+     * {@link IOException}; {@link #descomprimir} lo convierte en un error de descifrado.
+     */
+    private static final class FormatoNoValido extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Crea el error.
+         *
+         * @param causa Error de Inflater
+         */
+        FormatoNoValido(DataFormatException causa) {
+            super(causa);
+        }
+    }
+
+    /**
+     * Canal que entrega comprimidos los datos de otro canal.
+     */
+    private static final class CanalComprimido implements ReadableByteChannel {
+
+        /** Compresor. */
+        private final Deflater compresor;
+
+        /** Canal con los datos sin comprimir. */
+        private final ReadableByteChannel origen;
+
+        /** Receptor del avance. */
+        private final Progreso progreso;
+
+        /** Tamaño del origen en bytes, o -1 si no se conoce. */
+        private final long total;
+
+        /** Bloque del origen que se está comprimiendo. */
+        private final ByteBuffer entrada = ByteBuffer.allocate(TAMANO_BLOQUE);
+
+        /** Bytes leídos del origen. */
+        private long leidos;
+
+        /**
+         * Crea el canal.
+         *
+         * @param compresor Compresor con el nivel elegido
+         * @param origen Canal con los datos sin comprimir
+         * @param progreso Receptor del avance
+         * @param total Tamaño del origen en bytes, o -1 si no se conoce
+         */
+        CanalComprimido(Deflater compresor, ReadableByteChannel origen, Progreso progreso, long total) {
+            this.compresor = compresor;
+            this.origen = origen;
+            this.progreso = progreso;
+            this.total = total;
+        }
+
+        @Override
+        public int read(ByteBuffer destino) throws IOException {
+            int inicio = destino.position();
+            while (destino.hasRemaining() && !compresor.finished()) {
+                if (compresor.needsInput()) {
+                    // El compresor ya ha consumido el bloque anterior: se puede reutilizar el buffer
+                    entrada.clear();
+                    int bytes = origen.read(entrada);
+                    // Al final el buffer queda vacío: el compresor lo sigue teniendo como entrada
+                    entrada.flip();
+                    compresor.setInput(entrada);
+                    if (bytes == -1) {
+                        compresor.finish();
+                    } else {
+                        leidos += bytes;
+                        ProcesadorFlujo.avanzar(progreso, leidos, total);
+                    }
+                }
+                compresor.deflate(destino);
+            }
+            int escritos = destino.position() - inicio;
+            return escritos == 0 && compresor.finished() ? -1 : escritos;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return origen.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // El canal original lo cierra quien lo abrió
+        }
+    }
+
+    /**
+     * Canal que descomprime lo que se escribe en él y lo escribe en otro canal.
+     */
+    private static final class CanalDescomprimido implements WritableByteChannel {
+
+        /** Descompresor. */
+        private final Inflater descompresor;
+
+        /** Canal en el que se escriben los datos descomprimidos. */
+        private final WritableByteChannel destino;
+
+        /** Buffer de los datos descomprimidos. */
+        private final ByteBuffer salida = ByteBuffer.allocate(TAMANO_BLOQUE);
+
+        /** Bytes descomprimidos escritos en el destino. */
+        private long escritos;
+
+        /**
+         * Crea el canal.
+         *
+         * @param descompresor Descompresor
+         * @param destino Canal en el que se escriben los datos descomprimidos
+         */
+        CanalDescomprimido(Inflater descompresor, WritableByteChannel destino) {
+            this.descompresor = descompresor;
+            this.destino = destino;
+        }
+
+        @Override
+        public int write(ByteBuffer origen) throws IOException {
+            int bytes = origen.remaining();
+            if (bytes > 0 && descompresor.finished()) {
+                throw new FormatoNoValido(new DataFormatException("datos sobrantes después de los comprimidos"));
+            }
+            descompresor.setInput(origen);
+            boolean lleno;
+            do {
+                salida.clear();
+                try {
+                    descompresor.inflate(salida);
+                } catch (DataFormatException e) {
+                    throw new FormatoNoValido(e);
+                }
+                if (descompresor.needsDictionary()) {
+                    throw new FormatoNoValido(new DataFormatException("se necesita un diccionario"));
+                }
+                // Con el buffer lleno puede quedar salida pendiente aunque ya se haya consumido toda la entrada
+                lleno = !salida.hasRemaining();
+                salida.flip();
+                while (salida.hasRemaining()) {
+                    escritos += destino.write(salida);
+                }
+            } while (lleno || (origen.hasRemaining() && !descompresor.finished()));
+            if (origen.hasRemaining()) {
+                throw new FormatoNoValido(new DataFormatException("datos sobrantes después de los comprimidos"));
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return destino.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // El canal original lo cierra quien lo abrió
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Derivación de claves AES a partir de la clave del usuario con PBKDF2 (HMAC-SHA256) y una sal aleatoria.
+ * Cada derivación cuesta tantas rondas de HMAC como iteraciones, lo que encarece los ataques por fuerza
+ * bruta pero también cada operación; por eso las claves derivadas se guardan en una {@link CacheClaves}.
+ * El número de iteraciones de los datos nuevos se configura con {@link #PROPIEDAD_ITERACIONES}; los datos
+ * ya cifrados llevan en su cabecera la sal y las iteraciones con las que se derivó su clave.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class DerivacionClaves {
+
+    /** Logger para registrar los valores de configuración no válidos. */
+    private static final Logger logger = LoggerFactory.getLogger(DerivacionClaves.class);
+
+    /** Propiedad del sistema con el número de iteraciones para las claves nuevas. */
+    public static final String PROPIEDAD_ITERACIONES = "cryptowarts.iteraciones";
+
+    /** Iteraciones por defecto (unos 100-200 ms por derivación en un núcleo actual). */
+    public static final int ITERACIONES = 210_000;
+
+    /** Menor número de iteraciones admitido. */
+    public static final int MINIMO_ITERACIONES = 1_000;
+
+    /**
+     * Mayor número de iteraciones que se puede configurar para cifrar. Al leer cabeceras el límite es
+     * mucho menor (ver {@link #maximoIteracionesCabecera()}).
+     */
+    public static final int MAXIMO_ITERACIONES = 10_000_000;
+
+    /**
+     * Cuántas veces las iteraciones configuradas (o las por defecto, si son más) se admiten en una
+     * cabecera.
+     */
+    public static final int MULTIPLO_CABECERA = 4;
+
+    /** Longitud de la sal en bytes. */
+    static final int LONGITUD_SAL = 16;
+
+    /** Longitud de la clave AES derivada en bits. */
+    private static final int BITS_CLAVE = 128;
+
+    /** Algoritmo de derivación. */
+    private static final String ALGORITMO = "PBKDF2WithHmacSHA256";
+
+    /** Generador de sales aleatorias. */
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    /** Clase de utilidades, no se instancia. */
+    private DerivacionClaves() {
+    }
+
+    /**
+     * Devuelve el número de iteraciones configurado en {@link #PROPIEDAD_ITERACIONES}, o {@link #ITERACIONES}
+     * si no hay ninguno válido.
+     *
+     * @return Iteraciones para derivar las claves nuevas
+     *
+     * @author Telmo
+     */
+    public static int iteraciones() {
+        String valor = System.getProperty(PROPIEDAD_ITERACIONES);
+        if (valor != null) {
+            try {
+                int iteraciones = Integer.parseInt(valor.trim());
+                if (iteracionesValidas(iteraciones)) {
+                    return iteraciones;
+                }
+            } catch (NumberFormatException e) {
+                // Se registra abajo
+            }
+            logger.warn("Valor no válido en {} (entre {} y {}): {}", PROPIEDAD_ITERACIONES,
+                    MINIMO_ITERACIONES, MAXIMO_ITERACIONES, valor);
+        }
+        return ITERACIONES;
+    }
+
+    /**
+     * Indica si un número de iteraciones está dentro de los límites admitidos.
+     *
+     * @param iteraciones Número de iteraciones
+     * @return {@code true} si está entre {@link #MINIMO_ITERACIONES} y {@link #MAXIMO_ITERACIONES}
+     *
+     * @author Telmo
+     */
+    public static boolean iteracionesValidas(int iteraciones) {
+        return iteraciones >= MINIMO_ITERACIONES && iteraciones <= MAXIMO_ITERACIONES;
+    }
+
+    /**
+     * Devuelve el mayor número de iteraciones que se acepta en la cabecera de unos datos cifrados:
+     * {@link #MULTIPLO_CABECERA} veces las configuradas o las por defecto, la mayor de las dos. Las
+     * cabeceras no son de fiar (por ejemplo, lo que recibe el servidor), y cada sal nueva obliga a
+     * derivar otra vez: con el límite de {@link #MAXIMO_ITERACIONES}, cada mensaje podría costar
+     * segundos de CPU. Para descifrar datos cifrados con más iteraciones hay que configurar al menos
+     * una cuarta parte de ellas.
+     *
+     * @return Máximo de iteraciones en una cabecera
+     *
+     * @author Telmo
+     */
+    public static int maximoIteracionesCabecera() {
+        return (int) Math.min(MAXIMO_ITERACIONES, (long) Math.max(ITERACIONES, iteraciones()) * MULTIPLO_CABECERA);
+    }
+
+    /**
+     * Indica si el número de iteraciones leído de una cabecera es aceptable.
+     *
+     * @param iteraciones Número de iteraciones de la cabecera
+     * @return {@code true} si está entre {@link #MINIMO_ITERACIONES} y {@link #maximoIteracionesCabecera()}
+     *
+     * @author Telmo
+     */
+    static boolean iteracionesCabeceraValidas(int iteraciones) {
+        return iteraciones >= MINIMO_ITERACIONES && iteraciones <= maximoIteracionesCabecera();
+    }
+
+    /**
+     * Deriva una clave AES de 128 bits con PBKDF2-HMAC-SHA256. Es una operación costosa a propósito:
+     * conviene obtener las claves a través de la caché de {@link CifradoAES}.
+     *
+     * @param clave Clave introducida por el usuario
+     * @param sal Sal de la clave
+     * @param iteraciones Número de iteraciones
+     * @return Bytes de la clave AES
+     * @throws GeneralSecurityException Sí las iteraciones están fuera de los límites o el algoritmo no está disponible
+     *
+     * @author Telmo
+     */
+    public static byte[] derivar(String clave, byte[] sal, int iteraciones) throws GeneralSecurityException {
+        return derivar(clave, sal, iteraciones, BITS_CLAVE);
+    }
+
+    /**
+     * Deriva una clave de la longitud indicada con PBKDF2-HMAC-SHA256, para los algoritmos que no usan
+     * claves de 128 bits (ChaCha20-Poly1305 necesita 256).
+     *
+     * @param clave Clave introducida por el usuario
+     * @param sal Sal de la clave
+     * @param iteraciones Número de iteraciones
+     * @param bits Longitud de la clave en bits
+     * @return Bytes de la clave
+     * @throws GeneralSecurityException Sí las iteraciones están fuera de los límites o el algoritmo no está disponible
+     *
+     * @author Telmo
+     */
+    static byte[] derivar(String clave, byte[] sal, int iteraciones, int bits) throws GeneralSecurityException {
+        if (!iteracionesValidas(iteraciones)) {
+            throw new GeneralSecurityException("Número de iteraciones fuera de los límites: " + iteraciones);
+        }
+        PBEKeySpec especificacion = new PBEKeySpec(clave.toCharArray(), sal, iteraciones, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMO).generateSecret(especificacion).getEncoded();
+        } finally {
+            especificacion.clearPassword();
+        }
+    }
+
+    /**
+     * Genera una sal aleatoria nueva.
+     *
+     * @return Sal de {@link #LONGITUD_SAL} bytes
+     *
+     * @author Telmo
+     */
+    static byte[] nuevaSal() {
+        byte[] sal = new byte[LONGITUD_SAL];
+        ALEATORIO.nextBytes(sal);
+        return sal;
+    }
+}
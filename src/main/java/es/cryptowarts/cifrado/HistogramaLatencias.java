@@ -0,0 +1,213 @@
+package es.cryptowarts.cifrado;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos, seguro para registrar desde muchos hilos a la vez y sin
+ * reservas de memoria al registrar. Cada potencia de dos se divide en 8 intervalos, así que los
+ * percentiles tienen un error relativo de como mucho un 12,5 % con solo 488 contadores, cubriendo
+ * desde 1 ns hasta el máximo de un {@code long}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class HistogramaLatencias {
+
+    /** Bits significativos que distinguen los intervalos de cada potencia de dos (2^3 = 8 intervalos). */
+    private static final int BITS_INTERVALO = 3;
+
+    /** Intervalos por potencia de dos. */
+    private static final int INTERVALOS = 1 << BITS_INTERVALO;
+
+    /** Número total de contadores. */
+    private static final int CONTADORES = INTERVALOS + (63 - BITS_INTERVALO) * INTERVALOS;
+
+    /** Número de valores registrados en cada intervalo. */
+    private final AtomicLongArray contadores = new AtomicLongArray(CONTADORES);
+
+    /** Número total de valores registrados. */
+    private final LongAdder cuenta = new LongAdder();
+
+    /** Suma de todos los valores registrados. */
+    private final LongAdder suma = new LongAdder();
+
+    /** Mayor valor registrado. */
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Crea un histograma vacío.
+     *
+     * @author Telmo
+     */
+    public HistogramaLatencias() {
+    }
+
+    /**
+     * Registra una latencia.
+     *
+     * @param nanos Latencia en nanosegundos (los valores negativos cuentan como 0)
+     *
+     * @author Telmo
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        contadores.incrementAndGet(indice(valor));
+        cuenta.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Devuelve el percentil indicado de las latencias registradas.
+     *
+     * @param percentil Percentil entre 0 y 100 (por ejemplo 99.9)
+     * @return Latencia en nanosegundos por debajo de la cual queda ese porcentaje de valores
+     *         (límite superior de su intervalo), o 0 si no hay valores
+     *
+     * @author Telmo
+     */
+    public long percentil(double percentil) {
+        if (percentil < 0 || percentil > 100) {
+            throw new IllegalArgumentException("El percentil debe estar entre 0 y 100");
+        }
+        long total = cuenta.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+        long acumulado = 0;
+        for (int i = 0; i < CONTADORES; i++) {
+            acumulado += contadores.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Devuelve el número de valores registrados.
+     *
+     * @return Número de valores
+     *
+     * @author Telmo
+     */
+    public long getCuenta() {
+        return cuenta.sum();
+    }
+
+    /**
+     * Devuelve la suma de todas las latencias registradas.
+     *
+     * @return Suma en nanosegundos
+     *
+     * @author Telmo
+     */
+    public long getSuma() {
+        return suma.sum();
+    }
+
+    /**
+     * Devuelve la latencia media.
+     *
+     * @return Media en nanosegundos, o 0 si no hay valores
+     *
+     * @author Telmo
+     */
+    public long getMedia() {
+        long total = cuenta.sum();
+        return total == 0 ? 0 : suma.sum() / total;
+    }
+
+    /**
+     * Devuelve la mayor latencia registrada.
+     *
+     * @return Máximo en nanosegundos
+     *
+     * @author Telmo
+     */
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Borra todos los valores registrados (por ejemplo, al terminar el calentamiento de una prueba).
+     * Los valores que se registren a la vez que se reinicia pueden conservarse o perderse.
+     *
+     * @author Telmo
+     */
+    public void reiniciar() {
+        for (int i = 0; i < CONTADORES; i++) {
+            contadores.set(i, 0);
+        }
+        cuenta.reset();
+        suma.reset();
+        maximo.reset();
+    }
+
+    /**
+     * Resume el histograma en milisegundos: número de valores, media, p50, p90, p99, p99.9 y máximo.
+     *
+     * @return Resumen legible del histograma
+     *
+     * @author Telmo
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d media=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms",
+                getCuenta(), milisegundos(getMedia()), milisegundos(percentil(50)), milisegundos(percentil(90)),
+                milisegundos(percentil(99)), milisegundos(percentil(99.9)), milisegundos(getMaximo()));
+    }
+
+    /**
+     * Convierte nanosegundos a milisegundos con decimales.
+     *
+     * @param nanos Tiempo en nanosegundos
+     * @return Tiempo en milisegundos
+     *
+     * @author Telmo
+     */
+    private static double milisegundos(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Calcula el intervalo de un valor: los 8 primeros valores tienen cada uno el suyo y, a partir de
+     * ahí, cada potencia de dos se divide en 8 intervalos iguales.
+     *
+     * @param valor Valor no negativo
+     * @return Índice del contador
+     *
+     * @author Telmo
+     */
+    static int indice(long valor) {
+        if (valor < INTERVALOS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int intervalo = (int) (valor >>> (exponente - BITS_INTERVALO)) & (INTERVALOS - 1);
+        return INTERVALOS + (exponente - BITS_INTERVALO) * INTERVALOS + intervalo;
+    }
+
+    /**
+     * Calcula el mayor valor que cae en un intervalo.
+     *
+     * @param indice Índice del contador
+     * @return Límite superior (incluido) del intervalo
+     *
+     * @author Telmo
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < INTERVALOS) {
+            return indice;
+        }
+        int desplazamiento = (indice - INTERVALOS) / INTERVALOS;
+        int intervalo = (indice - INTERVALOS) % INTERVALOS;
+        long siguiente = (long) (INTERVALOS + intervalo + 1) << desplazamiento;
+        // El último intervalo llega hasta Long.MAX_VALUE (el desplazamiento desborda a negativo)
+        return siguiente <= 0 ? Long.MAX_VALUE : siguiente - 1;
+    }
+}
@@ -0,0 +1,210 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acceso a las métricas de todos los cifradores de {@link RegistroCifradores} y de
+ * {@link CifradoAESParalelo}: su publicación por JMX y un informe periódico en el log con las
+ * operaciones que ha habido desde el anterior.
+ *
+ * <p>Las métricas solo se registran si están activas: medir cuesta hasta un 11 % en las operaciones
+ * más pequeñas (ver {@link CifradorMedido}), así que la línea de comandos y quien use la biblioteca
+ * no lo pagan si no lo piden. Se activan con la propiedad del sistema {@link #PROPIEDAD_ACTIVAS} o
+ * con {@link #activar()}, como hace la interfaz gráfica. Publicarlas es aparte: lo hacen la interfaz
+ * gráfica y el servidor al arrancar con {@link #iniciar()}. El intervalo del informe se configura en
+ * segundos con la propiedad del sistema {@link #PROPIEDAD_INTERVALO} (0 lo desactiva).</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class Instrumentacion {
+
+    /** Logger en el que se escribe el informe periódico. */
+    private static final Logger logger = LoggerFactory.getLogger(Instrumentacion.class);
+
+    /** Propiedad del sistema que activa las métricas desde el arranque ({@code true}); por defecto están desactivadas. */
+    public static final String PROPIEDAD_ACTIVAS = "cryptowarts.metricas";
+
+    /** Propiedad del sistema con los segundos entre informes ({@value #INTERVALO_PREDETERMINADO} por defecto, 0 para no informar). */
+    public static final String PROPIEDAD_INTERVALO = "cryptowarts.metricas.intervalo";
+
+    /** Segundos entre informes si no se configura otro intervalo. */
+    static final int INTERVALO_PREDETERMINADO = 60;
+
+    /** Dominio de los nombres JMX de las métricas. */
+    static final String DOMINIO_JMX = "es.cryptowarts";
+
+    /** Ejecutor del informe periódico, o {@code null} si no se ha iniciado. */
+    private static ScheduledExecutorService informes;
+
+    /** Indica si las métricas ya están publicadas por JMX. */
+    private static boolean publicadas;
+
+    /** Operaciones de cada métrica en el último informe, para informar solo de las que cambian. */
+    private static final Map<MetricasCifrado, Long> ultimoInforme = new HashMap<>();
+
+    /** Clase de utilidades, no se instancia. */
+    private Instrumentacion() {
+    }
+
+    /**
+     * Devuelve las métricas de todos los cifradores: las de cifrar y las de descifrar de cada uno, en
+     * el orden del registro, y al final las de {@link CifradoAESParalelo}, que no está en el registro.
+     *
+     * @return Lista de métricas
+     *
+     * @author Telmo
+     */
+    public static List<MetricasCifrado> metricas() {
+        List<MetricasCifrado> metricas = new ArrayList<>();
+        for (Cifrador cifrador : RegistroCifradores.disponibles()) {
+            if (cifrador instanceof CifradorMedido medido) {
+                metricas.add(medido.metricas(true));
+                metricas.add(medido.metricas(false));
+            }
+        }
+        metricas.add(CifradoAESParalelo.metricas(true));
+        metricas.add(CifradoAESParalelo.metricas(false));
+        return metricas;
+    }
+
+    /**
+     * Activa la medición de las operaciones a partir de ahora. Las anteriores no cuentan.
+     *
+     * @author Telmo
+     */
+    public static void activar() {
+        MetricasCifrado.activar();
+    }
+
+    /**
+     * Indica si se están midiendo las operaciones.
+     *
+     * @return {@code true} si las métricas están activas
+     *
+     * @author Telmo
+     */
+    public static boolean activas() {
+        return MetricasCifrado.activas();
+    }
+
+    /**
+     * Publica las métricas por JMX y arranca el informe periódico. Se puede llamar varias veces.
+     * No activa la medición: sin {@link #activar()} ni {@link #PROPIEDAD_ACTIVAS} se quedan a cero.
+     *
+     * @author Telmo
+     */
+    public static void iniciar() {
+        publicarJMX();
+        iniciarInformes();
+    }
+
+    /**
+     * Publica por JMX las métricas de todos los cifradores, como
+     * {@code es.cryptowarts:type=Cifrado,algoritmo=<id>,operacion=<op>}. Si no se pueden publicar, se
+     * avisa en el log y la aplicación sigue igual.
+     *
+     * @author Telmo
+     */
+    public static synchronized void publicarJMX() {
+        if (publicadas) {
+            return;
+        }
+        publicadas = true;
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        for (MetricasCifrado metricas : metricas()) {
+            try {
+                servidor.registerMBean(metricas, new ObjectName(DOMINIO_JMX + ":type=Cifrado,algoritmo="
+                        + metricas.getAlgoritmo() + ",operacion=" + metricas.getOperacion()));
+            } catch (JMException e) {
+                logger.warn("No se han podido publicar por JMX las métricas de {}/{}: {}",
+                        metricas.getAlgoritmo(), metricas.getOperacion(), e.toString());
+            }
+        }
+        logger.debug("Métricas de cifrado publicadas por JMX en el dominio {}", DOMINIO_JMX);
+    }
+
+    /**
+     * Arranca, en un hilo en segundo plano, el informe periódico de las métricas en el log.
+     *
+     * @author Telmo
+     */
+    public static synchronized void iniciarInformes() {
+        int intervalo = intervalo();
+        if (informes != null || intervalo == 0) {
+            return;
+        }
+        informes = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("metricas").daemon().factory());
+        informes.scheduleAtFixedRate(Instrumentacion::informar, intervalo, intervalo, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Escribe en el log las métricas que han tenido operaciones desde el último informe. Lo llama el
+     * informe periódico y se puede llamar al cerrar la aplicación para no perder el último tramo.
+     *
+     * @author Telmo
+     */
+    public static synchronized void informar() {
+        for (MetricasCifrado metricas : metricas()) {
+            long operaciones = metricas.getOperaciones();
+            Long anteriores = ultimoInforme.put(metricas, operaciones);
+            if (operaciones != (anteriores == null ? 0 : anteriores)) {
+                logger.info("Métricas {}", metricas);
+            }
+        }
+    }
+
+    /**
+     * Resume las métricas de todas las operaciones que se han usado, una por línea.
+     *
+     * @return Resumen legible, vacío si no ha habido operaciones
+     *
+     * @author Telmo
+     */
+    public static String resumen() {
+        StringBuilder texto = new StringBuilder();
+        for (MetricasCifrado metricas : metricas()) {
+            if (metricas.getOperaciones() > 0) {
+                texto.append(metricas).append(System.lineSeparator());
+            }
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Devuelve el intervalo del informe configurado en {@link #PROPIEDAD_INTERVALO}.
+     *
+     * @return Segundos entre informes, o 0 para no informar
+     *
+     * @author Telmo
+     */
+    static int intervalo() {
+        String valor = System.getProperty(PROPIEDAD_INTERVALO);
+        if (valor == null) {
+            return INTERVALO_PREDETERMINADO;
+        }
+        try {
+            int segundos = Integer.parseInt(valor.trim());
+            if (segundos >= 0) {
+                return segundos;
+            }
+        } catch (NumberFormatException e) {
+            // Se registra abajo
+        }
+        logger.warn("Valor no válido de {}: {}; se usan {} s", PROPIEDAD_INTERVALO, valor, INTERVALO_PREDETERMINADO);
+        return INTERVALO_PREDETERMINADO;
+    }
+}
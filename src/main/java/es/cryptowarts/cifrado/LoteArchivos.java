@@ -0,0 +1,516 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Procesa (cifra o descifra) muchos archivos a la vez con un número limitado de hilos.
+ * Los archivos grandes se procesan cada uno en su propia tarea y en streaming; los pequeños se agrupan
+ * en tareas de hasta {@link #TAMANO_GRUPO} bytes o {@link #ARCHIVOS_POR_GRUPO} archivos para que el
+ * coste de repartir el trabajo no supere al de cifrarlos. Las tareas más grandes se reparten primero
+ * para que ningún hilo se quede con un archivo enorme al final.
+ *
+ * <p>Un error en un archivo no detiene el lote: queda anotado en su {@link Resultado} y el resto sigue.
+ * Si se interrumpe el hilo que llama a {@link #procesar}, se interrumpen los hilos del lote (los archivos
+ * a medias se eliminan) y se lanza una {@link InterruptedIOException}.</p>
+ *
+ * <p>El número de hilos por defecto es el de núcleos disponibles y se puede cambiar con la propiedad
+ * del sistema {@code cryptowarts.hilosLote} (por ejemplo, 1 o 2 en discos mecánicos, donde varios
+ * accesos simultáneos son más lentos que uno solo).</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class LoteArchivos {
+
+    /** Logger para esta clase. */
+    private static final Logger logger = LoggerFactory.getLogger(LoteArchivos.class);
+
+    /** Propiedad del sistema que define el número de hilos por defecto. */
+    public static final String PROPIEDAD_HILOS = "cryptowarts.hilosLote";
+
+    /** Tamaño a partir del cual un archivo se procesa en su propia tarea (1 MiB). */
+    static final long UMBRAL_GRANDE = 1024 * 1024;
+
+    /** Bytes máximos de archivos pequeños en una misma tarea (1 MiB). */
+    static final long TAMANO_GRUPO = 1024 * 1024;
+
+    /** Número máximo de archivos pequeños en una misma tarea. */
+    static final int ARCHIVOS_POR_GRUPO = 64;
+
+    /** Clase de utilidades, no se instancia. */
+    private LoteArchivos() {
+    }
+
+    /**
+     * Operación que se aplica a cada archivo del lote.
+     */
+    @FunctionalInterface
+    public interface OperacionArchivo {
+        /**
+         * Cifra o descifra un archivo.
+         *
+         * @param archivo Archivo de entrada
+         * @param progreso Receptor del avance del archivo (puede ignorarse)
+         * @return Ruta del archivo generado
+         * @throws IOException Sí hay un error leyendo o escribiendo archivos
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        Path procesar(Path archivo, Progreso progreso) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Devuelve el número de hilos configurado en {@link #PROPIEDAD_HILOS}, o el número de núcleos
+     * disponibles si no hay ninguno válido.
+     *
+     * @return Número de hilos por defecto (al menos 1)
+     *
+     * @author Telmo
+     */
+    public static int hilosPredeterminados() {
+        String valor = System.getProperty(PROPIEDAD_HILOS);
+        if (valor != null) {
+            try {
+                int hilos = Integer.parseInt(valor.trim());
+                if (hilos > 0) {
+                    return hilos;
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Valor no válido en {}: {}", PROPIEDAD_HILOS, valor);
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Devuelve los archivos a procesar de una entrada: el propio archivo o, si es un directorio,
+     * todos los archivos que contiene (recursivamente y en orden).
+     *
+     * @param entrada Archivo o directorio de entrada
+     * @return Lista de archivos
+     * @throws IOException Sí la entrada no existe o no se puede recorrer
+     *
+     * @author Telmo
+     */
+    public static List<Path> listarArchivos(Path entrada) throws IOException {
+        if (!Files.isDirectory(entrada)) {
+            if (!Files.isRegularFile(entrada)) {
+                throw new IOException("no existe o no es un archivo");
+            }
+            return List.of(entrada);
+        }
+        // Se recorre entero antes de procesar para no incluir los archivos que se van generando
+        try (Stream<Path> rutas = Files.walk(entrada)) {
+            return rutas.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    /**
+     * Procesa todos los archivos con el número de hilos por defecto.
+     *
+     * @param archivos Archivos de entrada
+     * @param operacion Operación a aplicar a cada archivo
+     * @param progreso Receptor del avance conjunto (bytes de todos los archivos)
+     * @return Resumen con el resultado de cada archivo
+     * @throws InterruptedIOException Sí el hilo que llama se interrumpe antes de terminar
+     *
+     * @author Telmo
+     */
+    public static Resumen procesar(List<Path> archivos, OperacionArchivo operacion, Progreso progreso) throws InterruptedIOException {
+        return procesar(archivos, operacion, hilosPredeterminados(), progreso);
+    }
+
+    /**
+     * Procesa todos los archivos repartiéndolos entre como mucho {@code hilos} hilos.
+     *
+     * @param archivos Archivos de entrada
+     * @param operacion Operación a aplicar a cada archivo
+     * @param hilos Número máximo de hilos (mayor que 0)
+     * @param progreso Receptor del avance conjunto (bytes de todos los archivos); se llama desde los
+     *                 hilos del lote, pero nunca desde dos a la vez
+     * @return Resumen con el resultado de cada archivo, en el mismo orden que la entrada
+     * @throws InterruptedIOException Sí el hilo que llama se interrumpe antes de terminar
+     *
+     * @author Telmo
+     */
+    public static Resumen procesar(List<Path> archivos, OperacionArchivo operacion, int hilos, Progreso progreso) throws InterruptedIOException {
+        if (hilos <= 0) {
+            throw new IllegalArgumentException("El número de hilos debe ser mayor que 0");
+        }
+        long inicio = System.nanoTime();
+        Resultado[] resultados = new Resultado[archivos.size()];
+        long[] tamanos = new long[archivos.size()];
+        long total = 0;
+        for (int i = 0; i < tamanos.length; i++) {
+            try {
+                tamanos[i] = Files.size(archivos.get(i));
+                total += tamanos[i];
+            } catch (IOException e) {
+                tamanos[i] = -1;
+                resultados[i] = new Resultado(archivos.get(i), null, 0, 0, e);
+            }
+        }
+
+        Avance avance = new Avance(progreso, total);
+        List<Runnable> tareas = new ArrayList<>();
+        for (int[] grupo : agrupar(tamanos)) {
+            tareas.add(() -> {
+                for (int indice : grupo) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    resultados[indice] = procesarArchivo(archivos.get(indice), tamanos[indice], operacion, avance);
+                }
+            });
+        }
+
+        int hilosUsados = Math.min(hilos, tareas.size());
+        if (hilosUsados <= 1) {
+            // Sin reparto: se procesa en el propio hilo, sin crear un ejecutor
+            tareas.forEach(Runnable::run);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Operación cancelada");
+            }
+        } else {
+            // close() espera a que terminen todos los hilos, incluidos los que borran archivos a medias
+            try (ExecutorService ejecutor = Executors.newFixedThreadPool(hilosUsados,
+                    Thread.ofPlatform().name("lote-", 0).daemon().factory())) {
+                ejecutor.invokeAll(tareas.stream().map(Executors::callable).toList());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Operación cancelada");
+            }
+        }
+        avance.terminar();
+
+        Resumen resumen = new Resumen(Arrays.asList(resultados), System.nanoTime() - inicio);
+        logger.info("Lote procesado con {} hilos: {} archivos ({} con error), {} bytes en {} ms ({} MB/s)",
+                hilosUsados, resultados.length, resumen.getFallidos().size(), resumen.getBytesProcesados(),
+                resumen.getNanos() / 1_000_000, String.format("%.1f", resumen.getMegabytesPorSegundo()));
+        return resumen;
+    }
+
+    /**
+     * Reparte los archivos en tareas: una por archivo grande y grupos de archivos pequeños.
+     * Las tareas se devuelven de mayor a menor número de bytes.
+     *
+     * @param tamanos Tamaño de cada archivo (-1 si no se ha podido leer; no se incluye en ninguna tarea)
+     * @return Índices de los archivos de cada tarea
+     *
+     * @author Telmo
+     */
+    static List<int[]> agrupar(long[] tamanos) {
+        List<int[]> grupos = new ArrayList<>();
+        List<Long> bytesGrupos = new ArrayList<>();
+        int[] actual = new int[ARCHIVOS_POR_GRUPO];
+        int enGrupo = 0;
+        long bytesGrupo = 0;
+        for (int i = 0; i < tamanos.length; i++) {
+            if (tamanos[i] < 0) {
+                continue;
+            }
+            if (tamanos[i] >= UMBRAL_GRANDE) {
+                grupos.add(new int[] {i});
+                bytesGrupos.add(tamanos[i]);
+                continue;
+            }
+            actual[enGrupo++] = i;
+            bytesGrupo += tamanos[i];
+            if (enGrupo == ARCHIVOS_POR_GRUPO || bytesGrupo >= TAMANO_GRUPO) {
+                grupos.add(Arrays.copyOf(actual, enGrupo));
+                bytesGrupos.add(bytesGrupo);
+                enGrupo = 0;
+                bytesGrupo = 0;
+            }
+        }
+        if (enGrupo > 0) {
+            grupos.add(Arrays.copyOf(actual, enGrupo));
+            bytesGrupos.add(bytesGrupo);
+        }
+
+        Integer[] orden = new Integer[grupos.size()];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, Comparator.comparingLong((Integer i) -> bytesGrupos.get(i)).reversed());
+        List<int[]> ordenados = new ArrayList<>(orden.length);
+        for (int i : orden) {
+            ordenados.add(grupos.get(i));
+        }
+        return ordenados;
+    }
+
+    /**
+     * Procesa un archivo del lote y anota su resultado. Los errores quedan en el resultado.
+     *
+     * @param archivo Archivo de entrada
+     * @param tamano Tamaño del archivo en bytes
+     * @param operacion Operación a aplicar
+     * @param avance Avance conjunto del lote
+     * @return Resultado del archivo
+     *
+     * @author Telmo
+     */
+    private static Resultado procesarArchivo(Path archivo, long tamano, OperacionArchivo operacion, Avance avance) {
+        long inicio = System.nanoTime();
+        long[] notificados = new long[1];
+        try {
+            Path destino = operacion.procesar(archivo, (procesados, total) -> {
+                avance.sumar(procesados - notificados[0]);
+                notificados[0] = procesados;
+            });
+            return new Resultado(archivo, destino, tamano, System.nanoTime() - inicio, null);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            logger.debug("Error procesando {}: {}", archivo, e.toString());
+            return new Resultado(archivo, null, tamano, System.nanoTime() - inicio, e);
+        } finally {
+            avance.sumar(tamano - notificados[0]);
+        }
+    }
+
+    /**
+     * Avance conjunto del lote: suma los bytes procesados de todos los hilos y los notifica al
+     * receptor de uno en uno.
+     */
+    private static final class Avance {
+
+        /** Receptor del avance. */
+        private final Progreso progreso;
+
+        /** Bytes totales del lote. */
+        private final long total;
+
+        /** Bytes procesados hasta ahora. */
+        private final LongAdder procesados = new LongAdder();
+
+        /**
+         * Crea el avance de un lote.
+         *
+         * @param progreso Receptor del avance
+         * @param total Bytes totales del lote
+         */
+        Avance(Progreso progreso, long total) {
+            this.progreso = progreso;
+            this.total = total;
+        }
+
+        /**
+         * Suma bytes procesados y notifica el avance.
+         *
+         * @param bytes Bytes procesados desde la última notificación de este archivo
+         */
+        void sumar(long bytes) {
+            if (bytes == 0 || progreso == Progreso.NINGUNO) {
+                return;
+            }
+            procesados.add(bytes);
+            synchronized (this) {
+                progreso.actualizar(Math.min(procesados.sum(), total - 1), total);
+            }
+        }
+
+        /**
+         * Notifica que el lote ha terminado.
+         */
+        synchronized void terminar() {
+            progreso.actualizar(total, total);
+        }
+    }
+
+    /**
+     * Resultado del procesado de un archivo del lote.
+     */
+    public static final class Resultado {
+
+        /** Archivo de entrada. */
+        private final Path origen;
+
+        /** Archivo generado, o {@code null} si ha fallado. */
+        private final Path destino;
+
+        /** Tamaño del archivo de entrada en bytes. */
+        private final long bytes;
+
+        /** Tiempo de procesado en nanosegundos. */
+        private final long nanos;
+
+        /** Error producido, o {@code null} si ha ido bien. */
+        private final Exception error;
+
+        /**
+         * Crea el resultado de un archivo.
+         *
+         * @param origen Archivo de entrada
+         * @param destino Archivo generado, o {@code null} si ha fallado
+         * @param bytes Tamaño del archivo de entrada
+         * @param nanos Tiempo de procesado en nanosegundos
+         * @param error Error producido, o {@code null}
+         */
+        Resultado(Path origen, Path destino, long bytes, long nanos, Exception error) {
+            this.origen = origen;
+            this.destino = destino;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        /**
+         * Devuelve el archivo de entrada.
+         *
+         * @return Archivo de entrada
+         *
+         * @author Telmo
+         */
+        public Path getOrigen() {
+            return origen;
+        }
+
+        /**
+         * Devuelve el archivo generado.
+         *
+         * @return Archivo generado, o {@code null} si ha fallado
+         *
+         * @author Telmo
+         */
+        public Path getDestino() {
+            return destino;
+        }
+
+        /**
+         * Devuelve el tamaño del archivo de entrada.
+         *
+         * @return Tamaño del archivo de entrada en bytes
+         *
+         * @author Telmo
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Devuelve el tiempo de procesado.
+         *
+         * @return Tiempo de procesado en nanosegundos
+         *
+         * @author Telmo
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Devuelve el error producido al procesar el archivo.
+         *
+         * @return Error producido ({@link IOException}, {@link GeneralSecurityException}...), o {@code null}
+         *
+         * @author Telmo
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Indica si el archivo se ha procesado correctamente.
+         *
+         * @return {@code true} si el archivo se ha procesado correctamente
+         *
+         * @author Telmo
+         */
+        public boolean isCorrecto() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Resumen de un lote: el resultado de cada archivo y las cifras conjuntas.
+     */
+    public static final class Resumen {
+
+        /** Resultado de cada archivo, en el orden de la entrada. */
+        private final List<Resultado> resultados;
+
+        /** Tiempo total del lote en nanosegundos. */
+        private final long nanos;
+
+        /**
+         * Crea el resumen de un lote.
+         *
+         * @param resultados Resultado de cada archivo
+         * @param nanos Tiempo total en nanosegundos
+         */
+        Resumen(List<Resultado> resultados, long nanos) {
+            this.resultados = Collections.unmodifiableList(resultados);
+            this.nanos = nanos;
+        }
+
+        /**
+         * Devuelve el resultado de cada archivo.
+         *
+         * @return Resultado de cada archivo, en el orden de la entrada
+         *
+         * @author Telmo
+         */
+        public List<Resultado> getResultados() {
+            return resultados;
+        }
+
+        /**
+         * Devuelve los resultados de los archivos que han fallado.
+         *
+         * @return Resultados de los archivos que han fallado
+         *
+         * @author Telmo
+         */
+        public List<Resultado> getFallidos() {
+            return resultados.stream().filter(r -> !r.isCorrecto()).toList();
+        }
+
+        /**
+         * Devuelve los bytes procesados correctamente.
+         *
+         * @return Bytes de entrada de los archivos procesados correctamente
+         *
+         * @author Telmo
+         */
+        public long getBytesProcesados() {
+            return resultados.stream().filter(Resultado::isCorrecto).mapToLong(Resultado::getBytes).sum();
+        }
+
+        /**
+         * Devuelve el tiempo total del lote.
+         *
+         * @return Tiempo total del lote en nanosegundos
+         *
+         * @author Telmo
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Devuelve la velocidad conjunta del lote.
+         *
+         * @return Velocidad conjunta en MB/s (bytes procesados correctamente sobre el tiempo total)
+         *
+         * @author Telmo
+         */
+        public double getMegabytesPorSegundo() {
+            return nanos > 0 ? getBytesProcesados() / (1024.0 * 1024.0) / (nanos / 1e9) : 0;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package es.cryptowarts.cifrado;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Utilidades para procesar lotes de textos con la misma clave.
+ * El lote se reparte en tramos; cada tramo crea una sola vez su procesador (Cipher inicializado,
+ * buffers reutilizables...) y lo aplica a todos sus textos. En modo paralelo los tramos se
+ * reparten entre los núcleos con un stream paralelo.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class Lotes {
+
+    /** Tamaño mínimo de lote a partir del cual se reparte entre varios núcleos. */
+    static final int UMBRAL_PARALELO = 512;
+
+    /** Número mínimo de textos por tramo en modo paralelo. */
+    private static final int TEXTOS_POR_TRAMO = 128;
+
+    /** Clase de utilidades, no se instancia. */
+    private Lotes() {
+    }
+
+    /**
+     * Procesa un único texto reutilizando el estado preparado para su tramo.
+     */
+    interface Procesador {
+        /**
+         * Procesa (cifra o descifra) un texto.
+         *
+         * @param texto Texto de entrada
+         * @return Texto resultante
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        String procesar(String texto) throws GeneralSecurityException;
+
+        /**
+         * Libera lo que el procesador haya tomado al crearse (por ejemplo, devuelve su Cipher a
+         * {@link ProveedorCifrados}). Se llama una vez al terminar el tramo, también si falla.
+         */
+        default void liberar() {
+        }
+    }
+
+    /**
+     * Crea el procesador de un tramo; se llama una vez por tramo y siempre desde el hilo que lo procesa.
+     */
+    interface FabricaProcesador {
+        /**
+         * Prepara un procesador nuevo.
+         *
+         * @return Procesador listo para usar
+         * @throws GeneralSecurityException Sí ocurre un error al preparar el cifrado
+         */
+        Procesador crear() throws GeneralSecurityException;
+    }
+
+    /**
+     * Aplica el procesador a todos los textos del lote, manteniendo el orden.
+     *
+     * @param textos Textos de entrada
+     * @param paralelo Si es {@code true} y el lote es grande, se reparte entre los núcleos disponibles
+     * @param fabrica Fábrica del procesador de cada tramo
+     * @return Lista inmodificable con los resultados en el mismo orden que la entrada
+     * @throws GeneralSecurityException Sí falla el procesado de algún texto
+     *
+     * @author Telmo
+     */
+    static List<String> procesar(List<String> textos, boolean paralelo, FabricaProcesador fabrica) throws GeneralSecurityException {
+        String[] resultados = new String[textos.size()];
+        if (!paralelo || resultados.length < UMBRAL_PARALELO) {
+            procesarTramo(textos, resultados, 0, resultados.length, fabrica);
+            return Collections.unmodifiableList(Arrays.asList(resultados));
+        }
+
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        int tamanoTramo = Math.max(TEXTOS_POR_TRAMO, (resultados.length + nucleos * 4 - 1) / (nucleos * 4));
+        int tramos = (resultados.length + tamanoTramo - 1) / tamanoTramo;
+        try {
+            IntStream.range(0, tramos).parallel().forEach(tramo -> {
+                int desde = tramo * tamanoTramo;
+                try {
+                    procesarTramo(textos, resultados, desde, Math.min(desde + tamanoTramo, resultados.length), fabrica);
+                } catch (GeneralSecurityException e) {
+                    throw new ErrorLote(e);
+                }
+            });
+        } catch (ErrorLote e) {
+            throw e.causa;
+        }
+        return Collections.unmodifiableList(Arrays.asList(resultados));
+    }
+
+    /**
+     * Procesa los textos del rango [desde, hasta) con un único procesador.
+     *
+     * @param textos Textos de entrada
+     * @param resultados Array donde se dejan los resultados
+     * @param desde Primer índice (incluido)
+     * @param hasta Último índice (excluido)
+     * @param fabrica Fábrica del procesador
+     * @throws GeneralSecurityException Sí falla el procesado de algún texto
+     *
+     * @author Telmo
+     */
+    private static void procesarTramo(List<String> textos, String[] resultados, int desde, int hasta,
+                                      FabricaProcesador fabrica) throws GeneralSecurityException {
+        Procesador procesador = fabrica.crear();
+        try {
+            for (int i = desde; i < hasta; i++) {
+                resultados[i] = procesador.procesar(textos.get(i));
+            }
+        } finally {
+            procesador.liberar();
+        }
+    }
+
+    /**
+     * Excepción interna para sacar del stream paralelo los errores de cifrado.
+     */
+    private static final class ErrorLote extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Error de cifrado original. */
+        private final transient GeneralSecurityException causa;
+
+        /**
+         * Envuelve el error de cifrado de un tramo.
+         *
+         * @param causa Error de cifrado original
+         */
+        ErrorLote(GeneralSecurityException causa) {
+            super(causa);
+            this.causa = causa;
+        }
+    }
+}
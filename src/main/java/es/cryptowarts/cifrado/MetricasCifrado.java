@@ -0,0 +1,214 @@
+package es.cryptowarts.cifrado;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de una operación (cifrar o descifrar) de un algoritmo: operaciones, errores por causa, bytes
+ * procesados y latencias. Las registra {@link CifradorMedido} alrededor de cada llamada a un
+ * {@link Cifrador} y se consultan en {@link Instrumentacion}, por JMX o en el informe periódico del log.
+ *
+ * <p>Registrar una operación no bloquea ni reserva memoria: son unos pocos {@link LongAdder}, que
+ * reparten los contadores entre hilos en lugar de competir por uno solo, y un
+ * {@link HistogramaLatencias}. Solo los errores buscan su causa en un mapa concurrente.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class MetricasCifrado implements MetricasCifradoMXBean {
+
+    /**
+     * Indica si se miden las operaciones. Empieza con el valor de {@link Instrumentacion#PROPIEDAD_ACTIVAS}
+     * y se activa con {@link Instrumentacion#activar()}.
+     */
+    private static volatile boolean activas = Boolean.getBoolean(Instrumentacion.PROPIEDAD_ACTIVAS);
+
+    /** Identificador del algoritmo. */
+    private final String algoritmo;
+
+    /** Operación medida: "cifrar" o "descifrar". */
+    private final String operacion;
+
+    /** Latencia de cada operación, con o sin error; su cuenta es el número de operaciones. */
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+
+    /** Operaciones terminadas con error. */
+    private final LongAdder errores = new LongAdder();
+
+    /** Errores por nombre simple de la excepción. */
+    private final Map<String, LongAdder> erroresPorCausa = new ConcurrentHashMap<>();
+
+    /** Bytes (o caracteres) leídos por las operaciones sin error. */
+    private final LongAdder bytesEntrada = new LongAdder();
+
+    /** Bytes (o caracteres) escritos por las operaciones sin error. */
+    private final LongAdder bytesSalida = new LongAdder();
+
+    /**
+     * Crea las métricas vacías de una operación.
+     *
+     * @param algoritmo Identificador del algoritmo
+     * @param cifrar {@code true} para las de cifrar, {@code false} para las de descifrar
+     *
+     * @author Telmo
+     */
+    MetricasCifrado(String algoritmo, boolean cifrar) {
+        this.algoritmo = algoritmo;
+        this.operacion = cifrar ? "cifrar" : "descifrar";
+    }
+
+    /**
+     * Indica si hay que medir las operaciones. Quien mide lo consulta antes de tomar el tiempo, para
+     * no pagar nada con las métricas desactivadas.
+     *
+     * @return {@code true} si las métricas están activas
+     *
+     * @author Telmo
+     */
+    static boolean activas() {
+        return activas;
+    }
+
+    /**
+     * Activa la medición de las operaciones desde ahora.
+     *
+     * @author Telmo
+     */
+    static void activar() {
+        activas = true;
+    }
+
+    /**
+     * Registra una operación terminada sin error.
+     *
+     * @param inicio Momento en que empezó, de {@link System#nanoTime()}
+     * @param entrada Bytes (o caracteres) leídos
+     * @param salida Bytes (o caracteres) escritos
+     *
+     * @author Telmo
+     */
+    void registrar(long inicio, long entrada, long salida) {
+        latencias.registrar(System.nanoTime() - inicio);
+        bytesEntrada.add(entrada);
+        bytesSalida.add(salida);
+    }
+
+    /**
+     * Registra una operación terminada con error.
+     *
+     * @param inicio Momento en que empezó, de {@link System#nanoTime()}
+     * @param causa Excepción con la que terminó
+     *
+     * @author Telmo
+     */
+    void fallar(long inicio, Throwable causa) {
+        latencias.registrar(System.nanoTime() - inicio);
+        errores.increment();
+        erroresPorCausa.computeIfAbsent(causa.getClass().getSimpleName(), nombre -> new LongAdder()).increment();
+    }
+
+    /**
+     * Devuelve el histograma de latencias, para consultar otros percentiles.
+     *
+     * @return Latencias en nanosegundos
+     *
+     * @author Telmo
+     */
+    public HistogramaLatencias getLatencias() {
+        return latencias;
+    }
+
+    @Override
+    public String getAlgoritmo() {
+        return algoritmo;
+    }
+
+    @Override
+    public String getOperacion() {
+        return operacion;
+    }
+
+    @Override
+    public long getOperaciones() {
+        return latencias.getCuenta();
+    }
+
+    @Override
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErroresPorCausa() {
+        Map<String, Long> copia = new TreeMap<>();
+        erroresPorCausa.forEach((causa, cuenta) -> copia.put(causa, cuenta.sum()));
+        return copia;
+    }
+
+    @Override
+    public long getBytesEntrada() {
+        return bytesEntrada.sum();
+    }
+
+    @Override
+    public long getBytesSalida() {
+        return bytesSalida.sum();
+    }
+
+    @Override
+    public double getMegabytesPorSegundo() {
+        long nanos = latencias.getSuma();
+        return nanos == 0 ? 0 : bytesEntrada.sum() / (1024.0 * 1024.0) / (nanos / 1e9);
+    }
+
+    @Override
+    public double getLatenciaMediaMs() {
+        return latencias.getMedia() / 1e6;
+    }
+
+    @Override
+    public double getLatenciaP50Ms() {
+        return latencias.percentil(50) / 1e6;
+    }
+
+    @Override
+    public double getLatenciaP99Ms() {
+        return latencias.percentil(99) / 1e6;
+    }
+
+    @Override
+    public double getLatenciaP999Ms() {
+        return latencias.percentil(99.9) / 1e6;
+    }
+
+    @Override
+    public double getLatenciaMaximaMs() {
+        return latencias.getMaximo() / 1e6;
+    }
+
+    @Override
+    public void reiniciar() {
+        latencias.reiniciar();
+        errores.reset();
+        erroresPorCausa.clear();
+        bytesEntrada.reset();
+        bytesSalida.reset();
+    }
+
+    /**
+     * Resume las métricas en una línea: operaciones, errores, megabytes, velocidad y latencias.
+     *
+     * @return Resumen legible
+     *
+     * @author Telmo
+     */
+    @Override
+    public String toString() {
+        String texto = String.format("%s/%s operaciones=%d errores=%d entrada=%.1f MB salida=%.1f MB velocidad=%.1f MB/s latencia: %s",
+                algoritmo, operacion, getOperaciones(), getErrores(), getBytesEntrada() / (1024.0 * 1024.0),
+                getBytesSalida() / (1024.0 * 1024.0), getMegabytesPorSegundo(), latencias);
+        return erroresPorCausa.isEmpty() ? texto : texto + " causas=" + getErroresPorCausa();
+    }
+}
@@ -0,0 +1,138 @@
+package es.cryptowarts.cifrado;
+
+import java.util.Map;
+
+/**
+ * Vista JMX de las métricas de una operación (cifrar o descifrar) de un algoritmo. Cada
+ * {@link MetricasCifrado} se publica como {@code es.cryptowarts:type=Cifrado,algoritmo=<id>,operacion=<op>}
+ * al llamar a {@link Instrumentacion#publicarJMX()}, y se puede consultar con JConsole o VisualVM.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public interface MetricasCifradoMXBean {
+
+    /**
+     * Devuelve el identificador del algoritmo.
+     *
+     * @return Identificador (por ejemplo "aes-gcm")
+     *
+     * @author Telmo
+     */
+    String getAlgoritmo();
+
+    /**
+     * Devuelve la operación medida.
+     *
+     * @return "cifrar" o "descifrar"
+     *
+     * @author Telmo
+     */
+    String getOperacion();
+
+    /**
+     * Devuelve el número de operaciones terminadas, con o sin error.
+     *
+     * @return Número de operaciones
+     *
+     * @author Telmo
+     */
+    long getOperaciones();
+
+    /**
+     * Devuelve el número de operaciones terminadas con error.
+     *
+     * @return Número de errores
+     *
+     * @author Telmo
+     */
+    long getErrores();
+
+    /**
+     * Devuelve el número de errores de cada causa.
+     *
+     * @return Errores por nombre simple de la excepción (por ejemplo "AEADBadTagException")
+     *
+     * @author Telmo
+     */
+    Map<String, Long> getErroresPorCausa();
+
+    /**
+     * Devuelve los bytes leídos por las operaciones terminadas sin error (en los textos, caracteres).
+     *
+     * @return Bytes de entrada
+     *
+     * @author Telmo
+     */
+    long getBytesEntrada();
+
+    /**
+     * Devuelve los bytes escritos por las operaciones terminadas sin error (en los textos, caracteres).
+     *
+     * @return Bytes de salida
+     *
+     * @author Telmo
+     */
+    long getBytesSalida();
+
+    /**
+     * Devuelve la velocidad media: bytes de entrada entre el tiempo total de las operaciones.
+     *
+     * @return Megabytes por segundo, o 0 si no hay operaciones
+     *
+     * @author Telmo
+     */
+    double getMegabytesPorSegundo();
+
+    /**
+     * Devuelve la latencia media de las operaciones.
+     *
+     * @return Media en milisegundos
+     *
+     * @author Telmo
+     */
+    double getLatenciaMediaMs();
+
+    /**
+     * Devuelve la mediana de la latencia.
+     *
+     * @return Percentil 50 en milisegundos
+     *
+     * @author Telmo
+     */
+    double getLatenciaP50Ms();
+
+    /**
+     * Devuelve el percentil 99 de la latencia.
+     *
+     * @return Percentil 99 en milisegundos
+     *
+     * @author Telmo
+     */
+    double getLatenciaP99Ms();
+
+    /**
+     * Devuelve el percentil 99,9 de la latencia.
+     *
+     * @return Percentil 99,9 en milisegundos
+     *
+     * @author Telmo
+     */
+    double getLatenciaP999Ms();
+
+    /**
+     * Devuelve la mayor latencia registrada.
+     *
+     * @return Máximo en milisegundos
+     *
+     * @author Telmo
+     */
+    double getLatenciaMaximaMs();
+
+    /**
+     * Pone a cero todas las métricas.
+     *
+     * @author Telmo
+     */
+    void reiniciar();
+}
@@ -0,0 +1,42 @@
+package es.cryptowarts.cifrado;
+
+import java.util.Locale;
+
+/**
+ * Estrategia de entrada/salida usada al cifrar o descifrar archivos.
+ * La estrategia por defecto se puede cambiar con la propiedad del sistema
+ * {@code cryptowarts.modoES} (valores {@code flujo} o {@code mapeado}).
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public enum ModoES {
+
+    /** Lectura por bloques con buffers en el heap (apto para cualquier origen). */
+    FLUJO,
+
+    /** Proyección en memoria del origen y buffers directos, sin copias del archivo en el heap. */
+    MAPEADO;
+
+    /** Propiedad del sistema que define la estrategia por defecto. */
+    public static final String PROPIEDAD = "cryptowarts.modoES";
+
+    /**
+     * Devuelve la estrategia configurada en {@link #PROPIEDAD}, o {@link #FLUJO} si no hay ninguna válida.
+     *
+     * @return Estrategia de entrada/salida por defecto
+     *
+     * @author Telmo
+     */
+    public static ModoES predeterminado() {
+        String valor = System.getProperty(PROPIEDAD);
+        if (valor != null) {
+            for (ModoES modo : values()) {
+                if (modo.name().equals(valor.trim().toUpperCase(Locale.ROOT))) {
+                    return modo;
+                }
+            }
+        }
+        return FLUJO;
+    }
+}
@@ -0,0 +1,232 @@
+package es.cryptowarts.cifrado;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Motor de cifrado Vigenère basado en tablas, sin reservas de memoria por carácter.
+ * Al crearlo se calcula el desplazamiento de cada posición de la clave y, para cada desplazamiento
+ * distinto, una tabla con el resultado de los 128 caracteres ASCII. Cifrar o descifrar un carácter
+ * ASCII es entonces una sola consulta a la tabla; el resto de caracteres usa la fórmula original.
+ *
+ * <p>El resultado es idéntico al de las versiones anteriores de {@link CifradoVigenere}, incluido el
+ * tratamiento de caracteres que no son letras (se copian sin cambios) y de claves con caracteres
+ * que no son letras. La posición en la clave se calcula a partir de la posición del carácter en el
+ * texto completo, por lo que se puede procesar un texto por partes indicando su posición inicial.</p>
+ *
+ * <p>Con la propiedad del sistema {@code cryptowarts.vigenere.simd=true} y el módulo
+ * {@code jdk.incubator.vector} disponible ({@code --add-modules jdk.incubator.vector}),
+ * {@link #crear(String, boolean)} devuelve la versión vectorial {@link MotorVigenereVectorial}.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+class MotorVigenere {
+
+    /** Propiedad del sistema que activa la versión vectorial (SIMD) del motor. */
+    static final String PROPIEDAD_SIMD = "cryptowarts.vigenere.simd";
+
+    /** Nombre del módulo de la Vector API. */
+    private static final String MODULO_VECTOR = "jdk.incubator.vector";
+
+    /** Número de caracteres ASCII con tabla precalculada. */
+    static final int ASCII = 128;
+
+    /** Indica si el motor cifra ({@code true}) o descifra ({@code false}). */
+    private final boolean cifrar;
+
+    /** Longitud de la clave. */
+    private final int longitudClave;
+
+    /** Desplazamiento de cada posición de la clave. */
+    private final int[] desplazamientos;
+
+    /** Inicio en {@link #tablas} de la tabla de cada posición de la clave. */
+    private final int[] inicioTabla;
+
+    /** Tablas ASCII de todos los desplazamientos distintos de la clave, una detrás de otra. */
+    private final char[] tablas;
+
+    /**
+     * Prepara el motor para la clave indicada.
+     *
+     * @param clave Clave de cifrado (se repite a lo largo del texto)
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    MotorVigenere(String clave, boolean cifrar) throws GeneralSecurityException {
+        if (clave == null || clave.isEmpty()) {
+            throw new InvalidKeyException("La clave de Vigenère no puede estar vacía");
+        }
+        this.cifrar = cifrar;
+        this.longitudClave = clave.length();
+        this.desplazamientos = new int[longitudClave];
+        this.inicioTabla = new int[longitudClave];
+
+        Map<Integer, Integer> inicioPorDesplazamiento = new HashMap<>();
+        for (int i = 0; i < longitudClave; i++) {
+            char keyChar = clave.charAt(i);
+            char baseKey = Character.isUpperCase(keyChar) ? 'A' : 'a';
+            desplazamientos[i] = keyChar - baseKey;
+            inicioTabla[i] = inicioPorDesplazamiento.computeIfAbsent(desplazamientos[i], d -> inicioPorDesplazamiento.size() * ASCII);
+        }
+
+        this.tablas = new char[inicioPorDesplazamiento.size() * ASCII];
+        for (Map.Entry<Integer, Integer> entrada : inicioPorDesplazamiento.entrySet()) {
+            for (int c = 0; c < ASCII; c++) {
+                tablas[entrada.getValue() + c] = transformar((char) c, entrada.getKey());
+            }
+        }
+    }
+
+    /**
+     * Crea el motor más rápido disponible para la clave indicada: el vectorial si está activado con
+     * {@link #PROPIEDAD_SIMD}, la Vector API está disponible y todos los caracteres de la clave son
+     * letras ASCII; si no, el motor basado en tablas.
+     *
+     * @param clave Clave de cifrado
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @return Motor preparado con la clave
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    static MotorVigenere crear(String clave, boolean cifrar) throws GeneralSecurityException {
+        if (simdActivado() && MotorVigenereVectorial.admiteClave(clave)) {
+            return new MotorVigenereVectorial(clave, cifrar);
+        }
+        return new MotorVigenere(clave, cifrar);
+    }
+
+    /**
+     * Indica si se ha pedido la versión vectorial y el módulo de la Vector API está cargado.
+     *
+     * @return {@code true} si se puede usar {@link MotorVigenereVectorial}
+     *
+     * @author Telmo
+     */
+    static boolean simdActivado() {
+        if (!Boolean.getBoolean(PROPIEDAD_SIMD)) {
+            return false;
+        }
+        Optional<Module> modulo = ModuleLayer.boot().findModule(MODULO_VECTOR);
+        return modulo.isPresent() && MotorVigenere.class.getModule().canRead(modulo.get());
+    }
+
+    /**
+     * Devuelve la longitud de la clave.
+     *
+     * @return Número de caracteres de la clave
+     */
+    int longitudClave() {
+        return longitudClave;
+    }
+
+    /**
+     * Devuelve el desplazamiento de una posición de la clave.
+     *
+     * @param posicion Posición en la clave (de 0 a {@link #longitudClave()} - 1)
+     * @return Desplazamiento de esa posición
+     */
+    int desplazamiento(int posicion) {
+        return desplazamientos[posicion];
+    }
+
+    /**
+     * Indica si el motor cifra o descifra.
+     *
+     * @return {@code true} si cifra, {@code false} si descifra
+     */
+    boolean cifra() {
+        return cifrar;
+    }
+
+    /**
+     * Cifra o descifra un texto completo.
+     *
+     * @param texto Texto de entrada
+     * @return Texto resultante
+     *
+     * @author Telmo
+     */
+    String procesar(String texto) {
+        char[] caracteres = texto.toCharArray();
+        procesar(caracteres, 0, caracteres, 0, caracteres.length, 0);
+        return new String(caracteres);
+    }
+
+    /**
+     * Cifra o descifra un tramo de caracteres. El origen y el destino pueden ser el mismo array.
+     *
+     * @param origen Array con los caracteres de entrada
+     * @param desdeOrigen Posición del primer carácter en el origen
+     * @param destino Array donde se escriben los caracteres resultantes
+     * @param desdeDestino Posición del primer carácter en el destino
+     * @param longitud Número de caracteres a procesar
+     * @param posicionTexto Posición del primer carácter dentro del texto completo
+     *
+     * @author Telmo
+     */
+    void procesar(char[] origen, int desdeOrigen, char[] destino, int desdeDestino, int longitud, long posicionTexto) {
+        int posicion = (int) (posicionTexto % longitudClave);
+        for (int i = 0; i < longitud; i++) {
+            char c = origen[desdeOrigen + i];
+            destino[desdeDestino + i] = c < ASCII
+                    ? tablas[inicioTabla[posicion] + c]
+                    : transformar(c, desplazamientos[posicion]);
+            if (++posicion == longitudClave) {
+                posicion = 0;
+            }
+        }
+    }
+
+    /**
+     * Cifra o descifra en el mismo array un tramo de texto ASCII codificado en bytes.
+     *
+     * @param datos Array con los bytes ASCII (se sobrescriben con el resultado)
+     * @param desde Posición del primer byte
+     * @param longitud Número de bytes a procesar
+     * @param posicionTexto Posición del primer byte dentro del texto completo
+     * @throws IllegalArgumentException si encuentra un byte que no es ASCII (los anteriores ya se han procesado)
+     *
+     * @author Telmo
+     */
+    void procesarAscii(byte[] datos, int desde, int longitud, long posicionTexto) {
+        int posicion = (int) (posicionTexto % longitudClave);
+        for (int i = desde; i < desde + longitud; i++) {
+            byte b = datos[i];
+            if (b < 0) {
+                throw new IllegalArgumentException("El texto no es ASCII en la posición " + i);
+            }
+            datos[i] = (byte) tablas[inicioTabla[posicion] + b];
+            if (++posicion == longitudClave) {
+                posicion = 0;
+            }
+        }
+    }
+
+    /**
+     * Aplica la fórmula de Vigenère a un carácter con el desplazamiento indicado.
+     *
+     * @param c Carácter de entrada
+     * @param desplazamiento Desplazamiento de la posición de la clave
+     * @return Carácter resultante (el mismo si no es una letra)
+     *
+     * @author Telmo
+     */
+    final char transformar(char c, int desplazamiento) {
+        if (!Character.isLetter(c)) {
+            return c;
+        }
+        char base = Character.isUpperCase(c) ? 'A' : 'a';
+        int shift = cifrar
+                ? (c - base + desplazamiento) % 26
+                : (c - base - desplazamiento + 26) % 26;
+        return (char) (base + shift);
+    }
+}
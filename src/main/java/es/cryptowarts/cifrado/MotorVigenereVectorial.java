@@ -0,0 +1,119 @@
+package es.cryptowarts.cifrado;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Versión vectorial (SIMD) de {@link MotorVigenere} basada en la Vector API ({@code jdk.incubator.vector}).
+ * Procesa tantos caracteres a la vez como carriles tenga el vector preferido de la máquina: detecta
+ * las letras ASCII con máscaras, suma (o resta) el desplazamiento de la clave y corrige el módulo 26
+ * con una resta (o suma) enmascarada. Los tramos que contienen algún carácter no ASCII se procesan
+ * con el motor basado en tablas, por lo que el resultado es idéntico bit a bit.
+ *
+ * <p>Solo se usa con claves formadas por letras ASCII (desplazamientos entre 0 y 25); con cualquier
+ * otra clave {@link MotorVigenere#crear(String, boolean)} devuelve el motor basado en tablas.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class MotorVigenereVectorial extends MotorVigenere {
+
+    /** Forma de vector preferida por la máquina para carriles de 16 bits. */
+    private static final VectorSpecies<Short> ESPECIE = ShortVector.SPECIES_PREFERRED;
+
+    /** Número de caracteres procesados en cada paso. */
+    private static final int CARRILES = ESPECIE.length();
+
+    /**
+     * Desplazamientos de la clave repetidos, de longitud {@code longitudClave + CARRILES}, para poder
+     * cargar en un solo vector los desplazamientos de cualquier posición de la clave.
+     */
+    private final short[] patronClave;
+
+    /**
+     * Prepara el motor vectorial para la clave indicada.
+     *
+     * @param clave Clave de cifrado formada solo por letras ASCII
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @throws GeneralSecurityException si la clave es nula o vacía
+     *
+     * @author Telmo
+     */
+    MotorVigenereVectorial(String clave, boolean cifrar) throws GeneralSecurityException {
+        super(clave, cifrar);
+        if (!admiteClave(clave)) {
+            throw new IllegalArgumentException("El motor vectorial solo admite claves de letras ASCII");
+        }
+        int longitud = longitudClave();
+        patronClave = new short[longitud + CARRILES];
+        for (int i = 0; i < patronClave.length; i++) {
+            patronClave[i] = (short) desplazamiento(i % longitud);
+        }
+    }
+
+    /**
+     * Indica si la clave se puede usar con el motor vectorial (solo letras ASCII).
+     *
+     * @param clave Clave de cifrado
+     * @return {@code true} si todos los caracteres de la clave son letras ASCII
+     *
+     * @author Telmo
+     */
+    static boolean admiteClave(String clave) {
+        if (clave == null || clave.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < clave.length(); i++) {
+            char c = clave.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    void procesar(char[] origen, int desdeOrigen, char[] destino, int desdeDestino, int longitud, long posicionTexto) {
+        int longitudClave = longitudClave();
+        int posicion = (int) (posicionTexto % longitudClave);
+        int avanceClave = CARRILES % longitudClave;
+        boolean cifrar = cifra();
+
+        ShortVector mayuscula = ShortVector.broadcast(ESPECIE, (short) 'A');
+        ShortVector minuscula = ShortVector.broadcast(ESPECIE, (short) 'a');
+        int limite = ESPECIE.loopBound(longitud);
+        int i = 0;
+        for (; i < limite; i += CARRILES) {
+            ShortVector v = ShortVector.fromCharArray(ESPECIE, origen, desdeOrigen + i);
+            if (v.and((short) ~0x7F).compare(VectorOperators.NE, (short) 0).anyTrue()) {
+                // Hay algún carácter no ASCII: este tramo lo resuelve el motor basado en tablas
+                super.procesar(origen, desdeOrigen + i, destino, desdeDestino + i, CARRILES, posicion);
+            } else {
+                VectorMask<Short> esMayuscula = v.compare(VectorOperators.GE, (short) 'A').and(v.compare(VectorOperators.LE, (short) 'Z'));
+                VectorMask<Short> esMinuscula = v.compare(VectorOperators.GE, (short) 'a').and(v.compare(VectorOperators.LE, (short) 'z'));
+                ShortVector base = minuscula.blend(mayuscula, esMayuscula);
+                ShortVector desplazamiento = ShortVector.fromArray(ESPECIE, patronClave, posicion);
+
+                ShortVector letra = v.sub(base);
+                if (cifrar) {
+                    letra = letra.add(desplazamiento);
+                    letra = letra.sub((short) 26, letra.compare(VectorOperators.GE, (short) 26));
+                } else {
+                    letra = letra.sub(desplazamiento);
+                    letra = letra.add((short) 26, letra.compare(VectorOperators.LT, (short) 0));
+                }
+                v.blend(base.add(letra), esMayuscula.or(esMinuscula)).intoCharArray(destino, desdeDestino + i);
+            }
+            posicion += avanceClave;
+            if (posicion >= longitudClave) {
+                posicion -= longitudClave;
+            }
+        }
+
+        super.procesar(origen, desdeOrigen + i, destino, desdeDestino + i, longitud - i, posicion);
+    }
+}
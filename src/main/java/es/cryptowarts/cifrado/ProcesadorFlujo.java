@@ -0,0 +1,561 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+
+/**
+ * Motor de cifrado por flujo para archivos.
+ * Lee el origen en bloques de tamaño fijo, los pasa por {@link Cipher#update(ByteBuffer, ByteBuffer)}
+ * y escribe el resultado según se va generando, de modo que la memoria usada es constante
+ * independientemente del tamaño del archivo.
+ * El resultado es idéntico al de un único {@link Cipher#doFinal(byte[])} sobre el archivo completo.
+ * Con {@link ModoES#MAPEADO} el origen se proyecta en memoria y se procesa con buffers directos de
+ * tamaño fijo, sin copias intermedias en este código (el proveedor criptográfico puede hacer las suyas).
+ * Para Vigenère, {@link #procesarTexto(MotorVigenere, ReadableByteChannel, WritableByteChannel)} decodifica
+ * el texto UTF-8 por bloques y arrastra la posición de la clave entre bloques.
+ * Después de cada bloque se informa del avance a un {@link Progreso} y se comprueba si el hilo ha sido
+ * interrumpido, para poder cancelar la operación.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class ProcesadorFlujo {
+
+    /** Logger para esta clase. */
+    private static final Logger logger = LoggerFactory.getLogger(ProcesadorFlujo.class);
+
+    /** Tamaño del bloque de lectura (64 KiB). */
+    static final int TAMANO_BLOQUE = 64 * 1024;
+
+    /** Tamaño máximo de cada proyección en memoria del origen (256 MiB). */
+    private static final long TAMANO_VENTANA = 256L * 1024 * 1024;
+
+    /** Tamaño de cada trozo de la proyección que se pasa al cifrado en modo mapeado (1 MiB). */
+    private static final int TAMANO_TROZO = 1024 * 1024;
+
+    /** Clase de utilidades, no se instancia. */
+    private ProcesadorFlujo() {
+    }
+
+    /**
+     * Procesa el archivo de origen con el cifrado que devuelve la preparación y escribe el resultado en el destino.
+     * Si ocurre un error, el archivo de destino parcial se elimina.
+     *
+     * @param preparacion Prepara el Cipher a partir de los archivos abiertos (por ejemplo, leyendo o escribiendo una cabecera)
+     * @param origen Ruta del archivo de origen
+     * @param destino Ruta del archivo de destino (se crea o se sobrescribe)
+     * @param modo Estrategia de entrada/salida
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesar(Preparacion preparacion, Path origen, Path destino, ModoES modo) throws IOException, GeneralSecurityException {
+        return procesar(preparacion, origen, destino, modo, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #procesar(Preparacion, Path, Path, ModoES)} pero informando del avance después de cada bloque.
+     * Si el hilo se interrumpe, la operación se detiene y el archivo de destino parcial se elimina.
+     *
+     * @param preparacion Prepara el Cipher a partir de los archivos abiertos (por ejemplo, leyendo o escribiendo una cabecera)
+     * @param origen Ruta del archivo de origen
+     * @param destino Ruta del archivo de destino (se crea o se sobrescribe)
+     * @param modo Estrategia de entrada/salida
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesar(Preparacion preparacion, Path origen, Path destino, ModoES modo, Progreso progreso) throws IOException, GeneralSecurityException {
+        return conArchivos(origen, destino, modo.name(), (entrada, salida) -> {
+            Cipher cifrado = preparacion.preparar(entrada, salida);
+            try {
+                long cabecera = salida.position();
+                return cabecera + procesar(cifrado, entrada, salida, modo, progreso);
+            } finally {
+                ProveedorCifrados.devolver(cifrado);
+            }
+        });
+    }
+
+    /**
+     * Procesa el archivo de origen, desde la posición actual hasta el final, con la estrategia de
+     * entrada/salida indicada. El destino puede ser cualquier canal, por ejemplo uno que descomprime.
+     *
+     * @param cifrado Cipher ya inicializado (cifrar o descifrar)
+     * @param entrada Canal del archivo de origen
+     * @param salida Canal en el que se escribe el resultado
+     * @param modo Estrategia de entrada/salida
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesar(Cipher cifrado, FileChannel entrada, WritableByteChannel salida, ModoES modo, Progreso progreso) throws IOException, GeneralSecurityException {
+        return modo == ModoES.MAPEADO
+                ? procesarMapeado(cifrado, entrada, salida, progreso)
+                : procesar(cifrado, entrada, salida, progreso, entrada.size() - entrada.position());
+    }
+
+    /**
+     * Cifra o descifra con Vigenère un archivo de texto UTF-8 y escribe el resultado en el destino,
+     * por bloques y con memoria constante. Si ocurre un error, el archivo de destino parcial se elimina.
+     *
+     * @param motor Motor de Vigenère preparado con la clave
+     * @param origen Ruta del archivo de texto de origen
+     * @param destino Ruta del archivo de destino (se crea o se sobrescribe)
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, o el origen no es UTF-8 válido
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesarTexto(MotorVigenere motor, Path origen, Path destino) throws IOException, GeneralSecurityException {
+        return procesarTexto(motor, origen, destino, Progreso.NINGUNO);
+    }
+
+    /**
+     * Igual que {@link #procesarTexto(MotorVigenere, Path, Path)} pero informando del avance después de cada bloque.
+     * Si el hilo se interrumpe, la operación se detiene y el archivo de destino parcial se elimina.
+     *
+     * @param motor Motor de Vigenère preparado con la clave
+     * @param origen Ruta del archivo de texto de origen
+     * @param destino Ruta del archivo de destino (se crea o se sobrescribe)
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, el origen no es UTF-8 válido o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesarTexto(MotorVigenere motor, Path origen, Path destino, Progreso progreso) throws IOException, GeneralSecurityException {
+        return conArchivos(origen, destino, "TEXTO", (entrada, salida) -> procesarTexto(motor, entrada, salida, progreso, entrada.size()));
+    }
+
+    /**
+     * Abre los archivos de origen y destino, aplica la operación y registra el rendimiento.
+     * Si la operación falla, el archivo de destino parcial se elimina.
+     *
+     * @param origen Ruta del archivo de origen
+     * @param destino Ruta del archivo de destino (se crea o se sobrescribe)
+     * @param modo Nombre del modo para el log
+     * @param operacion Operación que lee del origen y escribe en el destino
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo archivos
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long conArchivos(Path origen, Path destino, String modo, Operacion operacion) throws IOException, GeneralSecurityException {
+        long inicio = System.nanoTime();
+        boolean completado = false;
+        try (FileChannel entrada = FileChannel.open(origen, StandardOpenOption.READ);
+             FileChannel salida = FileChannel.open(destino, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long leidos = entrada.size();
+            long escritos = operacion.aplicar(entrada, salida);
+            completado = true;
+            registrarRendimiento(modo, leidos, salida.size(), System.nanoTime() - inicio);
+            return escritos;
+        } finally {
+            if (!completado) {
+                Files.deleteIfExists(destino);
+            }
+        }
+    }
+
+    /**
+     * Procesa todos los bytes del canal de origen con el cifrado indicado y los escribe en el canal de destino.
+     * Los canales no se cierran.
+     *
+     * @param cifrado Cipher ya inicializado (cifrar o descifrar)
+     * @param origen Canal del que se leen los datos hasta el final
+     * @param destino Canal en el que se escribe el resultado
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesar(Cipher cifrado, ReadableByteChannel origen, WritableByteChannel destino) throws IOException, GeneralSecurityException {
+        return procesar(cifrado, origen, destino, Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Igual que {@link #procesar(Cipher, ReadableByteChannel, WritableByteChannel)} pero informando del avance
+     * después de cada bloque y deteniéndose si el hilo se interrumpe.
+     *
+     * @param cifrado Cipher ya inicializado (cifrar o descifrar)
+     * @param origen Canal del que se leen los datos hasta el final
+     * @param destino Canal en el que se escribe el resultado
+     * @param progreso Receptor del avance
+     * @param total Tamaño total del origen en bytes, o -1 si no se conoce
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesar(Cipher cifrado, ReadableByteChannel origen, WritableByteChannel destino,
+                         Progreso progreso, long total) throws IOException, GeneralSecurityException {
+        ByteBuffer entrada = ByteBuffer.allocate(TAMANO_BLOQUE);
+        ByteBuffer salida = ByteBuffer.allocate(cifrado.getOutputSize(TAMANO_BLOQUE));
+        long leidos = 0;
+        long escritos = 0;
+
+        while (origen.read(entrada) != -1) {
+            entrada.flip();
+            leidos += entrada.remaining();
+            salida = asegurarCapacidad(salida, cifrado.getOutputSize(entrada.remaining()));
+            cifrado.update(entrada, salida);
+            escritos += escribir(salida, destino);
+            entrada.clear();
+            avanzar(progreso, leidos, total);
+        }
+
+        entrada.flip();
+        salida = asegurarCapacidad(salida, cifrado.getOutputSize(0));
+        cifrado.doFinal(entrada, salida);
+        escritos += escribir(salida, destino);
+        return escritos;
+    }
+
+    /**
+     * Procesa el archivo, desde la posición actual del canal hasta el final, proyectándolo en memoria
+     * por ventanas y pasando trozos de la proyección al cifrado con buffers directos.
+     * El resultado se escribe en el canal de destino.
+     *
+     * @param cifrado Cipher ya inicializado (cifrar o descifrar)
+     * @param origen Canal del archivo de origen
+     * @param destino Canal en el que se escribe el resultado
+     * @param progreso Receptor del avance
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí ocurre un error de cifrado
+     *
+     * @author Telmo
+     */
+    static long procesarMapeado(Cipher cifrado, FileChannel origen, WritableByteChannel destino, Progreso progreso) throws IOException, GeneralSecurityException {
+        ByteBuffer salida = ByteBuffer.allocateDirect(cifrado.getOutputSize(TAMANO_TROZO));
+        long inicio = origen.position();
+        long tamano = origen.size();
+        long escritos = 0;
+
+        for (long posicion = inicio; posicion < tamano; posicion += TAMANO_VENTANA) {
+            MappedByteBuffer ventana = origen.map(FileChannel.MapMode.READ_ONLY, posicion, Math.min(TAMANO_VENTANA, tamano - posicion));
+            while (ventana.hasRemaining()) {
+                int trozo = Math.min(TAMANO_TROZO, ventana.remaining());
+                ByteBuffer entrada = ventana.slice();
+                entrada.limit(trozo);
+                ventana.position(ventana.position() + trozo);
+
+                salida = asegurarCapacidadDirecta(salida, cifrado.getOutputSize(trozo));
+                cifrado.update(entrada, salida);
+                escritos += escribir(salida, destino);
+                avanzar(progreso, posicion - inicio + ventana.position(), tamano - inicio);
+            }
+        }
+
+        salida = asegurarCapacidadDirecta(salida, cifrado.getOutputSize(0));
+        cifrado.doFinal(ByteBuffer.allocateDirect(0), salida);
+        escritos += escribir(salida, destino);
+        return escritos;
+    }
+
+    /**
+     * Cifra o descifra con Vigenère todo el texto UTF-8 del canal de origen y lo escribe en UTF-8 en el destino.
+     * El texto se decodifica por bloques y la posición en la clave se arrastra de un bloque al siguiente,
+     * así que el resultado es el mismo que procesando el texto completo. Los canales no se cierran.
+     *
+     * @param motor Motor de Vigenère preparado con la clave
+     * @param origen Canal del que se lee el texto hasta el final
+     * @param destino Canal en el que se escribe el resultado
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, o el origen no es UTF-8 válido
+     *
+     * @author Telmo
+     */
+    static long procesarTexto(MotorVigenere motor, ReadableByteChannel origen, WritableByteChannel destino) throws IOException {
+        return procesarTexto(motor, origen, destino, Progreso.NINGUNO, -1);
+    }
+
+    /**
+     * Igual que {@link #procesarTexto(MotorVigenere, ReadableByteChannel, WritableByteChannel)} pero informando
+     * del avance después de cada bloque y deteniéndose si el hilo se interrumpe.
+     *
+     * @param motor Motor de Vigenère preparado con la clave
+     * @param origen Canal del que se lee el texto hasta el final
+     * @param destino Canal en el que se escribe el resultado
+     * @param progreso Receptor del avance
+     * @param total Tamaño total del origen en bytes, o -1 si no se conoce
+     * @return Número de bytes escritos en el destino
+     * @throws IOException Sí hay un error leyendo o escribiendo, el origen no es UTF-8 válido o la operación se cancela
+     *
+     * @author Telmo
+     */
+    static long procesarTexto(MotorVigenere motor, ReadableByteChannel origen, WritableByteChannel destino,
+                              Progreso progreso, long total) throws IOException {
+        CharsetDecoder decodificador = StandardCharsets.UTF_8.newDecoder();
+        CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer entrada = ByteBuffer.allocate(TAMANO_BLOQUE);
+        CharBuffer caracteres = CharBuffer.allocate(TAMANO_BLOQUE);
+        ByteBuffer salida = ByteBuffer.allocate((int) (TAMANO_BLOQUE * codificador.maxBytesPerChar()));
+
+        long posicion = 0;
+        long leidos = 0;
+        long escritos = 0;
+        // Caracteres al inicio de "caracteres" ya procesados pero pendientes de codificar (mitad de un par suplente)
+        int procesados = 0;
+        boolean fin = false;
+        while (!fin) {
+            int bytes = origen.read(entrada);
+            fin = bytes == -1;
+            entrada.flip();
+            CoderResult resultado;
+            do {
+                resultado = decodificador.decode(entrada, caracteres, fin);
+                if (resultado.isError()) {
+                    resultado.throwException();
+                }
+                int nuevos = caracteres.position() - procesados;
+                motor.procesar(caracteres.array(), procesados, caracteres.array(), procesados, nuevos, posicion);
+                posicion += nuevos;
+
+                caracteres.flip();
+                escritos += codificar(codificador, caracteres, salida, destino, false);
+                caracteres.compact();
+                procesados = caracteres.position();
+            } while (resultado.isOverflow());
+            entrada.compact();
+            if (!fin) {
+                leidos += bytes;
+                avanzar(progreso, leidos, total);
+            }
+        }
+
+        caracteres.flip();
+        escritos += codificar(codificador, caracteres, salida, destino, true);
+        codificador.flush(salida);
+        escritos += escribir(salida, destino);
+        return escritos;
+    }
+
+    /**
+     * Codifica en UTF-8 los caracteres pendientes y escribe los bytes en el canal de destino.
+     *
+     * @param codificador Codificador UTF-8
+     * @param caracteres Caracteres a codificar (en modo lectura)
+     * @param salida Buffer intermedio de bytes (vacío, en modo escritura)
+     * @param destino Canal de destino
+     * @param fin Indica si son los últimos caracteres del texto
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error escribiendo
+     *
+     * @author Telmo
+     */
+    private static long codificar(CharsetEncoder codificador, CharBuffer caracteres, ByteBuffer salida,
+                                  WritableByteChannel destino, boolean fin) throws IOException {
+        long escritos = 0;
+        CoderResult resultado;
+        do {
+            resultado = codificador.encode(caracteres, salida, fin);
+            if (resultado.isError()) {
+                resultado.throwException();
+            }
+            escritos += escribir(salida, destino);
+            salida.clear();
+        } while (resultado.isOverflow());
+        return escritos;
+    }
+
+    /**
+     * Devuelve un buffer vacío con al menos la capacidad indicada, reutilizando el actual si es posible.
+     *
+     * @param buffer Buffer actual
+     * @param capacidad Capacidad mínima necesaria
+     * @return Buffer limpio listo para escribir
+     *
+     * @author Telmo
+     */
+    private static ByteBuffer asegurarCapacidad(ByteBuffer buffer, int capacidad) {
+        if (buffer.capacity() < capacidad) {
+            return ByteBuffer.allocate(capacidad);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Igual que {@link #asegurarCapacidad(ByteBuffer, int)} pero reservando buffers directos.
+     *
+     * @param buffer Buffer directo actual
+     * @param capacidad Capacidad mínima necesaria
+     * @return Buffer directo limpio listo para escribir
+     *
+     * @author Telmo
+     */
+    private static ByteBuffer asegurarCapacidadDirecta(ByteBuffer buffer, int capacidad) {
+        if (buffer.capacity() < capacidad) {
+            return ByteBuffer.allocateDirect(capacidad);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Devuelve un canal que entrega primero los bytes pendientes del buffer y después los del canal indicado.
+     * Sirve para devolver al flujo los bytes leídos de más al buscar una cabecera.
+     *
+     * @param prefijo Bytes ya leídos (en modo lectura); el buffer se consume
+     * @param resto Canal con el resto de los datos
+     * @return Canal con todos los datos (al cerrarlo no se cierra el canal original)
+     *
+     * @author Telmo
+     */
+    static ReadableByteChannel conPrefijo(ByteBuffer prefijo, ReadableByteChannel resto) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer destino) throws IOException {
+                if (!prefijo.hasRemaining()) {
+                    return resto.read(destino);
+                }
+                int copiados = Math.min(prefijo.remaining(), destino.remaining());
+                destino.put(prefijo.slice(prefijo.position(), copiados));
+                prefijo.position(prefijo.position() + copiados);
+                return copiados;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return resto.isOpen();
+            }
+
+            @Override
+            public void close() {
+                // El canal original lo cierra quien lo abrió
+            }
+        };
+    }
+
+    /**
+     * Escribe en el canal todo el contenido pendiente del buffer.
+     *
+     * @param buffer Buffer con los datos ya generados (en modo escritura)
+     * @param destino Canal de destino
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error escribiendo
+     *
+     * @author Telmo
+     */
+    private static int escribir(ByteBuffer buffer, WritableByteChannel destino) throws IOException {
+        buffer.flip();
+        int total = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            destino.write(buffer);
+        }
+        return total;
+    }
+
+    /**
+     * Informa del avance y detiene la operación si el hilo que la ejecuta ha sido interrumpido.
+     *
+     * @param progreso Receptor del avance
+     * @param procesados Bytes del origen procesados hasta ahora
+     * @param total Tamaño total del origen en bytes, o -1 si no se conoce
+     * @throws InterruptedIOException Sí el hilo ha sido interrumpido (operación cancelada)
+     *
+     * @author Telmo
+     */
+    static void avanzar(Progreso progreso, long procesados, long total) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Operación cancelada");
+        }
+        progreso.actualizar(procesados, total);
+    }
+
+    /**
+     * Registra en el log el rendimiento obtenido al procesar un archivo, de principio a fin (incluida la
+     * compresión, si la hay), y la relación entre el tamaño del resultado y el del origen.
+     *
+     * @param modo Nombre de la estrategia de entrada/salida usada
+     * @param bytes Bytes leídos del origen
+     * @param escritos Tamaño final del archivo de destino
+     * @param nanos Tiempo empleado en nanosegundos
+     *
+     * @author Telmo
+     */
+    private static void registrarRendimiento(String modo, long bytes, long escritos, long nanos) {
+        if (logger.isDebugEnabled()) {
+            double mbPorSegundo = nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1e9);
+            double relacion = bytes == 0 ? 1 : (double) escritos / bytes;
+            logger.debug("Archivo procesado en modo {}: {} bytes en {} ms ({} MB/s), resultado de {} bytes ({}%)",
+                    modo, bytes, nanos / 1_000_000, String.format("%.1f", mbPorSegundo),
+                    escritos, String.format("%.1f", relacion * 100));
+        }
+    }
+
+    /**
+     * Operación que lee de un archivo abierto y escribe en otro.
+     */
+    @FunctionalInterface
+    interface Operacion {
+        /**
+         * Aplica la operación.
+         *
+         * @param entrada Canal del archivo de origen
+         * @param salida Canal del archivo de destino
+         * @return Número de bytes escritos
+         * @throws IOException Sí hay un error leyendo o escribiendo
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado
+         */
+        long aplicar(FileChannel entrada, FileChannel salida) throws IOException, GeneralSecurityException;
+    }
+
+    /**
+     * Prepara el Cipher de una operación a partir de los archivos ya abiertos. Puede leer del origen o
+     * escribir en el destino (una cabecera); el procesado continúa desde la posición en que los deje.
+     * El Cipher debe venir de {@link ProveedorCifrados}: se le devuelve al terminar.
+     */
+    @FunctionalInterface
+    interface Preparacion {
+        /**
+         * Prepara el Cipher. Si falla, tiene que devolver a {@link ProveedorCifrados} el Cipher que
+         * haya obtenido: {@link ProcesadorFlujo#procesar(Preparacion, Path, Path, ModoES, Progreso)}
+         * solo devuelve el que recibe.
+         *
+         * @param entrada Canal del archivo de origen
+         * @param salida Canal del archivo de destino
+         * @return Cipher inicializado (cifrar o descifrar)
+         * @throws IOException Sí hay un error leyendo o escribiendo
+         * @throws GeneralSecurityException Sí ocurre un error al preparar el cifrado
+         */
+        Cipher preparar(FileChannel entrada, FileChannel salida) throws IOException, GeneralSecurityException;
+    }
+}
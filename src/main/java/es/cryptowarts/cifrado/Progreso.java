@@ -0,0 +1,28 @@
+package es.cryptowarts.cifrado;
+
+/**
+ * Receptor del avance de una operación larga sobre archivos.
+ * Se llama desde el hilo que procesa el archivo después de cada bloque, por lo que la implementación
+ * debe ser rápida y, si actualiza una interfaz gráfica, pasar los datos al hilo de la interfaz.
+ *
+ * <p>Las operaciones que informan del avance comprueban también en cada bloque si el hilo ha sido
+ * interrumpido; en ese caso se detienen con una {@link java.io.InterruptedIOException} y eliminan
+ * el archivo de destino parcial.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Progreso {
+
+    /** Progreso que no hace nada, para las operaciones sin seguimiento. */
+    Progreso NINGUNO = (procesados, total) -> { };
+
+    /**
+     * Informa de los bytes del origen procesados hasta ahora.
+     *
+     * @param procesados Bytes del origen ya procesados
+     * @param total Tamaño total del origen en bytes, o -1 si no se conoce (por ejemplo, la entrada estándar)
+     */
+    void actualizar(long procesados, long total);
+}
@@ -0,0 +1,76 @@
+package es.cryptowarts.cifrado;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserva acotada de instancias de {@link Cipher} reutilizables, una por algoritmo.
+ * {@link Cipher#getInstance(String)} busca el proveedor criptográfico en cada llamada, lo que domina
+ * el tiempo de cifrado de mensajes cortos; aquí se toma una instancia libre con {@link #obtener(String)},
+ * se reinicializa con {@link Cipher#init} y se devuelve con {@link #devolver(Cipher)} al terminar.
+ *
+ * <p>La reserva no depende del hilo: los hilos virtuales (uno por trabajo en {@link ServicioCifrado},
+ * por petición en el servidor y por tarea en la ventana) no viven lo bastante para aprovechar una caché
+ * por hilo. Si no hay ninguna instancia libre se crea otra, sin esperar; al devolverla, se descarta si
+ * ya hay {@link #MAXIMO_LIBRES} libres de ese algoritmo.</p>
+ *
+ * <p>Quien obtiene el Cipher debe inicializarlo siempre antes de usarlo, no debe compartirlo con otros
+ * hilos mientras lo usa y no debe usarlo después de devolverlo.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class ProveedorCifrados {
+
+    /** Número máximo de instancias libres que se guardan de cada algoritmo. */
+    static final int MAXIMO_LIBRES = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    /** Instancias libres de Cipher, por nombre de algoritmo. */
+    private static final ConcurrentHashMap<String, ArrayBlockingQueue<Cipher>> LIBRES = new ConcurrentHashMap<>();
+
+    /** Clase de utilidades, no se instancia. */
+    private ProveedorCifrados() {
+    }
+
+    /**
+     * Toma un Cipher libre del algoritmo indicado, o crea uno si no hay ninguno.
+     *
+     * @param algoritmo Transformación completa (por ejemplo "AES/CBC/PKCS5Padding")
+     * @return Cipher pendiente de inicializar, que hay que devolver con {@link #devolver(Cipher)}
+     * @throws GeneralSecurityException Sí el algoritmo no está disponible
+     *
+     * @author Telmo
+     */
+    static Cipher obtener(String algoritmo) throws GeneralSecurityException {
+        Cipher cifrado = libres(algoritmo).poll();
+        return cifrado != null ? cifrado : Cipher.getInstance(algoritmo);
+    }
+
+    /**
+     * Devuelve a la reserva un Cipher obtenido con {@link #obtener(String)}. No importa en qué estado
+     * quede (incluso después de un error): se reinicializa antes de volver a usarse.
+     *
+     * @param cifrado Cipher que ya no se va a usar
+     *
+     * @author Telmo
+     */
+    static void devolver(Cipher cifrado) {
+        // getAlgorithm() devuelve la transformación con la que se creó
+        libres(cifrado.getAlgorithm()).offer(cifrado);
+    }
+
+    /**
+     * Devuelve la cola de instancias libres de un algoritmo, creándola la primera vez.
+     *
+     * @param algoritmo Transformación completa
+     * @return Cola de instancias libres
+     *
+     * @author Telmo
+     */
+    private static ArrayBlockingQueue<Cipher> libres(String algoritmo) {
+        ArrayBlockingQueue<Cipher> libres = LIBRES.get(algoritmo);
+        return libres != null ? libres : LIBRES.computeIfAbsent(algoritmo, a -> new ArrayBlockingQueue<>(MAXIMO_LIBRES));
+    }
+}
@@ -0,0 +1,102 @@
+package es.cryptowarts.cifrado;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/**
+ * Registro de los {@link Cifrador} disponibles, descubiertos con {@link ServiceLoader} la primera vez
+ * que se usa el registro. Los cifradores de la aplicación se declaran en {@code module-info.java}
+ * (y en {@code META-INF/services} para cuando se ejecuta desde el classpath, como los benchmarks);
+ * cualquier otro módulo o JAR que declare {@code provides es.cryptowarts.cifrado.Cifrador} se añade
+ * sin cambiar la interfaz gráfica, la línea de comandos ni el servidor.
+ *
+ * <p>Los cifradores se guardan en el orden en que los devuelve {@link ServiceLoader}; si dos tienen el
+ * mismo identificador, se queda el primero. Cada uno se envuelve en un {@link CifradorMedido}, que
+ * registra sus operaciones en las métricas de {@link Instrumentacion}.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class RegistroCifradores {
+
+    /** Cifradores disponibles por identificador, en el orden de descubrimiento. */
+    private static final Map<String, Cifrador> CIFRADORES = cargar();
+
+    /** Clase de utilidades, no se instancia. */
+    private RegistroCifradores() {
+    }
+
+    /**
+     * Devuelve todos los cifradores disponibles.
+     *
+     * @return Lista inmodificable de cifradores, en el orden de descubrimiento
+     *
+     * @author Telmo
+     */
+    public static List<Cifrador> disponibles() {
+        return List.copyOf(CIFRADORES.values());
+    }
+
+    /**
+     * Devuelve los identificadores de todos los cifradores disponibles.
+     *
+     * @return Lista inmodificable de identificadores, en el orden de descubrimiento
+     *
+     * @author Telmo
+     */
+    public static List<String> identificadores() {
+        return List.copyOf(CIFRADORES.keySet());
+    }
+
+    /**
+     * Busca un cifrador por su identificador, sin distinguir mayúsculas de minúsculas.
+     *
+     * @param id Identificador del algoritmo (por ejemplo "aes-gcm")
+     * @return Cifrador, o vacío si no hay ninguno con ese identificador
+     *
+     * @author Telmo
+     */
+    public static Optional<Cifrador> buscar(String id) {
+        return Optional.ofNullable(CIFRADORES.get(id.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Devuelve el cifrador con el identificador indicado.
+     *
+     * @param id Identificador del algoritmo (por ejemplo "aes-gcm")
+     * @return Cifrador
+     * @throws NoSuchAlgorithmException Sí no hay ningún cifrador con ese identificador
+     *
+     * @author Telmo
+     */
+    public static Cifrador obtener(String id) throws NoSuchAlgorithmException {
+        Optional<Cifrador> cifrador = buscar(id);
+        if (cifrador.isEmpty()) {
+            throw new NoSuchAlgorithmException("Algoritmo de cifrado desconocido: " + id + " (disponibles: "
+                    + String.join(", ", CIFRADORES.keySet()) + ")");
+        }
+        return cifrador.get();
+    }
+
+    /**
+     * Descubre los cifradores con {@link ServiceLoader} y los envuelve para medirlos.
+     *
+     * @return Cifradores por identificador, en el orden de descubrimiento
+     *
+     * @author Telmo
+     */
+    private static Map<String, Cifrador> cargar() {
+        Map<String, Cifrador> cifradores = new LinkedHashMap<>();
+        // Cargador de esta clase y no el del hilo: el registro se puede usar desde hilos del pool común
+        for (Cifrador cifrador : ServiceLoader.load(Cifrador.class, Cifrador.class.getClassLoader())) {
+            cifradores.computeIfAbsent(cifrador.id().toLowerCase(Locale.ROOT), id -> new CifradorMedido(cifrador));
+        }
+        return Collections.unmodifiableMap(cifradores);
+    }
+}
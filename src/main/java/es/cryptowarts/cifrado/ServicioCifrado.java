@@ -0,0 +1,373 @@
+package es.cryptowarts.cifrado;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio de cifrado para usar dentro de la aplicación con muchas peticiones concurrentes.
+ * Cada trabajo se ejecuta en su propio hilo virtual, pero solo {@code maxConcurrentes} trabajos
+ * (por defecto, uno por núcleo) hacen a la vez el trabajo de CPU; el resto espera en un semáforo
+ * sin ocupar ningún hilo del sistema.
+ *
+ * <p>Para no acumular trabajos sin límite, el servicio admite como mucho
+ * {@code maxConcurrentes + capacidadCola} trabajos pendientes. Con la cola llena,
+ * {@link #enviar(Callable)} bloquea al que envía hasta que haya sitio (contrapresión) y
+ * {@link #enviar(Callable, Duration)} espera como mucho el tiempo indicado y después rechaza el
+ * trabajo con una {@link RejectedExecutionException}.</p>
+ *
+ * <p>El servicio mide la latencia de cada trabajo (desde que se envía hasta que termina) y el tiempo
+ * que pasa esperando turno, en dos {@link HistogramaLatencias} con sus percentiles. Los trabajos de AES
+ * usan el cifrador de {@link RegistroCifradores}, así que aparecen también en las métricas de
+ * {@link Instrumentacion}.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+public final class ServicioCifrado implements AutoCloseable {
+
+    /** Logger para esta clase. */
+    private static final Logger logger = LoggerFactory.getLogger(ServicioCifrado.class);
+
+    /** Capacidad de la cola de espera por defecto. */
+    public static final int CAPACIDAD_COLA = 1024;
+
+    /** Cifrador AES del registro, que mide sus operaciones. */
+    private static final Cifrador AES = RegistroCifradores.buscar(CifradorAES.ID).orElseThrow();
+
+    /** Número máximo de trabajos que usan la CPU a la vez. */
+    private final int maxConcurrentes;
+
+    /** Número máximo de trabajos admitidos (en la cola o en curso). */
+    private final int maxAdmitidos;
+
+    /** Permisos para usar la CPU; justo para que los trabajos se atiendan en orden de llegada. */
+    private final Semaphore cpu;
+
+    /** Plazas libres en el servicio (cola más trabajos en curso). */
+    private final Semaphore plazas;
+
+    /** Ejecutor con un hilo virtual por trabajo. */
+    private final ExecutorService ejecutor;
+
+    /** Latencia total de cada trabajo: desde que se envía hasta que termina. */
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+
+    /** Tiempo que cada trabajo espera turno antes de empezar. */
+    private final HistogramaLatencias esperas = new HistogramaLatencias();
+
+    /** Trabajos terminados correctamente. */
+    private final LongAdder completados = new LongAdder();
+
+    /** Trabajos terminados con error. */
+    private final LongAdder fallidos = new LongAdder();
+
+    /** Trabajos rechazados por tener la cola llena. */
+    private final LongAdder rechazados = new LongAdder();
+
+    /** Indica si el servicio se ha cerrado y ya no admite trabajos. */
+    private volatile boolean cerrado;
+
+    /**
+     * Crea el servicio con un trabajo de CPU por núcleo y la capacidad de cola por defecto.
+     *
+     * @author Telmo
+     */
+    public ServicioCifrado() {
+        this(Runtime.getRuntime().availableProcessors(), CAPACIDAD_COLA);
+    }
+
+    /**
+     * Crea el servicio con los límites indicados.
+     *
+     * @param maxConcurrentes Número máximo de trabajos que usan la CPU a la vez (mayor que 0)
+     * @param capacidadCola Número máximo de trabajos esperando turno (0 o más)
+     *
+     * @author Telmo
+     */
+    public ServicioCifrado(int maxConcurrentes, int capacidadCola) {
+        if (maxConcurrentes <= 0 || capacidadCola < 0) {
+            throw new IllegalArgumentException("Límites no válidos: " + maxConcurrentes + " concurrentes, cola de " + capacidadCola);
+        }
+        this.maxConcurrentes = maxConcurrentes;
+        this.maxAdmitidos = maxConcurrentes + capacidadCola;
+        this.cpu = new Semaphore(maxConcurrentes, true);
+        this.plazas = new Semaphore(maxAdmitidos);
+        this.ejecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("servicio-cifrado-", 0).factory());
+    }
+
+    /**
+     * Envía un trabajo, esperando a que haya sitio en la cola si está llena.
+     *
+     * @param <T> Tipo del resultado
+     * @param trabajo Trabajo a ejecutar
+     * @return Resultado futuro del trabajo; si falla, se completa con la excepción del trabajo
+     * @throws InterruptedException Sí el hilo se interrumpe mientras espera sitio en la cola
+     * @throws RejectedExecutionException Sí el servicio está cerrado
+     *
+     * @author Telmo
+     */
+    public <T> CompletableFuture<T> enviar(Callable<T> trabajo) throws InterruptedException {
+        comprobarAbierto();
+        plazas.acquire();
+        return lanzar(trabajo);
+    }
+
+    /**
+     * Envía un trabajo esperando como mucho el tiempo indicado a que haya sitio en la cola.
+     *
+     * @param <T> Tipo del resultado
+     * @param trabajo Trabajo a ejecutar
+     * @param espera Tiempo máximo de espera ({@link Duration#ZERO} para rechazarlo enseguida si está llena)
+     * @return Resultado futuro del trabajo; si falla, se completa con la excepción del trabajo
+     * @throws InterruptedException Sí el hilo se interrumpe mientras espera sitio en la cola
+     * @throws RejectedExecutionException Sí la cola sigue llena pasado el tiempo o el servicio está cerrado
+     *
+     * @author Telmo
+     */
+    public <T> CompletableFuture<T> enviar(Callable<T> trabajo, Duration espera) throws InterruptedException {
+        comprobarAbierto();
+        if (!plazas.tryAcquire(espera.toNanos(), TimeUnit.NANOSECONDS)) {
+            rechazados.increment();
+            throw new RejectedExecutionException("Cola de cifrado llena (" + maxAdmitidos + " trabajos pendientes)");
+        }
+        return lanzar(trabajo);
+    }
+
+    /**
+     * Cifra un texto con AES.
+     *
+     * @param textoPlano Texto a cifrar
+     * @param clave Clave secreta
+     * @return Texto cifrado en Base64 (futuro)
+     * @throws InterruptedException Sí el hilo se interrumpe mientras espera sitio en la cola
+     *
+     * @author Telmo
+     */
+    public CompletableFuture<String> cifrarTexto(String textoPlano, String clave) throws InterruptedException {
+        return enviar(() -> AES.cifrarTexto(textoPlano, clave));
+    }
+
+    /**
+     * Descifra un texto cifrado con AES.
+     *
+     * @param textoCifrado Texto cifrado en Base64
+     * @param clave Clave secreta
+     * @return Texto descifrado (futuro)
+     * @throws InterruptedException Sí el hilo se interrumpe mientras espera sitio en la cola
+     *
+     * @author Telmo
+     */
+    public CompletableFuture<String> descifrarTexto(String textoCifrado, String clave) throws InterruptedException {
+        return enviar(() -> AES.descifrarTexto(textoCifrado, clave));
+    }
+
+    /**
+     * Cifra un archivo con AES por bloques.
+     *
+     * @param origen Archivo de entrada
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta
+     * @return Bytes escritos en el destino (futuro)
+     * @throws InterruptedException Sí el hilo se interrumpe mientras espera sitio en la cola
+     *
+     * @author Telmo
+     */
+    public CompletableFuture<Long> cifrarArchivo(Path origen, Path destino, String clave) throws InterruptedException {
+        return enviar(() -> AES.cifrarArchivo(origen, destino, clave, Progreso.NINGUNO));
+    }
+
+    /**
+     * Descifra un archivo cifrado con AES por bloques.
+     *
+     * @param origen Archivo cifrado
+     * @param destino Archivo de salida (se crea o se sobrescribe)
+     * @param clave Clave secreta
+     * @return Bytes escritos en el destino (futuro)
+     * @throws InterruptedException Sí el hilo se interrumpe mientras espera sitio en la cola
+     *
+     * @author Telmo
+     */
+    public CompletableFuture<Long> descifrarArchivo(Path origen, Path destino, String clave) throws InterruptedException {
+        return enviar(() -> AES.descifrarArchivo(origen, destino, clave, Progreso.NINGUNO));
+    }
+
+    /**
+     * Lanza un trabajo ya admitido en un hilo virtual. El hilo espera turno en el semáforo de CPU,
+     * ejecuta el trabajo, registra los tiempos y libera su plaza.
+     *
+     * @param <T> Tipo del resultado
+     * @param trabajo Trabajo a ejecutar
+     * @return Resultado futuro del trabajo
+     *
+     * @author Telmo
+     */
+    private <T> CompletableFuture<T> lanzar(Callable<T> trabajo) {
+        long enviado = System.nanoTime();
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    cpu.acquire();
+                } catch (InterruptedException e) {
+                    plazas.release();
+                    fallidos.increment();
+                    resultado.completeExceptionally(e);
+                    return;
+                }
+                T valor = null;
+                Throwable error = null;
+                try {
+                    esperas.registrar(System.nanoTime() - enviado);
+                    valor = trabajo.call();
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    cpu.release();
+                    plazas.release();
+                }
+                // Se registra antes de completar para que quien espera el resultado ya vea sus tiempos
+                latencias.registrar(System.nanoTime() - enviado);
+                if (error == null) {
+                    completados.increment();
+                    resultado.complete(valor);
+                } else {
+                    fallidos.increment();
+                    resultado.completeExceptionally(error);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // El servicio se ha cerrado entre la comprobación y el lanzamiento
+            plazas.release();
+            throw e;
+        }
+        return resultado;
+    }
+
+    /**
+     * Comprueba que el servicio sigue admitiendo trabajos.
+     *
+     * @throws RejectedExecutionException Sí el servicio está cerrado
+     *
+     * @author Telmo
+     */
+    private void comprobarAbierto() {
+        if (cerrado) {
+            rechazados.increment();
+            throw new RejectedExecutionException("El servicio de cifrado está cerrado");
+        }
+    }
+
+    /**
+     * Devuelve el histograma de latencias totales (envío hasta fin del trabajo).
+     *
+     * @return Histograma de latencias
+     *
+     * @author Telmo
+     */
+    public HistogramaLatencias getLatencias() {
+        return latencias;
+    }
+
+    /**
+     * Devuelve el histograma de tiempos de espera en la cola (envío hasta que empieza el trabajo).
+     *
+     * @return Histograma de esperas
+     *
+     * @author Telmo
+     */
+    public HistogramaLatencias getEsperas() {
+        return esperas;
+    }
+
+    /**
+     * Devuelve el número de trabajos terminados correctamente.
+     *
+     * @return Trabajos completados
+     *
+     * @author Telmo
+     */
+    public long getCompletados() {
+        return completados.sum();
+    }
+
+    /**
+     * Devuelve el número de trabajos terminados con error.
+     *
+     * @return Trabajos fallidos
+     *
+     * @author Telmo
+     */
+    public long getFallidos() {
+        return fallidos.sum();
+    }
+
+    /**
+     * Devuelve el número de trabajos rechazados por tener la cola llena o el servicio cerrado.
+     *
+     * @return Trabajos rechazados
+     *
+     * @author Telmo
+     */
+    public long getRechazados() {
+        return rechazados.sum();
+    }
+
+    /**
+     * Devuelve el número de trabajos que están usando la CPU en este momento.
+     *
+     * @return Trabajos en curso
+     *
+     * @author Telmo
+     */
+    public int getEnCurso() {
+        return maxConcurrentes - cpu.availablePermits();
+    }
+
+    /**
+     * Devuelve el número aproximado de trabajos admitidos que esperan turno.
+     *
+     * @return Trabajos en cola
+     *
+     * @author Telmo
+     */
+    public int getEnCola() {
+        return Math.max(0, maxAdmitidos - plazas.availablePermits() - getEnCurso());
+    }
+
+    /**
+     * Resume el estado del servicio: contadores y percentiles de latencia y de espera.
+     *
+     * @return Resumen legible del servicio
+     *
+     * @author Telmo
+     */
+    @Override
+    public String toString() {
+        return "ServicioCifrado[completados=" + getCompletados() + ", fallidos=" + getFallidos()
+                + ", rechazados=" + getRechazados() + ", enCurso=" + getEnCurso() + ", enCola=" + getEnCola()
+                + ", latencia: " + latencias + ", espera: " + esperas + "]";
+    }
+
+    /**
+     * Deja de admitir trabajos y espera a que terminen los que ya estaban admitidos.
+     *
+     * @author Telmo
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        ejecutor.close();
+        logger.info("Servicio de cifrado cerrado: {}", this);
+    }
+}
@@ -0,0 +1,507 @@
+package es.cryptowarts.cifrado;
+
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+
+/**
+ * Sobre binario versionado que {@link CifradoAES} escribe delante de los datos cifrados: identifica el
+ * algoritmo y lleva todo lo necesario para descifrar salvo la clave del usuario.
+ *
+ * <p>Formato actual, versión 2 (enteros en big-endian):</p>
+ * <pre>
+ * "CWKD" | versión (1 byte) | algoritmo (1 byte) | iteraciones (int) | sal (16 bytes) | IV (16 bytes en AES-CBC, 12 en AES-GCM y ChaCha20-Poly1305)
+ * datos cifrados (en AES-GCM y ChaCha20-Poly1305, bloques con su etiqueta de autenticación, ver {@link BloquesAutenticados})
+ * </pre>
+ * El bit alto del byte del algoritmo indica que los datos se comprimieron antes de cifrarlos
+ * (ver {@link Compresion}); en los algoritmos autenticados queda protegido como el resto del sobre.
+ * Se siguen leyendo los formatos anteriores, que se reconocen por la firma y la versión:
+ * <ul>
+ *     <li>versión 1: {@code "CWKD" | 1 | iteraciones | sal}, con el IV fijo</li>
+ *     <li>sin firma: datos cifrados con la clave normalizada a 16 bytes y el IV fijo</li>
+ * </ul>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class SobreCifrado {
+
+    /** Identificador del formato al inicio de los datos. */
+    private static final byte[] FIRMA = {'C', 'W', 'K', 'D'};
+
+    /** Versión actual del formato, con algoritmo e IV aleatorio. */
+    private static final byte VERSION = 2;
+
+    /** Versión anterior del formato, con la clave derivada pero el IV fijo. */
+    private static final byte VERSION_IV_FIJO = 1;
+
+    /** Identificador de AES en modo CBC con PKCS5Padding. */
+    static final byte AES_CBC = 1;
+
+    /** Identificador de AES en modo GCM por bloques autenticados. */
+    static final byte AES_GCM = 2;
+
+    /** Identificador de ChaCha20-Poly1305 por bloques autenticados (clave de 256 bits). */
+    static final byte CHACHA20_POLY1305 = 3;
+
+    /** Bit del byte del algoritmo que indica que los datos están comprimidos. */
+    private static final byte COMPRIMIDO = (byte) 0x80;
+
+    /** Longitud del IV de AES-CBC en bytes. */
+    private static final int LONGITUD_IV_CBC = 16;
+
+    /** Longitud del nonce de AES-GCM y de ChaCha20-Poly1305 en bytes. */
+    private static final int LONGITUD_NONCE = 12;
+
+    /** Longitud de la etiqueta de autenticación de AES-GCM en bits. */
+    private static final int BITS_ETIQUETA = 128;
+
+    /** Longitud del sobre de la versión actual sin el IV, en bytes. */
+    private static final int LONGITUD_SIN_IV = FIRMA.length + 2 + 4 + DerivacionClaves.LONGITUD_SAL;
+
+    /** Longitud máxima del sobre en bytes (la de la versión actual con el IV más largo). */
+    static final int LONGITUD = LONGITUD_SIN_IV + LONGITUD_IV_CBC;
+
+    /** Longitud del sobre de la versión 1 en bytes. */
+    private static final int LONGITUD_IV_FIJO = FIRMA.length + 1 + 4 + DerivacionClaves.LONGITUD_SAL;
+
+    /** Vector de inicialización fijo de los formatos anteriores. */
+    private static final IvParameterSpec IV_FIJO = new IvParameterSpec("abcdefghijklmnop".getBytes(StandardCharsets.UTF_8));
+
+    /** Generador de los IV aleatorios. */
+    private static final SecureRandom ALEATORIO = new SecureRandom();
+
+    /** Versión del sobre. */
+    private final byte version;
+
+    /** Algoritmo de los datos. */
+    private final byte algoritmo;
+
+    /** Sal con la que se derivó la clave. */
+    private final byte[] sal;
+
+    /** Iteraciones con las que se derivó la clave. */
+    private final int iteraciones;
+
+    /** Si los datos se comprimieron antes de cifrarlos. */
+    private final boolean comprimido;
+
+    /** IV o nonce de los datos ({@code null} en la versión 1, que usa el IV fijo). */
+    private final byte[] iv;
+
+    /** Parámetros del cifrado (IV). */
+    private final AlgorithmParameterSpec parametros;
+
+    /**
+     * Crea un sobre.
+     *
+     * @param version Versión del formato
+     * @param algoritmo Algoritmo de los datos
+     * @param sal Sal de {@link DerivacionClaves#LONGITUD_SAL} bytes
+     * @param iteraciones Iteraciones de la derivación
+     * @param comprimido Si los datos están comprimidos
+     * @param iv IV o nonce de los datos, o {@code null} para el IV fijo
+     */
+    private SobreCifrado(byte version, byte algoritmo, byte[] sal, int iteraciones, boolean comprimido, byte[] iv) {
+        this.version = version;
+        this.algoritmo = algoritmo;
+        this.sal = sal;
+        this.iteraciones = iteraciones;
+        this.comprimido = comprimido;
+        this.iv = iv;
+        if (iv == null) {
+            this.parametros = IV_FIJO;
+        } else if (algoritmo == AES_GCM) {
+            this.parametros = new GCMParameterSpec(BITS_ETIQUETA, iv);
+        } else {
+            this.parametros = new IvParameterSpec(iv);
+        }
+    }
+
+    /**
+     * Crea el sobre de un mensaje nuevo, con un IV (o nonce) aleatorio.
+     *
+     * @param algoritmo Algoritmo de los datos ({@link #AES_CBC}, {@link #AES_GCM} o {@link #CHACHA20_POLY1305})
+     * @param sal Sal de la clave derivada
+     * @param iteraciones Iteraciones de la clave derivada
+     * @return Sobre de la versión actual
+     *
+     * @author Telmo
+     */
+    static SobreCifrado nuevo(byte algoritmo, byte[] sal, int iteraciones) {
+        return nuevo(algoritmo, sal, iteraciones, false);
+    }
+
+    /**
+     * Crea el sobre de un mensaje nuevo, con un IV (o nonce) aleatorio, indicando si los datos se comprimen.
+     *
+     * @param algoritmo Algoritmo de los datos ({@link #AES_CBC}, {@link #AES_GCM} o {@link #CHACHA20_POLY1305})
+     * @param sal Sal de la clave derivada
+     * @param iteraciones Iteraciones de la clave derivada
+     * @param comprimido Si los datos se comprimen antes de cifrarlos
+     * @return Sobre de la versión actual
+     *
+     * @author Telmo
+     */
+    static SobreCifrado nuevo(byte algoritmo, byte[] sal, int iteraciones, boolean comprimido) {
+        byte[] iv = new byte[longitudIV(algoritmo)];
+        ALEATORIO.nextBytes(iv);
+        return new SobreCifrado(VERSION, algoritmo, sal, iteraciones, comprimido, iv);
+    }
+
+    /**
+     * Devuelve los parámetros de cifrado para los datos sin sobre (formato antiguo).
+     *
+     * @return IV fijo
+     *
+     * @author Telmo
+     */
+    static AlgorithmParameterSpec parametrosSinSobre() {
+        return IV_FIJO;
+    }
+
+    /**
+     * Devuelve la sal con la que se derivó la clave.
+     *
+     * @return Sal (no se debe modificar)
+     */
+    byte[] getSal() {
+        return sal;
+    }
+
+    /**
+     * Devuelve las iteraciones con las que se derivó la clave.
+     *
+     * @return Número de iteraciones
+     */
+    int getIteraciones() {
+        return iteraciones;
+    }
+
+    /**
+     * Devuelve el algoritmo de los datos.
+     *
+     * @return Identificador del algoritmo
+     */
+    byte getAlgoritmo() {
+        return algoritmo;
+    }
+
+    /**
+     * Indica si los datos se comprimieron antes de cifrarlos.
+     *
+     * @return {@code true} si hay que descomprimirlos después de descifrarlos
+     */
+    boolean isComprimido() {
+        return comprimido;
+    }
+
+    /**
+     * Devuelve los parámetros con los que inicializar el Cipher.
+     *
+     * @return IV de los datos (en AES-GCM, el nonce del primer bloque)
+     */
+    AlgorithmParameterSpec getParametros() {
+        return parametros;
+    }
+
+    /**
+     * Devuelve el IV o nonce de los datos.
+     *
+     * @return IV (no se debe modificar), o {@code null} en la versión 1
+     */
+    byte[] getIV() {
+        return iv;
+    }
+
+    /**
+     * Devuelve la longitud del sobre en bytes.
+     *
+     * @return Longitud del sobre
+     */
+    int longitud() {
+        return version == VERSION ? LONGITUD_SIN_IV + iv.length : LONGITUD_IV_FIJO;
+    }
+
+    /**
+     * Devuelve el sobre tal y como se escribe delante de los datos. Los algoritmos autenticados
+     * lo usan como datos adicionales, de modo que no se puede modificar sin que falle la verificación.
+     *
+     * @return Bytes del sobre
+     *
+     * @author Telmo
+     */
+    byte[] bytes() {
+        byte[] bytes = new byte[longitud()];
+        escribir(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Comprueba que los datos están cifrados con el algoritmo esperado.
+     *
+     * @param esperado Algoritmo de quien va a descifrar
+     * @throws GeneralSecurityException Sí los datos son de otro algoritmo
+     *
+     * @author Telmo
+     */
+    void exigirAlgoritmo(byte esperado) throws GeneralSecurityException {
+        if (algoritmo != esperado) {
+            throw new GeneralSecurityException("Los datos están cifrados con " + nombre(algoritmo) + ", no con " + nombre(esperado));
+        }
+    }
+
+    /**
+     * Escribe el sobre en la posición actual del buffer.
+     *
+     * @param destino Buffer de destino
+     * @return Número de bytes escritos
+     * @throws BufferOverflowException Sí el buffer no tiene sitio para el sobre
+     *
+     * @author Telmo
+     */
+    int escribir(ByteBuffer destino) {
+        if (destino.remaining() < longitud()) {
+            throw new BufferOverflowException();
+        }
+        destino.put(FIRMA).put(version);
+        if (version == VERSION) {
+            destino.put(comprimido ? (byte) (algoritmo | COMPRIMIDO) : algoritmo);
+        }
+        destino.putInt(iteraciones).put(sal);
+        if (version == VERSION) {
+            destino.put(iv);
+        }
+        return longitud();
+    }
+
+    /**
+     * Escribe el sobre en un array.
+     *
+     * @param destino Array de destino
+     * @param desplazamiento Posición en la que empieza el sobre
+     * @return Número de bytes escritos
+     *
+     * @author Telmo
+     */
+    int escribir(byte[] destino, int desplazamiento) {
+        return escribir(ByteBuffer.wrap(destino, desplazamiento, destino.length - desplazamiento));
+    }
+
+    /**
+     * Escribe el sobre completo en un canal.
+     *
+     * @param destino Canal de salida
+     * @return Número de bytes escritos
+     * @throws IOException Sí hay un error escribiendo
+     *
+     * @author Telmo
+     */
+    int escribir(WritableByteChannel destino) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(longitud());
+        escribir(buffer);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            destino.write(buffer);
+        }
+        return buffer.limit();
+    }
+
+    /**
+     * Lee el sobre del principio de los datos restantes del buffer. Si lo hay, la posición avanza hasta
+     * el primer byte cifrado; si no, no se mueve.
+     *
+     * @param datos Datos cifrados
+     * @return Sobre leído, o {@code null} si los datos no empiezan por la firma (formato antiguo)
+     * @throws GeneralSecurityException Sí el sobre está incompleto, es de una versión o un algoritmo no soportados,
+     *         o sus iteraciones no son válidas
+     *
+     * @author Telmo
+     */
+    static SobreCifrado leer(ByteBuffer datos) throws GeneralSecurityException {
+        int inicio = datos.position();
+        if (datos.remaining() < FIRMA.length + 1 || !empiezaPorFirma(datos, inicio)) {
+            return null;
+        }
+        byte version = datos.get(inicio + FIRMA.length);
+        if (version != VERSION && version != VERSION_IV_FIJO) {
+            throw new GeneralSecurityException("Versión de formato no soportada: " + version);
+        }
+        if (version == VERSION && datos.remaining() < FIRMA.length + 2) {
+            throw new GeneralSecurityException("Datos cifrados incompletos: falta parte de la cabecera");
+        }
+        byte marcado = version == VERSION ? datos.get(inicio + FIRMA.length + 1) : AES_CBC;
+        boolean comprimido = (marcado & COMPRIMIDO) != 0;
+        byte algoritmo = (byte) (marcado & ~COMPRIMIDO);
+        int longitud = longitud(version, algoritmo);
+        if (longitud < 0) {
+            throw new GeneralSecurityException("Algoritmo no soportado: " + algoritmo);
+        }
+        if (datos.remaining() < longitud) {
+            throw new GeneralSecurityException("Datos cifrados incompletos: falta parte de la cabecera");
+        }
+
+        datos.position(inicio + FIRMA.length + (version == VERSION ? 2 : 1));
+        int iteraciones = datos.getInt();
+        if (!DerivacionClaves.iteracionesCabeceraValidas(iteraciones)) {
+            throw new GeneralSecurityException("Número de iteraciones no válido en la cabecera: " + iteraciones);
+        }
+        byte[] sal = new byte[DerivacionClaves.LONGITUD_SAL];
+        datos.get(sal);
+        byte[] iv = null;
+        if (version == VERSION) {
+            iv = new byte[longitudIV(algoritmo)];
+            datos.get(iv);
+        }
+        return new SobreCifrado(version, algoritmo, sal, iteraciones, comprimido, iv);
+    }
+
+    /**
+     * Lee el sobre del principio de un array.
+     *
+     * @param datos Datos cifrados
+     * @param desplazamiento Posición del primer byte
+     * @param longitud Número de bytes válidos a partir del desplazamiento
+     * @return Sobre leído, o {@code null} si los datos no empiezan por la firma (formato antiguo)
+     * @throws GeneralSecurityException Sí el sobre está incompleto o no es válido
+     *
+     * @author Telmo
+     */
+    static SobreCifrado leer(byte[] datos, int desplazamiento, int longitud) throws GeneralSecurityException {
+        return leer(ByteBuffer.wrap(datos, desplazamiento, longitud));
+    }
+
+    /**
+     * Lee el sobre del principio de un canal sin consumir ningún byte cifrado: primero la firma, la versión
+     * y el algoritmo y después el resto según la versión y el algoritmo. Los bytes leídos quedan en el buffer para que el llamador los
+     * procese si resultan ser datos del formato antiguo.
+     *
+     * @param origen Canal de entrada
+     * @param leidos Buffer de al menos {@link #LONGITUD} bytes; al volver está preparado para leer los bytes consumidos
+     * @return Sobre leído, o {@code null} si los datos no empiezan por la firma (formato antiguo)
+     * @throws IOException Sí hay un error leyendo
+     * @throws GeneralSecurityException Sí el sobre está incompleto o no es válido
+     *
+     * @author Telmo
+     */
+    static SobreCifrado leer(ReadableByteChannel origen, ByteBuffer leidos) throws IOException, GeneralSecurityException {
+        leidos.clear().limit(FIRMA.length + 2);
+        leerHastaLimite(origen, leidos);
+        if (!leidos.hasRemaining() && empiezaPorFirma(leidos, 0)) {
+            int longitud = longitud(leidos.get(FIRMA.length), leidos.get(FIRMA.length + 1));
+            if (longitud > 0) {
+                leidos.limit(longitud);
+                leerHastaLimite(origen, leidos);
+            }
+        }
+        leidos.flip();
+        SobreCifrado sobre = leer(leidos.duplicate());
+        if (sobre != null) {
+            leidos.position(leidos.limit());
+        }
+        return sobre;
+    }
+
+    /**
+     * Compara la clave derivada con la de otro sobre.
+     *
+     * @param otro Sobre con el que comparar (puede ser {@code null})
+     * @return {@code true} si ambos tienen la misma sal y las mismas iteraciones
+     *
+     * @author Telmo
+     */
+    boolean mismaClave(SobreCifrado otro) {
+        return otro != null && iteraciones == otro.iteraciones && Arrays.equals(sal, otro.sal);
+    }
+
+    /**
+     * Calcula la longitud de un sobre según su versión y su algoritmo.
+     *
+     * @param version Versión del formato
+     * @param marcado Byte del algoritmo, con el bit de compresión (en la versión 1 no se usa)
+     * @return Longitud del sobre, o -1 si la versión o el algoritmo no se conocen
+     *
+     * @author Telmo
+     */
+    private static int longitud(byte version, byte marcado) {
+        byte algoritmo = (byte) (marcado & ~COMPRIMIDO);
+        if (version == VERSION_IV_FIJO) {
+            return LONGITUD_IV_FIJO;
+        }
+        if (version != VERSION || (algoritmo != AES_CBC && algoritmo != AES_GCM && algoritmo != CHACHA20_POLY1305)) {
+            return -1;
+        }
+        return LONGITUD_SIN_IV + longitudIV(algoritmo);
+    }
+
+    /**
+     * Devuelve la longitud del IV de un algoritmo.
+     *
+     * @param algoritmo {@link #AES_CBC}, {@link #AES_GCM} o {@link #CHACHA20_POLY1305}
+     * @return Longitud del IV (o nonce) en bytes
+     *
+     * @author Telmo
+     */
+    private static int longitudIV(byte algoritmo) {
+        return algoritmo == AES_CBC ? LONGITUD_IV_CBC : LONGITUD_NONCE;
+    }
+
+    /**
+     * Devuelve el nombre de un algoritmo para los mensajes de error.
+     *
+     * @param algoritmo Identificador del algoritmo
+     * @return Nombre legible
+     *
+     * @author Telmo
+     */
+    private static String nombre(byte algoritmo) {
+        return switch (algoritmo) {
+            case AES_CBC -> "AES-CBC";
+            case AES_GCM -> "AES-GCM";
+            case CHACHA20_POLY1305 -> "ChaCha20-Poly1305";
+            default -> "el algoritmo " + algoritmo;
+        };
+    }
+
+    /**
+     * Comprueba si los bytes a partir de una posición del buffer son la firma, sin moverlo.
+     *
+     * @param datos Buffer con al menos {@code FIRMA.length} bytes a partir de la posición
+     * @param inicio Posición del primer byte
+     * @return {@code true} si los datos empiezan por la firma
+     *
+     * @author Telmo
+     */
+    private static boolean empiezaPorFirma(ByteBuffer datos, int inicio) {
+        for (int i = 0; i < FIRMA.length; i++) {
+            if (datos.get(inicio + i) != FIRMA[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee del canal hasta llenar el buffer hasta su límite o llegar al final.
+     *
+     * @param origen Canal de entrada
+     * @param buffer Buffer a llenar
+     * @throws IOException Sí hay un error leyendo
+     *
+     * @author Telmo
+     */
+    private static void leerHastaLimite(ReadableByteChannel origen, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && origen.read(buffer) != -1) {
+            // Se sigue leyendo hasta completar el límite o llegar al final
+        }
+    }
+}
@@ -1,25 +1,52 @@
 package es.cryptowarts.controladores;
 
-import es.cryptowarts.cifrado.CifradoAES;
-import es.cryptowarts.cifrado.CifradoVigenere;
+import es.cryptowarts.cifrado.CambioTexto;
+import es.cryptowarts.cifrado.Cifrador;
+import es.cryptowarts.cifrado.CifradorVigenere;
+import es.cryptowarts.cifrado.LoteArchivos;
+import es.cryptowarts.cifrado.Progreso;
+import es.cryptowarts.cifrado.RegistroCifradores;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.text.MessageFormat;
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Controlador de la ventana principal de la aplicación de cifrado.
  * Gestiona la interacción con la interfaz JavaFX y la lógica de cifrado y descifrado
- * según la selección del usuario (Vigenere o AES).
+ * según el algoritmo seleccionado. Los algoritmos no están fijados en la ventana: se crea un botón
+ * por cada {@link Cifrador} de {@link RegistroCifradores}, así que un algoritmo nuevo aparece sin
+ * cambiar este controlador.
+ * Las operaciones se ejecutan en segundo plano ({@link TareaCifrado} sobre hilos virtuales) para que
+ * la ventana no se bloquee, con barra de progreso, velocidad, tiempo restante y botón de cancelar.
+ * Si se eligen varios archivos o una carpeta, se procesan en paralelo con {@link LoteArchivos}.
+ * Los textos grandes (pegados, abiertos desde un archivo o resultados) no se meten en los TextArea, que
+ * tardarían segundos en maquetarlos: se guardan en un archivo, se muestran por páginas con
+ * {@link VisorTexto} y se cifran por flujo, sin tenerlos enteros en memoria.
+ * Con el modo en vivo ({@link ModoEnVivo}) el texto se cifra mientras se escribe, sin pulsar el botón.
  *
  * @author Telmo y Erlantz
  * @version 1.0
@@ -29,6 +56,10 @@ public class ControladorVentana {
     /** Logger para esta clase. */
     private static final Logger logger = LoggerFactory.getLogger(ControladorVentana.class);
 
+    /** Ejecutor de las tareas de cifrado: un hilo virtual por tarea. */
+    private static final ExecutorService EJECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("cifrado-", 0).factory());
+
     /** Bundle para internacionalización de mensajes. */
     private ResourceBundle bundle;
 
@@ -48,6 +79,31 @@ public class ControladorVentana {
     @FXML
     private TextArea txtIzda;
 
+    /** Panel con el área de texto de entrada, o con el visor si el texto de entrada es grande. */
+    @FXML
+    private ScrollPane panelIzda;
+
+    /** Panel con el área de texto de salida, o con el visor si el resultado es grande. */
+    @FXML
+    private ScrollPane panelDcha;
+
+    /** Visor por páginas del texto de entrada grande. */
+    private final VisorTexto visorIzda = new VisorTexto();
+
+    /** Visor por páginas del resultado grande. */
+    private final VisorTexto visorDcha = new VisorTexto();
+
+    /** Casilla para escribir el resultado del texto en un archivo en lugar de en el área de salida. */
+    @FXML
+    private CheckBox chkGuardarResultado;
+
+    /** Casilla del modo en vivo: cifrar o descifrar el texto mientras se escribe. */
+    @FXML
+    private CheckBox chkEnVivo;
+
+    /** Modo en vivo activo, o {@code null} si está desactivado. */
+    private ModoEnVivo modoEnVivo;
+
     /** ComboBox para seleccionar la acción: cifrar o descifrar. */
     @FXML
     private ComboBox<String> cmbOpcion;
@@ -64,17 +120,47 @@ public class ControladorVentana {
     @FXML
     private Button btnSelecFichero;
 
-    /** RadioButton para seleccionar cifrado Vigenere. */
+    /** Botón para seleccionar una carpeta y procesar todos sus archivos. */
+    @FXML
+    private Button btnSelecCarpeta;
+
+    /** Panel con un RadioButton por cada algoritmo de cifrado disponible. */
+    @FXML
+    private HBox panelAlgoritmos;
+
+    /** Grupo de toggle para radio buttons de selección de cifrado; cada uno guarda su {@link Cifrador}. */
+    private final ToggleGroup grupoCifrado = new ToggleGroup();
+
+    /** Panel con el progreso de la operación en curso (oculto si no hay ninguna). */
     @FXML
-    private RadioButton rbVigenere;
+    private HBox panelProgreso;
 
-    /** RadioButton para seleccionar cifrado AES. */
+    /** Barra de progreso de la operación en curso. */
     @FXML
-    private RadioButton rbAES;
+    private ProgressBar barraProgreso;
 
-    /** Grupo de toggle para radio buttons de selección de cifrado. */
+    /** Etiqueta con los MB procesados, la velocidad y el tiempo restante. */
     @FXML
-    private ToggleGroup grupoCifrado;
+    private Label lblProgreso;
+
+    /** Botón para cancelar la operación en curso. */
+    @FXML
+    private Button btnCancelar;
+
+    /** Opción del menú de idioma para el Español. */
+    @FXML
+    private MenuItem itemEspaniol;
+
+    /** Opción del menú de idioma para el Euskera. */
+    @FXML
+    private MenuItem itemEuskera;
+
+    /** Opción del menú de idioma para el Inglés. */
+    @FXML
+    private MenuItem itemIngles;
+
+    /** Operación en curso, o {@code null} si no hay ninguna. */
+    private TareaCifrado<?> tareaActual;
 
     /** Constante para texto de opción de cifrar. */
     private static final String CIFRAR = "cifrar";
@@ -85,6 +171,36 @@ public class ControladorVentana {
     /** Constante para texto de opción "selecciona opción". */
     private static final String SELECCIONA_OPCION = "seleccionaOpcion";
 
+    /** Número máximo de archivos con error que se enumeran en la alerta de un lote. */
+    private static final int MAX_ERRORES_MOSTRADOS = 10;
+
+    /** Algoritmo seleccionado al abrir la ventana (si no está disponible, se selecciona el primero). */
+    private static final String ALGORITMO_INICIAL = CifradorVigenere.ID;
+
+    /** Prefijo de las claves del bundle con la descripción (tooltip) de cada algoritmo, seguido de su id. */
+    private static final String PREFIJO_AYUDA_ALGORITMO = "algoritmo.";
+
+    /** Caracteres a partir de los cuales un texto se muestra por páginas en lugar de en un TextArea. */
+    private static final int LIMITE_AREA = 256 * 1024;
+
+    /**
+     * Caracteres hasta los que un texto se cifra en memoria y el resultado va al área de salida: el
+     * texto cifrado en Base64 puede ocupar hasta 4 caracteres por cada uno del original.
+     */
+    private static final int LIMITE_TEXTO_EN_MEMORIA = LIMITE_AREA / 4;
+
+    /** Carpeta de las imágenes de la aplicación. */
+    private static final String RUTA_IMAGENES = "/es/cryptowarts/imagenes/";
+
+    /** Ancho con el que se muestran las banderas del menú de idioma. */
+    private static final double ANCHO_BANDERA = 24;
+
+    /** Alto con el que se muestran las banderas del menú de idioma. */
+    private static final double ALTO_BANDERA = 16;
+
+    /** Bytes de un megabyte. */
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
     /**
      * Inicializa el controlador tras cargarse la interfaz.
      * Configura combo box, estado inicial de botones y toggle group.
@@ -101,13 +217,97 @@ public class ControladorVentana {
         btnAreas.setDisable(true);
         btnLimpiarAreas.setDisable(true);
         btnSelecFichero.setDisable(true);
+        btnSelecCarpeta.setDisable(true);
         lblMensaje.setText("");
         lblMensaje.setVisible(false);
+        panelProgreso.managedProperty().bind(panelProgreso.visibleProperty());
+        panelProgreso.setVisible(false);
+        txtIzda.setTextFormatter(new TextFormatter<String>(this::filtrarTextoGrande));
 
-        grupoCifrado = new ToggleGroup();
-        rbVigenere.setToggleGroup(grupoCifrado);
-        rbAES.setToggleGroup(grupoCifrado);
-        rbVigenere.setSelected(true);
+        crearBotonesAlgoritmo();
+        grupoCifrado.selectedToggleProperty().addListener((observable, anterior, nuevo) -> reiniciarEnVivo());
+        cmbOpcion.valueProperty().addListener((observable, anterior, nuevo) -> reiniciarEnVivo());
+    }
+
+    /**
+     * Crea un RadioButton por cada algoritmo de {@link RegistroCifradores}, en el orden del registro,
+     * y selecciona {@link #ALGORITMO_INICIAL}.
+     *
+     * @author Telmo
+     */
+    private void crearBotonesAlgoritmo() {
+        for (Cifrador cifrador : RegistroCifradores.disponibles()) {
+            RadioButton boton = new RadioButton(cifrador.nombre());
+            boton.setMnemonicParsing(false);
+            boton.setUserData(cifrador);
+            boton.setToggleGroup(grupoCifrado);
+            panelAlgoritmos.getChildren().add(boton);
+            if (grupoCifrado.getSelectedToggle() == null || cifrador.id().equals(ALGORITMO_INICIAL)) {
+                boton.setSelected(true);
+            }
+        }
+        actualizarAyudaAlgoritmos();
+    }
+
+    /**
+     * Pone a cada botón de algoritmo la descripción del bundle actual, si la hay.
+     *
+     * @author Telmo
+     */
+    private void actualizarAyudaAlgoritmos() {
+        for (Toggle toggle : grupoCifrado.getToggles()) {
+            RadioButton boton = (RadioButton) toggle;
+            String clave = PREFIJO_AYUDA_ALGORITMO + ((Cifrador) boton.getUserData()).id();
+            boton.setTooltip(bundle.containsKey(clave) ? new Tooltip(bundle.getString(clave)) : null);
+        }
+    }
+
+    /**
+     * Devuelve el algoritmo seleccionado.
+     *
+     * @return Cifrador seleccionado, o {@code null} si no hay ninguno
+     *
+     * @author Telmo
+     */
+    private Cifrador cifradorSeleccionado() {
+        Toggle seleccionado = grupoCifrado.getSelectedToggle();
+        return seleccionado == null ? null : (Cifrador) seleccionado.getUserData();
+    }
+
+    /**
+     * Pone las banderas a las opciones del menú de idioma la primera vez que se abre, para no cargar
+     * sus imágenes al arrancar la aplicación.
+     *
+     * @author Erlantz
+     */
+    @FXML
+    void cargarBanderas() {
+        if (itemEspaniol.getGraphic() != null) {
+            return;
+        }
+        itemEspaniol.setGraphic(bandera("logo_españa.png"));
+        itemEuskera.setGraphic(bandera("logo_euskera.png"));
+        itemIngles.setGraphic(bandera("logo_ingles.png"));
+    }
+
+    /**
+     * Crea la vista de una bandera del menú de idioma. La imagen se reduce al cargarla al doble del
+     * tamaño con el que se muestra (para pantallas de alta densidad), en lugar de guardarla entera.
+     *
+     * @param archivo Nombre del archivo de la imagen en {@link #RUTA_IMAGENES}
+     * @return Vista de la bandera
+     *
+     * @author Erlantz
+     */
+    private ImageView bandera(String archivo) {
+        Image imagen = new Image(getClass().getResource(RUTA_IMAGENES + archivo).toExternalForm(),
+                ANCHO_BANDERA * 2, ALTO_BANDERA * 2, true, true);
+        ImageView vista = new ImageView(imagen);
+        vista.setFitWidth(ANCHO_BANDERA);
+        vista.setFitHeight(ALTO_BANDERA);
+        vista.setPreserveRatio(true);
+        vista.setPickOnBounds(true);
+        return vista;
     }
 
     /**
@@ -147,9 +347,14 @@ public class ControladorVentana {
             cmbOpcion.getItems().setAll(bundle.getString("cifrar"), bundle.getString("descifrar"));
             cmbOpcion.setValue(bundle.getString("seleccionaOpcion"));
             btnSelecFichero.setText(bundle.getString("seleccionaArchivo"));
+            btnSelecCarpeta.setText(bundle.getString("seleccionaCarpeta"));
             lblMensaje.setText("");
             lblMensaje.setVisible(false);
             btnLimpiarAreas.setText(bundle.getString("btnLimpiarAreas"));
+            btnCancelar.setText(bundle.getString("cancelar"));
+            chkGuardarResultado.setText(bundle.getString("guardarResultado"));
+            chkEnVivo.setText(bundle.getString("enVivo"));
+            actualizarAyudaAlgoritmos();
 
             // Actualiza cualquier otro texto o label que uses, así como tooltips, etc.
         } catch (Exception e) {
@@ -159,20 +364,248 @@ public class ControladorVentana {
 
     /**
      * Metodo llamado al escribir en el área de texto de entrada.
-     * Activa o desactiva botones según si el área está vacía o no.
+     * Activa o desactiva botones según si el área (o el visor del texto grande) está vacía o no.
      *
      * @author Telmo
      */
     @FXML
     void areaEscribir() {
-        boolean vacio = txtIzda.getText().trim().isEmpty();
+        boolean vacio = visorIzda.getTexto() == null && txtIzda.getText().trim().isEmpty();
         btnAreas.setDisable(vacio);
         btnLimpiarAreas.setDisable(vacio);
     }
 
     /**
-     * Acción asociada al botón para seleccionar un archivo y procesarlo (cifrar/descifrar).
+     * Filtro de los cambios del área de entrada: si el texto va a pasar de {@link #LIMITE_AREA}
+     * caracteres (normalmente al pegar), el cambio no se aplica al TextArea, que tardaría segundos en
+     * maquetarlo, y el texto completo se guarda en un archivo temporal que se muestra por páginas.
+     * Con el modo en vivo activo, cada cambio que se aplica se anota para cifrarlo.
+     *
+     * @param cambio Cambio propuesto en el área de entrada
+     * @return El mismo cambio, o {@code null} para descartarlo
+     *
+     * @author Erlantz
+     */
+    private TextFormatter.Change filtrarTextoGrande(TextFormatter.Change cambio) {
+        int longitud = cambio.getControlText().length() - (cambio.getRangeEnd() - cambio.getRangeStart())
+                + cambio.getText().length();
+        if (longitud <= LIMITE_AREA) {
+            if (modoEnVivo != null && cambio.isContentChange()) {
+                anotarEnVivo(cambio, longitud);
+            }
+            return cambio;
+        }
+        if (tareaActual != null) {
+            logger.warn("Texto de {} caracteres descartado: hay una operación en curso", longitud);
+            return null;
+        }
+        String texto = cambio.getControlNewText();
+        Platform.runLater(() -> cargarEntrada(progreso -> TextoPaginado.deTexto(texto)));
+        return null;
+    }
+
+    /**
+     * Acción de la casilla del modo en vivo. Al activarlo se pide la clave, que se usa hasta
+     * desactivarlo, y se procesa el texto que ya hubiera.
+     *
+     * @author Erlantz
+     */
+    @FXML
+    void enVivoAccion() {
+        if (!chkEnVivo.isSelected()) {
+            detenerEnVivo();
+            return;
+        }
+        if (operacionTexto() == null || cifradorSeleccionado() == null) {
+            chkEnVivo.setSelected(false);
+            mandarAlertas(Alert.AlertType.WARNING, bundle.getString("atencion"), null, bundle.getString("opcionInvalidaMensaje"));
+            return;
+        }
+        String clave = pedirClave(bundle.getString("introduceClave"));
+        if (clave == null || clave.trim().isEmpty()) {
+            chkEnVivo.setSelected(false);
+            mandarAlertas(Alert.AlertType.WARNING, bundle.getString("atencion"), bundle.getString("opcionInvalida"), bundle.getString("claveInvalidaMensaje"));
+            return;
+        }
+        chkEnVivo.setUserData(clave);
+        reiniciarEnVivo();
+    }
+
+    /**
+     * Crea de nuevo el modo en vivo con el algoritmo y la operación seleccionados, vacía el resultado y
+     * vuelve a procesar todo el texto. Si ya no hay operación seleccionada, lo desactiva.
+     *
+     * @author Erlantz
+     */
+    private void reiniciarEnVivo() {
+        if (!chkEnVivo.isSelected()) {
+            return;
+        }
+        Boolean cifrar = operacionTexto();
+        Cifrador cifrador = cifradorSeleccionado();
+        if (cifrar == null || cifrador == null) {
+            chkEnVivo.setSelected(false);
+            detenerEnVivo();
+            return;
+        }
+        if (modoEnVivo != null) {
+            modoEnVivo.detener();
+        }
+        modoEnVivo = new ModoEnVivo(cifrador, (String) chkEnVivo.getUserData(), cifrar, EJECUTOR,
+                txtIzda::getText, this::aplicarEnVivo, this::fallarEnVivo);
+        mostrarResultado("");
+        if (visorIzda.getTexto() != null || txtIzda.getLength() > LIMITE_TEXTO_EN_MEMORIA) {
+            pausarEnVivo();
+        } else {
+            modoEnVivo.reiniciar();
+        }
+        logger.debug("Modo en vivo: {} con {}", cifrar ? "cifrar" : "descifrar", cifrador.nombre());
+    }
+
+    /**
+     * Desactiva el modo en vivo y olvida su clave. El último resultado se queda en el área de salida.
+     *
+     * @author Erlantz
+     */
+    private void detenerEnVivo() {
+        if (modoEnVivo != null) {
+            modoEnVivo.detener();
+            modoEnVivo = null;
+        }
+        chkEnVivo.setUserData(null);
+    }
+
+    /**
+     * Anota para el modo en vivo un cambio que se va a aplicar al área de entrada. Si el texto pasa de
+     * {@link #LIMITE_TEXTO_EN_MEMORIA} caracteres, el modo en vivo se pausa hasta que vuelva a caber.
+     *
+     * @param cambio Cambio del área de entrada
+     * @param longitud Longitud del texto después del cambio
+     *
+     * @author Erlantz
+     */
+    private void anotarEnVivo(TextFormatter.Change cambio, int longitud) {
+        if (longitud > LIMITE_TEXTO_EN_MEMORIA) {
+            pausarEnVivo();
+            return;
+        }
+        modoEnVivo.editar(cambio.getRangeStart(), cambio.getRangeEnd(),
+                cambio.getRangeStart() + cambio.getText().length(), cambio.getControlText().length());
+    }
+
+    /**
+     * Pausa el modo en vivo porque el texto es demasiado largo: vacía el resultado y avisa de que hay
+     * que usar el botón.
+     *
+     * @author Erlantz
+     */
+    private void pausarEnVivo() {
+        modoEnVivo.detener();
+        txtDcha.clear();
+        lblMensaje.setText(bundle.getString("enVivoPausado"));
+        lblMensaje.setVisible(true);
+    }
+
+    /**
+     * Aplica al área de salida un cambio del modo en vivo, sustituyendo solo el tramo que cambia.
+     *
+     * @param cambio Cambio del resultado
+     *
+     * @author Erlantz
+     */
+    private void aplicarEnVivo(CambioTexto cambio) {
+        txtDcha.replaceText(cambio.getInicio(), cambio.getFin(), cambio.getReemplazo());
+        lblMensaje.setVisible(false);
+    }
+
+    /**
+     * Muestra sin alertas que el texto aún no se puede procesar en vivo (por ejemplo, un texto cifrado
+     * a medio pegar) y vacía el resultado.
+     *
+     * @param error Error del cifrado o descifrado
+     *
+     * @author Erlantz
+     */
+    private void fallarEnVivo(Exception error) {
+        logger.debug("Modo en vivo: {}", error.toString());
+        txtDcha.clear();
+        lblMensaje.setText(bundle.getString("enVivoError") + " " + error.getMessage());
+        lblMensaje.setVisible(true);
+    }
+
+    /**
+     * Devuelve la operación seleccionada en el ComboBox.
+     *
+     * @return {@code true} para cifrar, {@code false} para descifrar, o {@code null} si no hay ninguna
+     *
+     * @author Erlantz
+     */
+    private Boolean operacionTexto() {
+        String opcion = cmbOpcion.getValue();
+        if (bundle.getString(CIFRAR).equals(opcion)) {
+            return true;
+        }
+        return bundle.getString(DESCIFRAR).equals(opcion) ? false : null;
+    }
+
+    /**
+     * Acción del menú para abrir un archivo de texto como entrada. El archivo no se copia ni se carga en
+     * memoria: se muestra por páginas y al cifrarlo se lee por flujo.
+     *
+     * @author Erlantz
+     */
+    @FXML
+    void btnAbrirTexto() {
+        if (tareaActual != null) {
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(bundle.getString("abrirTexto"));
+        File archivo = fileChooser.showOpenDialog(null);
+        if (archivo != null) {
+            cargarEntrada(progreso -> TextoPaginado.abrir(archivo.toPath(), false, progreso));
+        }
+    }
+
+    /**
+     * Prepara en segundo plano un texto grande de entrada y, al terminar, lo muestra en lugar del área
+     * de entrada.
+     *
+     * @param carga Operación que guarda o abre el texto y construye su índice
+     *
+     * @author Erlantz
+     */
+    private void cargarEntrada(TareaCifrado.Operacion<TextoPaginado> carga) {
+        TareaCifrado<TextoPaginado> tarea = new TareaCifrado<>(carga,
+                bundle.getString("procesando"), bundle.getString("progresoArchivo"));
+        ejecutarTarea(tarea, this::mostrarEntrada, "noSePuedeProcesarTexto");
+    }
+
+    /**
+     * Muestra un texto grande en el visor de entrada, en lugar del área de texto.
+     *
+     * @param texto Texto de entrada
+     *
+     * @author Erlantz
+     */
+    private void mostrarEntrada(TextoPaginado texto) {
+        txtIzda.clear();
+        if (modoEnVivo != null) {
+            modoEnVivo.detener();
+        }
+        visorIzda.mostrar(texto);
+        panelIzda.setContent(visorIzda);
+        lblArchivo.setText(texto.isTemporal() ? "" : texto.getArchivo().toString());
+        lblMensaje.setText(MessageFormat.format(bundle.getString("textoPaginado"),
+                String.format("%.1f", texto.getBytes() / MEGABYTE)));
+        lblMensaje.setVisible(true);
+        areaEscribir();
+    }
+
+    /**
+     * Acción asociada al botón para seleccionar uno o varios archivos y procesarlos (cifrar/descifrar).
      * Solicita clave y realiza operación según selección del radio button y combo.
+     * Los archivos se procesan en segundo plano mostrando el avance; si hay más de uno, en paralelo.
      *
      * @author Telmo
      */
@@ -183,58 +616,149 @@ public class ControladorVentana {
 
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle(bundle.getString("seleccionaArchivo"));
-        File file = fileChooser.showOpenDialog(null);
-        if (file == null) {
+        List<File> archivos = fileChooser.showOpenMultipleDialog(null);
+        if (archivos == null || archivos.isEmpty()) {
             return;
         }
 
-        String clave = pedirClave(bundle.getString("introduceClave"));
-        if (clave == null || clave.trim().isEmpty()) {
-            mandarAlertas(Alert.AlertType.WARNING, bundle.getString("claveInvalida"), null, bundle.getString("claveInvalidaMensaje"));
+        String clave = pedirClaveArchivos();
+        if (clave == null) {
             return;
         }
 
-        String opcion = cmbOpcion.getValue();
-        try {
-            String resultado;
-            if (rbVigenere.isSelected()) {
-                if (opcion.equalsIgnoreCase(bundle.getString(CIFRAR))) {
-                    resultado = CifradoVigenere.cifrarArchivo(file.getAbsolutePath(), clave);
-                } else {
-                    resultado = CifradoVigenere.descifrarArchivo(file.getAbsolutePath(), clave);
-                }
-            } else {
-                if (opcion.equalsIgnoreCase(bundle.getString(CIFRAR))) {
-                    resultado = CifradoAES.cifrarArchivo(file.getAbsolutePath(), clave);
-                } else {
-                    resultado = CifradoAES.descifrarArchivo(file.getAbsolutePath(), clave);
-                }
-            }
+        LoteArchivos.OperacionArchivo operacion = operacionArchivo(cifradorSeleccionado(), clave);
+        if (archivos.size() > 1) {
+            List<Path> rutas = archivos.stream().map(File::toPath).toList();
+            procesarLote(progreso -> LoteArchivos.procesar(rutas, operacion, progreso));
+            return;
+        }
+
+        Path ruta = archivos.get(0).toPath();
+        TareaCifrado<Path> tarea = new TareaCifrado<>(progreso -> operacion.procesar(ruta, progreso),
+                bundle.getString("procesando"), bundle.getString("progresoArchivo"));
 
-            lblArchivo.setText(resultado);
+        ejecutarTarea(tarea, resultado -> {
+            lblArchivo.setText(resultado.toString());
             lblMensaje.setText(bundle.getString("archivoProcesado"));
             lblMensaje.setVisible(true);
             logger.info("Archivo procesado: {}", resultado);
+        }, "noSePudoProcesarMensaje");
+    }
 
-        } catch (IOException | GeneralSecurityException e) {
-            logger.error("Error procesando archivo: {}", e.getMessage(), e);
-            mandarAlertas(Alert.AlertType.ERROR, bundle.getString("error"), null, bundle.getString("noSePudoProcesarMensaje") + " " + e.getMessage());
+    /**
+     * Acción asociada al botón para seleccionar una carpeta y procesar (cifrar/descifrar) todos
+     * los archivos que contiene, recursivamente y en paralelo.
+     *
+     * @author Telmo
+     */
+    @FXML
+    void btnCarpeta() {
+        lblMensaje.setVisible(false);
+        lblArchivo.setText("");
+
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle(bundle.getString("seleccionaCarpeta"));
+        File carpeta = directoryChooser.showDialog(null);
+        if (carpeta == null) {
+            return;
         }
-        catch (Exception e) {
-            logger.error("Error inesperado procesando archivo: {}", e.getMessage(), e);
-            mandarAlertas(Alert.AlertType.ERROR, bundle.getString("error"), null, e.getMessage());
+
+        String clave = pedirClaveArchivos();
+        if (clave == null) {
+            return;
+        }
+
+        LoteArchivos.OperacionArchivo operacion = operacionArchivo(cifradorSeleccionado(), clave);
+        // La carpeta se recorre en el hilo de la tarea: puede contener miles de archivos
+        procesarLote(progreso -> LoteArchivos.procesar(LoteArchivos.listarArchivos(carpeta.toPath()), operacion, progreso));
+        lblArchivo.setText(carpeta.getAbsolutePath());
+    }
+
+    /**
+     * Pide la clave para procesar archivos y avisa si no es válida.
+     *
+     * @return Clave introducida, o {@code null} si se cancela o está vacía
+     *
+     * @author Telmo
+     */
+    private String pedirClaveArchivos() {
+        String clave = pedirClave(bundle.getString("introduceClave"));
+        if (clave == null || clave.trim().isEmpty()) {
+            mandarAlertas(Alert.AlertType.WARNING, bundle.getString("claveInvalida"), null, bundle.getString("claveInvalidaMensaje"));
+            return null;
         }
+        return clave;
+    }
+
+    /**
+     * Crea la operación que se aplica a cada archivo según el algoritmo y la acción seleccionados.
+     * El archivo resultante se guarda junto al original con sufijo "_cifrado" o "_descifrado".
+     *
+     * @param cifrador Algoritmo seleccionado
+     * @param clave Clave de cifrado
+     * @return Operación para un archivo
+     *
+     * @author Telmo
+     */
+    private LoteArchivos.OperacionArchivo operacionArchivo(Cifrador cifrador, String clave) {
+        boolean cifrar = cmbOpcion.getValue().equalsIgnoreCase(bundle.getString(CIFRAR));
+        return (archivo, progreso) -> Path.of(cifrar
+                ? cifrador.cifrarArchivo(archivo.toString(), clave, progreso)
+                : cifrador.descifrarArchivo(archivo.toString(), clave, progreso));
+    }
+
+    /**
+     * Procesa un lote de archivos en segundo plano y muestra el resumen al terminar: número de
+     * archivos, errores y velocidad conjunta. Si algún archivo falla, se enumeran en una alerta.
+     *
+     * @param lote Operación que procesa el lote y devuelve su resumen
+     *
+     * @author Telmo
+     */
+    private void procesarLote(TareaCifrado.Operacion<LoteArchivos.Resumen> lote) {
+        TareaCifrado<LoteArchivos.Resumen> tarea = new TareaCifrado<>(lote,
+                bundle.getString("procesando"), bundle.getString("progresoArchivo"));
+
+        ejecutarTarea(tarea, resumen -> {
+            List<LoteArchivos.Resultado> fallidos = resumen.getFallidos();
+            lblMensaje.setText(MessageFormat.format(bundle.getString("loteProcesado"),
+                    resumen.getResultados().size(), fallidos.size(),
+                    String.format("%.1f", resumen.getMegabytesPorSegundo())));
+            lblMensaje.setVisible(true);
+            logger.info("Lote procesado: {} archivos, {} con error", resumen.getResultados().size(), fallidos.size());
+            if (fallidos.isEmpty()) {
+                return;
+            }
+
+            StringBuilder detalle = new StringBuilder();
+            for (int i = 0; i < fallidos.size(); i++) {
+                LoteArchivos.Resultado fallido = fallidos.get(i);
+                logger.warn("No se pudo procesar {}: {}", fallido.getOrigen(), fallido.getError().toString());
+                if (i < MAX_ERRORES_MOSTRADOS) {
+                    detalle.append(fallido.getOrigen().getFileName()).append(": ").append(fallido.getError().getMessage()).append('\n');
+                }
+            }
+            if (fallidos.size() > MAX_ERRORES_MOSTRADOS) {
+                detalle.append("…");
+            }
+            mandarAlertas(Alert.AlertType.WARNING, bundle.getString("atencion"),
+                    MessageFormat.format(bundle.getString("loteErrores"), fallidos.size()), detalle.toString().trim());
+        }, "noSePudoProcesarMensaje");
     }
 
     /**
      * Acción asociada al botón para cifrar o descifrar el texto en el área de entrada.
-     * Utiliza el radio button para elegir el tipo de cifrado.
+     * Utiliza el radio button para elegir el tipo de cifrado. El texto se procesa en segundo plano.
+     * Los textos cortos se procesan en memoria y el resultado va al área de salida; los grandes, o si se
+     * ha marcado guardar el resultado en un archivo, se procesan por flujo y el resultado se escribe en
+     * un archivo (temporal si no se ha elegido ninguno) que se muestra por páginas.
      *
      * @author Telmo
      */
     public void btnAccion() {
-        String texto = txtIzda.getText();
-        if (texto == null || texto.isEmpty()) {
+        TextoPaginado entrada = visorIzda.getTexto();
+        String texto = entrada == null ? txtIzda.getText() : null;
+        if (entrada == null && (texto == null || texto.isEmpty())) {
             mandarAlertas(Alert.AlertType.WARNING, bundle.getString("atencion"), bundle.getString("noHayTextoTitulo"), bundle.getString("noHayTextoMensaje"));
             return;
         }
@@ -245,33 +769,161 @@ public class ControladorVentana {
             return;
         }
 
-        try {
-            String resultado;
-            if (rbVigenere.isSelected()) {
-                if (btnAreas.getText().equalsIgnoreCase(bundle.getString(CIFRAR))) {
-                    resultado = CifradoVigenere.cifrarTexto(texto, clave);
-                } else {
-                    resultado = CifradoVigenere.descifrarTexto(texto, clave);
-                }
-            } else if (rbAES.isSelected()) {
-                if (btnAreas.getText().equalsIgnoreCase(bundle.getString(CIFRAR))) {
-                    resultado = CifradoAES.cifrarTexto(texto, clave);
-                } else {
-                    resultado = CifradoAES.descifrarTexto(texto, clave);
-                }
-            } else {
-                mandarAlertas(Alert.AlertType.WARNING, bundle.getString("atencion"), null, bundle.getString("opcionInvalidaMensaje"));
+        Cifrador cifrador = cifradorSeleccionado();
+        if (cifrador == null) {
+            mandarAlertas(Alert.AlertType.WARNING, bundle.getString("atencion"), null, bundle.getString("opcionInvalidaMensaje"));
+            return;
+        }
+
+        Path destino = null;
+        if (chkGuardarResultado.isSelected()) {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle(bundle.getString("guardarResultadoTitulo"));
+            File archivo = fileChooser.showSaveDialog(null);
+            if (archivo == null) {
                 return;
             }
+            destino = archivo.toPath();
+        }
 
-            txtDcha.setText(resultado);
+        if (chkEnVivo.isSelected()) {
+            // El botón sustituye el resultado en vivo por el definitivo
+            chkEnVivo.setSelected(false);
+            detenerEnVivo();
+        }
 
-        } catch (GeneralSecurityException e) {
-            logger.error("Error de seguridad al procesar el texto: {}", e.getMessage(), e);
-            mandarAlertas(Alert.AlertType.ERROR, bundle.getString("error"), null, bundle.getString("noSePuedeProcesarTexto") + " " + e.getMessage());
-        } catch (Exception e) {
-            logger.error("Error inesperado al procesar el texto: {}", e.getMessage(), e);
-            mandarAlertas(Alert.AlertType.ERROR, bundle.getString("error"), null, e.getMessage());
+        boolean cifrar = btnAreas.getText().equalsIgnoreCase(bundle.getString(CIFRAR));
+        if (entrada == null && destino == null && texto.length() <= LIMITE_TEXTO_EN_MEMORIA) {
+            TareaCifrado<String> tarea = new TareaCifrado<>(
+                    progreso -> cifrar ? cifrador.cifrarTexto(texto, clave) : cifrador.descifrarTexto(texto, clave),
+                    bundle.getString("procesando"), bundle.getString("progresoArchivo"));
+            ejecutarTarea(tarea, this::mostrarResultado, "noSePuedeProcesarTexto");
+            return;
+        }
+
+        Path archivoDestino = destino;
+        TareaCifrado<TextoPaginado> tarea = new TareaCifrado<>(progreso -> {
+            try (ReadableByteChannel origen = entrada != null ? entrada.leer(progreso)
+                    : Channels.newChannel(new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8)))) {
+                return TextoPaginado.generar(archivoDestino, salida -> cifrar
+                        ? cifrador.cifrarTexto(origen, salida, clave)
+                        : cifrador.descifrarTexto(origen, salida, clave), Progreso.NINGUNO);
+            }
+        }, bundle.getString("procesando"), bundle.getString("progresoArchivo"));
+        ejecutarTarea(tarea, this::mostrarResultado, "noSePuedeProcesarTexto");
+    }
+
+    /**
+     * Muestra un resultado corto en el área de salida.
+     *
+     * @param resultado Texto cifrado o descifrado
+     *
+     * @author Erlantz
+     */
+    private void mostrarResultado(String resultado) {
+        visorDcha.cerrar();
+        panelDcha.setContent(txtDcha);
+        txtDcha.setText(resultado);
+    }
+
+    /**
+     * Muestra un resultado grande en el visor de salida, en lugar del área de texto. Si se ha guardado
+     * en un archivo elegido por el usuario, indica dónde.
+     *
+     * @param resultado Texto cifrado o descifrado, en su archivo
+     *
+     * @author Erlantz
+     */
+    private void mostrarResultado(TextoPaginado resultado) {
+        txtDcha.clear();
+        visorDcha.mostrar(resultado);
+        panelDcha.setContent(visorDcha);
+        if (!resultado.isTemporal()) {
+            lblArchivo.setText(resultado.getArchivo().toString());
+            lblMensaje.setText(bundle.getString("resultadoGuardado"));
+            lblMensaje.setVisible(true);
+            logger.info("Resultado del texto guardado en {}", resultado.getArchivo());
+        }
+    }
+
+    /**
+     * Ejecuta una operación en segundo plano mostrando su progreso y bloqueando los controles
+     * que podrían lanzar otra operación mientras tanto.
+     *
+     * @param <T> Tipo del resultado de la tarea
+     * @param tarea Tarea a ejecutar
+     * @param alTerminar Acción con el resultado, en el hilo de JavaFX, si la tarea termina bien
+     * @param claveMensajeError Clave del bundle con el mensaje para los errores de cifrado o de archivo
+     *
+     * @author Erlantz
+     */
+    private <T> void ejecutarTarea(TareaCifrado<T> tarea, Consumer<T> alTerminar, String claveMensajeError) {
+        tareaActual = tarea;
+        barraProgreso.progressProperty().bind(tarea.progressProperty());
+        lblProgreso.textProperty().bind(tarea.messageProperty());
+        mostrarProgreso(true);
+
+        tarea.setOnSucceeded(evento -> {
+            mostrarProgreso(false);
+            alTerminar.accept(tarea.getValue());
+        });
+        tarea.setOnCancelled(evento -> {
+            mostrarProgreso(false);
+            logger.info("Operación cancelada por el usuario");
+            lblMensaje.setText(bundle.getString("operacionCancelada"));
+            lblMensaje.setVisible(true);
+        });
+        tarea.setOnFailed(evento -> {
+            mostrarProgreso(false);
+            Throwable e = tarea.getException();
+            if (e instanceof IOException || e instanceof GeneralSecurityException) {
+                logger.error("Error procesando: {}", e.getMessage(), e);
+                mandarAlertas(Alert.AlertType.ERROR, bundle.getString("error"), null, bundle.getString(claveMensajeError) + " " + e.getMessage());
+            } else {
+                logger.error("Error inesperado procesando: {}", e.getMessage(), e);
+                mandarAlertas(Alert.AlertType.ERROR, bundle.getString("error"), null, e.getMessage());
+            }
+        });
+        EJECUTOR.execute(tarea);
+    }
+
+    /**
+     * Muestra u oculta el panel de progreso y bloquea o restaura los controles que lanzan operaciones.
+     *
+     * @param enCurso {@code true} al empezar una operación, {@code false} al terminar
+     *
+     * @author Erlantz
+     */
+    private void mostrarProgreso(boolean enCurso) {
+        panelProgreso.setVisible(enCurso);
+        btnCancelar.setDisable(!enCurso);
+        cmbOpcion.setDisable(enCurso);
+        panelAlgoritmos.setDisable(enCurso);
+        if (enCurso) {
+            btnAreas.setDisable(true);
+            btnLimpiarAreas.setDisable(true);
+            btnSelecFichero.setDisable(true);
+            btnSelecCarpeta.setDisable(true);
+        } else {
+            barraProgreso.progressProperty().unbind();
+            lblProgreso.textProperty().unbind();
+            tareaActual = null;
+            cmbAccion();
+            areaEscribir();
+        }
+    }
+
+    /**
+     * Cancela la operación en curso. Si es un archivo, el procesado se detiene en el siguiente
+     * bloque y se elimina el archivo de destino parcial.
+     *
+     * @author Erlantz
+     */
+    @FXML
+    void btnCancelar() {
+        if (tareaActual != null) {
+            btnCancelar.setDisable(true);
+            tareaActual.cancel(true);
         }
     }
 
@@ -307,7 +959,8 @@ public class ControladorVentana {
     }
 
     /**
-     * Limpia ambas áreas de texto tras confirmación del usuario.
+     * Limpia ambas áreas de texto tras confirmación del usuario. Los textos grandes dejan de mostrarse
+     * y sus archivos temporales se borran.
      *
      * @author Telmo
      */
@@ -317,6 +970,13 @@ public class ControladorVentana {
         if (confirmar) {
             txtDcha.clear();
             txtIzda.clear();
+            visorIzda.cerrar();
+            visorDcha.cerrar();
+            panelIzda.setContent(txtIzda);
+            panelDcha.setContent(txtDcha);
+            if (modoEnVivo != null) {
+                modoEnVivo.reiniciar();
+            }
             btnAreas.setDisable(true);
             lblMensaje.setVisible(false);
             btnLimpiarAreas.setDisable(true);
@@ -332,6 +992,7 @@ public class ControladorVentana {
     void btnCerrar() {
         boolean confirmar = mandarConfirmacion(bundle.getString("cerrarAplicacion"), bundle.getString("cerrarAplicacionMensaje"));
         if (confirmar) {
+            btnCancelar();
             Platform.exit();
         }
     }
@@ -346,14 +1007,17 @@ public class ControladorVentana {
     public void cmbAccion() {
         String opcion = cmbOpcion.getValue();
         btnSelecFichero.setText(bundle.getString("seleccionaArchivo"));
+        btnSelecCarpeta.setText(bundle.getString("seleccionaCarpeta"));
 
         if (opcion == null) {
             btnAreas.setDisable(true);
             btnSelecFichero.setDisable(true);
+            btnSelecCarpeta.setDisable(true);
             return;
         }
 
         btnSelecFichero.setDisable(false);
+        btnSelecCarpeta.setDisable(false);
 
         if (opcion.equals(bundle.getString(CIFRAR))) {
             btnAreas.setText(bundle.getString(CIFRAR));
@@ -363,6 +1027,7 @@ public class ControladorVentana {
             btnAreas.setText(bundle.getString("eligeOpcion"));
             btnAreas.setDisable(true);
             btnSelecFichero.setDisable(true);
+            btnSelecCarpeta.setDisable(true);
         }
     }
 
@@ -0,0 +1,228 @@
+package es.cryptowarts.controladores;
+
+import es.cryptowarts.cifrado.CambioTexto;
+import es.cryptowarts.cifrado.Cifrador;
+import es.cryptowarts.cifrado.CifradoEnVivo;
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cifrado en vivo del área de entrada mientras se escribe. Cada edición solo se anota en el hilo de
+ * JavaFX (unas pocas operaciones, muy por debajo de un fotograma); las ediciones de una ráfaga de
+ * pulsaciones se agrupan en un único tramo cambiado, que se cifra en otro hilo con
+ * {@link CifradoEnVivo}. Solo hay un cifrado en curso a la vez: lo que se escribe mientras tanto se
+ * acumula para el siguiente, y los cambios del resultado se aplican en orden en el hilo de JavaFX.
+ *
+ * <p>Se espera {@link #ESPERA} desde la última pulsación antes de cifrar, pero nunca más de
+ * {@link #ESPERA_MAXIMA} desde la primera pendiente, para que el resultado no se quede parado mientras
+ * se escribe sin pausa.</p>
+ *
+ * <p>Todos los métodos se llaman desde el hilo de JavaFX.</p>
+ *
+ * @author Erlantz
+ * @version 1.0
+ */
+final class ModoEnVivo {
+
+    /** Tiempo sin pulsaciones tras el que se cifra lo escrito. */
+    static final Duration ESPERA = Duration.millis(40);
+
+    /** Tiempo máximo que una edición espera a que termine la ráfaga. */
+    static final Duration ESPERA_MAXIMA = Duration.millis(150);
+
+    /** Algoritmo. */
+    private final Cifrador cifrador;
+
+    /** Clave secreta. */
+    private final String clave;
+
+    /** Indica si se cifra o se descifra. */
+    private final boolean cifrar;
+
+    /** Ejecutor de los cifrados, fuera del hilo de JavaFX. */
+    private final Executor ejecutor;
+
+    /** Texto actual del área de entrada. */
+    private final Supplier<String> texto;
+
+    /** Recibe, en el hilo de JavaFX, cada cambio del resultado. */
+    private final Consumer<CambioTexto> alAplicar;
+
+    /** Recibe, en el hilo de JavaFX, el error si el texto no se puede procesar. */
+    private final Consumer<Exception> alFallar;
+
+    /** Temporizador de la espera tras cada pulsación. */
+    private final PauseTransition espera = new PauseTransition(ESPERA);
+
+    /** Modo en vivo con el estado del último resultado, o {@code null} si hay que empezar de cero. */
+    private CifradoEnVivo motor;
+
+    /** Longitud del texto procesado en último lugar (o enviado a procesar), base de las ediciones pendientes. */
+    private int longitudBase;
+
+    /** Indica si hay ediciones sin procesar. */
+    private boolean pendiente;
+
+    /** Caracteres del principio que no ha cambiado ninguna edición pendiente. */
+    private int prefijo;
+
+    /** Caracteres del final que no ha cambiado ninguna edición pendiente. */
+    private int sufijo;
+
+    /** Momento de la primera edición pendiente. */
+    private long primeraPendiente;
+
+    /** Indica si hay un cifrado en curso. */
+    private boolean enCurso;
+
+    /** Se incrementa al reiniciar o detener, para descartar los resultados que lleguen después. */
+    private int generacion;
+
+    /**
+     * Crea el modo en vivo, sin procesar nada hasta la primera edición o {@link #reiniciar()}.
+     *
+     * @param cifrador Algoritmo
+     * @param clave Clave secreta
+     * @param cifrar {@code true} para cifrar, {@code false} para descifrar
+     * @param ejecutor Ejecutor de los cifrados
+     * @param texto Texto actual del área de entrada
+     * @param alAplicar Recibe cada cambio del resultado
+     * @param alFallar Recibe el error si el texto no se puede procesar; el resultado se da por vacío
+     *
+     * @author Erlantz
+     */
+    ModoEnVivo(Cifrador cifrador, String clave, boolean cifrar, Executor ejecutor, Supplier<String> texto,
+               Consumer<CambioTexto> alAplicar, Consumer<Exception> alFallar) {
+        this.cifrador = cifrador;
+        this.clave = clave;
+        this.cifrar = cifrar;
+        this.ejecutor = ejecutor;
+        this.texto = texto;
+        this.alAplicar = alAplicar;
+        this.alFallar = alFallar;
+        espera.setOnFinished(evento -> lanzar());
+    }
+
+    /**
+     * Anota una edición del área de entrada: el tramo entre {@code inicio} y {@code finAnterior} del
+     * texto se sustituye por uno que acaba en {@code finNuevo}.
+     *
+     * @param inicio Posición del primer carácter editado
+     * @param finAnterior Fin del tramo editado antes de la edición
+     * @param finNuevo Fin del tramo editado después de la edición
+     * @param longitudAnterior Longitud del texto antes de la edición
+     *
+     * @author Erlantz
+     */
+    void editar(int inicio, int finAnterior, int finNuevo, int longitudAnterior) {
+        int intacto = longitudAnterior - finAnterior;
+        if (pendiente) {
+            prefijo = Math.min(prefijo, inicio);
+            sufijo = Math.min(sufijo, intacto);
+        } else {
+            pendiente = true;
+            prefijo = inicio;
+            sufijo = intacto;
+            primeraPendiente = System.nanoTime();
+        }
+        if ((System.nanoTime() - primeraPendiente) / 1e6 < ESPERA_MAXIMA.toMillis()
+                || espera.getStatus() != Animation.Status.RUNNING) {
+            espera.playFromStart();
+        }
+    }
+
+    /**
+     * Vuelve a procesar todo el texto desde cero, por ejemplo al empezar o después de vaciar el
+     * resultado. Se descarta el resultado del cifrado en curso.
+     *
+     * @author Erlantz
+     */
+    void reiniciar() {
+        detener();
+        pendiente = true;
+        primeraPendiente = System.nanoTime();
+        espera.playFromStart();
+    }
+
+    /**
+     * Deja de procesar: se descartan las ediciones pendientes y el resultado del cifrado en curso. La
+     * siguiente edición procesa todo el texto desde cero.
+     *
+     * @author Erlantz
+     */
+    void detener() {
+        generacion++;
+        espera.stop();
+        pendiente = false;
+        motor = null;
+        longitudBase = 0;
+    }
+
+    /**
+     * Envía a procesar las ediciones pendientes, si no hay otro cifrado en curso. El tramo cambiado se
+     * calcula sobre el texto actual y el procesado en último lugar.
+     *
+     * @author Erlantz
+     */
+    private void lanzar() {
+        if (enCurso || !pendiente) {
+            return;
+        }
+        String actual = texto.get();
+        int longitud = actual.length();
+        int inicio = Math.min(prefijo, Math.min(longitud, longitudBase));
+        int intacto = Math.min(sufijo, Math.min(longitud, longitudBase) - inicio);
+        int finAnterior = longitudBase - intacto;
+        int finNuevo = longitud - intacto;
+        CifradoEnVivo anterior = motor;
+        int generacionLanzada = generacion;
+        pendiente = false;
+        longitudBase = longitud;
+        enCurso = true;
+
+        ejecutor.execute(() -> {
+            try {
+                CifradoEnVivo usado = anterior != null ? anterior : cifrador.enVivo(clave, cifrar);
+                CambioTexto cambio = usado.aplicar(actual, inicio, finAnterior, finNuevo);
+                Platform.runLater(() -> terminar(generacionLanzada, usado, cambio, null));
+            } catch (Exception e) {
+                Platform.runLater(() -> terminar(generacionLanzada, null, null, e));
+            }
+        });
+    }
+
+    /**
+     * Aplica el resultado de un cifrado, si no se ha reiniciado ni detenido mientras tanto, y lanza el
+     * siguiente si hay ediciones pendientes.
+     *
+     * @param generacionLanzada Generación en la que se lanzó el cifrado
+     * @param usado Modo en vivo que lo ha procesado, con su nuevo estado
+     * @param cambio Cambio del resultado, o {@code null} si ha fallado
+     * @param error Error, o {@code null} si ha ido bien
+     *
+     * @author Erlantz
+     */
+    private void terminar(int generacionLanzada, CifradoEnVivo usado, CambioTexto cambio, Exception error) {
+        enCurso = false;
+        if (generacionLanzada == generacion) {
+            if (error == null) {
+                motor = usado;
+                alAplicar.accept(cambio);
+            } else {
+                // El resultado se vacía: la siguiente edición empieza de cero
+                motor = null;
+                longitudBase = 0;
+                alFallar.accept(error);
+            }
+        }
+        if (pendiente && espera.getStatus() != Animation.Status.RUNNING) {
+            lanzar();
+        }
+    }
+}
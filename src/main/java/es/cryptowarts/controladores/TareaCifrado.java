@@ -0,0 +1,141 @@
+package es.cryptowarts.controladores;
+
+import es.cryptowarts.cifrado.Progreso;
+import javafx.concurrent.Task;
+
+import java.text.MessageFormat;
+
+/**
+ * Tarea en segundo plano que cifra o descifra archivos o un texto sin bloquear el hilo de JavaFX.
+ * Publica el avance en {@link #progressProperty()} (bytes procesados sobre el total) y en
+ * {@link #messageProperty()} un resumen con los MB procesados, la velocidad y el tiempo restante.
+ * Para no saturar el hilo de JavaFX se publica como mucho una actualización por fotograma (~16 ms).
+ *
+ * <p>Al cancelarla con {@code cancel(true)} se interrumpe su hilo: el procesado de archivos se detiene
+ * en el siguiente bloque y elimina el archivo de destino parcial.</p>
+ *
+ * @param <T> Tipo del resultado (ruta o texto resultante, o resumen de un lote de archivos)
+ *
+ * @author Erlantz
+ * @version 1.0
+ */
+final class TareaCifrado<T> extends Task<T> {
+
+    /** Tiempo mínimo entre dos actualizaciones del avance (un fotograma a 60 fps). */
+    private static final long INTERVALO_NANOS = 16_000_000L;
+
+    /** Bytes de un megabyte. */
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    /** Operación que realiza la tarea. */
+    private final Operacion<T> operacion;
+
+    /** Mensaje que se muestra al empezar, antes de conocer el avance. */
+    private final String mensajeInicial;
+
+    /** Formato del resumen del avance: MB procesados, MB totales, MB/s y tiempo restante. */
+    private final String formatoProgreso;
+
+    /** Momento en que empezó la operación. */
+    private long inicio;
+
+    /** Momento de la última actualización publicada. */
+    private long ultimaActualizacion;
+
+    /**
+     * Crea la tarea.
+     *
+     * @param operacion Operación a realizar en segundo plano
+     * @param mensajeInicial Mensaje que se muestra al empezar
+     * @param formatoProgreso Formato ({@link MessageFormat}) del resumen del avance
+     *
+     * @author Erlantz
+     */
+    TareaCifrado(Operacion<T> operacion, String mensajeInicial, String formatoProgreso) {
+        this.operacion = operacion;
+        this.mensajeInicial = mensajeInicial;
+        this.formatoProgreso = formatoProgreso;
+    }
+
+    /**
+     * Ejecuta la operación en el hilo de la tarea.
+     *
+     * @return Resultado de la operación
+     * @throws Exception Sí la operación falla o se cancela
+     *
+     * @author Erlantz
+     */
+    @Override
+    protected T call() throws Exception {
+        updateMessage(mensajeInicial);
+        inicio = System.nanoTime();
+        return operacion.ejecutar(this::actualizar);
+    }
+
+    /**
+     * Recibe el avance del procesado y lo publica si ha pasado al menos un fotograma desde la
+     * última actualización (la última siempre se publica).
+     *
+     * @param procesados Bytes procesados hasta ahora
+     * @param total Tamaño total en bytes, o -1 si no se conoce
+     *
+     * @author Erlantz
+     */
+    private void actualizar(long procesados, long total) {
+        long ahora = System.nanoTime();
+        if (procesados < total && ahora - ultimaActualizacion < INTERVALO_NANOS) {
+            return;
+        }
+        ultimaActualizacion = ahora;
+        updateProgress(procesados, total);
+        if (total < 0) {
+            return;
+        }
+
+        double segundos = (ahora - inicio) / 1e9;
+        double velocidad = segundos > 0 ? procesados / MEGABYTE / segundos : 0;
+        long restantes = velocidad > 0 ? Math.round((total - procesados) / MEGABYTE / velocidad) : -1;
+        updateMessage(MessageFormat.format(formatoProgreso,
+                String.format("%.1f", procesados / MEGABYTE),
+                String.format("%.1f", total / MEGABYTE),
+                String.format("%.1f", velocidad),
+                formatearTiempo(restantes)));
+    }
+
+    /**
+     * Da formato a un tiempo en segundos como "m:ss" o "h:mm:ss".
+     *
+     * @param segundos Tiempo en segundos, o -1 si no se conoce
+     * @return Tiempo con formato ("--:--" si no se conoce)
+     *
+     * @author Erlantz
+     */
+    static String formatearTiempo(long segundos) {
+        if (segundos < 0) {
+            return "--:--";
+        }
+        long horas = segundos / 3600;
+        long minutos = (segundos % 3600) / 60;
+        long resto = segundos % 60;
+        return horas > 0
+                ? String.format("%d:%02d:%02d", horas, minutos, resto)
+                : String.format("%d:%02d", minutos, resto);
+    }
+
+    /**
+     * Operación de cifrado o descifrado que realiza la tarea.
+     *
+     * @param <T> Tipo del resultado
+     */
+    @FunctionalInterface
+    interface Operacion<T> {
+        /**
+         * Realiza la operación informando del avance.
+         *
+         * @param progreso Receptor del avance (las operaciones de texto pueden ignorarlo)
+         * @return Resultado de la operación
+         * @throws Exception Sí la operación falla o se cancela
+         */
+        T ejecutar(Progreso progreso) throws Exception;
+    }
+}
@@ -0,0 +1,416 @@
+package es.cryptowarts.controladores;
+
+import es.cryptowarts.cifrado.Progreso;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Texto UTF-8 guardado en un archivo que se muestra por filas sin cargarlo en memoria. Al abrirlo se
+ * recorre el archivo una vez para anotar dónde empieza cada fila; después cada fila se decodifica solo
+ * cuando se pide, leyendo el archivo por páginas de {@link #TAMANO_PAGINA} bytes. Así un texto de
+ * decenas de megas ocupa unos pocos megas de índice en lugar de cientos de megas de {@link String} y
+ * maquetación en un {@link javafx.scene.control.TextArea}.
+ *
+ * <p>Las líneas de más de {@link #ANCHO_FILA} bytes se parten en varias filas (sin cortar ningún
+ * carácter), de modo que el resultado en Base64 de un cifrado, que es una sola línea, también se puede
+ * recorrer por páginas.</p>
+ *
+ * <p>El índice se construye en el hilo que lo abre; las filas se leen desde el hilo de JavaFX. Los
+ * textos temporales (pegados o resultados que no se han guardado) se borran al cerrarlos.</p>
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+final class TextoPaginado implements AutoCloseable {
+
+    /** Logger para esta clase. */
+    private static final Logger logger = LoggerFactory.getLogger(TextoPaginado.class);
+
+    /** Longitud máxima de una fila en bytes; las líneas más largas se parten. */
+    static final int ANCHO_FILA = 160;
+
+    /** Bytes que se leen del archivo de una vez, tanto al construir el índice como al mostrar filas. */
+    private static final int TAMANO_PAGINA = 64 * 1024;
+
+    /** Prefijo de los archivos temporales. */
+    private static final String PREFIJO_TEMPORAL = "cryptowarts-";
+
+    /** Archivo con el texto. */
+    private final Path archivo;
+
+    /** Canal abierto del archivo, para las lecturas posicionales. */
+    private final FileChannel canal;
+
+    /** Indica si el archivo es temporal y se borra al cerrar. */
+    private final boolean temporal;
+
+    /** Tamaño del archivo en bytes. */
+    private final long bytes;
+
+    /** Posición en el archivo del primer byte de cada fila. */
+    private final long[] inicios;
+
+    /** Página del archivo leída en último lugar. */
+    private final ByteBuffer pagina = ByteBuffer.allocate(TAMANO_PAGINA);
+
+    /** Posición en el archivo del primer byte de {@link #pagina}. */
+    private long inicioPagina = -1;
+
+    /**
+     * Crea el texto con su índice ya construido.
+     *
+     * @param archivo Archivo con el texto
+     * @param canal Canal abierto del archivo
+     * @param temporal Si el archivo se borra al cerrar
+     * @param bytes Tamaño del archivo
+     * @param inicios Posición del primer byte de cada fila
+     */
+    private TextoPaginado(Path archivo, FileChannel canal, boolean temporal, long bytes, long[] inicios) {
+        this.archivo = archivo;
+        this.canal = canal;
+        this.temporal = temporal;
+        this.bytes = bytes;
+        this.inicios = inicios;
+    }
+
+    /**
+     * Abre un archivo de texto y construye el índice de sus filas, informando del avance. El recorrido
+     * se detiene si se interrumpe el hilo.
+     *
+     * @param archivo Archivo de texto en UTF-8
+     * @param temporal Si el archivo se borra al cerrar el texto (o si falla la apertura)
+     * @param progreso Receptor del avance del recorrido
+     * @return Texto listo para mostrar
+     * @throws IOException Sí hay un error leyendo el archivo, o la operación se cancela
+     *
+     * @author Telmo
+     */
+    static TextoPaginado abrir(Path archivo, boolean temporal, Progreso progreso) throws IOException {
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        try {
+            long tamano = canal.size();
+            long[] inicios = indexar(canal, tamano, progreso);
+            logger.debug("Texto de {} bytes en {} filas: {}", tamano, inicios.length, archivo);
+            return new TextoPaginado(archivo, canal, temporal, tamano, inicios);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            if (temporal) {
+                Files.deleteIfExists(archivo);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Escribe un texto en un archivo y lo abre. Si no se indica destino, se escribe en un archivo
+     * temporal que se borra al cerrar el texto. Si la escritura falla o se cancela, el archivo se borra.
+     *
+     * @param destino Archivo en el que se escribe, o {@code null} para uno temporal
+     * @param generador Operación que escribe el texto en UTF-8
+     * @param progreso Receptor del avance al construir el índice
+     * @return Texto escrito, listo para mostrar
+     * @throws IOException Sí hay un error escribiendo o leyendo, o la operación se cancela
+     * @throws GeneralSecurityException Sí el generador falla al cifrar o descifrar
+     *
+     * @author Telmo
+     */
+    static TextoPaginado generar(Path destino, Generador generador, Progreso progreso) throws IOException, GeneralSecurityException {
+        boolean temporal = destino == null;
+        Path archivo = temporal ? Files.createTempFile(PREFIJO_TEMPORAL, ".txt") : destino;
+        if (temporal) {
+            archivo.toFile().deleteOnExit();
+        }
+        boolean escrito = false;
+        try {
+            try (FileChannel salida = FileChannel.open(archivo, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                generador.escribir(salida);
+            }
+            escrito = true;
+        } finally {
+            if (!escrito) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+        return abrir(archivo, temporal, progreso);
+    }
+
+    /**
+     * Guarda un texto en un archivo temporal y lo abre, para mostrar un texto demasiado grande para un
+     * {@link javafx.scene.control.TextArea}.
+     *
+     * @param texto Texto a guardar
+     * @return Texto temporal listo para mostrar
+     * @throws IOException Sí hay un error escribiendo el archivo, o la operación se cancela
+     *
+     * @author Telmo
+     */
+    static TextoPaginado deTexto(String texto) throws IOException {
+        ByteBuffer datos = ByteBuffer.wrap(texto.getBytes(StandardCharsets.UTF_8));
+        try {
+            return generar(null, salida -> {
+                while (datos.hasRemaining()) {
+                    salida.write(datos);
+                }
+                return datos.limit();
+            }, Progreso.NINGUNO);
+        } catch (GeneralSecurityException e) {
+            // El generador solo escribe: no cifra nada
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Recorre el archivo y anota dónde empieza cada fila: después de cada salto de línea, o cuando una
+     * línea llega a {@link #ANCHO_FILA} bytes y el siguiente byte empieza un carácter UTF-8 (que no sea el
+     * fin de línea, para no crear filas vacías).
+     *
+     * @param canal Canal del archivo
+     * @param tamano Tamaño del archivo
+     * @param progreso Receptor del avance
+     * @return Posición del primer byte de cada fila (vacío si el archivo está vacío)
+     * @throws IOException Sí hay un error leyendo, o el hilo se interrumpe
+     *
+     * @author Telmo
+     */
+    private static long[] indexar(FileChannel canal, long tamano, Progreso progreso) throws IOException {
+        long[] inicios = new long[(int) Math.min(1024, tamano / ANCHO_FILA + 1)];
+        int filas = 0;
+        long inicioFila = 0;
+        boolean nuevaFila = tamano > 0;
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANO_PAGINA);
+        long posicion = 0;
+        while (posicion < tamano) {
+            buffer.clear();
+            int leidos = canal.read(buffer, posicion);
+            if (leidos < 0) {
+                break;
+            }
+            byte[] datos = buffer.array();
+            for (int i = 0; i < leidos; i++) {
+                long actual = posicion + i;
+                byte dato = datos[i];
+                if (!nuevaFila && actual - inicioFila >= ANCHO_FILA && (dato & 0xC0) != 0x80 && dato != '\n' && dato != '\r') {
+                    nuevaFila = true;
+                }
+                if (nuevaFila) {
+                    if (filas == inicios.length) {
+                        inicios = Arrays.copyOf(inicios, filas * 2);
+                    }
+                    inicios[filas++] = actual;
+                    inicioFila = actual;
+                    nuevaFila = false;
+                }
+                if (dato == '\n') {
+                    nuevaFila = true;
+                }
+            }
+            posicion += leidos;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Operación cancelada");
+            }
+            progreso.actualizar(posicion, tamano);
+        }
+        return Arrays.copyOf(inicios, filas);
+    }
+
+    /**
+     * Devuelve el número de filas del texto.
+     *
+     * @return Número de filas
+     */
+    int getFilas() {
+        return inicios.length;
+    }
+
+    /**
+     * Devuelve el tamaño del texto.
+     *
+     * @return Tamaño en bytes
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Devuelve el archivo con el texto.
+     *
+     * @return Ruta del archivo
+     */
+    Path getArchivo() {
+        return archivo;
+    }
+
+    /**
+     * Indica si el archivo es temporal.
+     *
+     * @return {@code true} si se borra al cerrar el texto
+     */
+    boolean isTemporal() {
+        return temporal;
+    }
+
+    /**
+     * Devuelve el texto de una fila, sin el salto de línea. Si la fila no está en la página leída en
+     * último lugar, se lee la página que empieza en ella.
+     *
+     * @param indice Número de fila, desde 0
+     * @return Texto de la fila
+     * @throws UncheckedIOException Sí hay un error leyendo el archivo
+     *
+     * @author Telmo
+     */
+    String getFila(int indice) {
+        long inicio = inicios[indice];
+        long fin = indice + 1 < inicios.length ? inicios[indice + 1] : bytes;
+        if (inicioPagina < 0 || inicio < inicioPagina || fin > inicioPagina + pagina.limit()) {
+            leerPagina(inicio);
+        }
+        int desde = (int) (inicio - inicioPagina);
+        int hasta = (int) (fin - inicioPagina);
+        byte[] datos = pagina.array();
+        while (hasta > desde && (datos[hasta - 1] == '\n' || datos[hasta - 1] == '\r')) {
+            hasta--;
+        }
+        return new String(datos, desde, hasta - desde, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lee la página del archivo que empieza en una posición.
+     *
+     * @param inicio Posición del primer byte de la página
+     * @throws UncheckedIOException Sí hay un error leyendo el archivo
+     *
+     * @author Telmo
+     */
+    private void leerPagina(long inicio) {
+        pagina.clear();
+        try {
+            while (pagina.hasRemaining() && inicio + pagina.position() < bytes) {
+                if (canal.read(pagina, inicio + pagina.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            inicioPagina = -1;
+            throw new UncheckedIOException(e);
+        }
+        pagina.flip();
+        inicioPagina = inicio;
+    }
+
+    /**
+     * Devuelve las filas como lista observable para un {@link javafx.scene.control.ListView}. La lista
+     * no guarda las filas: cada una se lee del archivo cuando la celda que la muestra la pide.
+     *
+     * @return Lista de solo lectura con las filas
+     *
+     * @author Telmo
+     */
+    ObservableList<String> filas() {
+        return FXCollections.observableList(new AbstractList<>() {
+            @Override
+            public String get(int indice) {
+                return getFila(indice);
+            }
+
+            @Override
+            public int size() {
+                return getFilas();
+            }
+        });
+    }
+
+    /**
+     * Abre un canal que lee el texto completo desde el principio, informando del avance y deteniéndose
+     * si se interrumpe el hilo. El canal es independiente del que usa el visor: si una cancelación lo
+     * cierra a medias, el texto se puede seguir mostrando.
+     *
+     * @param progreso Receptor del avance
+     * @return Canal con el texto en UTF-8, que hay que cerrar
+     * @throws IOException Sí no se puede abrir el archivo
+     *
+     * @author Telmo
+     */
+    ReadableByteChannel leer(Progreso progreso) throws IOException {
+        FileChannel lectura = FileChannel.open(archivo, StandardOpenOption.READ);
+        return new ReadableByteChannel() {
+
+            /** Bytes leídos hasta ahora. */
+            private long leidos;
+
+            @Override
+            public int read(ByteBuffer destino) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Operación cancelada");
+                }
+                int n = lectura.read(destino);
+                if (n > 0) {
+                    leidos += n;
+                    progreso.actualizar(leidos, bytes);
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return lectura.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                lectura.close();
+            }
+        };
+    }
+
+    /**
+     * Cierra el archivo y, si es temporal, lo borra.
+     *
+     * @author Telmo
+     */
+    @Override
+    public void close() {
+        try {
+            canal.close();
+            if (temporal) {
+                Files.deleteIfExists(archivo);
+            }
+        } catch (IOException e) {
+            logger.warn("No se pudo cerrar o borrar {}: {}", archivo, e.getMessage());
+        }
+    }
+
+    /**
+     * Operación que escribe un texto en un canal.
+     */
+    @FunctionalInterface
+    interface Generador {
+        /**
+         * Escribe el texto.
+         *
+         * @param salida Canal del archivo de destino
+         * @return Número de bytes o caracteres escritos
+         * @throws IOException Sí hay un error leyendo o escribiendo
+         * @throws GeneralSecurityException Sí ocurre un error de cifrado o descifrado
+         */
+        long escribir(WritableByteChannel salida) throws IOException, GeneralSecurityException;
+    }
+}
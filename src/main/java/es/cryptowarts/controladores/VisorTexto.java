@@ -0,0 +1,70 @@
+package es.cryptowarts.controladores;
+
+import javafx.collections.FXCollections;
+import javafx.scene.control.ListView;
+import javafx.scene.text.Font;
+
+/**
+ * Visor de solo lectura para textos grandes. Es un {@link ListView} con una fila de {@link TextoPaginado}
+ * por celda y altura de celda fija, así que solo se crean y se rellenan las celdas visibles: desplazarse
+ * por un texto de millones de filas cuesta lo mismo que por uno de cien, y solo se leen del archivo las
+ * páginas que se ven.
+ *
+ * @author Erlantz
+ * @version 1.0
+ */
+final class VisorTexto extends ListView<String> {
+
+    /** Altura de cada fila: la de una celda de la fuente por defecto. */
+    private static final double ALTO_FILA = Math.ceil(Font.getDefault().getSize() * 1.8);
+
+    /** Texto mostrado, o {@code null} si no hay ninguno. */
+    private TextoPaginado texto;
+
+    /**
+     * Crea un visor vacío.
+     *
+     * @author Erlantz
+     */
+    VisorTexto() {
+        setFixedCellSize(ALTO_FILA);
+        setEditable(false);
+        getStyleClass().add("visor-texto");
+    }
+
+    /**
+     * Muestra un texto desde el principio, cerrando el que hubiera.
+     *
+     * @param nuevo Texto a mostrar; el visor lo cierra al cambiarlo o al llamar a {@link #cerrar()}
+     *
+     * @author Erlantz
+     */
+    void mostrar(TextoPaginado nuevo) {
+        cerrar();
+        texto = nuevo;
+        setItems(nuevo.filas());
+        scrollTo(0);
+    }
+
+    /**
+     * Devuelve el texto mostrado.
+     *
+     * @return Texto, o {@code null} si no hay ninguno
+     */
+    TextoPaginado getTexto() {
+        return texto;
+    }
+
+    /**
+     * Vacía el visor y cierra el texto (si es temporal, se borra su archivo).
+     *
+     * @author Erlantz
+     */
+    void cerrar() {
+        setItems(FXCollections.observableArrayList());
+        if (texto != null) {
+            texto.close();
+            texto = null;
+        }
+    }
+}
@@ -4,10 +4,25 @@ module es.cryptowarts {
     requires org.slf4j;
     requires jdk.compiler;
     requires java.desktop;
+    requires java.management;
+    requires jdk.httpserver;
     requires javafx.graphics;
 
+    // Opcional: solo se usa si se arranca con --add-modules jdk.incubator.vector (Vigenère SIMD)
+    requires static jdk.incubator.vector;
+
     opens es.cryptowarts.controladores to javafx.fxml;
 
     opens es.cryptowarts to javafx.fxml;
     exports es.cryptowarts;
+    exports es.cryptowarts.cifrado;
+
+    // Algoritmos de cifrado intercambiables (RegistroCifradores); el orden es el de la interfaz gráfica
+    uses es.cryptowarts.cifrado.Cifrador;
+    provides es.cryptowarts.cifrado.Cifrador with
+            es.cryptowarts.cifrado.CifradorVigenere,
+            es.cryptowarts.cifrado.CifradorAES,
+            es.cryptowarts.cifrado.CifradorAESGCM,
+            es.cryptowarts.cifrado.CifradorChaCha20Poly1305,
+            es.cryptowarts.cifrado.CifradorAutomatico;
 }
@@ -0,0 +1,153 @@
+package es.cryptowarts.cifrado;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pruebas de {@link BloquesAutenticados} con mensajes manipulados: truncar, reordenar o quitar la marca del
+ * último bloque tiene que hacer fallar la verificación, con todos los {@link AlgoritmoAEAD}.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+class BloquesAutenticadosTest {
+
+    /** Clave de los mensajes de prueba. */
+    private static final String CLAVE = "ClaveDeHogwarts";
+
+    /** Tamaño de un bloque cifrado, con su etiqueta. */
+    private static final int BLOQUE_CIFRADO = BloquesAutenticados.TAMANO_BLOQUE + AlgoritmoAEAD.LONGITUD_ETIQUETA;
+
+    /**
+     * Genera un texto ASCII de la longitud indicada.
+     *
+     * @param longitud Número de caracteres (y de bytes)
+     * @return Texto de prueba
+     */
+    private static String texto(int longitud) {
+        char[] caracteres = new char[longitud];
+        for (int i = 0; i < longitud; i++) {
+            caracteres[i] = (char) ('a' + i % 26);
+        }
+        return new String(caracteres);
+    }
+
+    /**
+     * Devuelve la longitud del sobre de un mensaje cifrado, donde empieza el primer bloque.
+     *
+     * @param mensaje Mensaje cifrado
+     * @return Longitud del sobre
+     * @throws GeneralSecurityException Sí el sobre no es válido
+     */
+    private static int sobre(byte[] mensaje) throws GeneralSecurityException {
+        return SobreCifrado.leer(ByteBuffer.wrap(mensaje)).longitud();
+    }
+
+    /**
+     * Comprueba que un mensaje manipulado no se descifra.
+     *
+     * @param algoritmo Algoritmo del mensaje
+     * @param mensaje Mensaje manipulado
+     */
+    private static void assertRechazado(AlgoritmoAEAD algoritmo, byte[] mensaje) {
+        String cifrado = Base64.getEncoder().encodeToString(mensaje);
+        assertThrows(GeneralSecurityException.class, () -> BloquesAutenticados.descifrarTexto(algoritmo, cifrado, CLAVE));
+    }
+
+    /**
+     * Un mensaje de varios bloques sin tocar se descifra, también cuando el último bloque está lleno.
+     *
+     * @throws GeneralSecurityException Sí no se puede cifrar o descifrar
+     */
+    @Test
+    void descifraSinManipular() throws GeneralSecurityException {
+        for (AlgoritmoAEAD algoritmo : AlgoritmoAEAD.values()) {
+            for (int longitud : new int[]{0, 10, 2 * BloquesAutenticados.TAMANO_BLOQUE, 2 * BloquesAutenticados.TAMANO_BLOQUE + 100}) {
+                String original = texto(longitud);
+                String cifrado = BloquesAutenticados.cifrarTexto(algoritmo, original, CLAVE);
+                assertEquals(original, BloquesAutenticados.descifrarTexto(algoritmo, cifrado, CLAVE));
+            }
+        }
+    }
+
+    /**
+     * Quitar el último bloque entero deja como último uno que se cifró como intermedio, y quitar solo
+     * parte de un bloque rompe su etiqueta.
+     *
+     * @throws GeneralSecurityException Sí no se puede cifrar
+     */
+    @Test
+    void rechazaMensajeTruncado() throws GeneralSecurityException {
+        for (AlgoritmoAEAD algoritmo : AlgoritmoAEAD.values()) {
+            byte[] mensaje = Base64.getDecoder().decode(
+                    BloquesAutenticados.cifrarTexto(algoritmo, texto(2 * BloquesAutenticados.TAMANO_BLOQUE + 100), CLAVE));
+            int inicio = sobre(mensaje);
+
+            assertRechazado(algoritmo, Arrays.copyOf(mensaje, inicio + 2 * BLOQUE_CIFRADO));
+            assertRechazado(algoritmo, Arrays.copyOf(mensaje, inicio + BLOQUE_CIFRADO));
+            assertRechazado(algoritmo, Arrays.copyOf(mensaje, mensaje.length - 1));
+            assertRechazado(algoritmo, Arrays.copyOf(mensaje, inicio));
+        }
+    }
+
+    /**
+     * Intercambiar dos bloques completos hace que cada uno se descifre con el nonce de otra posición.
+     *
+     * @throws GeneralSecurityException Sí no se puede cifrar
+     */
+    @Test
+    void rechazaBloquesReordenados() throws GeneralSecurityException {
+        for (AlgoritmoAEAD algoritmo : AlgoritmoAEAD.values()) {
+            byte[] mensaje = Base64.getDecoder().decode(
+                    BloquesAutenticados.cifrarTexto(algoritmo, texto(3 * BloquesAutenticados.TAMANO_BLOQUE), CLAVE));
+            int inicio = sobre(mensaje);
+
+            byte[] reordenado = mensaje.clone();
+            System.arraycopy(mensaje, inicio + BLOQUE_CIFRADO, reordenado, inicio, BLOQUE_CIFRADO);
+            System.arraycopy(mensaje, inicio, reordenado, inicio + BLOQUE_CIFRADO, BLOQUE_CIFRADO);
+            assertRechazado(algoritmo, reordenado);
+
+            // El último bloque está lleno: también se puede intercambiar con el anterior
+            byte[] ultimoDelante = mensaje.clone();
+            System.arraycopy(mensaje, inicio + 2 * BLOQUE_CIFRADO, ultimoDelante, inicio + BLOQUE_CIFRADO, BLOQUE_CIFRADO);
+            System.arraycopy(mensaje, inicio + BLOQUE_CIFRADO, ultimoDelante, inicio + 2 * BLOQUE_CIFRADO, BLOQUE_CIFRADO);
+            assertRechazado(algoritmo, ultimoDelante);
+        }
+    }
+
+    /**
+     * Añadir datos detrás del último bloque lo convierte en intermedio (le quita la marca de último), aunque
+     * lo añadido sea un bloque válido del mismo mensaje. Al descifrar por flujo, el primer bloque se escribe
+     * y el que era el último ya no se verifica: lo rechaza su marca, no lo que viene detrás.
+     *
+     * @throws Exception Sí no se puede cifrar
+     */
+    @Test
+    void rechazaUltimoBloqueSinMarca() throws Exception {
+        for (AlgoritmoAEAD algoritmo : AlgoritmoAEAD.values()) {
+            byte[] mensaje = Base64.getDecoder().decode(
+                    BloquesAutenticados.cifrarTexto(algoritmo, texto(2 * BloquesAutenticados.TAMANO_BLOQUE), CLAVE));
+            int inicio = sobre(mensaje);
+
+            byte[] alargado = Arrays.copyOf(mensaje, mensaje.length + BLOQUE_CIFRADO);
+            System.arraycopy(mensaje, inicio, alargado, mensaje.length, BLOQUE_CIFRADO);
+            assertRechazado(algoritmo, alargado);
+
+            ByteArrayOutputStream descifrado = new ByteArrayOutputStream();
+            assertThrows(GeneralSecurityException.class, () -> BloquesAutenticados.descifrar(algoritmo,
+                    Channels.newChannel(new ByteArrayInputStream(alargado)), Channels.newChannel(descifrado),
+                    CLAVE, Progreso.NINGUNO, -1));
+            assertEquals(BloquesAutenticados.TAMANO_BLOQUE, descifrado.size());
+        }
+    }
+}
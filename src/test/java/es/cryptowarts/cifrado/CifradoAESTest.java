@@ -0,0 +1,158 @@
+package es.cryptowarts.cifrado;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.ShortBufferException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de compatibilidad de {@link CifradoAES} con los textos cifrados por las versiones anteriores,
+ * con el IV fijo (los datos se generaron aparte con {@code javax.crypto}, sin usar esta clase), y de los
+ * datos comprimidos antes de cifrarlos, que se tienen que descifrar igual por todas las vías.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+class CifradoAESTest {
+
+    /** Clave de los textos de prueba. */
+    private static final String CLAVE = "ClaveDeHogwarts";
+
+    /** Texto plano de los textos de prueba. */
+    private static final String TEXTO = "Mensaje cifrado con el formato antiguo";
+
+    /**
+     * {@link #TEXTO} cifrado sin sobre: AES-CBC con la clave normalizada a 16 bytes (rellena con ceros)
+     * y el IV fijo "abcdefghijklmnop".
+     */
+    private static final String SIN_SOBRE = "kDwRAfPPbSv1tB38k7waJtqphkuQIA8yG2djvlYb+V7BJ2RxgQvgOTnDj+7UnqCh";
+
+    /**
+     * {@link #TEXTO} cifrado con el sobre de la versión 1: {@code "CWKD" | 1 | 1000 | sal 00..0F}, la clave
+     * derivada con PBKDF2-HMAC-SHA256 y el IV fijo.
+     */
+    private static final String VERSION_1 =
+            "Q1dLRAEAAAPoAAECAwQFBgcICQoLDA0OD+/r9Cr65hU1Zl+amPWm4psKPx8ysLHti9T73gO/je+rVmJEnRajB6TbkkIii0tsrw==";
+
+    /**
+     * Se descifra un texto del formato sin sobre.
+     *
+     * @throws GeneralSecurityException Sí no se puede descifrar
+     */
+    @Test
+    void descifraFormatoSinSobre() throws GeneralSecurityException {
+        assertEquals(TEXTO, CifradoAES.descifrarTexto(SIN_SOBRE, CLAVE));
+    }
+
+    /**
+     * Se descifra un texto del sobre de la versión 1, con la clave derivada y el IV fijo.
+     *
+     * @throws GeneralSecurityException Sí no se puede descifrar
+     */
+    @Test
+    void descifraVersion1() throws GeneralSecurityException {
+        assertEquals(TEXTO, CifradoAES.descifrarTexto(VERSION_1, CLAVE));
+    }
+
+    /**
+     * Los textos nuevos se cifran con el sobre actual y se descifran igual.
+     *
+     * @throws GeneralSecurityException Sí no se puede cifrar o descifrar
+     */
+    @Test
+    void cifraConElSobreActual() throws GeneralSecurityException {
+        String cifrado = CifradoAES.cifrarTexto(TEXTO, CLAVE);
+        assertEquals(TEXTO, CifradoAES.descifrarTexto(cifrado, CLAVE));
+    }
+
+    /**
+     * Cifra {@link #TEXTO}, repetido para que se comprima, por flujo con compresión.
+     *
+     * @param veces Número de repeticiones del texto
+     * @return Sobre con la marca de compresión y datos cifrados
+     * @throws Exception Sí no se puede cifrar
+     */
+    private static byte[] cifradoComprimido(int veces) throws Exception {
+        byte[] plano = TEXTO.repeat(veces).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream cifrado = new ByteArrayOutputStream();
+        CifradoAES.cifrar(Channels.newChannel(new ByteArrayInputStream(plano)), Channels.newChannel(cifrado), CLAVE,
+                Compresion.RAPIDA);
+        return cifrado.toByteArray();
+    }
+
+    /**
+     * Los datos comprimidos se descomprimen al descifrarlos con buffers, en binario y en Base64, igual
+     * que al descifrarlos como texto.
+     *
+     * @throws Exception Sí no se puede cifrar o descifrar
+     */
+    @Test
+    void descifraComprimidoConBuffers() throws Exception {
+        byte[] cifrado = cifradoComprimido(50);
+        String esperado = TEXTO.repeat(50);
+        assertTrue(SobreCifrado.leer(cifrado, 0, cifrado.length).isComprimido());
+        assertEquals(esperado, CifradoAES.descifrarTexto(Base64.getEncoder().encodeToString(cifrado), CLAVE));
+
+        ByteBuffer destino = ByteBuffer.allocate(esperado.length());
+        assertEquals(esperado.length(), CifradoAES.descifrar(ByteBuffer.wrap(cifrado), destino, CLAVE));
+        assertEquals(esperado, new String(destino.array(), StandardCharsets.UTF_8));
+
+        destino.clear();
+        ByteBuffer base64 = ByteBuffer.wrap(Base64.getEncoder().encode(cifrado));
+        assertEquals(esperado.length(), CifradoAES.descifrarBase64(base64, destino, CLAVE));
+        assertEquals(esperado, new String(destino.array(), StandardCharsets.UTF_8));
+
+        destino.clear();
+        assertEquals(esperado.length(), new CifradorAES().descifrar(ByteBuffer.wrap(cifrado), destino, CLAVE));
+        assertEquals(esperado, new String(destino.array(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Si el texto descomprimido no cabe en el destino no se escribe nada ni se consume el origen.
+     *
+     * @throws Exception Sí no se puede cifrar
+     */
+    @Test
+    void comprimidoNoCabeEnElDestino() throws Exception {
+        ByteBuffer origen = ByteBuffer.wrap(cifradoComprimido(50));
+        ByteBuffer destino = ByteBuffer.allocate(TEXTO.length());
+        assertThrows(ShortBufferException.class, () -> CifradoAES.descifrar(origen, destino, CLAVE));
+        assertEquals(0, origen.position());
+        assertEquals(0, destino.position());
+    }
+
+    /**
+     * Los lotes devuelven lo mismo que {@link CifradoAES#descifrarTexto(String, String)} uno a uno, también
+     * con textos comprimidos, del formato antiguo y con el sobre actual mezclados, en serie y en paralelo.
+     *
+     * @throws Exception Sí no se puede cifrar o descifrar
+     */
+    @Test
+    void loteIgualQueUnoAUno() throws Exception {
+        List<String> cifrados = List.of(
+                Base64.getEncoder().encodeToString(cifradoComprimido(50)),
+                SIN_SOBRE,
+                CifradoAES.cifrarTexto(TEXTO, CLAVE),
+                Base64.getEncoder().encodeToString(cifradoComprimido(3)),
+                VERSION_1);
+        List<String> unoAUno = new ArrayList<>();
+        for (String cifrado : cifrados) {
+            unoAUno.add(CifradoAES.descifrarTexto(cifrado, CLAVE));
+        }
+        assertEquals(TEXTO.repeat(50), unoAUno.get(0));
+        assertEquals(unoAUno, CifradoAES.descifrarTextos(cifrados, CLAVE, false));
+        assertEquals(unoAUno, CifradoAES.descifrarTextos(cifrados, CLAVE, true));
+    }
+}
@@ -0,0 +1,210 @@
+package es.cryptowarts.cifrado;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del formato de {@link SobreCifrado}: lo que se escribe se vuelve a leer igual, y las cabeceras
+ * con una versión o un algoritmo desconocidos se rechazan.
+ *
+ * @author Telmo
+ * @version 1.0
+ */
+class SobreCifradoTest {
+
+    /** Iteraciones de los sobres de prueba (las mínimas admitidas). */
+    private static final int ITERACIONES = DerivacionClaves.MINIMO_ITERACIONES;
+
+    /** Algoritmos que se pueden escribir en un sobre. */
+    private static final byte[] ALGORITMOS = {SobreCifrado.AES_CBC, SobreCifrado.AES_GCM, SobreCifrado.CHACHA20_POLY1305};
+
+    /** Posición de la versión en el sobre (después de la firma "CWKD"). */
+    private static final int POSICION_VERSION = 4;
+
+    /** Posición del byte del algoritmo en el sobre de la versión actual. */
+    private static final int POSICION_ALGORITMO = 5;
+
+    /**
+     * Devuelve una sal de prueba distinta en cada byte.
+     *
+     * @return Sal de {@link DerivacionClaves#LONGITUD_SAL} bytes
+     */
+    private static byte[] sal() {
+        byte[] sal = new byte[DerivacionClaves.LONGITUD_SAL];
+        for (int i = 0; i < sal.length; i++) {
+            sal[i] = (byte) (i + 1);
+        }
+        return sal;
+    }
+
+    /**
+     * Comprueba que un sobre leído tiene los mismos datos que el original.
+     *
+     * @param esperado Sobre escrito
+     * @param leido Sobre leído
+     */
+    private static void assertMismoSobre(SobreCifrado esperado, SobreCifrado leido) {
+        assertEquals(esperado.getAlgoritmo(), leido.getAlgoritmo());
+        assertEquals(esperado.getIteraciones(), leido.getIteraciones());
+        assertArrayEquals(esperado.getSal(), leido.getSal());
+        assertArrayEquals(esperado.getIV(), leido.getIV());
+        assertEquals(esperado.isComprimido(), leido.isComprimido());
+        assertEquals(esperado.longitud(), leido.longitud());
+        assertArrayEquals(esperado.bytes(), leido.bytes());
+    }
+
+    /**
+     * Cada algoritmo, con y sin compresión, se lee igual que se escribió y la lectura deja la posición
+     * en el primer byte cifrado.
+     *
+     * @throws GeneralSecurityException Sí no se puede leer el sobre
+     */
+    @Test
+    void leeLoQueEscribe() throws GeneralSecurityException {
+        for (byte algoritmo : ALGORITMOS) {
+            for (boolean comprimido : new boolean[]{false, true}) {
+                SobreCifrado sobre = SobreCifrado.nuevo(algoritmo, sal(), ITERACIONES, comprimido);
+                ByteBuffer datos = ByteBuffer.allocate(sobre.longitud() + 3);
+                assertEquals(sobre.longitud(), sobre.escribir(datos));
+                datos.put(new byte[]{7, 8, 9}).flip();
+
+                SobreCifrado leido = SobreCifrado.leer(datos);
+                assertMismoSobre(sobre, leido);
+                assertEquals(sobre.longitud(), datos.position());
+            }
+        }
+    }
+
+    /**
+     * El sobre escrito en un canal se lee desde otro canal sin consumir ningún byte cifrado.
+     *
+     * @throws Exception Sí no se puede escribir o leer el sobre
+     */
+    @Test
+    void leeLoQueEscribeEnUnCanal() throws Exception {
+        SobreCifrado sobre = SobreCifrado.nuevo(SobreCifrado.AES_GCM, sal(), ITERACIONES, true);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        sobre.escribir(Channels.newChannel(salida));
+        salida.write(42);
+
+        ByteBuffer leidos = ByteBuffer.allocate(SobreCifrado.LONGITUD);
+        ReadableByteChannel entrada = Channels.newChannel(new ByteArrayInputStream(salida.toByteArray()));
+        SobreCifrado leido = SobreCifrado.leer(entrada, leidos);
+        assertMismoSobre(sobre, leido);
+        assertFalse(leidos.hasRemaining());
+
+        ByteBuffer resto = ByteBuffer.allocate(2);
+        assertEquals(1, entrada.read(resto));
+        assertEquals(42, resto.get(0));
+    }
+
+    /**
+     * Cada sobre nuevo lleva un IV distinto, aunque la clave sea la misma.
+     */
+    @Test
+    void cadaSobreTieneSuIV() {
+        SobreCifrado uno = SobreCifrado.nuevo(SobreCifrado.AES_CBC, sal(), ITERACIONES);
+        SobreCifrado otro = SobreCifrado.nuevo(SobreCifrado.AES_CBC, sal(), ITERACIONES);
+        assertTrue(uno.mismaClave(otro));
+        assertFalse(Arrays.equals(uno.getIV(), otro.getIV()));
+    }
+
+    /**
+     * Los datos sin la firma son del formato antiguo: no hay sobre y la posición no se mueve.
+     *
+     * @throws GeneralSecurityException Sí se intenta leer un sobre
+     */
+    @Test
+    void sinFirmaNoHaySobre() throws GeneralSecurityException {
+        ByteBuffer datos = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertNull(SobreCifrado.leer(datos));
+        assertEquals(0, datos.position());
+    }
+
+    /**
+     * Una versión que no es la actual ni la 1 se rechaza.
+     */
+    @Test
+    void rechazaVersionDesconocida() {
+        for (byte version : new byte[]{0, 3, 9, (byte) 0xFF}) {
+            byte[] bytes = SobreCifrado.nuevo(SobreCifrado.AES_GCM, sal(), ITERACIONES).bytes();
+            bytes[POSICION_VERSION] = version;
+            assertThrows(GeneralSecurityException.class, () -> SobreCifrado.leer(bytes, 0, bytes.length));
+        }
+    }
+
+    /**
+     * Un byte de algoritmo desconocido se rechaza, tenga o no el bit de compresión.
+     */
+    @Test
+    void rechazaAlgoritmoDesconocido() {
+        for (byte algoritmo : new byte[]{0, 4, 0x7F, (byte) 0x84}) {
+            byte[] bytes = SobreCifrado.nuevo(SobreCifrado.AES_CBC, sal(), ITERACIONES).bytes();
+            bytes[POSICION_ALGORITMO] = algoritmo;
+            assertThrows(GeneralSecurityException.class, () -> SobreCifrado.leer(bytes, 0, bytes.length));
+        }
+    }
+
+    /**
+     * Un sobre cortado antes de terminar se rechaza en lugar de tomarse por datos del formato antiguo.
+     */
+    @Test
+    void rechazaSobreIncompleto() {
+        byte[] bytes = SobreCifrado.nuevo(SobreCifrado.CHACHA20_POLY1305, sal(), ITERACIONES).bytes();
+        assertThrows(GeneralSecurityException.class, () -> SobreCifrado.leer(bytes, 0, bytes.length - 1));
+    }
+
+    /**
+     * Unas iteraciones fuera de los límites se rechazan antes de derivar ninguna clave.
+     */
+    @Test
+    void rechazaIteracionesNoValidas() {
+        byte[] bytes = SobreCifrado.nuevo(SobreCifrado.AES_GCM, sal(), ITERACIONES).bytes();
+        ByteBuffer.wrap(bytes).putInt(POSICION_ALGORITMO + 1, DerivacionClaves.MAXIMO_ITERACIONES + 1);
+        assertThrows(GeneralSecurityException.class, () -> SobreCifrado.leer(bytes, 0, bytes.length));
+    }
+
+    /**
+     * Una cabecera no puede pedir más iteraciones que un múltiplo pequeño de las configuradas, aunque
+     * estén por debajo del máximo que se admite al cifrar.
+     *
+     * @throws GeneralSecurityException Sí se rechaza una cabecera dentro del límite
+     */
+    @Test
+    void limitaIteracionesDeLaCabecera() throws GeneralSecurityException {
+        int maximo = DerivacionClaves.maximoIteracionesCabecera();
+        assertTrue(maximo < DerivacionClaves.MAXIMO_ITERACIONES);
+        assertTrue(maximo >= DerivacionClaves.ITERACIONES);
+
+        byte[] bytes = SobreCifrado.nuevo(SobreCifrado.AES_GCM, sal(), ITERACIONES).bytes();
+        for (int iteraciones : new int[]{DerivacionClaves.ITERACIONES, maximo}) {
+            ByteBuffer.wrap(bytes).putInt(POSICION_ALGORITMO + 1, iteraciones);
+            assertEquals(iteraciones, SobreCifrado.leer(bytes, 0, bytes.length).getIteraciones());
+        }
+        ByteBuffer.wrap(bytes).putInt(POSICION_ALGORITMO + 1, maximo + 1);
+        assertThrows(GeneralSecurityException.class, () -> SobreCifrado.leer(bytes, 0, bytes.length));
+    }
+
+    /**
+     * Al descifrar se exige el algoritmo de quien descifra.
+     */
+    @Test
+    void exigeElAlgoritmo() {
+        SobreCifrado sobre = SobreCifrado.nuevo(SobreCifrado.AES_GCM, sal(), ITERACIONES);
+        assertThrows(GeneralSecurityException.class, () -> sobre.exigirAlgoritmo(SobreCifrado.AES_CBC));
+    }
+}